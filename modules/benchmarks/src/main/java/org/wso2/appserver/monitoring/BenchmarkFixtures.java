@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardContext;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.servlet.http.HttpSession;
+
+/**
+ * Requests and responses with fixed, realistic values, which are cheaper and more predictable than mocks.
+ *
+ * @since 1.0.1
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Context newContext() {
+        StandardContext context = new StandardContext();
+        context.setDisplayName("Benchmark Webapp");
+        context.setEffectiveMajorVersion(3);
+        context.setEffectiveMinorVersion(1);
+        return context;
+    }
+
+    /**
+     * @param context          the context serving the request
+     * @param requestURI       the requested URI
+     * @param forwardedFor     the value of the X-Forwarded-For header, or null
+     * @return a request that answers from fixed values
+     */
+    public static Request newRequest(Context context, String requestURI, String forwardedFor) {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put(Constants.HOST, "localhost:8080");
+        headers.put(Constants.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64; rv:46.0) Gecko/20100101 Firefox/46.0");
+        headers.put(Constants.REFERRER, "http://localhost:8080/examples/servlets/");
+        headers.put("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        headers.put("Accept-Language", "en-US,en;q=0.5");
+        headers.put("Accept-Encoding", "gzip, deflate");
+        headers.put("Connection", "keep-alive");
+        headers.put("Cookie", "JSESSIONID=6A3B0C3F1B1A6F0E4D1C7B2A9E8F7D6C");
+        if (forwardedFor != null) {
+            headers.put(Constants.X_FORWARDED_FOR, forwardedFor);
+        }
+        List<String> headerNames = Collections.unmodifiableList(Arrays.asList(headers.keySet().toArray(new String[0])));
+
+        return new Request() {
+            @Override
+            public Context getContext() {
+                return context;
+            }
+
+            @Override
+            public String getRequestURI() {
+                return requestURI;
+            }
+
+            @Override
+            public String getPathInfo() {
+                return null;
+            }
+
+            @Override
+            public String getMethod() {
+                return "GET";
+            }
+
+            @Override
+            public String getContentType() {
+                return null;
+            }
+
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return headers.get(name);
+            }
+
+            @Override
+            public Enumeration<String> getHeaders(String name) {
+                String value = headers.get(name);
+                return Collections.enumeration((value == null) ? Collections.emptyList()
+                        : Collections.singletonList(value));
+            }
+
+            @Override
+            public Enumeration<String> getHeaderNames() {
+                return Collections.enumeration(headerNames);
+            }
+
+            @Override
+            public String getRemoteAddr() {
+                return "10.100.5.21";
+            }
+
+            @Override
+            public String getServerName() {
+                return "localhost";
+            }
+
+            @Override
+            public String getLocalName() {
+                return "localhost.localdomain";
+            }
+
+            @Override
+            public Locale getLocale() {
+                return Locale.US;
+            }
+
+            @Override
+            public HttpSession getSession(boolean create) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @param contentType the content type of the response
+     * @return a response that answers from fixed values
+     */
+    public static Response newResponse(String contentType) {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.put("Content-Type", contentType);
+        headers.put("Content-Length", "1046");
+        headers.put("Date", "Mon, 04 Jul 2016 10:15:30 GMT");
+        Collection<String> headerNames = Collections.unmodifiableCollection(headers.keySet());
+
+        return new Response() {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public int getStatus() {
+                return 200;
+            }
+
+            @Override
+            public int getContentLength() {
+                return 1046;
+            }
+
+            @Override
+            public Collection<String> getHeaderNames() {
+                return headerNames;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return headers.get(name);
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.appserver.configuration.context.WebAppStatsPublishing;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+
+/**
+ * Benchmarks the overhead that {@link HttpStatValve} adds to a request, with a next valve that does nothing and
+ * publishers that only keep a reference to what they are given.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpStatValveBenchmark {
+
+    /**
+     * Valves shared by all benchmark threads, as a valve is shared by all connector threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Valves {
+        HttpStatValve snapshotValve;
+        HttpStatValve legacyValve;
+
+        @Setup
+        public void setUp() {
+            snapshotValve = newValve(new SnapshotDataPublisher() {
+                private RequestSnapshot lastSnapshot;
+
+                @Override
+                public void publish(RequestSnapshot snapshot) {
+                    lastSnapshot = snapshot;
+                }
+            });
+            legacyValve = newValve(new DataPublisher() {
+                private Map lastAdditionalData;
+
+                @Override
+                public void publish(Request request, Response response, Map additionalData) {
+                    lastAdditionalData = additionalData;
+                }
+            });
+        }
+
+        private static HttpStatValve newValve(DataPublisher dataPublisher) {
+            HttpStatValve valve = new HttpStatValve(dataPublisher, new WebAppStatsPublishing());
+            valve.setNext(new ValveBase() {
+                @Override
+                public void invoke(Request request, Response response) throws IOException, ServletException {
+                }
+            });
+            return valve;
+        }
+    }
+
+    /**
+     * The request served by a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+        Request request;
+        Response response;
+
+        @Setup
+        public void setUp() {
+            Context context = BenchmarkFixtures.newContext();
+            request = BenchmarkFixtures.newRequest(context, "/examples/servlets/HelloWorld", null);
+            response = BenchmarkFixtures.newResponse("text/html;charset=UTF-8");
+        }
+    }
+
+    @Benchmark
+    public void invokeSnapshotPublisher(Valves valves, Exchange exchange) throws IOException, ServletException {
+        valves.snapshotValve.invoke(exchange.request, exchange.response);
+    }
+
+    @Benchmark
+    public void invokeLegacyPublisher(Valves valves, Exchange exchange) throws IOException, ServletException {
+        valves.legacyValve.invoke(exchange.request, exchange.response);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks capturing a served request, including the client IP address resolution.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestSnapshotBenchmark {
+
+    private Request request;
+    private Request proxiedRequest;
+    private Response response;
+    private ContextInfo contextInfo;
+
+    @Setup
+    public void setUp() {
+        Context context = BenchmarkFixtures.newContext();
+        request = BenchmarkFixtures.newRequest(context, "/examples/servlets/HelloWorld", null);
+        proxiedRequest = BenchmarkFixtures.newRequest(context, "/examples/servlets/HelloWorld",
+                "203.0.113.7, 10.0.0.2, 10.0.0.1");
+        response = BenchmarkFixtures.newResponse("text/html;charset=UTF-8");
+        contextInfo = ContextInfo.of(context);
+    }
+
+    @Benchmark
+    public RequestSnapshot capture() {
+        return RequestSnapshot.capture(request, response, 1467627330000L, 12);
+    }
+
+    @Benchmark
+    public String clientIpAddress() {
+        return RequestSnapshot.getClientIpAddress(request, contextInfo);
+    }
+
+    @Benchmark
+    public String clientIpAddressBehindProxies() {
+        return RequestSnapshot.getClientIpAddress(proxiedRequest, contextInfo);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.appserver.monitoring.BenchmarkFixtures;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.utils.EventBuilder;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding statistics events with the self-describing and the dictionary codec. Run the class itself to
+ * print the encoded size of the same events, next to an estimate of their size in the data agent's Thrift transport.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventEncodingBenchmark {
+
+    private static final String STREAM_ID = "org.wso2.http.analytics.stream:1.0.0";
+    private static final int EVENTS = 1024;
+
+    private Event[] events;
+    private ByteBuffer buffer;
+    private DictionaryEventEncoder encoder;
+    private int next;
+
+    @Setup
+    public void setUp() throws StatPublisherException {
+        events = createEvents();
+        buffer = ByteBuffer.allocate(64 * 1024);
+        encoder = new DictionaryEventEncoder(65536, 1024);
+    }
+
+    @Benchmark
+    public int selfDescribing() {
+        buffer.clear();
+        EventCodec.encode(nextEvent(), buffer);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int dictionary() {
+        buffer.clear();
+        encoder.encode(nextEvent(), buffer);
+        return buffer.position();
+    }
+
+    private Event nextEvent() {
+        return events[next++ & (EVENTS - 1)];
+    }
+
+    /**
+     * Builds events of a traffic mix: a few web applications and pages, item URIs with ids, two user agents and a
+     * handful of client addresses.
+     */
+    private static Event[] createEvents() throws StatPublisherException {
+        Context[] contexts = { BenchmarkFixtures.newContext(), BenchmarkFixtures.newContext() };
+        String[] contentTypes = { "text/html;charset=UTF-8", "application/json" };
+        Event[] events = new Event[EVENTS];
+        long startTime = 1467627330000L;
+        for (int i = 0; i < EVENTS; i++) {
+            String uri = (i % 4 == 0) ? "/examples/items/" + (1000 + i) : "/examples/servlets/page" + (i % 7);
+            String forwardedFor = "192.168.1." + (i % 16);
+            Request request = BenchmarkFixtures.newRequest(contexts[i % 2], uri, forwardedFor);
+            Response response = BenchmarkFixtures.newResponse(contentTypes[i % 3 == 0 ? 1 : 0]);
+            startTime += i % 5;
+            RequestSnapshot snapshot = RequestSnapshot.capture(request, response, startTime, 3 + i % 40);
+            events[i] = EventBuilder.buildEvent(STREAM_ID, snapshot);
+        }
+        return events;
+    }
+
+    /**
+     * Estimates the size of an event in the Thrift binary protocol used by the data agent, which writes strings
+     * with a four byte length and numbers at their fixed width. The framing of the typed attribute lists is shared
+     * by the events of a bundle and left out.
+     */
+    private static int thriftSize(Event event) {
+        int size = stringSize(event.getStreamId()) + 8;
+        for (Object[] values : new Object[][] { event.getMetaData(), event.getCorrelationData(),
+                event.getPayloadData() }) {
+            if (values == null) {
+                continue;
+            }
+            for (Object value : values) {
+                if (value == null || value instanceof String) {
+                    size += stringSize((String) value);
+                } else if (value instanceof Integer) {
+                    size += 4;
+                } else if (value instanceof Boolean) {
+                    size += 1;
+                } else {
+                    size += 8;
+                }
+            }
+        }
+        Map<String, String> arbitraryData = event.getArbitraryDataMap();
+        if (arbitraryData != null) {
+            for (Map.Entry<String, String> entry : arbitraryData.entrySet()) {
+                size += stringSize(entry.getKey()) + stringSize(entry.getValue());
+            }
+        }
+        return size;
+    }
+
+    private static int stringSize(String value) {
+        return 4 + ((value == null) ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    public static void main(String[] args) throws StatPublisherException {
+        Event[] events = createEvents();
+        DictionaryEventEncoder encoder = new DictionaryEventEncoder(65536, 1024);
+        long thrift = 0;
+        long selfDescribing = 0;
+        long dictionary = 0;
+        for (Event event : events) {
+            thrift += thriftSize(event);
+            selfDescribing += EventCodec.encode(event).length;
+            dictionary += encoder.encode(event).length;
+        }
+        System.out.printf("Average bytes per event over %d events:%n", events.length);
+        System.out.printf("  Thrift (estimated)  %8.1f%n", (double) thrift / events.length);
+        System.out.printf("  self-describing     %8.1f%n", (double) selfDescribing / events.length);
+        System.out.printf("  dictionary          %8.1f  (%.1fx smaller than Thrift)%n",
+                (double) dictionary / events.length, (double) thrift / dictionary);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks appending events to the binary event files, including rotation every 64 MB.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventFileWriterBenchmark {
+
+    private Path directory;
+    private EventFileWriter writer;
+    private Event event;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("event-file-benchmark");
+        writer = new EventFileWriter(directory, 1024 * 1024, 64 * 1024 * 1024, TimeUnit.HOURS.toNanos(1), 4,
+                FsyncPolicy.ROTATE, 65536);
+        event = new Event("org.wso2.http.stats:1.0.0", System.currentTimeMillis(), null, null, new Object[] {
+                "/examples", "Servlet and JSP Examples", "3.1", "/examples/servlets/servlet/RequestInfoExample",
+                System.currentTimeMillis(), "/examples/servlets/servlet/RequestInfoExample", "examples", "GET",
+                "text/html;charset=UTF-8", "text/html", 200L, "127.0.0.1", "http://localhost:8080/examples/",
+                "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36", "localhost", null, 0L, 0L,
+                "(Accept : text/html),", "(Content-Type : text/html;charset=UTF-8),", "en-US", 5L, 0L
+        }, null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writer.close();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        writer.append(event);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the publish filter with the default rule and with a table of rules.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PublishFilterBenchmark {
+
+    @Param({"text/html;charset=UTF-8", "application/json", "image/png"})
+    public String contentType;
+
+    private PublishFilter defaultFilter;
+    private PublishFilter ruleTable;
+
+    @Setup
+    public void setUp() {
+        defaultFilter = new PublishFilter(Collections.singletonList(PublishFilter.DEFAULT_RULE), false);
+        ruleTable = new PublishFilter(Arrays.asList(
+                "include status=5xx",
+                "include minLatencyMillis=1000",
+                "exclude path=/examples/static/,/examples/images/",
+                "exclude path=/examples/**/*.css,/examples/**/*.js",
+                "exclude method=OPTIONS,HEAD",
+                "include path=/examples/api/ contentType=application/json method=GET,POST,PUT,DELETE",
+                "include path=/examples/servlets/ contentType=text/html",
+                "exclude path=/examples/health",
+                "include contentType=text/html,application/json status=200-399",
+                "exclude contentType=image/"), false);
+    }
+
+    @Benchmark
+    public boolean defaultRule() {
+        return defaultFilter.isPublished("/examples/servlets/servlet/RequestInfoExample", "GET", 200, contentType,
+                1000000);
+    }
+
+    @Benchmark
+    public boolean ruleTable() {
+        return ruleTable.isPublished("/examples/servlets/servlet/RequestInfoExample", "GET", 200, contentType,
+                1000000);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.appserver.monitoring.BenchmarkFixtures;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building statistics events and serializing headers.
+ *
+ * @since 1.0.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventBuilderBenchmark {
+
+    private static final String STREAM_ID = "org.wso2.http.analytics.stream:1.0.0";
+
+    private Request request;
+    private Response response;
+    private RequestSnapshot snapshot;
+
+    @Setup
+    public void setUp() {
+        Context context = BenchmarkFixtures.newContext();
+        request = BenchmarkFixtures.newRequest(context, "/examples/servlets/HelloWorld", null);
+        response = BenchmarkFixtures.newResponse("text/html;charset=UTF-8");
+        snapshot = RequestSnapshot.capture(request, response, 1467627330000L, 12);
+    }
+
+    @Benchmark
+    public Event buildEvent() throws StatPublisherException {
+        return EventBuilder.buildEvent(STREAM_ID, snapshot);
+    }
+
+    @Benchmark
+    public Event buildEventFromRequest() throws StatPublisherException {
+        return EventBuilder.buildEvent(STREAM_ID, request, response, 1467627330000L, 12);
+    }
+
+    @Benchmark
+    public String requestHeaders() {
+        return EventBuilder.joinHeaders(snapshot.getRequestHeaders(), ';');
+    }
+
+    @Benchmark
+    public String responseHeaders() {
+        return EventBuilder.joinHeaders(snapshot.getResponseHeaders(), ',');
+    }
+}
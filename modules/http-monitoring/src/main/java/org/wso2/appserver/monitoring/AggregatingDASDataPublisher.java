@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.aggregation.AggregationKey;
+import org.wso2.appserver.monitoring.aggregation.WebappCardinality;
+import org.wso2.appserver.monitoring.aggregation.Window;
+import org.wso2.appserver.monitoring.aggregation.WindowAggregator;
+import org.wso2.appserver.monitoring.aggregation.WindowStatistics;
+import org.wso2.appserver.monitoring.cardinality.HyperLogLog;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.sampling.Sampler;
+import org.wso2.appserver.monitoring.utils.EventBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of data publisher for WSO2 DAS that publishes one summary event per web application, URI, method
+ * and status per window instead of one event per request.
+ * <p>
+ * Requests are accumulated into lock-free {@link WindowAggregator}s, one per configured window duration. At the end
+ * of every window a scheduler thread publishes the summaries to {@link #STREAM_ID}, together with the estimated
+ * distinct URIs, users, client IP addresses and sessions of the web application of each summary. Raw events are
+ * still published to the stream of the server configuration for error responses and sampled requests, if enabled.
+ *
+ * @since 1.0.1
+ */
+public class AggregatingDASDataPublisher extends DASDataPublisher {
+
+    private static final Log LOG = LogFactory.getLog(AggregatingDASDataPublisher.class);
+    public static final String STREAM_ID = "http.monitoring.aggregation.streamId";
+    public static final String WINDOW_SECONDS = "http.monitoring.aggregation.windowSeconds";
+    public static final String MAX_KEYS = "http.monitoring.aggregation.maxKeys";
+    public static final String MAX_WEBAPPS = "http.monitoring.aggregation.maxWebapps";
+    public static final String MAX_KEYS_PER_WEBAPP = "http.monitoring.aggregation.maxKeysPerWebapp";
+    public static final String SKETCH_PRECISION = "http.monitoring.aggregation.sketchPrecision";
+    public static final String RAW_ERRORS = "http.monitoring.aggregation.rawEvents.errors";
+    public static final String RAW_SAMPLED = "http.monitoring.aggregation.rawEvents.sampled";
+    private static final String DEFAULT_STREAM_ID = "org.wso2.http.analytics.summary.stream:1.0.0";
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final String summaryStreamId;
+    private final boolean rawErrors;
+    private final boolean rawSampled;
+    private final List<WindowAggregator> aggregators = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    public AggregatingDASDataPublisher() throws StatPublisherException {
+        MonitoringConfiguration configuration = MonitoringConfiguration.getInstance();
+        summaryStreamId = configuration.getString(STREAM_ID, DEFAULT_STREAM_ID);
+        rawErrors = configuration.getBoolean(RAW_ERRORS, true);
+        rawSampled = configuration.getBoolean(RAW_SAMPLED, false);
+        int maxKeys = configuration.getInt(MAX_KEYS, 10000);
+        int maxWebapps = configuration.getInt(MAX_WEBAPPS, 100);
+        int maxKeysPerWebapp = configuration.getInt(MAX_KEYS_PER_WEBAPP, 1000);
+        int precision = configuration.getInt(SKETCH_PRECISION, Window.DEFAULT_PRECISION);
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new StatPublisherException("Invalid sketch precision " + precision + ", expected a value from " +
+                    HyperLogLog.MIN_PRECISION + " to " + HyperLogLog.MAX_PRECISION);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-stats-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long now = System.currentTimeMillis();
+        for (String seconds : configuration.getString(WINDOW_SECONDS, "60").split(",")) {
+            long durationMillis;
+            try {
+                durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(seconds.trim()));
+            } catch (NumberFormatException e) {
+                throw new StatPublisherException("Invalid aggregation window: " + seconds, e);
+            }
+            if (durationMillis <= 0) {
+                throw new StatPublisherException("Invalid aggregation window: " + seconds);
+            }
+            WindowAggregator aggregator = new WindowAggregator(durationMillis, maxKeys, maxWebapps, maxKeysPerWebapp,
+                    precision, now);
+            aggregators.add(aggregator);
+            scheduler.scheduleAtFixedRate(() -> rotate(aggregator), durationMillis - now % durationMillis,
+                    durationMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void publish(RequestSnapshot snapshot) throws IOException {
+        if (aggregate(snapshot)) {
+            super.publish(snapshot);
+        }
+    }
+
+    @Override
+    public void publishBatch(List<RequestSnapshot> snapshots) throws IOException {
+        List<RequestSnapshot> rawSnapshots = null;
+        for (RequestSnapshot snapshot : snapshots) {
+            if (aggregate(snapshot)) {
+                if (rawSnapshots == null) {
+                    rawSnapshots = new ArrayList<>();
+                }
+                rawSnapshots.add(snapshot);
+            }
+        }
+        if (rawSnapshots != null) {
+            super.publishBatch(rawSnapshots);
+        }
+    }
+
+    /**
+     * Adds a served request to the current window of every aggregator.
+     *
+     * @param snapshot the values captured from the served request
+     * @return true if the raw event of the request is published as well
+     */
+    private boolean aggregate(RequestSnapshot snapshot) {
+        for (WindowAggregator aggregator : aggregators) {
+            aggregator.add(snapshot);
+        }
+        return (rawErrors && snapshot.getStatus() >= 400) ||
+                (rawSampled && snapshot.getSampleWeight() != Sampler.UNSAMPLED);
+    }
+
+    /**
+     * Ends the current window of an aggregator and publishes its summaries.
+     *
+     * @param aggregator the aggregator whose window ended
+     */
+    private void rotate(WindowAggregator aggregator) {
+        try {
+            Window window = aggregator.rotate(System.currentTimeMillis());
+            Map<WebappCardinality, Map<String, String>> arbitraryData = new HashMap<>();
+            for (Map.Entry<AggregationKey, WindowStatistics> entry : window.getStatistics().entrySet()) {
+                WebappCardinality cardinality = window.getCardinality(entry.getKey());
+                publishEvent(EventBuilder.buildSummaryEvent(summaryStreamId, window, entry.getKey(), entry.getValue(),
+                        arbitraryData.computeIfAbsent(cardinality, EventBuilder::buildSummaryArbitraryData)));
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the scheduled rotations
+            LOG.error("Publishing the summaries of the window failed: " + e);
+        }
+    }
+
+    /**
+     * Stops the scheduled rotations, publishes the summaries of the current windows and closes the publisher.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            if (!scheduler.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("The statistics aggregator did not stop in " + STOP_TIMEOUT_MILLIS + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (WindowAggregator aggregator : aggregators) {
+            rotate(aggregator);
+        }
+        super.close();
+    }
+}
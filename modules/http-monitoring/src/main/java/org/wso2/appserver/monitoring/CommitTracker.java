@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.connector.Response;
+import org.apache.coyote.ActionCode;
+import org.apache.coyote.ActionHook;
+
+/**
+ * Records when a response gets committed, that is when its headers are handed to the connector ahead of the first
+ * byte sent to the client.
+ * <p>
+ * Tomcat only keeps a millisecond commit timestamp, so the tracker decorates the action hook of the connector response
+ * for the duration of the request. Every commit goes through {@link ActionCode#COMMIT}, whether it is caused by a
+ * flush, a full buffer, an error page or a redirect.
+ *
+ * @since 1.0.1
+ */
+class CommitTracker implements ActionHook {
+
+    private final org.apache.coyote.Response coyoteResponse;
+    private final ActionHook hook;
+    private final long startNanos;
+    private volatile long commitNanos;
+
+    private CommitTracker(org.apache.coyote.Response coyoteResponse, ActionHook hook, long startNanos) {
+        this.coyoteResponse = coyoteResponse;
+        this.hook = hook;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Starts tracking the commit of the response.
+     *
+     * @param response   the response about to be passed to the next valve
+     * @param startNanos the {@link System#nanoTime()} at which the valve was invoked
+     * @return the installed tracker, or null if the response is not backed by a connector
+     */
+    static CommitTracker install(Response response, long startNanos) {
+        org.apache.coyote.Response coyoteResponse = response.getCoyoteResponse();
+        if (coyoteResponse == null || coyoteResponse.getHook() == null) {
+            return null;
+        }
+        CommitTracker tracker = new CommitTracker(coyoteResponse, coyoteResponse.getHook(), startNanos);
+        coyoteResponse.setHook(tracker);
+        return tracker;
+    }
+
+    /**
+     * Restores the action hook of the connector response.
+     */
+    void uninstall() {
+        coyoteResponse.setHook(hook);
+    }
+
+    /**
+     * @return the nanoseconds from the valve invocation to the commit of the response, or -1 if the web application
+     * did not commit the response
+     */
+    long getTimeToCommitNanos() {
+        long nanos = commitNanos;
+        return (nanos == 0) ? -1 : nanos - startNanos;
+    }
+
+    @Override
+    public void action(ActionCode actionCode, Object param) {
+        hook.action(actionCode, param);
+        if (actionCode == ActionCode.COMMIT && commitNanos == 0) {
+            commitNanos = System.nanoTime();
+        }
+    }
+}
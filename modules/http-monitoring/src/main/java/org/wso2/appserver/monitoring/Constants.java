@@ -29,6 +29,12 @@ public class Constants {
      */
     public static final String X_FORWARDED_FOR = "X-Forwarded-For";
 
+    /**
+     * Standard header field name of RFC 7239 for the forwarding chain of a request, of which the {@code for}
+     * parameters identify the client and the proxies.
+     */
+    public static final String FORWARDED = "Forwarded";
+
     /**
      * Header field name that identifies the browser client IP instead of web server IP.
      */
@@ -72,12 +78,73 @@ public class Constants {
 
     public static final String APP_TYPE = "webapp";
 
+    /**
+     * Keys of the additional data handed to {@link DataPublisher#publish}.
+     */
+    public static final String START_TIME = "startTime";
+    public static final String RESPONSE_TIME = "responseTime";
+
+    /**
+     * Keys of the phase timings of a request in nanoseconds, handed to {@link DataPublisher#publish} and published
+     * as arbitrary data of the event.
+     * The queue time is the time from the connector starting to read the request until the valve is invoked. It is
+     * derived from millisecond timestamps, as the connector does not record a monotonic start time.
+     * The time to commit is the time from the valve invocation until the response is committed, which is when its
+     * first byte is sent to the client.
+     * The response time is the time from the valve invocation until the web application completes.
+     */
+    public static final String QUEUE_TIME_NANOS = "queueTimeNanos";
+    public static final String TIME_TO_COMMIT_NANOS = "timeToCommitNanos";
+    public static final String RESPONSE_TIME_NANOS = "responseTimeNanos";
+
+    /**
+     * Key of the number of requests an event stands for when requests are sampled, handed to
+     * {@link DataPublisher#publish} and published as arbitrary data of the event if it is not 1.
+     */
+    public static final String SAMPLE_WEIGHT = "sampleWeight";
+
+    /**
+     * Keys of the classification of the User-Agent header, published as arbitrary data of the event.
+     */
+    public static final String USER_AGENT_BROWSER = "userAgentBrowser";
+    public static final String USER_AGENT_OS = "userAgentOs";
+    public static final String USER_AGENT_DEVICE = "userAgentDevice";
+
+    /**
+     * Key of the route template of the requested URI, such as {@code /shop/orders/{id}}, published as arbitrary data
+     * of the event.
+     */
+    public static final String URI_TEMPLATE = "uriTemplate";
+
+    /**
+     * Keys of the location of the client address, published as arbitrary data of the event if found.
+     */
+    public static final String GEO_COUNTRY = "geoCountry";
+    public static final String GEO_REGION = "geoRegion";
+    public static final String GEO_ASN = "geoAsn";
+
+    /**
+     * Keys of the estimated distinct values of the web application of a summary event in its window, and of the number
+     * of its requests whose URI was summarized under the overflow URI, published as arbitrary data of the event.
+     */
+    public static final String DISTINCT_URIS = "distinctUris";
+    public static final String DISTINCT_USERS = "distinctUsers";
+    public static final String DISTINCT_CLIENT_IPS = "distinctClientIps";
+    public static final String DISTINCT_SESSIONS = "distinctSessions";
+    public static final String OVERFLOW_REQUESTS = "overflowRequests";
+
     /**
      * File containing the configurations and properties that define the data agent in the JVM. Resides in
      * product-as/distribution/contents/conf/wso2.
      */
     public static final String DATA_AGENT_CONF = "data-agent-conf.xml";
 
+    /**
+     * File containing the tuning properties of the http statistics monitoring module. Resides alongside
+     * {@link #DATA_AGENT_CONF}.
+     */
+    public static final String MONITORING_CONF = "http-monitoring.properties";
+
     /**
      * Constant to define the prefix for arbitrary value system variables.
      * Any system variable with this prefix is published as an arbitrary data in the statistics publisher.
@@ -17,13 +17,13 @@
  */
 package org.wso2.appserver.monitoring;
 
-import org.apache.catalina.connector.Request;
-import org.apache.catalina.connector.Response;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.wso2.appserver.configuration.listeners.ServerConfigurationLoader;
 import org.wso2.appserver.configuration.server.AppServerStatsPublishing;
+import org.wso2.appserver.monitoring.breaker.CircuitBreaker;
 import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.spill.SpillingEventPublisher;
 import org.wso2.appserver.monitoring.utils.EventBuilder;
 import org.wso2.appserver.utils.PathUtils;
 import org.wso2.carbon.databridge.agent.AgentHolder;
@@ -37,17 +37,20 @@ import org.wso2.carbon.databridge.commons.exception.TransportException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 
 /**
  * Implementation of data publisher for WSO2 DAS
  */
-public class DASDataPublisher implements DataPublisher {
+public class DASDataPublisher implements SnapshotDataPublisher, AutoCloseable {
 
     private static final Log LOG = LogFactory.getLog(DASDataPublisher.class);
     private AppServerStatsPublishing statsPublisherConfiguration;
     private org.wso2.carbon.databridge.agent.DataPublisher dataPublisher;
+    private CircuitBreaker circuitBreaker;
+    private SpillingEventPublisher spillingPublisher;
 
     public DASDataPublisher() throws StatPublisherException {
         AgentHolder.setConfigPath(getDataAgentConfigPath());
@@ -87,38 +90,133 @@ public class DASDataPublisher implements DataPublisher {
             LOG.error("Connection failed: " + e);
             throw new StatPublisherException("Connection failed: ", e);
         }
+
+        MonitoringConfiguration configuration = MonitoringConfiguration.getInstance();
+        circuitBreaker = CircuitBreaker.create(configuration, getClass().getName());
+        if (configuration.getBoolean(SpillingEventPublisher.ENABLED, false)) {
+            try {
+                spillingPublisher = SpillingEventPublisher.create(this::trySend, configuration,
+                        getClass().getSimpleName());
+                spillingPublisher.start();
+            } catch (IOException e) {
+                LOG.error("Opening the statistics spill failed, events are published without spilling: " + e);
+            }
+        }
     }
 
+    /**
+     * Publishes an event of a served request. Requests are filtered by the {@link
+     * org.wso2.appserver.monitoring.filter.PublishFilter} in the valve before they reach the publisher.
+     *
+     * @param snapshot the values captured from the served request
+     * @throws IOException if the event cannot be created
+     */
     @Override
-    public void publish(Request request, Response response, Map additionalData)
-            throws IOException {
-        Long startTime = (Long) additionalData.get("startTime");
-        Long responseTime = (Long) additionalData.get("responseTime");
+    public void publish(RequestSnapshot snapshot) throws IOException {
+        Event event;
+        try {
+            event = EventBuilder.buildEvent(statsPublisherConfiguration.getStreamId(), snapshot);
+        } catch (StatPublisherException e) {
+            LOG.error("Creating the Event failed: " + e);
+            throw new IOException("Creating the Event failed: " + e);
+        }
+        publishEvent(event);
+    }
 
-        if (filterResponse(response)) {
-            Event event;
-            try {
-                event = EventBuilder
-                        .buildEvent(statsPublisherConfiguration.getStreamId(), request, response,
-                                    startTime, responseTime);
-            } catch (StatPublisherException e) {
-                LOG.error("Creating the Event failed: " + e);
-                throw new IOException("Creating the Event failed: " + e);
+    /**
+     * Publishes the events of a batch of served requests. The events are all built before the first is handed to the
+     * data agent, which queues them and sends them to DAS in batches of its own.
+     *
+     * @param snapshots the values captured from served requests
+     * @throws IOException if an event cannot be created
+     */
+    @Override
+    public void publishBatch(List<RequestSnapshot> snapshots) throws IOException {
+        String streamId = statsPublisherConfiguration.getStreamId();
+        Event[] events = new Event[snapshots.size()];
+        try {
+            for (int i = 0; i < events.length; i++) {
+                events[i] = EventBuilder.buildEvent(streamId, snapshots.get(i));
             }
+        } catch (StatPublisherException e) {
+            LOG.error("Creating the Event failed: " + e);
+            throw new IOException("Creating the Event failed: " + e);
+        }
+        for (Event event : events) {
+            publishEvent(event);
+        }
+    }
+
+    /**
+     * Lets the circuit breaker, if enabled, count attempts made while the dispatcher falls behind as failures, as the
+     * data agent does not expose the occupancy of its own queue.
+     */
+    @Override
+    public void watchQueue(IntSupplier occupancy, int capacity) {
+        if (circuitBreaker != null) {
+            circuitBreaker.watchQueue(occupancy, capacity);
+        }
+    }
+
+    /**
+     * Publishes an event through the data agent, which queues it and sends it to DAS on its own threads. When
+     * spilling is enabled, events the agent queue does not accept are kept on local disk and replayed later. When the
+     * circuit breaker is enabled, events are offered without blocking and shed while the agent keeps refusing them.
+     *
+     * @param event the event to publish
+     */
+    protected void publishEvent(Event event) {
+        if (spillingPublisher != null) {
+            spillingPublisher.publish(event);
+        } else if (circuitBreaker != null) {
+            trySend(event);
+        } else {
             dataPublisher.publish(event);
         }
     }
 
     /**
-     * Filters to process only requests of text/html type.
+     * Offers an event to the data agent without blocking, through the circuit breaker if it is enabled.
      *
-     * @param response the Response object of client
-     * @return true if request is of text/html type and false if not
+     * @param event the event to offer
+     * @return true if the agent accepted the event and false if it was refused or shed
      */
-    private boolean filterResponse(Response response) {
-        String responseContentType = response.getContentType();
-        //  if the response content is not null and is of type text/html, allow to publish stats
-        return ((responseContentType != null) && (responseContentType.contains("text/html")));
+    private boolean trySend(Event event) {
+        if (circuitBreaker == null) {
+            return dataPublisher.tryPublish(event);
+        }
+        long start = System.nanoTime();
+        if (!circuitBreaker.allowRequest(start)) {
+            return false;
+        }
+        boolean accepted = false;
+        try {
+            accepted = dataPublisher.tryPublish(event);
+        } catch (RuntimeException e) {
+            LOG.debug("Publishing a statistics event failed: " + e);
+        } finally {
+            circuitBreaker.onResult(accepted, System.nanoTime() - start);
+        }
+        return accepted;
+    }
+
+    /**
+     * Stops replaying and closes the spill and unregisters the circuit breaker, then shuts down the data agent
+     * publisher, which sends the events it still queues.
+     */
+    @Override
+    public void close() {
+        if (spillingPublisher != null) {
+            spillingPublisher.close();
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.close();
+        }
+        try {
+            dataPublisher.shutdown();
+        } catch (DataEndpointException e) {
+            LOG.warn("Shutting down the data agent publisher failed: " + e);
+        }
     }
 
     /**
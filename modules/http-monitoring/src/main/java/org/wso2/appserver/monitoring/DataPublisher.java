@@ -25,6 +25,9 @@ import java.util.Map;
 
 /**
  * Data publisher interface. Implement this to provide custom implementation of data publishing
+ * <p>
+ * The request and response are recycled by Tomcat once the valve returns, so implementations must not use them
+ * after this method returns. Implement {@link SnapshotDataPublisher} to publish from other threads.
  */
 public interface DataPublisher {
 
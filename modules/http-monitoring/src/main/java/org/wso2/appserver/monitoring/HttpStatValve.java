@@ -17,19 +17,31 @@
  */
 package org.wso2.appserver.monitoring;
 
+import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.valves.ValveBase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.configuration.context.AppServerWebAppConfiguration;
 import org.wso2.appserver.configuration.context.WebAppStatsPublishing;
 import org.wso2.appserver.configuration.listeners.ContextConfigurationLoader;
-import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.async.AsyncDispatcher;
+import org.wso2.appserver.monitoring.filter.PublishFilter;
+import org.wso2.appserver.monitoring.heavyhitters.HeavyHitters;
+import org.wso2.appserver.monitoring.metrics.ContextLatencyMetrics;
+import org.wso2.appserver.monitoring.openmetrics.OpenMetricsExporter;
+import org.wso2.appserver.monitoring.openmetrics.RequestMetrics;
+import org.wso2.appserver.monitoring.route.RouteTemplates;
+import org.wso2.appserver.monitoring.sampling.AdaptiveSampler;
+import org.wso2.appserver.monitoring.sampling.RateSampler;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletException;
 
 /**
@@ -39,63 +51,158 @@ import javax.servlet.ServletException;
  */
 public class HttpStatValve extends ValveBase {
     private static final Log LOG = LogFactory.getLog(HttpStatValve.class);
-    private DataPublisher dataPublisher;
-    private WebAppStatsPublishing statsPublisherConfiguration;
+    private static final String TRACK_COMMIT = "http.monitoring.timing.trackCommit";
+    private final PublisherRegistry publisherRegistry;
+    private boolean trackCommit;
+    private AdaptiveSampler adaptiveSampler;
+    private boolean recordLatency;
+    private boolean exportMetrics;
+    private OpenMetricsExporter openMetricsExporter;
+    private boolean trackHeavyHitters;
+
+    public HttpStatValve() {
+        publisherRegistry = new PublisherRegistry(HttpStatValve::getStatsPublisherConfiguration,
+                PublisherRegistry::newDataPublisher);
+    }
+
+    /**
+     * Creates a valve that publishes to the given data publisher instead of the configured one.
+     *
+     * @param dataPublisher               the data publisher to publish to
+     * @param statsPublisherConfiguration the statistics publishing configuration of the web application
+     */
+    HttpStatValve(DataPublisher dataPublisher, WebAppStatsPublishing statsPublisherConfiguration) {
+        publisherRegistry = new PublisherRegistry(context -> statsPublisherConfiguration,
+                configuration -> dataPublisher);
+    }
 
     @Override
     protected void initInternal() throws LifecycleException {
         super.initInternal();
         LOG.debug("The HttpStatValve initialized.");
         setTrustStorePath();
+        trackCommit = MonitoringConfiguration.getInstance().getBoolean(TRACK_COMMIT, false);
+        adaptiveSampler = AdaptiveSampler.getInstance();
+        recordLatency = MonitoringConfiguration.getInstance().getBoolean(ContextLatencyMetrics.ENABLED, true);
+        exportMetrics = MonitoringConfiguration.getInstance().getBoolean(OpenMetricsExporter.ENABLED, false);
+        trackHeavyHitters = MonitoringConfiguration.getInstance().getBoolean(HeavyHitters.ENABLED, false);
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        if (exportMetrics) {
+            openMetricsExporter = OpenMetricsExporter.acquire(MonitoringConfiguration.getInstance());
+        }
+        publisherRegistry.start(getContainer());
+        super.startInternal();
     }
 
     @Override
     public void invoke(Request request, Response response) throws IOException, ServletException {
-        if (statsPublisherConfiguration == null) {
-            statsPublisherConfiguration =
-                    ContextConfigurationLoader.getContextConfiguration(request.getContext()).get()
-                                              .getStatsPublisherConfiguration();
+        if (!request.getContext().getState().isAvailable()) {
+            // the per web application state of a context that is not available would never be torn down
+            getNext().invoke(request, response);
+            return;
+        }
+        PublisherRegistry.Publication publication = publisherRegistry.get(request.getContext());
+        DataPublisher dataPublisher = publication.getDataPublisher();
+        boolean buffering = dataPublisher == null && publication.isBuffering();
+        boolean publishing = dataPublisher != null || buffering;
+        double sampleWeight = publishing ? RateSampler.of(request).sample(request) : 0;
+        // error and slow responses are published even if the rate sampler or the filter would drop them
+        boolean keepPriority = publishing && adaptiveSampler != null;
+        if (sampleWeight <= 0 && !keepPriority && !recordLatency && !exportMetrics && !trackHeavyHitters) {
+            getNext().invoke(request, response);
+            return;
         }
 
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        CommitTracker commitTracker = (trackCommit && (sampleWeight > 0 || keepPriority)) ?
+                CommitTracker.install(response, startNanos) : null;
         try {
-            if (dataPublisher == null) {
-                dataPublisher = getDataPublisher(statsPublisherConfiguration);
+            getNext().invoke(request, response);
+        } finally {
+            if (commitTracker != null) {
+                commitTracker.uninstall();
+            }
+        }
+        long responseTimeNanos = System.nanoTime() - startNanos;
+        String uriTemplate = (recordLatency || trackHeavyHitters || sampleWeight > 0 || keepPriority) ?
+                RouteTemplates.of(ContextInfo.of(request.getContext())).getTemplate(request.getRequestURI()) : null;
+        if (recordLatency) {
+            ContextLatencyMetrics.of(request).record(uriTemplate, responseTimeNanos);
+        }
+        if (exportMetrics) {
+            RequestMetrics.of(request).record(request, response, responseTimeNanos);
+        }
+        if (trackHeavyHitters) {
+            HeavyHitters.of(request).record(request, uriTemplate);
+        }
+        if (keepPriority && adaptiveSampler.isPriority(response.getStatus(), responseTimeNanos)) {
+            sampleWeight = adaptiveSampler.sample(request, response, responseTimeNanos);
+        } else {
+            if (sampleWeight <= 0 || !PublishFilter.of(request).isPublished(request.getRequestURI(),
+                    request.getMethod(), response.getStatus(), response.getContentType(), responseTimeNanos)) {
+                return;
+            }
+            if (adaptiveSampler != null) {
+                double adaptiveWeight = adaptiveSampler.sample(request, response, responseTimeNanos);
+                if (adaptiveWeight <= 0) {
+                    return;
+                }
+                sampleWeight *= adaptiveWeight;
             }
-        } catch (StatPublisherException e) {
-            LOG.error("Initializing DataPublisher failed: ", e);
-            throw new ServletException("Initializing DataPublisher failed: " + e);
-        } catch (ClassNotFoundException e) {
-            LOG.error("Data publisher implementation class not found: ", e);
-            throw new ServletException("Data publisher implementation class not found: " + e);
-        } catch (InstantiationException e) {
-            LOG.error("Error occurred while instantiating Data publisher: ", e);
-            throw new ServletException("Error occurred while instantiating Data publisher: " + e);
-        } catch (IllegalAccessException e) {
-            LOG.error("Data publisher implementation class cannot access: ", e);
-            throw new ServletException("Data publisher implementation class cannot access: " + e);
         }
-        Long startTime = System.currentTimeMillis();
-        getNext().invoke(request, response);
-        long responseTime = System.currentTimeMillis() - startTime;
+        long timeToCommitNanos = (commitTracker != null) ? commitTracker.getTimeToCommitNanos() : -1;
 
-        Map additionalData = new HashMap<>();
-        additionalData.put("startTime", startTime);
-        additionalData.put("responseTime", responseTime);
+        if (buffering) {
+            publication.buffer(RequestSnapshot.captureTimed(request, response, uriTemplate, startTime,
+                    responseTimeNanos, timeToCommitNanos, sampleWeight));
+            return;
+        }
+        if (dataPublisher instanceof SnapshotDataPublisher) {
+            RequestSnapshot snapshot = RequestSnapshot.captureTimed(request, response, uriTemplate, startTime,
+                    responseTimeNanos, timeToCommitNanos, sampleWeight);
+            AsyncDispatcher<RequestSnapshot> asyncDispatcher = publication.getAsyncDispatcher();
+            if (asyncDispatcher != null) {
+                asyncDispatcher.dispatch(snapshot);
+            } else {
+                ((SnapshotDataPublisher) dataPublisher).publish(snapshot);
+            }
+            return;
+        }
+
+        Map<String, Object> additionalData = new HashMap<>();
+        additionalData.put(Constants.START_TIME, startTime);
+        additionalData.put(Constants.RESPONSE_TIME, TimeUnit.NANOSECONDS.toMillis(responseTimeNanos));
+        additionalData.put(Constants.RESPONSE_TIME_NANOS, responseTimeNanos);
+        additionalData.put(Constants.TIME_TO_COMMIT_NANOS, timeToCommitNanos);
+        additionalData.put(Constants.SAMPLE_WEIGHT, sampleWeight);
 
         dataPublisher.publish(request, response, additionalData);
     }
 
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        if (openMetricsExporter != null) {
+            openMetricsExporter.release();
+            openMetricsExporter = null;
+        }
+        publisherRegistry.stop();
+        super.stopInternal();
+    }
+
     /**
-     * Instantiates a data publisher to be used to publish data.
+     * Returns the statistics publishing configuration of a web application.
      *
-     * @return DataPublisher object initialized with configurations
-     * @throws StatPublisherException
+     * @param context the context of the web application
+     * @return the configuration, or null if the web application has none
      */
-    private DataPublisher getDataPublisher(WebAppStatsPublishing statsPublisherConfiguration)
-            throws StatPublisherException, ClassNotFoundException, IllegalAccessException,
-                   InstantiationException {
-        Class statsPublisherImpl = Class.forName(statsPublisherConfiguration.getPublisherImplementation());
-        return (DataPublisher) statsPublisherImpl.newInstance();
+    private static WebAppStatsPublishing getStatsPublisherConfiguration(Context context) {
+        return ContextConfigurationLoader.getContextConfiguration(context)
+                .map(AppServerWebAppConfiguration::getStatsPublisherConfiguration)
+                .orElse(null);
     }
 
     /**
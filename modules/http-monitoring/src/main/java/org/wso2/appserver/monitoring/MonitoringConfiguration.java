@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Context;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.utils.PathUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Tuning properties of the http statistics monitoring module.
+ * <p>
+ * Properties are read once from {@link Constants#MONITORING_CONF} in the Application Server configuration base.
+ * A system property with the same key takes precedence over the file, and a missing file or key falls back to the
+ * default given by the caller. The configuration of a web application, returned by {@link #forContext(Context)},
+ * additionally lets context parameters (a {@code Parameter} in context.xml or a {@code context-param} in web.xml)
+ * with the same key override the server wide value.
+ *
+ * @since 1.0.1
+ */
+public class MonitoringConfiguration {
+
+    private static final Log LOG = LogFactory.getLog(MonitoringConfiguration.class);
+    private final Properties properties;
+    private final Context context;
+
+    public MonitoringConfiguration(Properties properties) {
+        this(properties, null);
+    }
+
+    private MonitoringConfiguration(Properties properties, Context context) {
+        this.properties = properties;
+        this.context = context;
+    }
+
+    /**
+     * Returns the configuration read from the Application Server configuration base.
+     *
+     * @return the shared configuration instance
+     */
+    public static MonitoringConfiguration getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the configuration of a web application, in which context parameters override server wide values.
+     *
+     * @param context the context of the web application
+     * @return the configuration of the web application
+     */
+    public MonitoringConfiguration forContext(Context context) {
+        return new MonitoringConfiguration(properties, context);
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = (context != null) ? context.findParameter(key) : null;
+        if (value == null) {
+            value = System.getProperty(key);
+        }
+        if (value == null) {
+            value = properties.getProperty(key);
+        }
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        try {
+            return (value == null) ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid integer value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        try {
+            return (value == null) ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid long value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        try {
+            return (value == null) ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid decimal value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public <T extends Enum<T>> T getEnum(String key, Class<T> type, T defaultValue) {
+        String value = getString(key, null);
+        try {
+            return (value == null) ? defaultValue : Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads the monitoring properties file, if present.
+     *
+     * @return the properties read from the file, or empty properties when the file cannot be read
+     */
+    private static Properties loadProperties() {
+        Properties properties = new Properties();
+        Path path;
+        try {
+            path = Paths.get(PathUtils.getAppServerConfigurationBase().toString(), Constants.MONITORING_CONF);
+        } catch (RuntimeException e) {
+            LOG.debug("Application Server configuration base is not available, using default monitoring settings.");
+            return properties;
+        }
+        if (Files.isReadable(path)) {
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                properties.load(inputStream);
+            } catch (IOException e) {
+                LOG.error("Reading " + path + " failed, using default monitoring settings: " + e);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Lazily loads the shared configuration on first use.
+     */
+    private static class Holder {
+        private static final MonitoringConfiguration INSTANCE = new MonitoringConfiguration(loadProperties());
+    }
+}
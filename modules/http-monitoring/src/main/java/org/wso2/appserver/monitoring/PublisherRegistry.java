@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.ContainerEvent;
+import org.apache.catalina.ContainerListener;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.configuration.context.WebAppStatsPublishing;
+import org.wso2.appserver.monitoring.async.AsyncDispatcher;
+import org.wso2.appserver.monitoring.async.RingBuffer;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The data publishers of the web applications served through a valve, built once per publishing configuration.
+ * <p>
+ * A web application is registered when its context starts, which warms up the publisher of its configuration unless
+ * a running web application already uses the same publisher implementation, in which case they share the publisher and
+ * its asynchronous dispatcher. When the last web application using a publisher stops, the dispatcher is stopped and
+ * the publisher closed if it is {@link AutoCloseable}. Web applications whose publishing is disabled get no publisher.
+ * <p>
+ * Publishers are built on a background thread, as building one may load the data bridge, read the agent
+ * configuration and authenticate to the receiver, which takes seconds or fails while the receiver is down. A failed
+ * build is retried every {@link #RETRY_SECONDS}. Until a publisher is ready, snapshots of the requests to publish are
+ * held in a bounded buffer of {@link #WARM_UP_BUFFER_SIZE} and published once it is ready; snapshots that do not fit
+ * are dropped and counted. Only implementations of {@link SnapshotDataPublisher} can publish snapshots, so requests of
+ * other publishers are not buffered. Requests never wait for a publisher, and snapshots buffered just as the publisher
+ * became ready are published from the warm-up thread.
+ * <p>
+ * Requests look up the publisher of their context in a lock-free map. Registering and unregistering are serialized,
+ * so concurrent starts, or first requests of a context that started before the valve, never build a publisher twice.
+ *
+ * @since 1.0.1
+ */
+public class PublisherRegistry implements ContainerListener, LifecycleListener {
+
+    public static final String WARM_UP_BUFFER_SIZE = "http.monitoring.publisher.warmUpBufferSize";
+    public static final String RETRY_SECONDS = "http.monitoring.publisher.retrySeconds";
+    static final String ASYNC_ENABLED = "http.monitoring.async.enabled";
+    private static final Log LOG = LogFactory.getLog(PublisherRegistry.class);
+
+    /**
+     * The publication of web applications whose publishing is disabled.
+     */
+    static final Publication DISABLED = new Publication(null, null, null, Publication.State.READY);
+
+    private final Function<Context, WebAppStatsPublishing> configurations;
+    private final PublisherFactory factory;
+    private final ConcurrentHashMap<Context, Publication> contexts = new ConcurrentHashMap<>();
+    private final Map<String, Publication> publications = new HashMap<>();
+    private Container container;
+    private ScheduledExecutorService warmUpExecutor;
+    private volatile boolean stopped;
+
+    /**
+     * @param configurations the function returning the statistics publishing configuration of a web application, or
+     *                       null if it has none
+     * @param factory        the factory of the data publisher of a configuration
+     */
+    PublisherRegistry(Function<Context, WebAppStatsPublishing> configurations, PublisherFactory factory) {
+        this.configurations = configurations;
+        this.factory = factory;
+    }
+
+    /**
+     * Registers the web applications of a container that are running, and watches the container for web
+     * applications that start later.
+     *
+     * @param container the container of the valve: an engine, a host or a context
+     */
+    synchronized void start(Container container) {
+        this.container = container;
+        stopped = false;
+        watch(container);
+    }
+
+    /**
+     * Stops watching the container and tears down the publishers of every registered web application.
+     */
+    synchronized void stop() {
+        if (container != null) {
+            unwatch(container);
+            container = null;
+        }
+        for (Context context : contexts.keySet()) {
+            unregister(context);
+        }
+        stopped = true;
+        if (warmUpExecutor != null) {
+            warmUpExecutor.shutdownNow();
+            warmUpExecutor = null;
+        }
+    }
+
+    /**
+     * Returns the publication of the web application, registering it if it started before the valve could watch it.
+     * Web applications that are not available, such as one still serving requests while it stops, and requests after
+     * the registry stopped get {@link #DISABLED} without being registered, so they do not build a publisher that no
+     * stop event would tear down.
+     *
+     * @param context the context of the web application
+     * @return the publication of the web application, {@link #DISABLED} if its publishing is disabled
+     */
+    Publication get(Context context) {
+        Publication publication = contexts.get(context);
+        if (publication != null) {
+            return publication;
+        }
+        return (stopped || !context.getState().isAvailable()) ? DISABLED : register(context);
+    }
+
+    /**
+     * Warms up or shares the data publisher of a web application, unless it is already registered.
+     */
+    synchronized Publication register(Context context) {
+        if (stopped) {
+            return DISABLED;
+        }
+        Publication publication = contexts.get(context);
+        if (publication != null) {
+            return publication;
+        }
+        WebAppStatsPublishing configuration = configurations.apply(context);
+        if (configuration == null || Boolean.FALSE.equals(configuration.isStatsPublisherEnabled())) {
+            contexts.put(context, DISABLED);
+            return DISABLED;
+        }
+        String implementation = configuration.getPublisherImplementation();
+        publication = publications.get(implementation);
+        if (publication == null) {
+            MonitoringConfiguration monitoringConfiguration = MonitoringConfiguration.getInstance();
+            int bufferSize = monitoringConfiguration.getInt(WARM_UP_BUFFER_SIZE, 1024);
+            boolean buffered = bufferSize >= 2 && publishesSnapshots(implementation);
+            publication = new Publication(implementation, buffered ? new RingBuffer<>(bufferSize) : null,
+                    task -> schedule(task, 0), Publication.State.WARMING_UP);
+            publications.put(implementation, publication);
+            long retryMillis = TimeUnit.SECONDS.toMillis(monitoringConfiguration.getLong(RETRY_SECONDS, 30));
+            Publication warming = publication;
+            schedule(() -> warmUp(warming, configuration, retryMillis), 0);
+        }
+        publication.references++;
+        contexts.put(context, publication);
+        return publication;
+    }
+
+    /**
+     * Releases the data publisher of a web application, tearing it down if no other web application uses it.
+     */
+    synchronized void unregister(Context context) {
+        Publication publication = contexts.remove(context);
+        if (publication == null || publication == DISABLED || --publication.references > 0) {
+            return;
+        }
+        publications.values().remove(publication);
+        publication.close();
+    }
+
+    @Override
+    public void containerEvent(ContainerEvent event) {
+        if (Container.ADD_CHILD_EVENT.equals(event.getType())) {
+            watch((Container) event.getData());
+        } else if (Container.REMOVE_CHILD_EVENT.equals(event.getType())) {
+            unwatch((Container) event.getData());
+        }
+    }
+
+    @Override
+    public void lifecycleEvent(LifecycleEvent event) {
+        Context context = (Context) event.getLifecycle();
+        if (Lifecycle.AFTER_START_EVENT.equals(event.getType())) {
+            register(context);
+        } else if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+            unregister(context);
+        }
+    }
+
+    private void watch(Container container) {
+        if (container instanceof Context) {
+            Context context = (Context) container;
+            context.addLifecycleListener(this);
+            if (context.getState().isAvailable()) {
+                register(context);
+            }
+            return;
+        }
+        container.addContainerListener(this);
+        for (Container child : container.findChildren()) {
+            watch(child);
+        }
+    }
+
+    private void unwatch(Container container) {
+        if (container instanceof Context) {
+            container.removeLifecycleListener(this);
+            return;
+        }
+        container.removeContainerListener(this);
+        for (Container child : container.findChildren()) {
+            unwatch(child);
+        }
+    }
+
+    /**
+     * Builds the data publisher of a publication, retrying after a delay if the build fails.
+     */
+    private void warmUp(Publication publication, WebAppStatsPublishing configuration, long retryMillis) {
+        long startNanos = System.nanoTime();
+        DataPublisher dataPublisher;
+        try {
+            dataPublisher = factory.create(configuration);
+        } catch (StatPublisherException | RuntimeException e) {
+            if (publication.failed()) {
+                if (retryMillis > 0) {
+                    LOG.error("Initializing DataPublisher " + publication.implementation + " failed, retrying in " +
+                            TimeUnit.MILLISECONDS.toSeconds(retryMillis) + " s: ", e);
+                    schedule(() -> warmUp(publication, configuration, retryMillis), retryMillis);
+                } else {
+                    LOG.error("Initializing DataPublisher " + publication.implementation + " failed: ", e);
+                }
+            }
+            return;
+        }
+        if (publication.ready(dataPublisher, getAsyncDispatcher(dataPublisher))) {
+            LOG.info("DataPublisher " + publication.implementation + " is ready after " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms, " +
+                    publication.getDroppedCount() + " events were dropped while it warmed up.");
+        }
+    }
+
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (stopped) {
+            return;
+        }
+        if (warmUpExecutor == null) {
+            warmUpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "http-stats-publisher-warmup");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        warmUpExecutor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts the asynchronous hand-off to the data publisher, if enabled.
+     *
+     * @param dataPublisher the data publisher that consumes captured requests
+     * @return the started dispatcher, or null if statistics are published on the request thread
+     */
+    private static AsyncDispatcher<RequestSnapshot> getAsyncDispatcher(DataPublisher dataPublisher) {
+        MonitoringConfiguration configuration = MonitoringConfiguration.getInstance();
+        if (!configuration.getBoolean(ASYNC_ENABLED, false)) {
+            return null;
+        }
+        if (!(dataPublisher instanceof SnapshotDataPublisher)) {
+            LOG.warn(dataPublisher.getClass().getName() + " does not implement " +
+                    SnapshotDataPublisher.class.getName() + ", publishing on the request thread.");
+            return null;
+        }
+        SnapshotDataPublisher snapshotDataPublisher = (SnapshotDataPublisher) dataPublisher;
+        AsyncDispatcher<RequestSnapshot> dispatcher =
+                AsyncDispatcher.create("http-stats-publisher", configuration, snapshotDataPublisher::publishBatch);
+        dispatcher.start();
+        snapshotDataPublisher.watchQueue(dispatcher::getBufferedCount, dispatcher.getCapacity());
+        return dispatcher;
+    }
+
+    /**
+     * Checks whether a publisher implementation can publish snapshots, without initializing it.
+     *
+     * @param implementation the class name of the data publisher, or null if none is configured
+     * @return true if the class implements {@link SnapshotDataPublisher}, false if not or if it cannot be loaded
+     */
+    static boolean publishesSnapshots(String implementation) {
+        if (implementation == null) {
+            return false;
+        }
+        try {
+            return SnapshotDataPublisher.class.isAssignableFrom(
+                    Class.forName(implementation, false, PublisherRegistry.class.getClassLoader()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Instantiates the configured publisher implementation.
+     *
+     * @param configuration the statistics publishing configuration of a web application
+     * @return the data publisher of the configuration
+     * @throws StatPublisherException if the implementation cannot be instantiated
+     */
+    static DataPublisher newDataPublisher(WebAppStatsPublishing configuration) throws StatPublisherException {
+        String implementation = configuration.getPublisherImplementation();
+        try {
+            return (DataPublisher) Class.forName(implementation).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new StatPublisherException("Data publisher implementation class not found: " + implementation, e);
+        } catch (InstantiationException e) {
+            throw new StatPublisherException("Error occurred while instantiating Data publisher: " + implementation,
+                    e);
+        } catch (IllegalAccessException e) {
+            throw new StatPublisherException("Data publisher implementation class cannot access: " + implementation,
+                    e);
+        }
+    }
+
+    /**
+     * Builds the data publisher of a statistics publishing configuration.
+     */
+    @FunctionalInterface
+    interface PublisherFactory {
+        DataPublisher create(WebAppStatsPublishing configuration) throws StatPublisherException;
+    }
+
+    /**
+     * A data publisher with its asynchronous dispatcher, shared by the web applications with the same configuration.
+     */
+    static final class Publication {
+
+        /**
+         * The readiness of the data publisher.
+         */
+        enum State {
+            WARMING_UP, READY, FAILED, CLOSED
+        }
+
+        private final String implementation;
+        private final RingBuffer<RequestSnapshot> warmUpBuffer;
+        private final Executor drainExecutor;
+        private final AtomicBoolean drainScheduled = new AtomicBoolean();
+        private final LongAdder dropped = new LongAdder();
+        private volatile State state;
+        private volatile DataPublisher dataPublisher;
+        private volatile AsyncDispatcher<RequestSnapshot> asyncDispatcher;
+        private int references;
+
+        /**
+         * @param implementation the class name of the data publisher
+         * @param warmUpBuffer   the buffer of snapshots to publish once the publisher is ready, or null to drop them
+         * @param drainExecutor  runs the publishing of snapshots buffered after the publisher became ready
+         * @param state          the initial state
+         */
+        Publication(String implementation, RingBuffer<RequestSnapshot> warmUpBuffer, Executor drainExecutor,
+                State state) {
+            this.implementation = implementation;
+            this.warmUpBuffer = warmUpBuffer;
+            this.drainExecutor = drainExecutor;
+            this.state = state;
+        }
+
+        State getState() {
+            return state;
+        }
+
+        /**
+         * @return the data publisher, or null if publishing is disabled or the publisher is not ready
+         */
+        DataPublisher getDataPublisher() {
+            return dataPublisher;
+        }
+
+        /**
+         * @return the started dispatcher, or null if statistics are published on the request thread
+         */
+        AsyncDispatcher<RequestSnapshot> getAsyncDispatcher() {
+            return asyncDispatcher;
+        }
+
+        /**
+         * @return true if the publisher is not ready and snapshots of requests are buffered until it is
+         */
+        boolean isBuffering() {
+            State current = state;
+            return warmUpBuffer != null && (current == State.WARMING_UP || current == State.FAILED);
+        }
+
+        /**
+         * Holds a snapshot until the publisher is ready, or drops it if the buffer is full.
+         *
+         * @param snapshot the values captured from a served request
+         */
+        void buffer(RequestSnapshot snapshot) {
+            if (!warmUpBuffer.offer(snapshot)) {
+                dropped.increment();
+            } else if (state == State.READY && drainScheduled.compareAndSet(false, true)) {
+                // the publisher became ready and drained the buffer while the snapshot was added; publishing may
+                // block, so it is left to the warm-up thread rather than the request thread
+                drainExecutor.execute(() -> {
+                    drainScheduled.set(false);
+                    if (state == State.READY) {
+                        drain();
+                    }
+                });
+            }
+        }
+
+        /**
+         * @return the number of snapshots dropped because the buffer was full or could not be published
+         */
+        long getDroppedCount() {
+            return dropped.sum();
+        }
+
+        /**
+         * Makes a built publisher available and publishes the buffered snapshots.
+         *
+         * @return false if the publication was closed meanwhile, in which case the publisher is torn down
+         */
+        private boolean ready(DataPublisher dataPublisher, AsyncDispatcher<RequestSnapshot> asyncDispatcher) {
+            synchronized (this) {
+                if (state == State.CLOSED) {
+                    close(dataPublisher, asyncDispatcher);
+                    return false;
+                }
+                this.dataPublisher = dataPublisher;
+                this.asyncDispatcher = asyncDispatcher;
+                state = State.READY;
+            }
+            drain();
+            return true;
+        }
+
+        /**
+         * @return false if the publication was closed meanwhile and the build should not be retried
+         */
+        private synchronized boolean failed() {
+            if (state == State.CLOSED) {
+                return false;
+            }
+            state = State.FAILED;
+            return true;
+        }
+
+        private void drain() {
+            if (warmUpBuffer == null) {
+                return;
+            }
+            RequestSnapshot snapshot;
+            while ((snapshot = warmUpBuffer.poll()) != null) {
+                AsyncDispatcher<RequestSnapshot> dispatcher = asyncDispatcher;
+                if (dispatcher != null) {
+                    if (!dispatcher.dispatch(snapshot)) {
+                        dropped.increment();
+                    }
+                } else if (dataPublisher instanceof SnapshotDataPublisher) {
+                    try {
+                        ((SnapshotDataPublisher) dataPublisher).publish(snapshot);
+                    } catch (IOException | RuntimeException e) {
+                        dropped.increment();
+                        LOG.debug("Publishing a buffered statistics event failed: " + e);
+                    }
+                } else {
+                    // publishers of live requests cannot publish snapshots
+                    dropped.increment();
+                }
+            }
+        }
+
+        private synchronized void close() {
+            state = State.CLOSED;
+            close(dataPublisher, asyncDispatcher);
+        }
+
+        private static void close(DataPublisher dataPublisher, AsyncDispatcher<RequestSnapshot> asyncDispatcher) {
+            if (asyncDispatcher != null) {
+                asyncDispatcher.stop();
+                LOG.debug("Asynchronous statistics publishing stopped, " + asyncDispatcher.getDroppedCount() +
+                        " events were dropped.");
+            }
+            if (dataPublisher instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) dataPublisher).close();
+                } catch (Exception e) {
+                    LOG.warn("Closing " + dataPublisher.getClass().getName() + " failed: " + e);
+                }
+            }
+        }
+    }
+}
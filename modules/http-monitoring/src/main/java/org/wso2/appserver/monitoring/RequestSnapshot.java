@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.wso2.appserver.monitoring.route.RouteTemplates;
+import org.wso2.appserver.monitoring.sampling.Sampler;
+import org.wso2.appserver.monitoring.utils.ClientAddressResolver;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+import org.wso2.appserver.monitoring.utils.HeaderPolicy;
+import org.wso2.appserver.monitoring.utils.HttpMethods;
+import org.wso2.appserver.monitoring.utils.StringInterner;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * The values of a served request that are needed to build a statistics event.
+ * <p>
+ * Tomcat recycles {@link Request} and {@link Response} objects as soon as the valve returns, so everything that is
+ * published later, or on another thread, is copied into a snapshot while the request is still being served.
+ * Snapshots are immutable: timings, status and byte counts are kept as primitives. Standard methods and
+ * authentication types are replaced with constants, and other repeating strings such as content types and header
+ * names are shared through a {@link StringInterner}, which evicts values that stop repeating. Only the headers
+ * captured by the {@link HeaderPolicy} of the web application are copied; they are serialized when the event is
+ * built.
+ *
+ * @since 1.0.1
+ */
+public final class RequestSnapshot {
+
+    private static final String[] NO_HEADERS = new String[0];
+    private static final StringInterner INTERNER = new StringInterner(4096);
+    private static final String[] AUTH_TYPES = {
+            HttpServletRequest.BASIC_AUTH, HttpServletRequest.FORM_AUTH, HttpServletRequest.CLIENT_CERT_AUTH,
+            HttpServletRequest.DIGEST_AUTH };
+
+    private final long startTime;
+    private final long responseTime;
+    private final long responseTimeNanos;
+    private final long queueTimeNanos;
+    private final long timeToCommitNanos;
+    private final double sampleWeight;
+    private final String requestURI;
+    private final String uriTemplate;
+    private final String pathInfo;
+    private final ContextInfo contextInfo;
+    private final String username;
+    private final String sessionId;
+    private final String method;
+    private final String requestContentType;
+    private final String responseContentType;
+    private final int status;
+    private final String clientIpAddress;
+    private final String referrer;
+    private final String userAgent;
+    private final String host;
+    private final String remoteUser;
+    private final String authType;
+    private final long requestContentLength;
+    private final long responseContentLength;
+    private final String[] requestHeaders;
+    private final String[] responseHeaders;
+    private final String language;
+    private final String serverName;
+    private final String localName;
+
+    private RequestSnapshot(Request request, Response response, ContextInfo contextInfo, String uriTemplate,
+            long startTime, long responseTimeNanos, long timeToCommitNanos, double sampleWeight) {
+        this.startTime = startTime;
+        this.responseTime = TimeUnit.NANOSECONDS.toMillis(responseTimeNanos);
+        this.responseTimeNanos = responseTimeNanos;
+        this.queueTimeNanos = getQueueTimeNanos(request, startTime);
+        this.timeToCommitNanos = timeToCommitNanos;
+        this.sampleWeight = sampleWeight;
+        this.requestURI = request.getRequestURI();
+        this.pathInfo = request.getPathInfo();
+        this.contextInfo = contextInfo;
+        this.uriTemplate = uriTemplate;
+        this.username = extractUsername(request);
+        this.sessionId = extractSessionId(request);
+        this.method = canonicalMethod(request.getMethod());
+        this.requestContentType = INTERNER.intern(request.getContentType());
+        this.responseContentType = INTERNER.intern(response.getContentType());
+        this.status = response.getStatus();
+        this.clientIpAddress = getClientIpAddress(request, contextInfo);
+        this.referrer = request.getHeader(Constants.REFERRER);
+        this.userAgent = INTERNER.intern(request.getHeader(Constants.USER_AGENT));
+        this.host = INTERNER.intern(request.getHeader(Constants.HOST));
+        this.remoteUser = request.getRemoteUser();
+        this.authType = canonicalAuthType(request.getAuthType());
+        this.requestContentLength = request.getContentLength();
+        this.responseContentLength = response.getContentLength();
+        HeaderPolicy headerPolicy = HeaderPolicy.of(contextInfo);
+        this.requestHeaders = captureRequestHeaders(request, headerPolicy);
+        this.responseHeaders = captureResponseHeaders(response, headerPolicy);
+        this.language = INTERNER.intern(request.getLocale().getLanguage());
+        this.serverName = INTERNER.intern(request.getServerName());
+        this.localName = INTERNER.intern(request.getLocalName());
+    }
+
+    /**
+     * Copies the values of a served request.
+     *
+     * @param request      the Request object of client
+     * @param response     the Response object of client
+     * @param startTime    the time at which the valve is invoked
+     * @param responseTime the time that is taken for the client to receive a response
+     * @return a snapshot that stays valid after the request and response are recycled
+     */
+    public static RequestSnapshot capture(Request request, Response response, long startTime, long responseTime) {
+        ContextInfo contextInfo = ContextInfo.of(request.getContext());
+        return new RequestSnapshot(request, response, contextInfo, getUriTemplate(request, contextInfo), startTime,
+                TimeUnit.MILLISECONDS.toNanos(responseTime), -1, Sampler.UNSAMPLED);
+    }
+
+    /**
+     * Copies the values of a served request, along with its phase timings measured in nanoseconds.
+     *
+     * @param request           the Request object of client
+     * @param response          the Response object of client
+     * @param startTime         the time at which the valve is invoked, in milliseconds since the epoch
+     * @param responseTimeNanos the nanoseconds taken by the web application to complete the request
+     * @param timeToCommitNanos the nanoseconds taken to commit the response, or -1 if not known
+     * @param sampleWeight      the number of requests the snapshot stands for, 1 if requests are not sampled
+     * @return a snapshot that stays valid after the request and response are recycled
+     */
+    public static RequestSnapshot captureTimed(Request request, Response response, long startTime,
+            long responseTimeNanos, long timeToCommitNanos, double sampleWeight) {
+        ContextInfo contextInfo = ContextInfo.of(request.getContext());
+        return new RequestSnapshot(request, response, contextInfo, getUriTemplate(request, contextInfo), startTime,
+                responseTimeNanos, timeToCommitNanos, sampleWeight);
+    }
+
+    /**
+     * Copies the values of a served request whose route template is already resolved, along with its phase timings
+     * measured in nanoseconds.
+     *
+     * @param request           the Request object of client
+     * @param response          the Response object of client
+     * @param uriTemplate       the route template of the requested URI, may be null
+     * @param startTime         the time at which the valve is invoked, in milliseconds since the epoch
+     * @param responseTimeNanos the nanoseconds taken by the web application to complete the request
+     * @param timeToCommitNanos the nanoseconds taken to commit the response, or -1 if not known
+     * @param sampleWeight      the number of requests the snapshot stands for, 1 if requests are not sampled
+     * @return a snapshot that stays valid after the request and response are recycled
+     */
+    public static RequestSnapshot captureTimed(Request request, Response response, String uriTemplate,
+            long startTime, long responseTimeNanos, long timeToCommitNanos, double sampleWeight) {
+        return new RequestSnapshot(request, response, ContextInfo.of(request.getContext()), uriTemplate, startTime,
+                responseTimeNanos, timeToCommitNanos, sampleWeight);
+    }
+
+    private static String getUriTemplate(Request request, ContextInfo contextInfo) {
+        return RouteTemplates.of(contextInfo).getTemplate(request.getRequestURI());
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the time taken by the web application to complete the request, in milliseconds
+     */
+    public long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * @return the time taken by the web application to complete the request, in nanoseconds
+     */
+    public long getResponseTimeNanos() {
+        return responseTimeNanos;
+    }
+
+    /**
+     * @return the time the request spent in the connector before reaching the valve, in nanoseconds but with
+     * millisecond precision, or -1 if not known
+     */
+    public long getQueueTimeNanos() {
+        return queueTimeNanos;
+    }
+
+    /**
+     * @return the time from the valve invocation until the response was committed, in nanoseconds, or -1 if not
+     * known or if the web application completed without committing the response
+     */
+    public long getTimeToCommitNanos() {
+        return timeToCommitNanos;
+    }
+
+    /**
+     * @return the number of requests the snapshot stands for, 1 if requests are not sampled
+     */
+    public double getSampleWeight() {
+        return sampleWeight;
+    }
+
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    /**
+     * @return the route template the requested URI is collapsed into
+     * @see RouteTemplates
+     */
+    public String getUriTemplate() {
+        return uriTemplate;
+    }
+
+    public String getPathInfo() {
+        return pathInfo;
+    }
+
+    /**
+     * @return the values of the web application that served the request
+     */
+    public ContextInfo getContextInfo() {
+        return contextInfo;
+    }
+
+    public String getServletVersion() {
+        return contextInfo.getServletVersion();
+    }
+
+    public String getWebappDisplayName() {
+        return contextInfo.getDisplayName();
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRequestContentType() {
+        return requestContentType;
+    }
+
+    public String getResponseContentType() {
+        return responseContentType;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getClientIpAddress() {
+        return clientIpAddress;
+    }
+
+    public String getReferrer() {
+        return referrer;
+    }
+
+    public String getUserAgent() {
+        return userAgent;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getRemoteUser() {
+        return remoteUser;
+    }
+
+    public String getAuthType() {
+        return authType;
+    }
+
+    public long getRequestContentLength() {
+        return requestContentLength;
+    }
+
+    public long getResponseContentLength() {
+        return responseContentLength;
+    }
+
+    /**
+     * @return request header names and values, alternating, in the order they were received
+     */
+    public String[] getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    /**
+     * @return response header names and values, alternating, in the order they were set
+     */
+    public String[] getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public String getLocalName() {
+        return localName;
+    }
+
+    /**
+     * Computes the time from the connector starting to read the request until the valve was invoked.
+     *
+     * @param request   the Request object of client
+     * @param startTime the time at which the valve is invoked, in milliseconds since the epoch
+     * @return the queue time in nanoseconds, or -1 if not known
+     */
+    private static long getQueueTimeNanos(Request request, long startTime) {
+        org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+        if (coyoteRequest == null || coyoteRequest.getStartTime() <= 0) {
+            return -1;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, startTime - coyoteRequest.getStartTime()));
+    }
+
+    /**
+     * Copies the first value of every request header captured by the policy of the web application.
+     *
+     * @param request      the Request object of client
+     * @param headerPolicy the header policy of the web application
+     * @return request header names and values, alternating
+     */
+    private static String[] captureRequestHeaders(Request request, HeaderPolicy headerPolicy) {
+        if (!headerPolicy.isCaptured()) {
+            return NO_HEADERS;
+        }
+        Enumeration<String> headerNames = request.getHeaderNames();
+        if (headerNames == null || !headerNames.hasMoreElements()) {
+            return NO_HEADERS;
+        }
+        String[] headers = new String[16];
+        int length = 0;
+        int remaining = getMaxBytes(headerPolicy);
+        while (headerNames.hasMoreElements()) {
+            String header = headerNames.nextElement();
+            if (!headerPolicy.isCaptured(header)) {
+                continue;
+            }
+            String value = request.getHeader(header);
+            int size = HeaderPolicy.getSerializedBytes(header, value);
+            if (size > remaining) {
+                continue;
+            }
+            remaining -= size;
+            if (length == headers.length) {
+                String[] grown = new String[length * 2];
+                System.arraycopy(headers, 0, grown, 0, length);
+                headers = grown;
+            }
+            headers[length++] = INTERNER.intern(header);
+            headers[length++] = value;
+        }
+        return trim(headers, length);
+    }
+
+    /**
+     * Copies the first value of every response header captured by the policy of the web application.
+     *
+     * @param response     the Response object of client
+     * @param headerPolicy the header policy of the web application
+     * @return response header names and values, alternating
+     */
+    private static String[] captureResponseHeaders(Response response, HeaderPolicy headerPolicy) {
+        if (!headerPolicy.isCaptured()) {
+            return NO_HEADERS;
+        }
+        Collection<String> headerNames = response.getHeaderNames();
+        if (headerNames == null || headerNames.isEmpty()) {
+            return NO_HEADERS;
+        }
+        String[] headers = new String[headerNames.size() * 2];
+        int length = 0;
+        int remaining = getMaxBytes(headerPolicy);
+        for (String header : headerNames) {
+            if (!headerPolicy.isCaptured(header)) {
+                continue;
+            }
+            String value = response.getHeader(header);
+            int size = HeaderPolicy.getSerializedBytes(header, value);
+            if (size > remaining) {
+                continue;
+            }
+            remaining -= size;
+            headers[length++] = INTERNER.intern(header);
+            headers[length++] = value;
+        }
+        return trim(headers, length);
+    }
+
+    private static int getMaxBytes(HeaderPolicy headerPolicy) {
+        return (headerPolicy.getMaxBytes() > 0) ? headerPolicy.getMaxBytes() : Integer.MAX_VALUE;
+    }
+
+    private static String[] trim(String[] array, int length) {
+        if (array.length == length) {
+            return array;
+        }
+        String[] trimmed = new String[length];
+        System.arraycopy(array, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    /**
+     * Extracts the session ID of the current session associated with the request.
+     *
+     * @param request the Request object of client
+     * @return the session ID of client
+     */
+    private static String extractSessionId(Request request) {
+        HttpSession session = request.getSession(false);
+        //  CXF web services does not have a session id, because they are stateless
+        return (session != null && session.getId() != null) ? session.getId() : "-";
+    }
+
+    /**
+     * Returns the shared instance of a standard method. Other methods are copied as they are, since the method is
+     * chosen by the client.
+     */
+    private static String canonicalMethod(String method) {
+        String standard = HttpMethods.standard(method);
+        return (standard != null) ? standard : method;
+    }
+
+    /**
+     * Returns the shared instance of a servlet authentication type, or the type itself for custom authenticators.
+     */
+    private static String canonicalAuthType(String authType) {
+        for (String standard : AUTH_TYPES) {
+            if (standard.equals(authType)) {
+                return standard;
+            }
+        }
+        return authType;
+    }
+
+    /**
+     * Extracts the name of the current authenticated user for the request.
+     *
+     * @param request the Request object of client
+     * @return the username of the current authenticated user
+     */
+    private static String extractUsername(Request request) {
+        Principal principal = request.getUserPrincipal();
+        return (principal != null) ? principal.getName() : Constants.ANONYMOUS_USER;
+    }
+
+    /**
+     * Gets the original client IP address, looking through the trusted proxies of the web application.
+     *
+     * @param request     the Request object of client
+     * @param contextInfo the values of the web application
+     * @return the original IP address of the client
+     * @see ClientAddressResolver
+     */
+    static String getClientIpAddress(Request request, ContextInfo contextInfo) {
+        return ClientAddressResolver.of(contextInfo).resolve(request);
+    }
+
+    @Override
+    public String toString() {
+        return method + " " + requestURI + " " + status + " (" + responseTime + " ms)";
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.wso2.appserver.monitoring.sampling.Sampler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Data publisher interface that works on {@link RequestSnapshot}s instead of live Catalina requests and responses.
+ * Implement this to provide a custom implementation of data publishing which may defer work to other threads.
+ * <p>
+ * The valve captures a snapshot once per request and hands it to {@link #publish(RequestSnapshot)}, either on the
+ * request thread or on the consumer threads of the asynchronous dispatcher. Since every implementation is also a
+ * {@link DataPublisher}, it can still be configured and called through the original interface.
+ *
+ * @since 1.0.1
+ */
+@FunctionalInterface
+public interface SnapshotDataPublisher extends DataPublisher {
+
+    /**
+     * @param snapshot the values captured from the served request, safe to keep after the request is recycled.
+     * @throws IOException can be thrown IO exception while publishing data.
+     */
+    void publish(RequestSnapshot snapshot) throws IOException;
+
+    /**
+     * Publishes a batch of captured requests, as handed over by the asynchronous dispatcher. The default publishes
+     * them one at a time; sinks override it to spread locks, system calls or serialization over the whole batch.
+     *
+     * @param snapshots the values captured from served requests, in the order they were captured. The list is reused
+     *                  once this method returns, so implementations must not keep it.
+     * @throws IOException can be thrown IO exception while publishing data.
+     */
+    default void publishBatch(List<RequestSnapshot> snapshots) throws IOException {
+        for (RequestSnapshot snapshot : snapshots) {
+            publish(snapshot);
+        }
+    }
+
+    /**
+     * Called once the asynchronous dispatcher that hands snapshots to the publisher is started, so that the publisher
+     * can watch how far behind it is. The default ignores it.
+     *
+     * @param occupancy returns the number of snapshots buffered in the dispatcher
+     * @param capacity  the capacity of the dispatcher buffer
+     */
+    default void watchQueue(IntSupplier occupancy, int capacity) {
+    }
+
+    /**
+     * Adapts the original publishing contract by capturing a snapshot of the request and response.
+     *
+     * @param request        request reached to tomcat.
+     * @param response       response generated for client.
+     * @param additionalData data holding the {@link Constants#START_TIME} and {@link Constants#RESPONSE_TIME}, and
+     *                       optionally the {@link Constants#RESPONSE_TIME_NANOS},
+     *                       {@link Constants#TIME_TO_COMMIT_NANOS} and {@link Constants#SAMPLE_WEIGHT}.
+     * @throws IOException can be thrown IO exception while publishing data.
+     */
+    @Override
+    default void publish(Request request, Response response, Map additionalData) throws IOException {
+        long startTime = (Long) additionalData.get(Constants.START_TIME);
+        Object responseTimeNanos = additionalData.get(Constants.RESPONSE_TIME_NANOS);
+        if (responseTimeNanos == null) {
+            long responseTime = (Long) additionalData.get(Constants.RESPONSE_TIME);
+            publish(RequestSnapshot.capture(request, response, startTime, responseTime));
+            return;
+        }
+        Object timeToCommitNanos = additionalData.get(Constants.TIME_TO_COMMIT_NANOS);
+        Object sampleWeight = additionalData.get(Constants.SAMPLE_WEIGHT);
+        publish(RequestSnapshot.captureTimed(request, response, startTime, (Long) responseTimeNanos,
+                (timeToCommitNanos == null) ? -1 : (Long) timeToCommitNanos,
+                (sampleWeight == null) ? Sampler.UNSAMPLED : (Double) sampleWeight));
+    }
+}
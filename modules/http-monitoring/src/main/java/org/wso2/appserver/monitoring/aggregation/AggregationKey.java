@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.aggregation;
+
+/**
+ * Identifies the requests that are summarized together: the web application, route template of the requested
+ * URI, method and status.
+ *
+ * @since 1.0.1
+ */
+public final class AggregationKey {
+
+    private final String webapp;
+    private final String requestURI;
+    private final String method;
+    private final int status;
+    private final int hash;
+
+    public AggregationKey(String webapp, String requestURI, String method, int status) {
+        this.webapp = webapp;
+        this.requestURI = requestURI;
+        this.method = method;
+        this.status = status;
+        int result = (webapp != null) ? webapp.hashCode() : 0;
+        result = 31 * result + ((requestURI != null) ? requestURI.hashCode() : 0);
+        result = 31 * result + ((method != null) ? method.hashCode() : 0);
+        this.hash = 31 * result + status;
+    }
+
+    public String getWebapp() {
+        return webapp;
+    }
+
+    public String getRequestURI() {
+        return requestURI;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof AggregationKey)) {
+            return false;
+        }
+        AggregationKey key = (AggregationKey) object;
+        return hash == key.hash && status == key.status && equals(webapp, key.webapp) &&
+                equals(requestURI, key.requestURI) && equals(method, key.method);
+    }
+
+    private static boolean equals(String first, String second) {
+        return (first == null) ? second == null : first.equals(second);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return webapp + " " + method + " " + requestURI + " " + status;
+    }
+}
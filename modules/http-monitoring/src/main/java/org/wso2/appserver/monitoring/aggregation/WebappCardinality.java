@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.aggregation;
+
+import org.wso2.appserver.monitoring.Constants;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.cardinality.CardinalityLimiter;
+import org.wso2.appserver.monitoring.cardinality.HyperLogLog;
+
+/**
+ * The distinct values seen for one web application in a window: the URIs it is summarized by, bounded by a
+ * {@link CardinalityLimiter}, and sketches of its distinct users, client IP addresses and sessions.
+ *
+ * @since 1.0.1
+ */
+public class WebappCardinality {
+
+    // the session ID captured for requests without a session
+    private static final String NO_SESSION = "-";
+
+    private final CardinalityLimiter uris;
+    private final HyperLogLog users;
+    private final HyperLogLog clientIpAddresses;
+    private final HyperLogLog sessions;
+
+    WebappCardinality(int maxUris, int precision) {
+        this.uris = new CardinalityLimiter(maxUris, precision);
+        this.users = new HyperLogLog(precision);
+        this.clientIpAddresses = new HyperLogLog(precision);
+        this.sessions = new HyperLogLog(precision);
+    }
+
+    /**
+     * @param requestURI the URI of a request
+     * @return the URI if it is summarized by itself, or {@link Window#OVERFLOW_URI}
+     */
+    String limitUri(String requestURI) {
+        return uris.limit(requestURI);
+    }
+
+    /**
+     * Counts the user, client IP address and session of a request.
+     *
+     * @param snapshot the values captured from the served request
+     */
+    void add(RequestSnapshot snapshot) {
+        if (!Constants.ANONYMOUS_USER.equals(snapshot.getUsername())) {
+            users.add(snapshot.getUsername());
+        }
+        clientIpAddresses.add(snapshot.getClientIpAddress());
+        if (!NO_SESSION.equals(snapshot.getSessionId())) {
+            sessions.add(snapshot.getSessionId());
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct URIs, including those summarized under {@link Window#OVERFLOW_URI}
+     */
+    public long getDistinctUris() {
+        return uris.getDistinctEstimate();
+    }
+
+    /**
+     * @return the number of requests whose URI was summarized under {@link Window#OVERFLOW_URI}
+     */
+    public long getOverflowCount() {
+        return uris.getOverflowCount();
+    }
+
+    /**
+     * @return the estimated number of distinct authenticated users
+     */
+    public long getDistinctUsers() {
+        return users.estimate();
+    }
+
+    public long getDistinctClientIpAddresses() {
+        return clientIpAddresses.estimate();
+    }
+
+    public long getDistinctSessions() {
+        return sessions.estimate();
+    }
+}
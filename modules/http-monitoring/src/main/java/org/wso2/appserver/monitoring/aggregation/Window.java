@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.aggregation;
+
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.cardinality.CardinalityLimiter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The statistics of all keys over one window of time.
+ * <p>
+ * The URIs of each web application are bounded, so that one web application flooded by scanners does not take the
+ * keys of the others, and so is the number of web applications, as their names are taken from requested URIs.
+ * Requests of further URIs are summarized under the URI {@link #OVERFLOW_URI} of their web application, and requests
+ * of further web applications under the web application {@link #OVERFLOW_URI}. Overflow keys carry the method
+ * {@link #OVERFLOW_URI} as well, since the method is chosen by the client. The number of keys, overflow keys included,
+ * is a hard limit: once a window holds one key less than the maximum, requests of new keys are added to the single
+ * {@link #OVERFLOW_KEY}, so a flood of distinct values cannot exhaust memory. The
+ * {@link WebappCardinality} of each web application estimates its distinct URIs, users, client IP addresses and
+ * sessions.
+ * <p>
+ * Writers announce themselves with {@link #enter()} and {@link #exit()}. Once a window is retired, {@link #seal()}
+ * turns new writers away and waits for the ones already adding to it, so that its statistics are complete when they
+ * are published.
+ *
+ * @since 1.0.1
+ */
+public class Window {
+
+    public static final String OVERFLOW_URI = CardinalityLimiter.OVERFLOW;
+    public static final int DEFAULT_PRECISION = 11;
+    /**
+     * The key of requests beyond the key limit of a window, whatever their web application, URI, method and status.
+     */
+    public static final AggregationKey OVERFLOW_KEY = new AggregationKey(OVERFLOW_URI, OVERFLOW_URI, OVERFLOW_URI, 0);
+
+    private final long startTime;
+    private final long durationMillis;
+    private final int maxKeys;
+    private final int maxKeysPerWebapp;
+    private final int precision;
+    private final ConcurrentHashMap<AggregationKey, WindowStatistics> statistics = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final CardinalityLimiter webapps;
+    private final ConcurrentHashMap<String, WebappCardinality> cardinalities = new ConcurrentHashMap<>();
+    private final AtomicInteger writers = new AtomicInteger();
+    private volatile boolean sealed;
+
+    public Window(long startTime, long durationMillis, int maxKeys) {
+        this(startTime, durationMillis, maxKeys, maxKeys, maxKeys, DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param startTime        the time the window starts, in milliseconds since the epoch
+     * @param durationMillis   the duration of the window
+     * @param maxKeys          the number of keys of the window
+     * @param maxWebapps       the number of web applications summarized by name
+     * @param maxKeysPerWebapp the number of URIs of a web application summarized by URI
+     * @param precision        the precision of the distinct count sketches
+     */
+    public Window(long startTime, long durationMillis, int maxKeys, int maxWebapps, int maxKeysPerWebapp,
+            int precision) {
+        this.startTime = startTime;
+        this.durationMillis = durationMillis;
+        this.maxKeys = Math.max(2, maxKeys);
+        this.maxKeysPerWebapp = maxKeysPerWebapp;
+        this.precision = precision;
+        this.webapps = new CardinalityLimiter(maxWebapps, precision);
+    }
+
+    /**
+     * Adds a served request to the statistics of its key and to the distinct counts of its web application.
+     *
+     * @param key      the key of the request
+     * @param snapshot the values captured from the served request
+     */
+    public void add(AggregationKey key, RequestSnapshot snapshot) {
+        getStatistics(key).add(snapshot.getSampleWeight(), snapshot.getRequestContentLength(),
+                snapshot.getResponseContentLength(), snapshot.getResponseTimeNanos());
+        cardinalityOf(webapps.limit(key.getWebapp())).add(snapshot);
+    }
+
+    /**
+     * Registers a writer that is about to add requests to the window. Every successful call is paired with a call to
+     * {@link #exit()}.
+     *
+     * @return true if the writer may add to the window and false if the window is sealed
+     */
+    public boolean enter() {
+        writers.incrementAndGet();
+        if (sealed) {
+            writers.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Deregisters a writer that entered the window.
+     */
+    public void exit() {
+        writers.decrementAndGet();
+    }
+
+    /**
+     * Turns new writers away and waits until the writers that already entered have left. Writers only hold the window
+     * while they add a request, so the wait is short.
+     */
+    public void seal() {
+        sealed = true;
+        while (writers.get() > 0) {
+            LockSupport.parkNanos(1000);
+        }
+    }
+
+    /**
+     * Returns the statistics of a key, creating them if the window still has room for the key.
+     *
+     * @param key the key of the request
+     * @return the statistics of the key, of the overflow key of its web application if the web application has too
+     *         many URIs, or of the {@link #OVERFLOW_KEY} if the window is full
+     */
+    public WindowStatistics getStatistics(AggregationKey key) {
+        WindowStatistics keyStatistics = statistics.get(key);
+        if (keyStatistics != null) {
+            return keyStatistics;
+        }
+        String webapp = webapps.limit(key.getWebapp());
+        String requestURI = OVERFLOW_URI.equals(webapp) ? OVERFLOW_URI :
+                cardinalityOf(webapp).limitUri(key.getRequestURI());
+        if (OVERFLOW_URI.equals(requestURI)) {
+            key = new AggregationKey(webapp, OVERFLOW_URI, OVERFLOW_URI, key.getStatus());
+        }
+        keyStatistics = statistics.computeIfAbsent(key, k -> reserveKey() ? new WindowStatistics() : null);
+        if (keyStatistics != null) {
+            return keyStatistics;
+        }
+        return statistics.computeIfAbsent(OVERFLOW_KEY, k -> new WindowStatistics());
+    }
+
+    /**
+     * Takes one of the keys of the window, keeping the last one for the {@link #OVERFLOW_KEY}.
+     */
+    private boolean reserveKey() {
+        while (true) {
+            int current = size.get();
+            if (current >= maxKeys - 1) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private WebappCardinality cardinalityOf(String webapp) {
+        String name = (webapp != null) ? webapp : "";
+        WebappCardinality cardinality = cardinalities.get(name);
+        return (cardinality != null) ? cardinality :
+                cardinalities.computeIfAbsent(name, k -> new WebappCardinality(maxKeysPerWebapp, precision));
+    }
+
+    /**
+     * @param key a key of the window
+     * @return the distinct counts of the web application of the key, or null if it had no requests in the window
+     */
+    public WebappCardinality getCardinality(AggregationKey key) {
+        return cardinalities.get((key.getWebapp() != null) ? key.getWebapp() : "");
+    }
+
+    /**
+     * @return the time the window started, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the statistics of every key seen in the window
+     */
+    public Map<AggregationKey, WindowStatistics> getStatistics() {
+        return Collections.unmodifiableMap(statistics);
+    }
+}
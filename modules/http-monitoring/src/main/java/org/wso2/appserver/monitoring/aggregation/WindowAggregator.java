@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.aggregation;
+
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.utils.EventBuilder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accumulates requests into windows of a fixed duration.
+ * <p>
+ * Request threads add to the current window; {@link #rotate(long)} replaces it with a new window and returns the
+ * retired one so that its summaries can be published. A request that read the current window just before a
+ * rotation may still be adding to the retired window, so the rotation seals the retired window, which waits for such
+ * requests and sends later ones to the new window.
+ *
+ * @since 1.0.1
+ */
+public class WindowAggregator {
+
+    private final long durationMillis;
+    private final int maxKeys;
+    private final int maxWebapps;
+    private final int maxKeysPerWebapp;
+    private final int precision;
+    private final AtomicReference<Window> current;
+
+    public WindowAggregator(long durationMillis, int maxKeys, long now) {
+        this(durationMillis, maxKeys, maxKeys, maxKeys, Window.DEFAULT_PRECISION, now);
+    }
+
+    /**
+     * @param durationMillis   the duration of the windows
+     * @param maxKeys          the number of keys of a window
+     * @param maxWebapps       the number of web applications summarized by name in a window
+     * @param maxKeysPerWebapp the number of URIs of a web application summarized by URI in a window
+     * @param precision        the precision of the distinct count sketches
+     * @param now              the current time in milliseconds since the epoch
+     */
+    public WindowAggregator(long durationMillis, int maxKeys, int maxWebapps, int maxKeysPerWebapp, int precision,
+            long now) {
+        this.durationMillis = durationMillis;
+        this.maxKeys = maxKeys;
+        this.maxWebapps = maxWebapps;
+        this.maxKeysPerWebapp = maxKeysPerWebapp;
+        this.precision = precision;
+        this.current = new AtomicReference<>(newWindow(now - now % durationMillis));
+    }
+
+    /**
+     * Adds a served request to the current window.
+     *
+     * @param snapshot the values captured from the served request
+     */
+    public void add(RequestSnapshot snapshot) {
+        AggregationKey key = new AggregationKey(EventBuilder.getWebappSegment(snapshot.getRequestURI()),
+                snapshot.getUriTemplate(), snapshot.getMethod(), snapshot.getStatus());
+        while (true) {
+            Window window = current.get();
+            if (window.enter()) {
+                try {
+                    window.add(key, snapshot);
+                } finally {
+                    window.exit();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts a new window. Rotations are expected at window boundaries, so the new window starts at the boundary
+     * nearest to the current time.
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return the window that ended, to which no request is added any more
+     */
+    public Window rotate(long now) {
+        long startTime = (now + durationMillis / 2) / durationMillis * durationMillis;
+        Window window = current.getAndSet(newWindow(startTime));
+        window.seal();
+        return window;
+    }
+
+    private Window newWindow(long startTime) {
+        return new Window(startTime, durationMillis, maxKeys, maxWebapps, maxKeysPerWebapp, precision);
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
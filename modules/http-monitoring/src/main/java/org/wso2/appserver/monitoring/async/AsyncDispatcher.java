@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.async;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands elements from request threads over to dedicated consumer threads through a bounded {@link RingBuffer}.
+ * <p>
+ * Request threads only pay for one offer to the ring buffer. Consumers poll the buffer and pass each element to the
+ * {@link Handler}, so event building and publishing happen off the request path. When the buffer is full, elements
+ * are dropped according to the {@link OverflowPolicy} and counted.
+ * <p>
+ * A dispatcher created with a {@link BatchHandler} passes elements on in batches instead. A consumer flushes its batch
+ * once it holds the batch size, or once the oldest element in it has lingered for the linger time, so that sinks can
+ * spread per-call costs over many elements. Each consumer reuses one list for all of its batches.
+ *
+ * @param <E> the type of elements handed over
+ * @since 1.0.1
+ */
+public class AsyncDispatcher<E> {
+
+    private static final Log LOG = LogFactory.getLog(AsyncDispatcher.class);
+    private static final long FAILURE_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    public static final String BUFFER_SIZE = "http.monitoring.async.bufferSize";
+    public static final String CONSUMER_THREADS = "http.monitoring.async.consumerThreads";
+    public static final String OVERFLOW_POLICY = "http.monitoring.async.overflowPolicy";
+    public static final String OFFER_TIMEOUT_MICROS = "http.monitoring.async.offerTimeoutMicros";
+    public static final String IDLE_STRATEGY = "http.monitoring.async.idleStrategy";
+    public static final String IDLE_PARK_MICROS = "http.monitoring.async.idleParkMicros";
+    public static final String BATCH_SIZE = "http.monitoring.async.batchSize";
+    public static final String LINGER_MICROS = "http.monitoring.async.lingerMicros";
+
+    private final RingBuffer<E> ringBuffer;
+    private final BatchHandler<E> handler;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutNanos;
+    private final IdleStrategy idleStrategy;
+    private final long idleParkNanos;
+    private final Thread[] consumers;
+    private volatile boolean running;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong lastFailureLog = new AtomicLong(System.nanoTime() - FAILURE_LOG_INTERVAL_NANOS);
+
+    public AsyncDispatcher(String name, int bufferSize, int consumerThreads, OverflowPolicy overflowPolicy,
+            long offerTimeoutNanos, IdleStrategy idleStrategy, long idleParkNanos, Handler<E> handler) {
+        this(name, bufferSize, consumerThreads, overflowPolicy, offerTimeoutNanos, idleStrategy, idleParkNanos, 1, 0,
+                batch -> handler.handle(batch.get(0)));
+    }
+
+    public AsyncDispatcher(String name, int bufferSize, int consumerThreads, OverflowPolicy overflowPolicy,
+            long offerTimeoutNanos, IdleStrategy idleStrategy, long idleParkNanos, int batchSize, long lingerNanos,
+            BatchHandler<E> handler) {
+        this.ringBuffer = new RingBuffer<>(bufferSize);
+        this.handler = handler;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerNanos = lingerNanos;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutNanos = offerTimeoutNanos;
+        this.idleStrategy = idleStrategy;
+        this.idleParkNanos = idleParkNanos;
+        this.consumers = new Thread[Math.max(1, consumerThreads)];
+        for (int i = 0; i < consumers.length; i++) {
+            consumers[i] = new Thread(this::consume, name + "-" + i);
+            consumers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Creates a dispatcher tuned by the monitoring configuration.
+     *
+     * @param name          the name prefix of consumer threads
+     * @param configuration the monitoring configuration
+     * @param handler       the handler that consumes batches of elements
+     * @param <E>           the type of elements handed over
+     * @return a dispatcher which is not yet started
+     */
+    public static <E> AsyncDispatcher<E> create(String name, MonitoringConfiguration configuration,
+            BatchHandler<E> handler) {
+        return new AsyncDispatcher<>(name,
+                configuration.getInt(BUFFER_SIZE, 8192),
+                configuration.getInt(CONSUMER_THREADS, 1),
+                configuration.getEnum(OVERFLOW_POLICY, OverflowPolicy.class, OverflowPolicy.DROP),
+                TimeUnit.MICROSECONDS.toNanos(configuration.getLong(OFFER_TIMEOUT_MICROS, 100)),
+                configuration.getEnum(IDLE_STRATEGY, IdleStrategy.class, IdleStrategy.PARK),
+                TimeUnit.MICROSECONDS.toNanos(configuration.getLong(IDLE_PARK_MICROS, 100)),
+                configuration.getInt(BATCH_SIZE, 64),
+                TimeUnit.MICROSECONDS.toNanos(configuration.getLong(LINGER_MICROS, 1000)),
+                handler);
+    }
+
+    public void start() {
+        running = true;
+        for (Thread consumer : consumers) {
+            consumer.start();
+        }
+    }
+
+    /**
+     * Stops accepting elements, lets the consumers drain what is already buffered and waits for them to finish.
+     */
+    public void stop() {
+        running = false;
+        for (Thread consumer : consumers) {
+            LockSupport.unpark(consumer);
+        }
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(STOP_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (ringBuffer.size() > 0) {
+            LOG.warn("Discarding " + ringBuffer.size() + " buffered statistics events on shutdown.");
+        }
+    }
+
+    /**
+     * Hands an element over to the consumer threads.
+     *
+     * @param element the element to hand over
+     * @return true if the element was buffered and false if it was dropped
+     */
+    public boolean dispatch(E element) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        if (ringBuffer.offer(element) || (overflowPolicy == OverflowPolicy.WAIT && offerUntilTimeout(element))) {
+            enqueued.increment();
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private boolean offerUntilTimeout(E element) {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        do {
+            Thread.yield();
+            if (ringBuffer.offer(element)) {
+                return true;
+            }
+        } while (System.nanoTime() - deadline < 0);
+        return false;
+    }
+
+    private void consume() {
+        List<E> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+        while (true) {
+            E element = ringBuffer.poll();
+            if (element != null) {
+                if (batch.isEmpty()) {
+                    batchStart = System.nanoTime();
+                }
+                batch.add(element);
+                if (batch.size() >= batchSize) {
+                    flush(batch);
+                }
+                continue;
+            }
+            if (!batch.isEmpty() && (!running || System.nanoTime() - batchStart >= lingerNanos)) {
+                flush(batch);
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+            idleStrategy.idle(idleParkNanos);
+        }
+    }
+
+    private void flush(List<E> batch) {
+        try {
+            handler.handleBatch(batch);
+            handled.add(batch.size());
+        } catch (Exception e) {
+            failed.add(batch.size());
+            logFailure(e);
+        }
+        batch.clear();
+    }
+
+    private void logFailure(Exception e) {
+        long now = System.nanoTime();
+        long last = lastFailureLog.get();
+        if (now - last >= FAILURE_LOG_INTERVAL_NANOS && lastFailureLog.compareAndSet(last, now)) {
+            LOG.error("Publishing statistics asynchronously failed (" + failed.sum() + " failures so far): ", e);
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getHandledCount() {
+        return handled.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public int getBufferedCount() {
+        return ringBuffer.size();
+    }
+
+    public int getCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    /**
+     * Consumes the elements handed over to the dispatcher. Invoked on consumer threads.
+     *
+     * @param <E> the type of elements handed over
+     */
+    @FunctionalInterface
+    public interface Handler<E> {
+        void handle(E element) throws Exception;
+    }
+
+    /**
+     * Consumes batches of the elements handed over to the dispatcher. Invoked on consumer threads, with a list that
+     * is cleared and reused once the handler returns.
+     *
+     * @param <E> the type of elements handed over
+     */
+    @FunctionalInterface
+    public interface BatchHandler<E> {
+        void handleBatch(List<E> batch) throws Exception;
+    }
+}
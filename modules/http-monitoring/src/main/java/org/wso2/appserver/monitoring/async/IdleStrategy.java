@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.async;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a consumer thread of the asynchronous dispatcher waits while the ring buffer is empty.
+ *
+ * @since 1.0.1
+ */
+public enum IdleStrategy {
+    /**
+     * Busy spin. Lowest hand-off latency, but keeps one core busy per consumer.
+     */
+    SPIN {
+        @Override
+        void idle(long parkNanos) {
+        }
+    },
+
+    /**
+     * Yield the processor to other runnable threads.
+     */
+    YIELD {
+        @Override
+        void idle(long parkNanos) {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Park the thread for the configured interval. Cheapest on CPU.
+     */
+    PARK {
+        @Override
+        void idle(long parkNanos) {
+            LockSupport.parkNanos(parkNanos);
+        }
+    };
+
+    abstract void idle(long parkNanos);
+}
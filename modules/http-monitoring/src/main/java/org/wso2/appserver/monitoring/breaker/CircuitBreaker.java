@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.breaker;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A circuit breaker guarding the hand-off of events to the data agent, so that a saturated agent queue or a flapping
+ * endpoint never holds up request threads.
+ * <p>
+ * While closed, every event is offered to the agent. A publish attempt fails when the agent queue refuses the event,
+ * when the agent throws, or when the attempt takes longer than a threshold. After a number of consecutive failures the
+ * breaker opens and events are shed without touching the agent, at the cost of one volatile read. Once the open
+ * period has passed, the breaker lets a few trial events through: if all of them succeed it closes, and if any fails
+ * it opens again.
+ * <p>
+ * The data agent does not expose how full its queue is, so the breaker cannot see it filling up until it refuses
+ * events. When the events reach the publisher through an asynchronous dispatcher, the occupancy of the dispatcher ring
+ * is watched instead: an attempt made while the ring is above its high-water mark counts as a failure, as the agent
+ * hand-off is not keeping up and producers are about to be dropped or held up.
+ * <p>
+ * The state and counters are exposed through JMX, under a name that carries the publisher the breaker guards.
+ *
+ * @since 1.0.1
+ */
+public class CircuitBreaker implements CircuitBreakerMBean, Closeable {
+
+    public static final String ENABLED = "http.monitoring.breaker.enabled";
+    public static final String FAILURE_THRESHOLD = "http.monitoring.breaker.failureThreshold";
+    public static final String SLOW_CALL_MICROS = "http.monitoring.breaker.slowCallMicros";
+    public static final String OPEN_MILLIS = "http.monitoring.breaker.openMillis";
+    public static final String HALF_OPEN_TRIALS = "http.monitoring.breaker.halfOpenTrials";
+    public static final String QUEUE_HIGH_WATER_PERCENT = "http.monitoring.breaker.queueHighWaterPercent";
+    private static final String DOMAIN = "org.wso2.appserver.monitoring";
+    private static final Log LOG = LogFactory.getLog(CircuitBreaker.class);
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+    private static final String[] STATE_NAMES = { "CLOSED", "OPEN", "HALF_OPEN" };
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenTrials;
+    private final int queueHighWaterPercent;
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicInteger trialPermits = new AtomicInteger();
+    private final AtomicInteger trialSuccesses = new AtomicInteger();
+    private volatile long openedAt;
+    private volatile IntSupplier queueOccupancy;
+    private volatile int queueHighWaterMark = Integer.MAX_VALUE;
+    private ObjectName objectName;
+
+    private final LongAdder trips = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CircuitBreaker(int failureThreshold, long slowCallNanos, long openNanos, int halfOpenTrials) {
+        this(failureThreshold, slowCallNanos, openNanos, halfOpenTrials, 80);
+    }
+
+    /**
+     * @param queueHighWaterPercent the occupancy of a watched queue, in percent of its capacity, from which attempts
+     *                              count as failures, or 0 to ignore the queue
+     */
+    public CircuitBreaker(int failureThreshold, long slowCallNanos, long openNanos, int halfOpenTrials,
+            int queueHighWaterPercent) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.slowCallNanos = slowCallNanos;
+        this.openNanos = openNanos;
+        this.halfOpenTrials = Math.max(1, halfOpenTrials);
+        this.queueHighWaterPercent = queueHighWaterPercent;
+    }
+
+    /**
+     * Creates a circuit breaker if it is enabled, and registers it with the platform MBean server.
+     *
+     * @param configuration the monitoring configuration
+     * @param publisher     the implementation class of the publisher the breaker guards
+     * @return the circuit breaker, or null if it is disabled
+     */
+    public static CircuitBreaker create(MonitoringConfiguration configuration, String publisher) {
+        if (!configuration.getBoolean(ENABLED, false)) {
+            return null;
+        }
+        CircuitBreaker circuitBreaker = new CircuitBreaker(configuration.getInt(FAILURE_THRESHOLD, 20),
+                TimeUnit.MICROSECONDS.toNanos(configuration.getLong(SLOW_CALL_MICROS, 1000)),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getLong(OPEN_MILLIS, 5000)),
+                configuration.getInt(HALF_OPEN_TRIALS, 10), configuration.getInt(QUEUE_HIGH_WATER_PERCENT, 80));
+        circuitBreaker.register(publisher);
+        return circuitBreaker;
+    }
+
+    /**
+     * Watches the occupancy of the queue that feeds the guarded publisher.
+     *
+     * @param occupancy returns the number of events in the queue
+     * @param capacity  the capacity of the queue
+     */
+    public void watchQueue(IntSupplier occupancy, int capacity) {
+        if (queueHighWaterPercent <= 0) {
+            return;
+        }
+        queueHighWaterMark = (int) Math.max(1, (long) capacity * queueHighWaterPercent / 100);
+        queueOccupancy = occupancy;
+    }
+
+    /**
+     * Decides whether a publish attempt may be made. Every permitted attempt must be followed by a call to
+     * {@link #onResult(boolean, long)}.
+     *
+     * @param now the current value of {@link System#nanoTime()}
+     * @return true if the event may be offered to the agent and false if it must be shed
+     */
+    public boolean allowRequest(long now) {
+        int current = state.get();
+        if (current == CLOSED) {
+            return true;
+        }
+        if (current == OPEN) {
+            if (now - openedAt < openNanos || !state.compareAndSet(OPEN, HALF_OPEN)) {
+                rejected.increment();
+                return false;
+            }
+            trialSuccesses.set(0);
+            trialPermits.set(halfOpenTrials - 1);
+            LOG.info("Probing the statistics endpoint with " + halfOpenTrials + " trial events.");
+            return true;
+        }
+        if (trialPermits.getAndDecrement() > 0) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Records the outcome of a permitted publish attempt.
+     *
+     * @param accepted     whether the agent accepted the event
+     * @param elapsedNanos the nanoseconds the attempt took
+     */
+    public void onResult(boolean accepted, long elapsedNanos) {
+        if (accepted && elapsedNanos < slowCallNanos && !isQueueSaturated()) {
+            onSuccess();
+        } else {
+            onFailure(System.nanoTime());
+        }
+    }
+
+    void onSuccess() {
+        int current = state.get();
+        if (current == CLOSED) {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+        } else if (current == HALF_OPEN && trialSuccesses.incrementAndGet() >= halfOpenTrials
+                && state.compareAndSet(HALF_OPEN, CLOSED)) {
+            consecutiveFailures.set(0);
+            LOG.info("Statistics endpoint recovered, publishing resumed.");
+        }
+    }
+
+    void onFailure(long now) {
+        failures.increment();
+        int current = state.get();
+        if (current == CLOSED) {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                trip(CLOSED, now);
+            }
+        } else if (current == HALF_OPEN) {
+            trip(HALF_OPEN, now);
+        }
+    }
+
+    private void trip(int from, long now) {
+        openedAt = now;
+        if (state.compareAndSet(from, OPEN)) {
+            trips.increment();
+            LOG.warn("Statistics publishing suspended for " + TimeUnit.NANOSECONDS.toMillis(openNanos) +
+                    " ms after " + ((from == CLOSED) ? failureThreshold + " consecutive publish failures."
+                    : "a failed trial."));
+        }
+    }
+
+    private boolean isQueueSaturated() {
+        IntSupplier occupancy = queueOccupancy;
+        return occupancy != null && occupancy.getAsInt() >= queueHighWaterMark;
+    }
+
+    public boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    private void register(String publisher) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=CircuitBreaker,publisher=" + ObjectName.quote(publisher));
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Registering the circuit breaker of " + publisher + " failed: " + e);
+        }
+    }
+
+    /**
+     * Unregisters the MBean of the breaker, if it was registered.
+     */
+    @Override
+    public void close() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.debug("Unregistering " + objectName + " failed: " + e);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String getState() {
+        return STATE_NAMES[state.get()];
+    }
+
+    @Override
+    public long getTripCount() {
+        return trips.sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.breaker;
+
+/**
+ * Management interface of the {@link CircuitBreaker}.
+ *
+ * @since 1.0.1
+ */
+public interface CircuitBreakerMBean {
+
+    /**
+     * @return CLOSED while events are published, OPEN while they are shed and HALF_OPEN while trial events probe
+     * for recovery
+     */
+    String getState();
+
+    /**
+     * @return the number of times publishing was suspended
+     */
+    long getTripCount();
+
+    /**
+     * @return the number of publish attempts that were refused, failed or took too long
+     */
+    long getFailureCount();
+
+    /**
+     * @return the number of events shed without a publish attempt while publishing was suspended
+     */
+    long getRejectedCount();
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.cardinality;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the distinct values of a dimension, such as the URIs of a web application, that are kept as keys of
+ * in-memory state.
+ * <p>
+ * The first {@code maxKeys} distinct values are admitted and kept as they are; any further value is folded into
+ * {@link #OVERFLOW}. Every value offered is also counted in a {@link HyperLogLog}, so the number of distinct values
+ * is still known after the limit is reached. A limiter is meant to live as long as the state it guards, such as a
+ * window of aggregation, after which a new one admits values afresh.
+ *
+ * @since 1.0.1
+ */
+public class CardinalityLimiter {
+
+    public static final String OVERFLOW = "__other__";
+
+    private final int maxKeys;
+    private final Set<String> keys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final HyperLogLog distinct;
+    private final LongAdder overflowCount = new LongAdder();
+
+    /**
+     * @param maxKeys   the number of distinct values kept
+     * @param precision the precision of the sketch counting the distinct values
+     */
+    public CardinalityLimiter(int maxKeys, int precision) {
+        this.maxKeys = maxKeys;
+        this.distinct = new HyperLogLog(precision);
+    }
+
+    /**
+     * @param value a value of the dimension, may be null
+     * @return the value if it is admitted, {@link #OVERFLOW} if the limit is reached, or null if the value is null
+     */
+    public String limit(String value) {
+        if (value == null) {
+            return null;
+        }
+        distinct.add(value);
+        if (keys.contains(value)) {
+            return value;
+        }
+        if (size.incrementAndGet() <= maxKeys) {
+            if (!keys.add(value)) {
+                // admitted by another thread at the same time
+                size.decrementAndGet();
+            }
+            return value;
+        }
+        size.decrementAndGet();
+        overflowCount.increment();
+        return OVERFLOW;
+    }
+
+    /**
+     * @return the estimated number of distinct values offered, whether admitted or not
+     */
+    public long getDistinctEstimate() {
+        return distinct.estimate();
+    }
+
+    /**
+     * @return the number of values folded into {@link #OVERFLOW}
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * @return the number of admitted values
+     */
+    public int size() {
+        return keys.size();
+    }
+}
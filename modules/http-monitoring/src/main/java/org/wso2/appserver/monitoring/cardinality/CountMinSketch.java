@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.cardinality;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Estimates how often each value was added to it in a fixed amount of memory.
+ * <p>
+ * The sketch is a table of {@code depth} rows of {@code width} counters. A value increments one counter per row,
+ * chosen by double hashing its 64-bit hash, and its estimated frequency is the smallest of those counters. Estimates
+ * never undercount, and overcount by at most {@code 2 * total / width} with probability {@code 1 - 2^-depth}: for the
+ * default 4 rows of 1024 counters, which take 16 KB, a value is overcounted by more than 0.2% of all additions in
+ * fewer than 1 in 16 cases.
+ * <p>
+ * Counters are incremented atomically without locking, so concurrent additions are never lost.
+ *
+ * @since 1.0.1
+ */
+public class CountMinSketch {
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_WIDTH = 1024;
+
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param depth the number of rows, at least 1
+     * @param width the number of counters per row, rounded up to a power of two
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || width > (1 << 24)) {
+            throw new IllegalArgumentException("Invalid count-min sketch of " + depth + " rows of " + width +
+                    " counters");
+        }
+        int roundedWidth = Integer.highestOneBit(width);
+        if (roundedWidth < width) {
+            roundedWidth <<= 1;
+        }
+        this.depth = depth;
+        this.mask = roundedWidth - 1;
+        this.counters = new AtomicIntegerArray(depth * roundedWidth);
+    }
+
+    /**
+     * Adds one occurrence of a value.
+     *
+     * @param hash a well mixed 64-bit hash of the value, such as {@link HyperLogLog#hash}
+     * @return the estimated frequency of the value including this occurrence
+     */
+    public int add(long hash) {
+        int h1 = (int) hash;
+        // an odd step visits a distinct counter in each row
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counters.incrementAndGet(row * (mask + 1) + ((h1 + row * h2) & mask));
+            if (count < estimate) {
+                estimate = count;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash the 64-bit hash of a value
+     * @return the estimated frequency of the value
+     */
+    public int estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int count = counters.get(row * (mask + 1) + ((h1 + row * h2) & mask));
+            if (count < estimate) {
+                estimate = count;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Resets all counters. Additions made concurrently may be partly kept.
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+}
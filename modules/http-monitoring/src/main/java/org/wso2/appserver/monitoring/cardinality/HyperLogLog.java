@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.cardinality;
+
+/**
+ * Estimates the number of distinct values added to it in a fixed amount of memory.
+ * <p>
+ * Each value is hashed to 64 bits. The first {@code precision} bits select one of 2<sup>precision</sup> registers,
+ * which keeps the longest run of leading zeros seen in the remaining bits. The estimate is the normalized harmonic mean
+ * of the registers, with linear counting for small cardinalities, and has a standard error of about
+ * {@code 1.04 / sqrt(2^precision)}: 2.3% for a precision of 11, which takes 2 KB.
+ * <p>
+ * Values are added without locking. Two threads updating the same register at the same time may lose the larger of
+ * their updates, which can only lower the estimate slightly and never corrupts the sketch.
+ *
+ * @since 1.0.1
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * @param precision the number of hash bits selecting a register, from {@link #MIN_PRECISION} to
+     *                  {@link #MAX_PRECISION}
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision " + precision + " is not between " + MIN_PRECISION +
+                    " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * @param value the value to count, ignored if null
+     */
+    public void add(CharSequence value) {
+        if (value != null) {
+            addHash(hash(value));
+        }
+    }
+
+    /**
+     * @param hash a well mixed 64-bit hash of the value to count
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the sentinel bit bounds the rank when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct values added
+     */
+    public long estimate() {
+        int count = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / count);
+        double estimate = alpha * count * count / sum;
+        if (estimate <= 2.5 * count && zeros > 0) {
+            estimate = count * Math.log((double) count / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Adds the values counted by another sketch of the same precision to this one.
+     *
+     * @param other the other sketch
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Hashes a character sequence to 64 bits with FNV-1a, followed by the finalizer of MurmurHash3 to mix the high
+     * bits that select the register.
+     *
+     * @param value the value
+     * @return the hash of the value
+     */
+    public static long hash(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes a sequence of events encoded by a {@link DictionaryEventEncoder}. Events must be decoded in the order they
+ * were encoded, starting with the first, as each may refer to strings entered in the dictionary by earlier events.
+ * <p>
+ * A decoder is not thread safe; each stream of records needs its own.
+ *
+ * @since 1.0.1
+ */
+public class DictionaryEventDecoder {
+
+    private final List<String> entries = new ArrayList<>();
+    private long previousTimeStamp;
+
+    /**
+     * Decodes the next event.
+     *
+     * @param buffer the buffer holding the encoded event from its position
+     * @return the decoded event
+     * @throws IllegalArgumentException if the buffer does not hold an encoded event
+     */
+    public Event decode(ByteBuffer buffer) {
+        String streamId = getString(buffer);
+        long timeStamp = previousTimeStamp + unzigzag(getVarLong(buffer));
+        Object[] metaData = getArray(buffer);
+        Object[] correlationData = getArray(buffer);
+        Object[] payloadData = getArray(buffer);
+        int size = getLength(buffer);
+        Map<String, String> arbitraryData = null;
+        if (size >= 0) {
+            arbitraryData = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                arbitraryData.put(getString(buffer), getString(buffer));
+            }
+        }
+        previousTimeStamp = timeStamp;
+        return new Event(streamId, timeStamp, metaData, correlationData, payloadData, arbitraryData);
+    }
+
+    private Object[] getArray(ByteBuffer buffer) {
+        int length = getLength(buffer);
+        if (length < 0) {
+            return null;
+        }
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case DictionaryEventEncoder.NULL:
+                    break;
+                case DictionaryEventEncoder.STRING:
+                    values[i] = getString(buffer);
+                    break;
+                case DictionaryEventEncoder.LONG:
+                    values[i] = unzigzag(getVarLong(buffer));
+                    break;
+                case DictionaryEventEncoder.INTEGER:
+                    values[i] = (int) unzigzag(getVarLong(buffer));
+                    break;
+                case DictionaryEventEncoder.DOUBLE:
+                    values[i] = buffer.getDouble();
+                    break;
+                case DictionaryEventEncoder.FLOAT:
+                    values[i] = buffer.getFloat();
+                    break;
+                case DictionaryEventEncoder.TRUE:
+                    values[i] = Boolean.TRUE;
+                    break;
+                case DictionaryEventEncoder.FALSE:
+                    values[i] = Boolean.FALSE;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown attribute type " + type);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Reads the length of an array or map, which is written one higher so that 0 stands for null.
+     *
+     * @return the length, or -1 for null
+     */
+    private static int getLength(ByteBuffer buffer) {
+        long length = getVarLong(buffer) - 1;
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Length " + length + " exceeds the encoded event");
+        }
+        return (int) length;
+    }
+
+    private String getString(ByteBuffer buffer) {
+        long reference = getVarLong(buffer);
+        if (reference == DictionaryEventEncoder.NULL_STRING) {
+            return null;
+        }
+        if (reference >= DictionaryEventEncoder.FIRST_REFERENCE) {
+            long index = reference - DictionaryEventEncoder.FIRST_REFERENCE;
+            if (index >= entries.size()) {
+                throw new IllegalArgumentException("Unknown dictionary entry " + index);
+            }
+            return entries.get((int) index);
+        }
+        long length = getVarLong(buffer);
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes exceeds the encoded event");
+        }
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (reference == DictionaryEventEncoder.NEW_ENTRY) {
+            entries.add(value);
+        }
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes a sequence of events compactly, for a stream of records that is always decoded from its start, such as one
+ * event file. Decode with a {@link DictionaryEventDecoder}.
+ * <p>
+ * Strings are entered in a dictionary the first time they are written and referred to by their index afterwards, so
+ * the web application name, servlet version, host, user agent and content types of an event cost a byte or two once
+ * they have been seen. Integers are written as zigzag varints and the timestamp as the difference to the previous
+ * event. Strings longer than the maximum dictionary string length, and strings written once the dictionary is full,
+ * are written literally every time.
+ * <p>
+ * An encoder is not thread safe; each stream of records needs its own.
+ *
+ * @since 1.0.1
+ */
+public class DictionaryEventEncoder {
+
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte LONG = 2;
+    static final byte INTEGER = 3;
+    static final byte DOUBLE = 4;
+    static final byte FLOAT = 5;
+    static final byte TRUE = 6;
+    static final byte FALSE = 7;
+
+    static final int NULL_STRING = 0;
+    static final int NEW_ENTRY = 1;
+    static final int LITERAL = 2;
+    static final int FIRST_REFERENCE = 3;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int maxEntries;
+    private final int maxStringLength;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> entries = new ArrayList<>();
+    private long previousTimeStamp;
+
+    /**
+     * @param maxEntries      the number of strings the dictionary holds at most
+     * @param maxStringLength the length of the longest string entered in the dictionary
+     */
+    public DictionaryEventEncoder(int maxEntries, int maxStringLength) {
+        this.maxEntries = maxEntries;
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * Encodes an event.
+     *
+     * @param event the event to encode
+     * @return the encoded event
+     */
+    public byte[] encode(Event event) {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        while (true) {
+            try {
+                encode(event, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Encodes an event into a buffer from its position. If the event does not fit, the strings it entered in the
+     * dictionary are removed again, so that the event can be encoded into another buffer.
+     *
+     * @param event  the event to encode
+     * @param buffer the buffer to encode into
+     * @throws BufferOverflowException if the event does not fit in the remaining buffer, in which case the position
+     *                                 of the buffer is undefined
+     */
+    public void encode(Event event, ByteBuffer buffer) {
+        int entriesBefore = entries.size();
+        try {
+            putString(buffer, event.getStreamId());
+            putVarLong(buffer, zigzag(event.getTimeStamp() - previousTimeStamp));
+            putArray(buffer, event.getMetaData());
+            putArray(buffer, event.getCorrelationData());
+            putArray(buffer, event.getPayloadData());
+            Map<String, String> arbitraryData = event.getArbitraryDataMap();
+            if (arbitraryData == null) {
+                putVarLong(buffer, 0);
+            } else {
+                putVarLong(buffer, arbitraryData.size() + 1);
+                for (Map.Entry<String, String> entry : arbitraryData.entrySet()) {
+                    putString(buffer, entry.getKey());
+                    putString(buffer, entry.getValue());
+                }
+            }
+        } catch (BufferOverflowException e) {
+            while (entries.size() > entriesBefore) {
+                dictionary.remove(entries.remove(entries.size() - 1));
+            }
+            throw e;
+        }
+        previousTimeStamp = event.getTimeStamp();
+    }
+
+    /**
+     * @return the number of strings in the dictionary
+     */
+    public int getDictionarySize() {
+        return entries.size();
+    }
+
+    private void putArray(ByteBuffer buffer, Object[] values) {
+        if (values == null) {
+            putVarLong(buffer, 0);
+            return;
+        }
+        putVarLong(buffer, values.length + 1);
+        for (Object value : values) {
+            if (value == null) {
+                buffer.put(NULL);
+            } else if (value instanceof String) {
+                buffer.put(STRING);
+                putString(buffer, (String) value);
+            } else if (value instanceof Long) {
+                buffer.put(LONG);
+                putVarLong(buffer, zigzag((Long) value));
+            } else if (value instanceof Integer) {
+                buffer.put(INTEGER);
+                putVarLong(buffer, zigzag((Integer) value));
+            } else if (value instanceof Double) {
+                buffer.put(DOUBLE);
+                buffer.putDouble((Double) value);
+            } else if (value instanceof Float) {
+                buffer.put(FLOAT);
+                buffer.putFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                buffer.put((Boolean) value ? TRUE : FALSE);
+            } else {
+                buffer.put(STRING);
+                putString(buffer, value.toString());
+            }
+        }
+    }
+
+    private void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            putVarLong(buffer, NULL_STRING);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            putVarLong(buffer, FIRST_REFERENCE + index);
+            return;
+        }
+        if (value.length() <= maxStringLength && entries.size() < maxEntries) {
+            dictionary.put(value, entries.size());
+            entries.add(value);
+            putVarLong(buffer, NEW_ENTRY);
+        } else {
+            putVarLong(buffer, LITERAL);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarLong(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes databridge events into a self-describing binary form and back, for storage outside the data agent.
+ * <p>
+ * Attribute values are written with a one byte type tag, so events of any stream definition can be stored without
+ * knowing the definition. Strings are written as UTF-8 with their length. Events can be encoded straight into a
+ * caller's buffer, including a direct one, so that writers need no intermediate copy.
+ *
+ * @since 1.0.1
+ */
+public class EventCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private EventCodec() {
+    }
+
+    /**
+     * Encodes an event.
+     *
+     * @param event the event to encode
+     * @return the encoded event
+     */
+    public static byte[] encode(Event event) {
+        ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        while (true) {
+            try {
+                encode(event, buffer);
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            } catch (BufferOverflowException e) {
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+    }
+
+    /**
+     * Encodes an event into a buffer from its position.
+     *
+     * @param event  the event to encode
+     * @param buffer the buffer to encode into
+     * @throws BufferOverflowException if the event does not fit in the remaining buffer, in which case the position
+     *                                 of the buffer is undefined
+     */
+    public static void encode(Event event, ByteBuffer buffer) {
+        buffer.put(VERSION);
+        putString(buffer, event.getStreamId());
+        buffer.putLong(event.getTimeStamp());
+        putArray(buffer, event.getMetaData());
+        putArray(buffer, event.getCorrelationData());
+        putArray(buffer, event.getPayloadData());
+        Map<String, String> arbitraryData = event.getArbitraryDataMap();
+        if (arbitraryData == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(arbitraryData.size());
+            for (Map.Entry<String, String> entry : arbitraryData.entrySet()) {
+                putString(buffer, entry.getKey());
+                putString(buffer, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Decodes an event.
+     *
+     * @param buffer the buffer holding the encoded event from its position
+     * @return the decoded event
+     * @throws IllegalArgumentException if the buffer does not hold an encoded event
+     */
+    public static Event decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown event encoding version " + version);
+        }
+        String streamId = getString(buffer);
+        long timeStamp = buffer.getLong();
+        Object[] metaData = getArray(buffer);
+        Object[] correlationData = getArray(buffer);
+        Object[] payloadData = getArray(buffer);
+        int size = buffer.getInt();
+        Map<String, String> arbitraryData = null;
+        if (size >= 0) {
+            arbitraryData = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                arbitraryData.put(getString(buffer), getString(buffer));
+            }
+        }
+        return new Event(streamId, timeStamp, metaData, correlationData, payloadData, arbitraryData);
+    }
+
+    private static void putArray(ByteBuffer buffer, Object[] values) {
+        if (values == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(values.length);
+        for (Object value : values) {
+            if (value == null) {
+                buffer.put(NULL);
+            } else if (value instanceof String) {
+                buffer.put(STRING);
+                putString(buffer, (String) value);
+            } else if (value instanceof Long) {
+                buffer.put(LONG);
+                buffer.putLong((Long) value);
+            } else if (value instanceof Integer) {
+                buffer.put(INTEGER);
+                buffer.putInt((Integer) value);
+            } else if (value instanceof Double) {
+                buffer.put(DOUBLE);
+                buffer.putDouble((Double) value);
+            } else if (value instanceof Float) {
+                buffer.put(FLOAT);
+                buffer.putFloat((Float) value);
+            } else if (value instanceof Boolean) {
+                buffer.put(BOOLEAN);
+                buffer.put((byte) ((Boolean) value ? 1 : 0));
+            } else {
+                buffer.put(STRING);
+                putString(buffer, value.toString());
+            }
+        }
+    }
+
+    private static Object[] getArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Array of " + length + " values exceeds the encoded event");
+        }
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            byte type = buffer.get();
+            switch (type) {
+                case NULL:
+                    break;
+                case STRING:
+                    values[i] = getString(buffer);
+                    break;
+                case LONG:
+                    values[i] = buffer.getLong();
+                    break;
+                case INTEGER:
+                    values[i] = buffer.getInt();
+                    break;
+                case DOUBLE:
+                    values[i] = buffer.getDouble();
+                    break;
+                case FLOAT:
+                    values[i] = buffer.getFloat();
+                    break;
+                case BOOLEAN:
+                    values[i] = buffer.get() != 0;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown attribute type " + type);
+            }
+        }
+        return values;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("String of " + length + " bytes exceeds the encoded event");
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
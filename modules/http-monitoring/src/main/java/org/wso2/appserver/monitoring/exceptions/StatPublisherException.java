@@ -23,6 +23,15 @@ package org.wso2.appserver.monitoring.exceptions;
  * @since 1.0.0
  */
 public class StatPublisherException extends Exception {
+    /**
+     * Exception to be thrown when an error occurs in the statistics publisher module.
+     *
+     * @param message the detail message
+     */
+    public StatPublisherException(String message) {
+        super(message);
+    }
+
     /**
      * Exception to be thrown when an error occurs in the statistics publisher module.
      *
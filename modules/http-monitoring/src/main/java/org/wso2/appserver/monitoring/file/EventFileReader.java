@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+import org.wso2.appserver.monitoring.codec.DictionaryEventDecoder;
+import org.wso2.appserver.monitoring.codec.EventCodec;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the events of a file written by the {@link EventFileWriter}.
+ * <p>
+ * Files of format version 1, whose events are encoded by the {@link EventCodec}, are read as well. Reading stops at a
+ * torn last record, as left by a crash or in a file that is still being written. Run as a tool to print the events of
+ * files, or of all completed files in directories, one per line:
+ * <pre>
+ * java -cp http-monitoring.jar:... org.wso2.appserver.monitoring.file.EventFileReader &lt;file or directory&gt;...
+ * </pre>
+ *
+ * @since 1.0.1
+ */
+public class EventFileReader implements Iterator<Event>, Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final DictionaryEventDecoder decoder;
+
+    /**
+     * @param path the file to read
+     * @throws IOException if the file cannot be read or is not an event file
+     */
+    public EventFileReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Event file " + path + " is too large to read: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < EventFileWriter.HEADER_BYTES || buffer.getInt() != EventFileWriter.MAGIC) {
+                throw new IOException(path + " is not an event file");
+            }
+            byte version = buffer.get();
+            if (version == EventFileWriter.FORMAT_VERSION) {
+                decoder = new DictionaryEventDecoder();
+            } else if (version == 1) {
+                decoder = null;
+            } else {
+                throw new IOException("Unknown format version " + version + " of event file " + path);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (buffer.remaining() < 4) {
+            return false;
+        }
+        int length = buffer.getInt(buffer.position());
+        return length > 0 && length <= buffer.remaining() - 4;
+    }
+
+    @Override
+    public Event next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int length = buffer.getInt();
+        ByteBuffer record = buffer.slice();
+        record.limit(length);
+        buffer.position(buffer.position() + length);
+        return (decoder != null) ? decoder.decode(record) : EventCodec.decode(record);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8.name());
+        if (args.length == 0) {
+            out.println("Usage: " + EventFileReader.class.getName() + " <file or directory>...");
+        }
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                for (Path file : EventFileWriter.listFiles(path)) {
+                    print(file, out);
+                }
+            } else {
+                print(path, out);
+            }
+        }
+        out.flush();
+    }
+
+    private static void print(Path path, PrintStream out) throws IOException {
+        try (EventFileReader reader = new EventFileReader(path)) {
+            while (reader.hasNext()) {
+                out.println(reader.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.codec.DictionaryEventEncoder;
+import org.wso2.appserver.monitoring.utils.DirectoryLock;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes events to rolling files in a directory, in a compact length-prefixed binary format.
+ * <p>
+ * A file starts with the {@link #MAGIC} number and the format version, followed by records of a four byte length and
+ * an event encoded by a {@link DictionaryEventEncoder}. Each file has a dictionary of its own, so that a file can be
+ * read without any other. Events are encoded straight into a few direct buffers, which are written to the file with
+ * one gathering write when they are full or when the writer is flushed.
+ * <p>
+ * The file being written has the {@link #OPEN_SUFFIX}. When it reaches the size limit or the rotation interval, it is
+ * renamed to end in {@link #FILE_SUFFIX}, so a shipping agent can pick up completed files only. The oldest completed
+ * files are deleted beyond the configured number of files. The writer locks its directory until it is closed, so a
+ * second writer cannot complete or delete the files of the first.
+ *
+ * @since 1.0.1
+ */
+public class EventFileWriter implements Closeable {
+
+    public static final int MAGIC = 0x484D4556;
+    public static final byte FORMAT_VERSION = 2;
+    public static final String FILE_PREFIX = "http-stats-";
+    public static final String FILE_SUFFIX = ".hme";
+    public static final String OPEN_SUFFIX = FILE_SUFFIX + ".open";
+    static final int HEADER_BYTES = 5;
+
+    private static final Log LOG = LogFactory.getLog(EventFileWriter.class);
+    private static final int BUFFER_CHUNKS = 4;
+    private static final int LENGTH_BYTES = 4;
+    private static final int MAX_DICTIONARY_STRING_LENGTH = 1024;
+
+    private final Path directory;
+    private final DirectoryLock lock;
+    private final long maxFileBytes;
+    private final long rotateNanos;
+    private final int maxFiles;
+    private final FsyncPolicy fsyncPolicy;
+    private final int dictionarySize;
+    private final ByteBuffer[] chunks;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    private int currentChunk;
+    private FileChannel channel;
+    private DictionaryEventEncoder encoder;
+    private Path openPath;
+    private long fileBytes;
+    private long fileOpenedAt;
+    private int sequence;
+    private long writtenEvents;
+
+    /**
+     * @param directory      the directory to write files to, which is created if missing
+     * @param bufferBytes    the total size of the write buffers
+     * @param maxFileBytes   the size at which a file is completed
+     * @param rotateNanos    the age at which a file is completed
+     * @param maxFiles       the number of completed files to keep, or 0 to keep all
+     * @param fsyncPolicy    when written events are forced to the storage device
+     * @param dictionarySize the number of distinct strings in the dictionary of a file
+     * @throws IOException if the directory cannot be created or another writer holds it
+     */
+    public EventFileWriter(Path directory, int bufferBytes, long maxFileBytes, long rotateNanos, int maxFiles,
+            FsyncPolicy fsyncPolicy, int dictionarySize) throws IOException {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.rotateNanos = rotateNanos;
+        this.maxFiles = maxFiles;
+        this.fsyncPolicy = fsyncPolicy;
+        this.dictionarySize = dictionarySize;
+        this.chunks = new ByteBuffer[BUFFER_CHUNKS];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(Math.max(4096, bufferBytes / BUFFER_CHUNKS));
+        }
+        Files.createDirectories(directory);
+        this.lock = DirectoryLock.acquire(directory);
+        try {
+            completeOpenFiles();
+        } catch (IOException | RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an event, starting a new file first if the current one is complete.
+     *
+     * @param event the event to append
+     * @throws IOException if a file cannot be written
+     */
+    public synchronized void append(Event event) throws IOException {
+        if (channel == null || fileBytes >= maxFileBytes || System.nanoTime() - fileOpenedAt >= rotateNanos) {
+            rotate(true);
+        }
+        if (!encode(event, chunks[currentChunk])) {
+            if (currentChunk == chunks.length - 1) {
+                flush();
+            } else {
+                currentChunk++;
+            }
+            if (!encode(event, chunks[currentChunk])) {
+                appendLarge(event);
+            }
+        }
+        writtenEvents++;
+    }
+
+    /**
+     * Appends events, taking the lock once for all of them.
+     *
+     * @param events the events to append
+     * @throws IOException if a file cannot be written
+     */
+    public synchronized void appendAll(Event[] events) throws IOException {
+        for (Event event : events) {
+            append(event);
+        }
+    }
+
+    /**
+     * Encodes a length-prefixed record into a chunk.
+     *
+     * @return true if the record fit in the chunk
+     */
+    private boolean encode(Event event, ByteBuffer chunk) {
+        int start = chunk.position();
+        try {
+            chunk.position(start + LENGTH_BYTES);
+            encoder.encode(event, chunk);
+        } catch (BufferOverflowException | IllegalArgumentException e) {
+            // the record, or the length before it, does not fit in the chunk
+            chunk.position(start);
+            return false;
+        }
+        int length = chunk.position() - start - LENGTH_BYTES;
+        chunk.putInt(start, length);
+        fileBytes += LENGTH_BYTES + length;
+        return true;
+    }
+
+    /**
+     * Writes a record that does not fit in an empty chunk straight to the file.
+     */
+    private void appendLarge(Event event) throws IOException {
+        flush();
+        byte[] record = encoder.encode(event);
+        ByteBuffer length = ByteBuffer.allocate(LENGTH_BYTES).putInt(0, record.length);
+        write(new ByteBuffer[] { length, ByteBuffer.wrap(record) }, 2);
+        fileBytes += LENGTH_BYTES + record.length;
+    }
+
+    /**
+     * Writes the buffered records to the current file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        int filled = (chunks[currentChunk].position() > 0) ? currentChunk + 1 : currentChunk;
+        currentChunk = 0;
+        if (filled == 0 || channel == null) {
+            return;
+        }
+        for (int i = 0; i < filled; i++) {
+            chunks[i].flip();
+        }
+        try {
+            write(chunks, filled);
+        } finally {
+            for (int i = 0; i < filled; i++) {
+                chunks[i].clear();
+            }
+        }
+        if (fsyncPolicy == FsyncPolicy.FLUSH) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Flushes the buffered records, and completes the current file if it has reached the rotation interval.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void flushOrRotate() throws IOException {
+        if (channel != null && System.nanoTime() - fileOpenedAt >= rotateNanos) {
+            rotate(false);
+        } else {
+            flush();
+        }
+    }
+
+    private void write(ByteBuffer[] buffers, int count) throws IOException {
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, 0, count);
+        }
+    }
+
+    /**
+     * Completes the current file, if any, and optionally starts the next one.
+     */
+    private void rotate(boolean openNext) throws IOException {
+        if (channel != null) {
+            flush();
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+            channel.close();
+            channel = null;
+            complete(openPath);
+            deleteOldFiles();
+        }
+        if (!openNext) {
+            return;
+        }
+        String name = FILE_PREFIX + System.currentTimeMillis() + "-" + String.format("%03d", sequence++ % 1000);
+        openPath = directory.resolve(name + OPEN_SUFFIX);
+        channel = FileChannel.open(openPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        header.clear();
+        header.putInt(MAGIC).put(FORMAT_VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        encoder = new DictionaryEventEncoder(dictionarySize, MAX_DICTIONARY_STRING_LENGTH);
+        fileBytes = HEADER_BYTES;
+        fileOpenedAt = System.nanoTime();
+    }
+
+    private void complete(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        Path completed = path.resolveSibling(name.substring(0, name.length() - OPEN_SUFFIX.length()) + FILE_SUFFIX);
+        Files.move(path, completed, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Completes files left open by a previous run. Their last record may be torn, which readers tolerate.
+     */
+    private void completeOpenFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + OPEN_SUFFIX)) {
+            for (Path path : stream) {
+                complete(path);
+            }
+        }
+    }
+
+    private void deleteOldFiles() {
+        if (maxFiles <= 0) {
+            return;
+        }
+        try {
+            List<Path> files = listFiles(directory);
+            for (int i = 0; i < files.size() - maxFiles; i++) {
+                Files.deleteIfExists(files.get(i));
+            }
+        } catch (IOException e) {
+            LOG.warn("Deleting old statistics files from " + directory + " failed: " + e);
+        }
+    }
+
+    /**
+     * Lists the completed event files in a directory, oldest first.
+     *
+     * @param directory the directory to list
+     * @return the completed files
+     * @throws IOException if the directory cannot be read
+     */
+    public static List<Path> listFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                files.add(path);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public synchronized long getWrittenCount() {
+        return writtenEvents;
+    }
+
+    /**
+     * Writes the buffered records, completes the current file and releases the directory.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            rotate(false);
+        } catch (IOException e) {
+            LOG.error("Closing statistics file " + openPath + " failed: " + e);
+        }
+        try {
+            lock.close();
+        } catch (IOException e) {
+            LOG.warn("Releasing the lock of " + directory + " failed: " + e);
+        }
+    }
+}
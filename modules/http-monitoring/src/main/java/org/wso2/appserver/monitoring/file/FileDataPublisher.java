@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.configuration.listeners.ServerConfigurationLoader;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.SnapshotDataPublisher;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.utils.EventBuilder;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of data publisher that writes events to rolling binary files on local disk, for nodes without DAS
+ * or as a first hop for an agent that ships the files later. Files are read back with the {@link EventFileReader}.
+ * <p>
+ * Events are buffered by the {@link EventFileWriter} and a scheduler thread flushes them periodically, so an idle
+ * node still writes out its last events. The last file is completed when the publisher is closed, which the
+ * {@link org.wso2.appserver.monitoring.PublisherRegistry} does once the last web application using it stops.
+ * Publishing through the asynchronous dispatcher keeps file writes off request threads.
+ *
+ * @since 1.0.1
+ */
+public class FileDataPublisher implements SnapshotDataPublisher, AutoCloseable {
+
+    private static final Log LOG = LogFactory.getLog(FileDataPublisher.class);
+    public static final String DIRECTORY = "http.monitoring.file.directory";
+    public static final String BUFFER_KILOBYTES = "http.monitoring.file.bufferKilobytes";
+    public static final String MAX_FILE_MEGABYTES = "http.monitoring.file.maxFileMegabytes";
+    public static final String ROTATE_MINUTES = "http.monitoring.file.rotateMinutes";
+    public static final String MAX_FILES = "http.monitoring.file.maxFiles";
+    public static final String FLUSH_INTERVAL_MILLIS = "http.monitoring.file.flushIntervalMillis";
+    public static final String FSYNC = "http.monitoring.file.fsync";
+    public static final String DICTIONARY_SIZE = "http.monitoring.file.dictionarySize";
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final String streamId;
+    private final EventFileWriter writer;
+    private final ScheduledExecutorService scheduler;
+
+    public FileDataPublisher() throws StatPublisherException {
+        this(ServerConfigurationLoader.getServerConfiguration().getStatsPublisherConfiguration().getStreamId(),
+                MonitoringConfiguration.getInstance());
+    }
+
+    FileDataPublisher(String streamId, MonitoringConfiguration configuration) throws StatPublisherException {
+        this.streamId = streamId;
+        Path directory = Paths.get(configuration.getString(DIRECTORY, getDefaultDirectory()));
+        try {
+            writer = new EventFileWriter(directory,
+                    (int) Math.min(Integer.MAX_VALUE, configuration.getLong(BUFFER_KILOBYTES, 1024) * 1024),
+                    configuration.getLong(MAX_FILE_MEGABYTES, 128) * 1024 * 1024,
+                    TimeUnit.MINUTES.toNanos(configuration.getLong(ROTATE_MINUTES, 60)),
+                    configuration.getInt(MAX_FILES, 100),
+                    configuration.getEnum(FSYNC, FsyncPolicy.class, FsyncPolicy.ROTATE),
+                    configuration.getInt(DICTIONARY_SIZE, 65536));
+        } catch (IOException e) {
+            LOG.error("Opening the statistics file directory " + directory + " failed: " + e);
+            throw new StatPublisherException("Opening the statistics file directory " + directory + " failed: ", e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-stats-file-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalMillis = Math.max(1, configuration.getLong(FLUSH_INTERVAL_MILLIS, 1000));
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(RequestSnapshot snapshot) throws IOException {
+        writer.append(buildEvent(snapshot));
+    }
+
+    @Override
+    public void publishBatch(List<RequestSnapshot> snapshots) throws IOException {
+        Event[] events = new Event[snapshots.size()];
+        for (int i = 0; i < events.length; i++) {
+            events[i] = buildEvent(snapshots.get(i));
+        }
+        writer.appendAll(events);
+    }
+
+    private Event buildEvent(RequestSnapshot snapshot) throws IOException {
+        try {
+            return EventBuilder.buildEvent(streamId, snapshot);
+        } catch (StatPublisherException e) {
+            LOG.error("Creating the Event failed: " + e);
+            throw new IOException("Creating the Event failed: " + e);
+        }
+    }
+
+    private void flush() {
+        try {
+            writer.flushOrRotate();
+        } catch (IOException e) {
+            LOG.error("Writing statistics events to file failed: " + e);
+        }
+    }
+
+    /**
+     * Stops the periodic flush, then writes the buffered events and completes the current file.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("The statistics file flush did not stop in " + STOP_TIMEOUT_MILLIS + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+    }
+
+    private static String getDefaultDirectory() {
+        String base = System.getProperty("catalina.base", System.getProperty("java.io.tmpdir"));
+        return Paths.get(base, "logs", "http-stats").toString();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+/**
+ * When the event file exporter forces written events to the storage device.
+ *
+ * @since 1.0.1
+ */
+public enum FsyncPolicy {
+    /**
+     * Never; the operating system writes the files back in its own time.
+     */
+    NEVER,
+
+    /**
+     * When a file is completed, before it is renamed for shipping.
+     */
+    ROTATE,
+
+    /**
+     * After every flush of the write buffer, and when a file is completed.
+     */
+    FLUSH
+}
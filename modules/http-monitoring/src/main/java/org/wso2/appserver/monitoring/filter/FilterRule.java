@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+/**
+ * One compiled rule of a {@link PublishFilter}. Conditions that are not given match every request.
+ *
+ * @since 1.0.1
+ */
+class FilterRule {
+
+    final boolean include;
+    final String[] contentTypes;
+    final String[] methods;
+    final int minStatus;
+    final int maxStatus;
+    final long minLatencyNanos;
+    final String[] pathPrefixes;
+    final PathGlob[] pathGlobs;
+    final String source;
+
+    /**
+     * @param pathPrefixes the plain path prefixes of the rule, only checked here if the rule has path globs as well
+     * @param pathGlobs    the path globs of the rule, or null if it has none
+     */
+    FilterRule(boolean include, String[] contentTypes, String[] methods, int minStatus, int maxStatus,
+            long minLatencyNanos, String[] pathPrefixes, PathGlob[] pathGlobs, String source) {
+        this.include = include;
+        this.contentTypes = contentTypes;
+        this.methods = methods;
+        this.minStatus = minStatus;
+        this.maxStatus = maxStatus;
+        this.minLatencyNanos = minLatencyNanos;
+        this.pathPrefixes = pathPrefixes;
+        this.pathGlobs = pathGlobs;
+        this.source = source;
+    }
+
+    /**
+     * Checks the conditions of the rule other than path prefixes, which are matched by the {@link PathTrie}. Globs are
+     * checked here, and if the rule has any, so are the prefixes, as the trie only tells that one of them matched.
+     */
+    boolean matches(String uri, String method, int status, String contentType, long latencyNanos) {
+        if (status < minStatus || status > maxStatus || latencyNanos < minLatencyNanos) {
+            return false;
+        }
+        if (methods != null && !equalsAny(method, methods)) {
+            return false;
+        }
+        if (contentTypes != null && !containsAny(contentType, contentTypes)) {
+            return false;
+        }
+        return pathGlobs == null || (uri != null && matchesPath(uri));
+    }
+
+    private boolean matchesPath(String uri) {
+        for (String prefix : pathPrefixes) {
+            if (uri.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (PathGlob glob : pathGlobs) {
+            if (glob.matches(uri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equalsAny(String value, String[] candidates) {
+        for (String candidate : candidates) {
+            if (candidate.equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsAny(String value, String[] candidates) {
+        if (value == null) {
+            return false;
+        }
+        for (String candidate : candidates) {
+            for (int i = 0; i <= value.length() - candidate.length(); i++) {
+                if (value.regionMatches(true, i, candidate, 0, candidate.length())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+/**
+ * A path glob of a {@link PublishFilter} rule, in which {@code *} and {@code ?} match within a path segment and
+ * {@code **} across segments.
+ * <p>
+ * The literal prefix before the first wildcard is left to the {@link PathTrie}, so only URIs starting with it are
+ * matched here, from the end of the prefix. The matcher walks the URI once and backtracks only to the last wildcard,
+ * without allocating.
+ *
+ * @since 1.0.1
+ */
+class PathGlob {
+
+    private final String glob;
+    private final int prefixLength;
+
+    PathGlob(String glob) {
+        this.glob = glob;
+        int wildcard = glob.length();
+        for (int i = 0; i < glob.length(); i++) {
+            if (isWildcard(glob.charAt(i))) {
+                wildcard = i;
+                break;
+            }
+        }
+        this.prefixLength = wildcard;
+    }
+
+    static boolean isGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (isWildcard(path.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the literal prefix before the first wildcard, which every matching URI starts with
+     */
+    String getPrefix() {
+        return glob.substring(0, prefixLength);
+    }
+
+    /**
+     * @param uri the requested URI
+     * @return true if the whole URI matches the glob
+     */
+    boolean matches(String uri) {
+        if (!uri.regionMatches(0, glob, 0, prefixLength)) {
+            return false;
+        }
+        int g = prefixLength;
+        int u = prefixLength;
+        // the positions to resume from when the last * or ** has to match one more character
+        int segmentStarGlob = -1;
+        int segmentStarUri = -1;
+        int deepStarGlob = -1;
+        int deepStarUri = -1;
+        while (u < uri.length()) {
+            char expected = (g < glob.length()) ? glob.charAt(g) : 0;
+            if (expected == '*' && g + 1 < glob.length() && glob.charAt(g + 1) == '*') {
+                g += 2;
+                deepStarGlob = g;
+                deepStarUri = u;
+                segmentStarGlob = -1;
+            } else if (expected == '*') {
+                g++;
+                segmentStarGlob = g;
+                segmentStarUri = u;
+            } else if (g < glob.length() && (expected == '?' ? uri.charAt(u) != '/' : expected == uri.charAt(u))) {
+                g++;
+                u++;
+            } else if (segmentStarGlob >= 0 && uri.charAt(segmentStarUri) != '/') {
+                g = segmentStarGlob;
+                u = ++segmentStarUri;
+            } else if (deepStarGlob >= 0) {
+                g = deepStarGlob;
+                u = ++deepStarUri;
+                segmentStarGlob = -1;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+
+    private static boolean isWildcard(char character) {
+        return character == '*' || character == '?';
+    }
+
+    @Override
+    public String toString() {
+        return glob;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+import java.util.Arrays;
+
+/**
+ * A character trie of path prefixes that finds, in one pass over a URI, the rules whose prefix the URI starts with.
+ * Rules are identified by their bit in a {@code long}.
+ *
+ * @since 1.0.1
+ */
+class PathTrie {
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a path prefix of a rule.
+     *
+     * @param prefix the path prefix
+     * @param rule   the bit of the rule
+     */
+    void add(String prefix, long rule) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.getOrAddChild(prefix.charAt(i));
+        }
+        node.rules |= rule;
+    }
+
+    /**
+     * @param uri the requested URI
+     * @return the bits of the rules having a prefix of the URI
+     */
+    long match(String uri) {
+        Node node = root;
+        long rules = node.rules;
+        for (int i = 0; i < uri.length() && node != null; i++) {
+            node = node.getChild(uri.charAt(i));
+            if (node != null) {
+                rules |= node.rules;
+            }
+        }
+        return rules;
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private long rules;
+
+        Node getChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(char key) {
+            Node child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = key;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+import org.apache.catalina.connector.Request;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which served requests of a web application are published, from an ordered list of include and exclude
+ * rules. The first rule matching a request decides; requests that match no rule get the default action.
+ * <p>
+ * Rules are read from the numbered properties {@code http.monitoring.filter.rule.1}, {@code .2} and so on, each an
+ * action followed by conditions, all of which must hold:
+ * <pre>
+ * include contentType=application/json,text/html status=200-399
+ * exclude path=/static/,/**&#47;*.css method=GET
+ * include minLatencyMillis=1000
+ * </pre>
+ * <ul>
+ * <li>{@code contentType}: the response content type contains one of the values, ignoring case</li>
+ * <li>{@code path}: the URI starts with one of the prefixes, or matches one of the globs, in which {@code *} and
+ * {@code ?} match within a path segment and {@code **} across segments</li>
+ * <li>{@code method}: the method is one of the values</li>
+ * <li>{@code status}: the status is in a range such as {@code 500-599}, a class such as {@code 4xx}, or equal</li>
+ * <li>{@code minLatencyMillis}: the web application took at least this long</li>
+ * </ul>
+ * When no rule is configured, the filter publishes text/html responses only, as earlier versions did.
+ * <p>
+ * Rules are compiled once per web application. Path prefixes of all rules, and the literal prefixes of their globs up
+ * to the first wildcard, go into one {@link PathTrie}, so a request costs a single pass over its URI plus a few
+ * comparisons for each rule whose prefix matched. Only the globs of those rules are matched further, by the
+ * allocation-free {@link PathGlob}.
+ *
+ * @since 1.0.1
+ */
+public class PublishFilter {
+
+    public static final String RULE_PREFIX = "http.monitoring.filter.rule.";
+    public static final String DEFAULT_ACTION = "http.monitoring.filter.default";
+    static final String DEFAULT_RULE = "include contentType=text/html";
+    private static final int MAX_RULES = Long.SIZE;
+    private static final Log LOG = LogFactory.getLog(PublishFilter.class);
+
+    private final FilterRule[] rules;
+    private final PathTrie pathTrie = new PathTrie();
+    private final long rulesWithoutPrefix;
+    private final boolean includeByDefault;
+
+    public PublishFilter(MonitoringConfiguration configuration) {
+        this(readRules(configuration), "include".equalsIgnoreCase(configuration.getString(DEFAULT_ACTION,
+                "exclude")));
+    }
+
+    PublishFilter(List<String> sources, boolean includeByDefault) {
+        List<FilterRule> compiled = new ArrayList<>();
+        long withoutPrefix = 0;
+        for (String source : sources) {
+            if (compiled.size() == MAX_RULES) {
+                LOG.error("Only " + MAX_RULES + " publish filter rules are supported, ignoring: " + source);
+                continue;
+            }
+            long bit = 1L << compiled.size();
+            try {
+                List<String> prefixes = new ArrayList<>();
+                compiled.add(compile(source, prefixes));
+                if (prefixes.isEmpty()) {
+                    withoutPrefix |= bit;
+                }
+                prefixes.forEach(prefix -> pathTrie.add(prefix, bit));
+            } catch (IllegalArgumentException e) {
+                LOG.error("Ignoring invalid publish filter rule '" + source + "': " + e.getMessage());
+            }
+        }
+        this.rules = compiled.toArray(new FilterRule[compiled.size()]);
+        this.rulesWithoutPrefix = withoutPrefix;
+        this.includeByDefault = includeByDefault;
+    }
+
+    /**
+     * Returns the publish filter of the web application serving a request, compiling it on first use.
+     *
+     * @param request the Request object of client
+     * @return the publish filter of the web application
+     */
+    public static PublishFilter of(Request request) {
+        return ContextInfo.of(request.getContext()).getAttribute(PublishFilter.class, PublishFilter::new);
+    }
+
+    /**
+     * Decides whether a served request is published.
+     *
+     * @param uri          the requested URI
+     * @param method       the method of the request
+     * @param status       the status of the response
+     * @param contentType  the content type of the response
+     * @param latencyNanos the nanoseconds taken by the web application to complete the request
+     * @return true if the request is published
+     */
+    public boolean isPublished(String uri, String method, int status, String contentType, long latencyNanos) {
+        long candidates = rulesWithoutPrefix | ((uri != null) ? pathTrie.match(uri) : 0);
+        while (candidates != 0) {
+            int index = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (rules[index].matches(uri, method, status, contentType, latencyNanos)) {
+                return rules[index].include;
+            }
+        }
+        return includeByDefault;
+    }
+
+    private static List<String> readRules(MonitoringConfiguration configuration) {
+        List<String> sources = new ArrayList<>();
+        for (int i = 1; ; i++) {
+            String source = configuration.getString(RULE_PREFIX + i, null);
+            if (source == null) {
+                break;
+            }
+            sources.add(source);
+        }
+        return sources.isEmpty() ? Collections.singletonList(DEFAULT_RULE) : sources;
+    }
+
+    /**
+     * Compiles a rule.
+     *
+     * @param source   the rule
+     * @param prefixes the list to add the path prefixes of the rule to, which are left to the trie
+     * @return the compiled rule
+     */
+    private static FilterRule compile(String source, List<String> prefixes) {
+        String[] tokens = source.trim().split("\\s+");
+        boolean include;
+        if ("include".equalsIgnoreCase(tokens[0])) {
+            include = true;
+        } else if ("exclude".equalsIgnoreCase(tokens[0])) {
+            include = false;
+        } else {
+            throw new IllegalArgumentException("a rule starts with include or exclude");
+        }
+        String[] contentTypes = null;
+        String[] methods = null;
+        int minStatus = Integer.MIN_VALUE;
+        int maxStatus = Integer.MAX_VALUE;
+        long minLatencyNanos = Long.MIN_VALUE;
+        List<String> pathPrefixes = new ArrayList<>();
+        List<PathGlob> pathGlobs = new ArrayList<>();
+        for (int i = 1; i < tokens.length; i++) {
+            int separator = tokens[i].indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("expected name=value but found " + tokens[i]);
+            }
+            String name = tokens[i].substring(0, separator);
+            String[] values = Arrays.stream(tokens[i].substring(separator + 1).split(","))
+                    .filter(value -> !value.isEmpty())
+                    .toArray(String[]::new);
+            if (values.length == 0) {
+                throw new IllegalArgumentException("no value for " + name);
+            }
+            switch (name) {
+                case "contentType":
+                    contentTypes = values;
+                    break;
+                case "method":
+                    methods = values;
+                    break;
+                case "status":
+                    int[] range = parseStatus(values[0]);
+                    minStatus = range[0];
+                    maxStatus = range[1];
+                    break;
+                case "minLatencyMillis":
+                    minLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(values[0]));
+                    break;
+                case "path":
+                    for (String value : values) {
+                        if (PathGlob.isGlob(value)) {
+                            PathGlob glob = new PathGlob(value);
+                            pathGlobs.add(glob);
+                            prefixes.add(glob.getPrefix());
+                        } else {
+                            pathPrefixes.add(value);
+                            prefixes.add(value);
+                        }
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown condition " + name);
+            }
+        }
+        return new FilterRule(include, contentTypes, methods, minStatus, maxStatus, minLatencyNanos,
+                pathPrefixes.toArray(new String[pathPrefixes.size()]),
+                pathGlobs.isEmpty() ? null : pathGlobs.toArray(new PathGlob[pathGlobs.size()]), source);
+    }
+
+    private static int[] parseStatus(String status) {
+        if (status.length() == 3 && status.endsWith("xx")) {
+            int statusClass = Integer.parseInt(status.substring(0, 1)) * 100;
+            return new int[]{statusClass, statusClass + 99};
+        }
+        int separator = status.indexOf('-');
+        if (separator > 0) {
+            return new int[]{Integer.parseInt(status.substring(0, separator)),
+                    Integer.parseInt(status.substring(separator + 1))};
+        }
+        int value = Integer.parseInt(status);
+        return new int[]{value, value};
+    }
+}
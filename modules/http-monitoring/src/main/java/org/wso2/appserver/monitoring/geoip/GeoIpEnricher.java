@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.geoip;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.CidrTrie;
+import org.wso2.appserver.monitoring.utils.LruCache;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locates client addresses in local MaxMind DB files, so that events carry the country, region and autonomous system
+ * of their client without calling an external service.
+ * <p>
+ * A country or city database gives the country and region, and an optional ASN database gives the autonomous system.
+ * Both are memory-mapped by {@link MaxMindDatabase}, and locations are kept in a bounded {@link LruCache} keyed by
+ * address. A daemon thread checks the files periodically and, when one was replaced, opens the new file and swaps
+ * the databases and a new cache in at once, so a lookup never mixes two versions. A file that fails to open is logged
+ * and the previous version stays in use.
+ *
+ * @since 1.0.1
+ */
+public class GeoIpEnricher {
+
+    public static final String DATABASE = "http.monitoring.geoip.database";
+    public static final String ASN_DATABASE = "http.monitoring.geoip.asnDatabase";
+    public static final String CACHE_SIZE = "http.monitoring.geoip.cacheSize";
+    public static final String RELOAD_CHECK_SECONDS = "http.monitoring.geoip.reloadCheckSeconds";
+    private static final GeoLocation UNKNOWN = new GeoLocation(null, null, null);
+    private static final Log LOG = LogFactory.getLog(GeoIpEnricher.class);
+
+    private final int cacheSize;
+    private volatile Databases databases;
+
+    GeoIpEnricher(Path database, Path asnDatabase, int cacheSize) throws IOException {
+        this.cacheSize = cacheSize;
+        this.databases = new Databases((database != null) ? MaxMindDatabase.open(database) : null,
+                (asnDatabase != null) ? MaxMindDatabase.open(asnDatabase) : null, cacheSize);
+    }
+
+    /**
+     * Returns the enricher of the node.
+     *
+     * @return the enricher, or null if no database is configured or it cannot be opened
+     */
+    public static GeoIpEnricher getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates an enricher if a database is configured, and starts checking its files for updates.
+     *
+     * @param configuration the monitoring configuration
+     * @return the enricher, or null if no database is configured or it cannot be opened
+     */
+    static GeoIpEnricher create(MonitoringConfiguration configuration) {
+        String database = configuration.getString(DATABASE, null);
+        String asnDatabase = configuration.getString(ASN_DATABASE, null);
+        if (database == null && asnDatabase == null) {
+            return null;
+        }
+        GeoIpEnricher enricher;
+        try {
+            enricher = new GeoIpEnricher((database != null) ? Paths.get(database) : null,
+                    (asnDatabase != null) ? Paths.get(asnDatabase) : null, configuration.getInt(CACHE_SIZE, 4096));
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Opening the GeoIP databases failed, events are published without locations: " + e);
+            return null;
+        }
+        long reloadCheckSeconds = configuration.getLong(RELOAD_CHECK_SECONDS, 60);
+        if (reloadCheckSeconds > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "http-stats-geoip-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(enricher::reloadIfModified, reloadCheckSeconds, reloadCheckSeconds,
+                    TimeUnit.SECONDS);
+        }
+        return enricher;
+    }
+
+    /**
+     * @param address the IPv4 or IPv6 address of a client, may be null
+     * @return the location of the address, or null if the address is not valid or not found in any database
+     */
+    public GeoLocation locate(String address) {
+        if (address == null || !CidrTrie.isAddress(address)) {
+            return null;
+        }
+        Databases current = databases;
+        GeoLocation location = current.cache.get(address, current::lookup);
+        return (location == UNKNOWN) ? null : location;
+    }
+
+    /**
+     * Opens the database files that were replaced since they were opened, and swaps them in with an empty cache.
+     */
+    void reloadIfModified() {
+        Databases current = databases;
+        boolean locationModified = current.location != null && current.location.isModified();
+        boolean asnModified = current.asn != null && current.asn.isModified();
+        if (!locationModified && !asnModified) {
+            return;
+        }
+        try {
+            MaxMindDatabase location = locationModified ? reopen(current.location) : current.location;
+            MaxMindDatabase asn = asnModified ? reopen(current.asn) : current.asn;
+            databases = new Databases(location, asn, cacheSize);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Reloading the GeoIP databases failed, keeping the previous version: " + e);
+        }
+    }
+
+    private static MaxMindDatabase reopen(MaxMindDatabase database) throws IOException {
+        MaxMindDatabase reopened = MaxMindDatabase.open(database.getPath());
+        LOG.info("Reloaded GeoIP database " + database.getPath());
+        return reopened;
+    }
+
+    /**
+     * One version of the databases together with the locations found in it.
+     */
+    private static final class Databases {
+
+        private final MaxMindDatabase location;
+        private final MaxMindDatabase asn;
+        private final LruCache<String, GeoLocation> cache;
+
+        Databases(MaxMindDatabase location, MaxMindDatabase asn, int cacheSize) {
+            this.location = location;
+            this.asn = asn;
+            this.cache = new LruCache<>(cacheSize);
+        }
+
+        GeoLocation lookup(String address) {
+            byte[] bytes;
+            try {
+                // a validated literal is parsed without a name lookup
+                bytes = InetAddress.getByName(address).getAddress();
+            } catch (UnknownHostException e) {
+                return UNKNOWN;
+            }
+            String country = null;
+            String region = null;
+            Long number = null;
+            try {
+                int record = (location != null) ? location.findRecord(bytes) : -1;
+                if (record >= 0) {
+                    country = asString(location.get(record, "country", "iso_code"));
+                    region = asString(location.get(record, "subdivisions", "0", "iso_code"));
+                }
+                record = (asn != null) ? asn.findRecord(bytes) : -1;
+                if (record >= 0) {
+                    Object value = asn.get(record, "autonomous_system_number");
+                    number = (value instanceof Long) ? (Long) value : null;
+                }
+            } catch (RuntimeException e) {
+                // a corrupt file, or one overwritten in place instead of replaced
+                LOG.debug("Locating " + address + " failed: " + e);
+            }
+            return (country == null && region == null && number == null) ? UNKNOWN
+                    : new GeoLocation(country, region, number);
+        }
+
+        private static String asString(Object value) {
+            return (value instanceof String) ? (String) value : null;
+        }
+    }
+
+    /**
+     * Lazily creates the enricher on first use.
+     */
+    private static class Holder {
+        private static final GeoIpEnricher INSTANCE = create(MonitoringConfiguration.getInstance());
+    }
+}
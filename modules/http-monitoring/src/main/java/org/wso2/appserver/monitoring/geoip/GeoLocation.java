@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.geoip;
+
+/**
+ * The location and network of a client address, as found in the GeoIP databases.
+ *
+ * @since 1.0.1
+ */
+public class GeoLocation {
+
+    private final String country;
+    private final String region;
+    private final Long asn;
+
+    public GeoLocation(String country, String region, Long asn) {
+        this.country = country;
+        this.region = region;
+        this.asn = asn;
+    }
+
+    /**
+     * @return the ISO 3166-1 code of the country, such as {@code US}, or null if unknown
+     */
+    public String getCountry() {
+        return country;
+    }
+
+    /**
+     * @return the ISO 3166-2 code of the largest subdivision within the country, such as {@code CA}, or null if
+     * unknown
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the number of the autonomous system the address belongs to, or null if unknown
+     */
+    public Long getAsn() {
+        return asn;
+    }
+
+    @Override
+    public String toString() {
+        return country + "/" + region + "/" + asn;
+    }
+}
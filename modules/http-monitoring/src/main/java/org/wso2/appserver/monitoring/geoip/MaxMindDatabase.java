@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.geoip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only MaxMind DB (MMDB) file, such as a GeoLite2 or GeoIP2 database, mapped into memory.
+ * <p>
+ * The file is a binary search tree with one level per address bit, followed by a data section of typed values. Looking
+ * up an address walks the tree to the offset of its record, and {@link #get(int, String...)} follows a path of map
+ * keys and array indexes from that record to a single value, decoding nothing else. Reads use absolute positions of
+ * the shared mapping, so an instance is safe for concurrent lookups. The mapping stays valid when the file is replaced
+ * by renaming a new file over it, which is how database updates must be installed.
+ *
+ * @since 1.0.1
+ */
+public class MaxMindDatabase {
+
+    private static final byte[] METADATA_MARKER = {(byte) 0xAB, (byte) 0xCD, (byte) 0xEF,
+            'M', 'a', 'x', 'M', 'i', 'n', 'd', '.', 'c', 'o', 'm'};
+    private static final int METADATA_MAX_SIZE = 128 * 1024;
+    private static final int DATA_SECTION_SEPARATOR = 16;
+
+    private static final int EXTENDED = 0;
+    private static final int POINTER = 1;
+    private static final int STRING = 2;
+    private static final int DOUBLE = 3;
+    private static final int UINT16 = 5;
+    private static final int UINT32 = 6;
+    private static final int MAP = 7;
+    private static final int INT32 = 8;
+    private static final int UINT64 = 9;
+    private static final int ARRAY = 11;
+    private static final int BOOLEAN = 14;
+    private static final int FLOAT = 15;
+
+    private final Path path;
+    private final long lastModified;
+    private final long size;
+    private final ByteBuffer buffer;
+    private final int nodeCount;
+    private final int recordSize;
+    private final int ipVersion;
+    private final int dataSectionStart;
+    private final int ipv4Start;
+    private final String databaseType;
+
+    private MaxMindDatabase(Path path, long lastModified, long size, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.buffer = buffer;
+        int metadataStart = findMetadata(buffer);
+        try {
+            this.nodeCount = (int) toLong(new Decoder(metadataStart, metadataStart).find("node_count"));
+            this.recordSize = (int) toLong(new Decoder(metadataStart, metadataStart).find("record_size"));
+            this.ipVersion = (int) toLong(new Decoder(metadataStart, metadataStart).find("ip_version"));
+            Object type = new Decoder(metadataStart, metadataStart).find("database_type");
+            this.databaseType = (type instanceof String) ? (String) type : null;
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid metadata in " + path + ": " + e, e);
+        }
+        if (recordSize != 24 && recordSize != 28 && recordSize != 32) {
+            throw new IOException("Unsupported record size " + recordSize + " in " + path);
+        }
+        if (ipVersion != 4 && ipVersion != 6) {
+            throw new IOException("Unsupported IP version " + ipVersion + " in " + path);
+        }
+        long searchTreeSize = (long) nodeCount * recordSize / 4;
+        if (nodeCount <= 0 || searchTreeSize + DATA_SECTION_SEPARATOR > metadataStart) {
+            throw new IOException("Invalid node count " + nodeCount + " in " + path);
+        }
+        this.dataSectionStart = (int) searchTreeSize + DATA_SECTION_SEPARATOR;
+
+        int node = 0;
+        if (ipVersion == 6) {
+            // IPv4 addresses are stored as ::a.b.c.d, so their subtree starts after 96 zero bits
+            for (int i = 0; i < 96 && node < nodeCount; i++) {
+                node = readRecord(node, 0);
+            }
+        }
+        this.ipv4Start = node;
+    }
+
+    /**
+     * Maps a database file into memory.
+     *
+     * @param path the database file
+     * @return the database
+     * @throws IOException if the file cannot be read or is not a valid MaxMind DB file
+     */
+    public static MaxMindDatabase open(Path path) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Database " + path + " is larger than 2 GB");
+            }
+            return new MaxMindDatabase(path, lastModified, size, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * @return true if the file of the database was modified or replaced since it was opened
+     */
+    public boolean isModified() {
+        try {
+            return Files.getLastModifiedTime(path).toMillis() != lastModified || Files.size(path) != size;
+        } catch (IOException e) {
+            // a file being replaced may be missing for a moment
+            return false;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the type of the database, such as {@code GeoLite2-City}, or null if not given in its metadata
+     */
+    public String getDatabaseType() {
+        return databaseType;
+    }
+
+    /**
+     * Walks the search tree to the record of an address.
+     *
+     * @param address the 4 or 16 bytes of an address, in network order
+     * @return the offset of the record in the data section, or -1 if the database holds no record for the address
+     */
+    public int findRecord(byte[] address) {
+        int bits = address.length * 8;
+        int node;
+        if (address.length == 4) {
+            node = ipv4Start;
+        } else if (ipVersion == 6) {
+            node = 0;
+        } else {
+            return -1;
+        }
+        for (int i = 0; i < bits && node < nodeCount; i++) {
+            node = readRecord(node, (address[i >> 3] >>> (7 - (i & 7))) & 1);
+        }
+        if (node <= nodeCount) {
+            return -1;
+        }
+        return node - nodeCount - DATA_SECTION_SEPARATOR;
+    }
+
+    /**
+     * Decodes the value at a path of a record.
+     *
+     * @param record the offset of the record in the data section, as returned by {@link #findRecord(byte[])}
+     * @param path   the map keys and array indexes leading to the value, such as {@code "country", "iso_code"}
+     * @return the String, Long, Double or Boolean value, or null if the path does not lead to such a value
+     */
+    public Object get(int record, String... path) {
+        return new Decoder(dataSectionStart, dataSectionStart + record).find(path);
+    }
+
+    private int readRecord(int node, int bit) {
+        switch (recordSize) {
+            case 24:
+                return readUnsigned(node * 6 + bit * 3, 3);
+            case 28:
+                int offset = node * 7;
+                int middle = buffer.get(offset + 3) & 0xFF;
+                return (bit == 0) ? ((middle & 0xF0) << 20) | readUnsigned(offset, 3)
+                        : ((middle & 0x0F) << 24) | readUnsigned(offset + 4, 3);
+            default:
+                return readUnsigned(node * 8 + bit * 4, 4);
+        }
+    }
+
+    private int readUnsigned(int offset, int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private static int findMetadata(ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        int lowest = Math.max(0, limit - METADATA_MAX_SIZE);
+        for (int start = limit - METADATA_MARKER.length; start >= lowest; start--) {
+            int i = 0;
+            while (i < METADATA_MARKER.length && buffer.get(start + i) == METADATA_MARKER[i]) {
+                i++;
+            }
+            if (i == METADATA_MARKER.length) {
+                return start + METADATA_MARKER.length;
+            }
+        }
+        throw new IOException("Not a MaxMind DB file, the metadata marker is missing");
+    }
+
+    private static long toLong(Object value) {
+        if (!(value instanceof Long)) {
+            throw new IllegalArgumentException("expected an integer but found " + value);
+        }
+        return (Long) value;
+    }
+
+    /**
+     * Reads the values of a section from a position, where pointers are relative to the start of the section.
+     */
+    private final class Decoder {
+
+        private final int base;
+        private int position;
+        private int type;
+        private int size;
+
+        Decoder(int base, int position) {
+            this.base = base;
+            this.position = position;
+        }
+
+        Object find(String... path) {
+            for (String key : path) {
+                followPointer();
+                readControl();
+                if (type == MAP) {
+                    if (!findKey(key, size)) {
+                        return null;
+                    }
+                } else if (type == ARRAY) {
+                    int index = parseIndex(key);
+                    if (index < 0 || index >= size) {
+                        return null;
+                    }
+                    for (int i = 0; i < index; i++) {
+                        skip();
+                    }
+                } else {
+                    return null;
+                }
+            }
+            followPointer();
+            readControl();
+            return decodeValue();
+        }
+
+        private boolean findKey(String key, int entries) {
+            for (int i = 0; i < entries; i++) {
+                if (keyEquals(key)) {
+                    return true;
+                }
+                skip();
+            }
+            return false;
+        }
+
+        /**
+         * Compares the key at the position with a key of ASCII characters, moving past the key.
+         */
+        private boolean keyEquals(String key) {
+            int next = -1;
+            if (peekType() == POINTER) {
+                int target = readPointer();
+                next = position;
+                position = target;
+            }
+            readControl();
+            boolean equal = (type == STRING) && size == key.length();
+            for (int i = 0; equal && i < size; i++) {
+                equal = buffer.get(position + i) == key.charAt(i);
+            }
+            position += size;
+            if (next >= 0) {
+                position = next;
+            }
+            return equal;
+        }
+
+        /**
+         * Moves past the value at the position, including the entries of maps and arrays.
+         */
+        private void skip() {
+            if (peekType() == POINTER) {
+                readPointer();
+                return;
+            }
+            readControl();
+            // nested values overwrite the size of this one
+            int entries = size;
+            switch (type) {
+                case MAP:
+                    for (int i = 0; i < entries * 2; i++) {
+                        skip();
+                    }
+                    break;
+                case ARRAY:
+                    for (int i = 0; i < entries; i++) {
+                        skip();
+                    }
+                    break;
+                case BOOLEAN:
+                    break;
+                default:
+                    position += size;
+            }
+        }
+
+        private Object decodeValue() {
+            switch (type) {
+                case STRING:
+                    byte[] bytes = new byte[size];
+                    for (int i = 0; i < size; i++) {
+                        bytes[i] = buffer.get(position + i);
+                    }
+                    return new String(bytes, StandardCharsets.UTF_8);
+                case UINT16:
+                case UINT32:
+                case UINT64:
+                    return readLong(size);
+                case INT32:
+                    long value = readLong(size);
+                    return (long) ((size == 4) ? (int) value : value);
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong(8));
+                case FLOAT:
+                    return (double) Float.intBitsToFloat((int) readLong(4));
+                case BOOLEAN:
+                    return size != 0;
+                default:
+                    return null;
+            }
+        }
+
+        private long readLong(int length) {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = (value << 8) | (buffer.get(position + i) & 0xFF);
+            }
+            return value;
+        }
+
+        private int peekType() {
+            return (buffer.get(position) & 0xFF) >>> 5;
+        }
+
+        private void followPointer() {
+            if (peekType() == POINTER) {
+                position = readPointer();
+            }
+        }
+
+        /**
+         * Reads the pointer at the position, moving past it.
+         *
+         * @return the absolute position the pointer refers to
+         */
+        private int readPointer() {
+            int control = buffer.get(position++) & 0xFF;
+            int length = ((control >>> 3) & 0x3) + 1;
+            int value = (int) readLong(length);
+            position += length;
+            int high = control & 0x7;
+            switch (length) {
+                case 1:
+                    return base + ((high << 8) | value);
+                case 2:
+                    return base + ((high << 16) | value) + 2048;
+                case 3:
+                    return base + ((high << 24) | value) + 526336;
+                default:
+                    return base + value;
+            }
+        }
+
+        private void readControl() {
+            int control = buffer.get(position++) & 0xFF;
+            type = control >>> 5;
+            if (type == EXTENDED) {
+                type = 7 + (buffer.get(position++) & 0xFF);
+            }
+            size = control & 0x1F;
+            if (size >= 29) {
+                int length = size - 28;
+                int value = (int) readLong(length);
+                position += length;
+                size = (size == 29) ? 29 + value : (size == 30) ? 285 + value : 65821 + value;
+            }
+        }
+
+        private int parseIndex(String key) {
+            try {
+                return Integer.parseInt(key);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.heavyhitters;
+
+import org.apache.catalina.connector.Request;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.Constants;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.cardinality.CountMinSketch;
+import org.wso2.appserver.monitoring.route.RouteTemplates;
+import org.wso2.appserver.monitoring.utils.ClientAddressResolver;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The most frequent client addresses, route templates, users and user agents of the requests of a web application
+ * over the last one and five minutes, registered as an MBean named
+ * {@code org.wso2.appserver.monitoring:type=HeavyHitters,host=<host>,context=<context>} and served by the OpenMetrics
+ * listener.
+ * <p>
+ * Each of them is tracked by a {@link SlidingTopK} of one minute buckets, so the memory taken is fixed: about
+ * {@code 4 * 6 * 16 * sketchWidth} bytes per web application, 384 KB for the default width. Client addresses are
+ * resolved through the {@link ClientAddressResolver} and requested URIs are tracked as their {@link RouteTemplates}.
+ * Requests without an authenticated user are not counted for users. The MBean is unregistered when the context stops.
+ *
+ * @since 1.0.1
+ */
+public class HeavyHitters implements HeavyHittersMBean, Closeable {
+
+    public static final String ENABLED = "http.monitoring.heavyHitters.enabled";
+    public static final String TOP_K = "http.monitoring.heavyHitters.topK";
+    public static final String SKETCH_WIDTH = "http.monitoring.heavyHitters.sketchWidth";
+    private static final String DOMAIN = "org.wso2.appserver.monitoring";
+    private static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_WINDOW_MINUTES = 5;
+    private static final Log LOG = LogFactory.getLog(HeavyHitters.class);
+    private static final Set<HeavyHitters> REGISTRY = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The request properties whose most frequent values are tracked.
+     */
+    public enum Dimension {
+        CLIENT_IP("clientIp"), URI("uri"), USER("user"), USER_AGENT("userAgent");
+
+        private final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the name of the dimension in metric labels
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final String hostName;
+    private final String contextName;
+    private final ClientAddressResolver clientAddressResolver;
+    private final SlidingTopK[] tops = new SlidingTopK[Dimension.values().length];
+
+    HeavyHitters(String hostName, String contextName, ClientAddressResolver clientAddressResolver,
+                 MonitoringConfiguration configuration) {
+        this.hostName = hostName;
+        this.contextName = contextName;
+        this.clientAddressResolver = clientAddressResolver;
+        int size = configuration.getInt(TOP_K, 10);
+        int sketchWidth = configuration.getInt(SKETCH_WIDTH, CountMinSketch.DEFAULT_WIDTH);
+        for (int i = 0; i < tops.length; i++) {
+            tops[i] = new SlidingTopK(size, sketchWidth, BUCKET_MILLIS, MAX_WINDOW_MINUTES);
+        }
+    }
+
+    /**
+     * Returns the heavy hitters of the web application serving a request, creating and registering them on first use.
+     *
+     * @param request the Request object of client
+     * @return the heavy hitters of the web application
+     */
+    public static HeavyHitters of(Request request) {
+        ContextInfo contextInfo = ContextInfo.of(request.getContext());
+        return contextInfo.getAttribute(HeavyHitters.class, configuration -> register(new HeavyHitters(
+                contextInfo.getHostName(), contextInfo.getName(), ClientAddressResolver.of(contextInfo),
+                configuration)));
+    }
+
+    private static HeavyHitters register(HeavyHitters heavyHitters) {
+        REGISTRY.add(heavyHitters);
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = heavyHitters.getObjectName();
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(heavyHitters, objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Registering the heavy hitters of " + heavyHitters.hostName + heavyHitters.contextName
+                    + " failed: " + e);
+        }
+        return heavyHitters;
+    }
+
+    /**
+     * @return the heavy hitters of every running web application
+     */
+    public static Collection<HeavyHitters> getRegistered() {
+        return REGISTRY;
+    }
+
+    /**
+     * Counts the client address, route template, user and user agent of a request.
+     *
+     * @param request     the Request object of client
+     * @param uriTemplate the route template of the requested URI, may be null
+     */
+    public void record(Request request, String uriTemplate) {
+        record(clientAddressResolver.resolve(request), uriTemplate, request.getRemoteUser(),
+                request.getHeader(Constants.USER_AGENT), System.currentTimeMillis());
+    }
+
+    void record(String clientIp, String uriTemplate, String user, String userAgent, long timeMillis) {
+        tops[Dimension.CLIENT_IP.ordinal()].add(clientIp, timeMillis);
+        tops[Dimension.URI.ordinal()].add(uriTemplate, timeMillis);
+        tops[Dimension.USER.ordinal()].add(user, timeMillis);
+        tops[Dimension.USER_AGENT.ordinal()].add(userAgent, timeMillis);
+    }
+
+    public String getContextName() {
+        return contextName;
+    }
+
+    /**
+     * @param dimension the tracked request property
+     * @param minutes   the length of the window ending now, 1 to 5 minutes
+     * @return the most frequent values of the window with their estimated counts, most frequent first
+     */
+    public List<HeavyHitter> getTop(Dimension dimension, int minutes) {
+        return getTop(dimension, minutes, System.currentTimeMillis());
+    }
+
+    List<HeavyHitter> getTop(Dimension dimension, int minutes, long timeMillis) {
+        return tops[dimension.ordinal()].getTop(minutes, timeMillis);
+    }
+
+    @Override
+    public String[] getTopClientIps1m() {
+        return toStrings(getTop(Dimension.CLIENT_IP, 1));
+    }
+
+    @Override
+    public String[] getTopClientIps5m() {
+        return toStrings(getTop(Dimension.CLIENT_IP, 5));
+    }
+
+    @Override
+    public String[] getTopUris1m() {
+        return toStrings(getTop(Dimension.URI, 1));
+    }
+
+    @Override
+    public String[] getTopUris5m() {
+        return toStrings(getTop(Dimension.URI, 5));
+    }
+
+    @Override
+    public String[] getTopUsers1m() {
+        return toStrings(getTop(Dimension.USER, 1));
+    }
+
+    @Override
+    public String[] getTopUsers5m() {
+        return toStrings(getTop(Dimension.USER, 5));
+    }
+
+    @Override
+    public String[] getTopUserAgents1m() {
+        return toStrings(getTop(Dimension.USER_AGENT, 1));
+    }
+
+    @Override
+    public String[] getTopUserAgents5m() {
+        return toStrings(getTop(Dimension.USER_AGENT, 5));
+    }
+
+    private static String[] toStrings(List<HeavyHitter> heavyHitters) {
+        return heavyHitters.stream().map(HeavyHitter::toString).toArray(String[]::new);
+    }
+
+    private ObjectName getObjectName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=HeavyHitters,host=" + ObjectName.quote(hostName) + ",context="
+                + ObjectName.quote(contextName));
+    }
+
+    /**
+     * Removes the web application from the registry and unregisters its MBean.
+     */
+    @Override
+    public void close() {
+        REGISTRY.remove(this);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName());
+        } catch (JMException e) {
+            LOG.debug("Unregistering the heavy hitters of " + hostName + contextName + " failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.heavyhitters;
+
+/**
+ * Management interface of the {@link HeavyHitters} of a web application. Each attribute lists the most frequent
+ * values of the last one or five minutes, most frequent first, as their estimated request count followed by the value.
+ *
+ * @since 1.0.1
+ */
+public interface HeavyHittersMBean {
+
+    String[] getTopClientIps1m();
+
+    String[] getTopClientIps5m();
+
+    /**
+     * @return the most requested route templates of the last minute
+     */
+    String[] getTopUris1m();
+
+    String[] getTopUris5m();
+
+    /**
+     * @return the authenticated users with the most requests in the last minute
+     */
+    String[] getTopUsers1m();
+
+    String[] getTopUsers5m();
+
+    String[] getTopUserAgents1m();
+
+    String[] getTopUserAgents5m();
+}
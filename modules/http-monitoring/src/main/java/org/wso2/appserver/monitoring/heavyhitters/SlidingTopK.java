@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.heavyhitters;
+
+import org.wso2.appserver.monitoring.cardinality.CountMinSketch;
+import org.wso2.appserver.monitoring.cardinality.HyperLogLog;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the most frequent values added over sliding windows of time in a fixed amount of memory.
+ * <p>
+ * Time is divided into buckets held in a ring. Each bucket counts the values added during its period in a
+ * {@link CountMinSketch}, and keeps a small set of candidates: the values with the highest estimated counts, at most
+ * twice the number of values reported. A value whose estimate does not exceed the lowest estimate of a full candidate
+ * set is only counted, so adding a frequent or an infrequent value takes no lock; the candidate set is locked only to
+ * admit a value and evict the lowest one.
+ * <p>
+ * The count of a value over a window sums the estimates of the buckets it covers. The oldest of them is only partly
+ * covered, and is weighted by the part of its period still inside the window. A bucket is reused for a new period by
+ * the first thread adding to it; additions racing with the reset may be partly lost, which is within the error of the
+ * estimates.
+ *
+ * @since 1.0.1
+ */
+public class SlidingTopK {
+
+    private final int size;
+    private final int capacity;
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+
+    /**
+     * @param size         the number of values reported
+     * @param sketchWidth  the number of counters per row of the sketch of each bucket
+     * @param bucketMillis the period of a bucket in milliseconds
+     * @param maxWindow    the longest window reported, in bucket periods
+     */
+    public SlidingTopK(int size, int sketchWidth, long bucketMillis, int maxWindow) {
+        if (size < 1 || bucketMillis < 1 || maxWindow < 1) {
+            throw new IllegalArgumentException("Invalid top " + size + " over " + maxWindow + " periods of " +
+                    bucketMillis + " ms");
+        }
+        this.size = size;
+        this.capacity = 2 * size;
+        this.bucketMillis = bucketMillis;
+        // one more bucket than the longest window, for its partly covered oldest period
+        this.buckets = new Bucket[maxWindow + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(sketchWidth);
+        }
+    }
+
+    /**
+     * Counts an occurrence of a value.
+     *
+     * @param value      the value, ignored if null
+     * @param timeMillis the time of the occurrence in milliseconds since the epoch
+     */
+    public void add(String value, long timeMillis) {
+        if (value == null) {
+            return;
+        }
+        long period = timeMillis / bucketMillis;
+        Bucket bucket = buckets[(int) (period % buckets.length)];
+        long bucketPeriod = bucket.period.get();
+        if (bucketPeriod != period) {
+            if (bucketPeriod > period) {
+                // the bucket of this period was already reused for a later one
+                return;
+            }
+            if (bucket.period.compareAndSet(bucketPeriod, period)) {
+                bucket.reset();
+            }
+        }
+        long hash = HyperLogLog.hash(value);
+        int estimate = bucket.sketch.add(hash);
+        if (estimate > bucket.threshold && !bucket.candidates.containsKey(value)) {
+            bucket.offer(value, hash);
+        }
+    }
+
+    /**
+     * Returns the most frequent values of a window ending at a given time.
+     *
+     * @param window     the length of the window in bucket periods, at most the longest window reported
+     * @param timeMillis the end of the window in milliseconds since the epoch
+     * @return the most frequent values with their estimated counts, most frequent first
+     */
+    public List<HeavyHitter> getTop(int window, long timeMillis) {
+        if (window < 1 || window >= buckets.length) {
+            throw new IllegalArgumentException("Window of " + window + " periods is not tracked");
+        }
+        long period = timeMillis / bucketMillis;
+        double oldestWeight = 1 - (double) (timeMillis % bucketMillis) / bucketMillis;
+        Map<String, Long> hashes = new HashMap<>();
+        for (int i = 0; i <= window; i++) {
+            Bucket bucket = getBucket(period - i);
+            if (bucket != null) {
+                hashes.putAll(bucket.candidates);
+            }
+        }
+        List<HeavyHitter> top = new ArrayList<>(hashes.size());
+        for (Map.Entry<String, Long> candidate : hashes.entrySet()) {
+            double count = 0;
+            for (int i = 0; i <= window; i++) {
+                Bucket bucket = getBucket(period - i);
+                if (bucket != null) {
+                    count += ((i < window) ? 1 : oldestWeight) * bucket.sketch.estimate(candidate.getValue());
+                }
+            }
+            top.add(new HeavyHitter(candidate.getKey(), Math.round(count)));
+        }
+        top.sort((first, second) -> Long.compare(second.getCount(), first.getCount()));
+        return (top.size() > size) ? new ArrayList<>(top.subList(0, size)) : top;
+    }
+
+    /**
+     * @return the bucket of a period, or null if it holds no values of the period
+     */
+    private Bucket getBucket(long period) {
+        if (period < 0) {
+            return null;
+        }
+        Bucket bucket = buckets[(int) (period % buckets.length)];
+        return (bucket.period.get() == period) ? bucket : null;
+    }
+
+    /**
+     * The counts of a period.
+     */
+    private final class Bucket {
+        private final AtomicLong period = new AtomicLong(-1);
+        private final CountMinSketch sketch;
+        private final ConcurrentHashMap<String, Long> candidates = new ConcurrentHashMap<>();
+        private volatile int threshold;
+
+        private Bucket(int sketchWidth) {
+            this.sketch = new CountMinSketch(CountMinSketch.DEFAULT_DEPTH, sketchWidth);
+        }
+
+        private synchronized void reset() {
+            sketch.clear();
+            candidates.clear();
+            threshold = 0;
+        }
+
+        /**
+         * Admits a value to the candidates, evicting the candidate with the lowest estimate if the set is full.
+         */
+        private synchronized void offer(String value, long hash) {
+            if (candidates.putIfAbsent(value, hash) != null || candidates.size() <= capacity) {
+                return;
+            }
+            String lowest = null;
+            int lowestEstimate = Integer.MAX_VALUE;
+            int nextEstimate = Integer.MAX_VALUE;
+            for (Map.Entry<String, Long> candidate : candidates.entrySet()) {
+                int estimate = sketch.estimate(candidate.getValue());
+                if (estimate < lowestEstimate) {
+                    nextEstimate = lowestEstimate;
+                    lowestEstimate = estimate;
+                    lowest = candidate.getKey();
+                } else if (estimate < nextEstimate) {
+                    nextEstimate = estimate;
+                }
+            }
+            candidates.remove(lowest);
+            threshold = nextEstimate;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.metrics;
+
+import org.apache.catalina.connector.Request;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.route.RouteTemplates;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The latency histograms of a web application: one for the whole context and one per normalized endpoint, each
+ * registered as an MBean named
+ * {@code org.wso2.appserver.monitoring:type=LatencyHistogram,host=<host>,context=<context>[,endpoint=<endpoint>]}, so
+ * web applications deployed with the same path to different virtual hosts do not share MBeans.
+ * <p>
+ * Endpoints are the {@link RouteTemplates} of the requested URIs, which the valve resolves once per request. The number
+ * of endpoints is bounded: further endpoints are recorded in the histogram of {@link #OVERFLOW_ENDPOINT}. Only the
+ * context histogram, which every request updates, is striped up to the number of processors; endpoint histograms are
+ * kept to {@link #ENDPOINT_STRIPES} stripes. The MBeans are unregistered when the context stops.
+ *
+ * @since 1.0.1
+ */
+public class ContextLatencyMetrics implements Closeable {
+
+    public static final String ENABLED = "http.monitoring.metrics.enabled";
+    public static final String INTERVAL_SECONDS = "http.monitoring.metrics.intervalSeconds";
+    public static final String MAX_ENDPOINTS = "http.monitoring.metrics.maxEndpoints";
+    public static final String OVERFLOW_ENDPOINT = "__other__";
+    private static final String DOMAIN = "org.wso2.appserver.monitoring";
+    private static final int ENDPOINT_STRIPES = 2;
+    private static final Log LOG = LogFactory.getLog(ContextLatencyMetrics.class);
+
+    private final String hostName;
+    private final String contextName;
+    private final long intervalMillis;
+    private final int maxEndpoints;
+    private final LatencyHistogram contextHistogram;
+    private final ConcurrentHashMap<String, LatencyHistogram> endpoints = new ConcurrentHashMap<>();
+
+    ContextLatencyMetrics(String hostName, String contextName, MonitoringConfiguration configuration) {
+        this.hostName = hostName;
+        this.contextName = contextName;
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(configuration.getLong(INTERVAL_SECONDS, 60));
+        this.maxEndpoints = configuration.getInt(MAX_ENDPOINTS, 200);
+        this.contextHistogram = new LatencyHistogram(intervalMillis);
+        register(contextHistogram, null);
+    }
+
+    /**
+     * Returns the latency histograms of the web application serving a request, creating them on first use.
+     *
+     * @param request the Request object of client
+     * @return the latency histograms of the web application
+     */
+    public static ContextLatencyMetrics of(Request request) {
+        ContextInfo contextInfo = ContextInfo.of(request.getContext());
+        return contextInfo.getAttribute(ContextLatencyMetrics.class, configuration ->
+                new ContextLatencyMetrics(contextInfo.getHostName(), contextInfo.getName(), configuration));
+    }
+
+    /**
+     * Records the latency of a request in the histograms of the context and of its endpoint.
+     *
+     * @param uriTemplate  the route template of the requested URI, may be null
+     * @param latencyNanos the nanoseconds taken by the web application to complete the request
+     */
+    public void record(String uriTemplate, long latencyNanos) {
+        contextHistogram.record(latencyNanos);
+        if (uriTemplate == null) {
+            return;
+        }
+        getOrCreateEndpointHistogram(uriTemplate).record(latencyNanos);
+    }
+
+    private LatencyHistogram getOrCreateEndpointHistogram(String endpoint) {
+        LatencyHistogram histogram = endpoints.get(endpoint);
+        if (histogram != null) {
+            return histogram;
+        }
+        String key = (endpoints.size() < maxEndpoints) ? endpoint : OVERFLOW_ENDPOINT;
+        return endpoints.computeIfAbsent(key, k -> {
+            LatencyHistogram created = new LatencyHistogram(intervalMillis, ENDPOINT_STRIPES);
+            register(created, k);
+            return created;
+        });
+    }
+
+    public LatencyHistogram getContextHistogram() {
+        return contextHistogram;
+    }
+
+    /**
+     * @param endpoint the normalized endpoint
+     * @return the histogram of the endpoint, or null if no request of the endpoint was recorded
+     */
+    public LatencyHistogram getEndpointHistogram(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    private void register(LatencyHistogram histogram, String endpoint) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = getObjectName(endpoint);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(histogram, objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Registering the latency histogram of " + hostName + contextName + " " + endpoint
+                    + " failed: " + e);
+        }
+    }
+
+    private ObjectName getObjectName(String endpoint) throws JMException {
+        String name = DOMAIN + ":type=LatencyHistogram,host=" + ObjectName.quote(hostName) + ",context="
+                + ObjectName.quote(contextName);
+        if (endpoint != null) {
+            name += ",endpoint=" + ObjectName.quote(endpoint);
+        }
+        return new ObjectName(name);
+    }
+
+    /**
+     * Unregisters the MBeans of the web application.
+     */
+    @Override
+    public void close() {
+        unregister(null);
+        endpoints.keySet().forEach(this::unregister);
+    }
+
+    private void unregister(String endpoint) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(endpoint));
+        } catch (JMException e) {
+            LOG.debug("Unregistering the latency histogram of " + hostName + contextName + " " + endpoint
+                    + " failed: " + e);
+        }
+    }
+}
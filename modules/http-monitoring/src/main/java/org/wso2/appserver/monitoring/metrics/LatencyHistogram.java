@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent latency histogram in the style of HdrHistogram.
+ * <p>
+ * Latencies are counted in microseconds in log-linear buckets: every power of two range is split into
+ * {@link #SUB_BUCKETS} linear buckets, so a recorded value is reported with a relative error of at most 1/32 up to
+ * {@link #MAX_MICROS}. Counts are kept in stripes, and a recording thread updates the stripe picked by its thread
+ * ID with a single atomic add and no allocation. Stripes start at one and double, up to a limit, whenever a recording
+ * thread loses a race for a bucket. A stripe takes about 8 KB, so only histograms that every request goes through,
+ * such as the one of a whole context, should be allowed up to {@link #PROCESSOR_STRIPES}; histograms of single
+ * endpoints share the load and are kept to a few stripes.
+ * <p>
+ * Interval values are the difference between two cumulative snapshots. A new interval is completed when the
+ * histogram is read after the interval duration has passed.
+ *
+ * @since 1.0.1
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final long MAX_MICROS = (1L << 36) - 1;
+    static final int BUCKETS = bucket(MAX_MICROS) + 1;
+    private static final int MAX_SLOT = BUCKETS;
+    private static final int SUM_SLOT = BUCKETS + 1;
+    /**
+     * The number of processors rounded up to a power of two.
+     */
+    public static final int PROCESSOR_STRIPES =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+    private volatile AtomicLongArray[] stripes = {newStripe()};
+    private final int maxStripes;
+    private final long intervalMillis;
+    private long[] intervalStart = new long[BUCKETS];
+    private long[] intervalCounts = new long[BUCKETS];
+    private long intervalEndTime;
+
+    public LatencyHistogram(long intervalMillis) {
+        this(intervalMillis, PROCESSOR_STRIPES);
+    }
+
+    /**
+     * @param intervalMillis the duration of an interval
+     * @param maxStripes     the number of stripes the histogram may grow to, rounded down to a power of two
+     */
+    public LatencyHistogram(long intervalMillis, int maxStripes) {
+        this.maxStripes = Integer.highestOneBit(Math.max(1, maxStripes));
+        this.intervalMillis = intervalMillis;
+        this.intervalEndTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyNanos the latency in nanoseconds
+     */
+    public void record(long latencyNanos) {
+        long micros = Math.max(0, Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        AtomicLongArray[] current = stripes;
+        AtomicLongArray stripe = current[probe() & (current.length - 1)];
+        int bucket = bucket(micros);
+        long count = stripe.get(bucket);
+        if (!stripe.compareAndSet(bucket, count, count + 1)) {
+            stripe.incrementAndGet(bucket);
+            grow(current);
+        }
+        stripe.addAndGet(SUM_SLOT, micros);
+        long max = stripe.get(MAX_SLOT);
+        while (micros > max && !stripe.compareAndSet(MAX_SLOT, max, micros)) {
+            max = stripe.get(MAX_SLOT);
+        }
+    }
+
+    /**
+     * Doubles the stripes after contention, unless another thread already did or the maximum is reached.
+     */
+    private synchronized void grow(AtomicLongArray[] contended) {
+        if (stripes != contended || contended.length >= maxStripes) {
+            return;
+        }
+        AtomicLongArray[] grown = new AtomicLongArray[contended.length * 2];
+        System.arraycopy(contended, 0, grown, 0, contended.length);
+        for (int i = contended.length; i < grown.length; i++) {
+            grown[i] = newStripe();
+        }
+        stripes = grown;
+    }
+
+    private static AtomicLongArray newStripe() {
+        return new AtomicLongArray(BUCKETS + 2);
+    }
+
+    private static int probe() {
+        long id = Thread.currentThread().getId();
+        id *= 0x9E3779B97F4A7C15L;
+        return (int) (id >>> 32);
+    }
+
+    /**
+     * Finds the bucket of a value in microseconds.
+     */
+    static int bucket(long micros) {
+        return bucket(micros, SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Finds the log-linear bucket of a value, for histograms that split every power of two range into fewer linear
+     * buckets than this one.
+     *
+     * @param value         the non-negative value
+     * @param subBucketBits the base two logarithm of the number of linear buckets per power of two range
+     * @return the bucket of the value
+     */
+    public static int bucket(long value, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (value < subBuckets) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - subBucketBits;
+        return (shift + 1) * subBuckets + (int) ((value >>> shift) - subBuckets);
+    }
+
+    /**
+     * Returns the highest value in microseconds that falls in a bucket.
+     */
+    static long highestValue(int bucket) {
+        return highestValue(bucket, SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param bucket        the bucket found by {@link #bucket(long, int)}
+     * @param subBucketBits the base two logarithm of the number of linear buckets per power of two range
+     * @return the highest value that falls in the bucket
+     */
+    public static long highestValue(int bucket, int subBucketBits) {
+        int subBuckets = 1 << subBucketBits;
+        if (bucket < subBuckets) {
+            return bucket;
+        }
+        int shift = bucket / subBuckets - 1;
+        long lowest = (long) (subBuckets + bucket % subBuckets) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * @return the cumulative count of every bucket
+     */
+    long[] getCounts() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    private long getMaxMicros() {
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            max = Math.max(max, stripe.get(MAX_SLOT));
+        }
+        return max;
+    }
+
+    private long getSumMicros() {
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            sum += stripe.get(SUM_SLOT);
+        }
+        return sum;
+    }
+
+    /**
+     * Estimates a percentile from bucket counts.
+     *
+     * @param counts     the bucket counts
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value of the bucket holding the percentile, in microseconds, or 0 if there are no counts
+     */
+    static long getValueAtPercentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Completes the interval if its duration has passed since the last one was completed.
+     *
+     * @return the counts of the last completed interval
+     */
+    private synchronized long[] getIntervalCounts() {
+        long now = System.currentTimeMillis();
+        if (now - intervalEndTime >= intervalMillis) {
+            long[] counts = getCounts();
+            long[] interval = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                interval[i] = counts[i] - intervalStart[i];
+            }
+            intervalStart = counts;
+            intervalCounts = interval;
+            intervalEndTime = now;
+        }
+        return intervalCounts;
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (long bucketCount : getCounts()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return (count > 0) ? toMillis(getSumMicros()) / count : 0;
+    }
+
+    @Override
+    public double getP50() {
+        return toMillis(Math.min(getMaxMicros(), getValueAtPercentile(getCounts(), 50)));
+    }
+
+    @Override
+    public double getP90() {
+        return toMillis(Math.min(getMaxMicros(), getValueAtPercentile(getCounts(), 90)));
+    }
+
+    @Override
+    public double getP99() {
+        return toMillis(Math.min(getMaxMicros(), getValueAtPercentile(getCounts(), 99)));
+    }
+
+    @Override
+    public double getP999() {
+        return toMillis(Math.min(getMaxMicros(), getValueAtPercentile(getCounts(), 99.9)));
+    }
+
+    @Override
+    public double getMax() {
+        return toMillis(getMaxMicros());
+    }
+
+    @Override
+    public long getIntervalCount() {
+        long count = 0;
+        for (long bucketCount : getIntervalCounts()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    @Override
+    public double getIntervalP50() {
+        return toMillis(getValueAtPercentile(getIntervalCounts(), 50));
+    }
+
+    @Override
+    public double getIntervalP90() {
+        return toMillis(getValueAtPercentile(getIntervalCounts(), 90));
+    }
+
+    @Override
+    public double getIntervalP99() {
+        return toMillis(getValueAtPercentile(getIntervalCounts(), 99));
+    }
+
+    @Override
+    public double getIntervalP999() {
+        return toMillis(getValueAtPercentile(getIntervalCounts(), 99.9));
+    }
+
+    @Override
+    public double getIntervalMax() {
+        return toMillis(getValueAtPercentile(getIntervalCounts(), 100));
+    }
+
+    @Override
+    public synchronized long getIntervalEndTime() {
+        getIntervalCounts();
+        return intervalEndTime;
+    }
+}
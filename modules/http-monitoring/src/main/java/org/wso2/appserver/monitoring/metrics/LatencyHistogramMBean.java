@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.metrics;
+
+/**
+ * Management interface of a {@link LatencyHistogram}. Latencies are in milliseconds. Cumulative values cover every
+ * request since the histogram was created, and interval values cover the last completed interval.
+ *
+ * @since 1.0.1
+ */
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMean();
+
+    double getP50();
+
+    double getP90();
+
+    double getP99();
+
+    double getP999();
+
+    double getMax();
+
+    long getIntervalCount();
+
+    double getIntervalP50();
+
+    double getIntervalP90();
+
+    double getIntervalP99();
+
+    double getIntervalP999();
+
+    double getIntervalMax();
+
+    /**
+     * @return the end of the last completed interval, in milliseconds since the epoch
+     */
+    long getIntervalEndTime();
+}
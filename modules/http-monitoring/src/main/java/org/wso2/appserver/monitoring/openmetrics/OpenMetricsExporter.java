@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.openmetrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.heavyhitters.HeavyHitter;
+import org.wso2.appserver.monitoring.heavyhitters.HeavyHitters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the {@link RequestMetrics} of every running web application in the OpenMetrics text format, for scraping
+ * by Prometheus, over a local HTTP listener, along with their {@link HeavyHitters} if they are tracked.
+ * <p>
+ * Scrapes are served one at a time on a single daemon thread, and formatted into a buffer that is reused across
+ * scrapes. Reading the counters never blocks request threads. The listener is shared by all valves: it starts with
+ * the first valve and stops with the last one.
+ *
+ * @since 1.0.1
+ */
+public final class OpenMetricsExporter {
+
+    public static final String ENABLED = "http.monitoring.openmetrics.enabled";
+    public static final String HOST = "http.monitoring.openmetrics.host";
+    public static final String PORT = "http.monitoring.openmetrics.port";
+    public static final String PATH = "http.monitoring.openmetrics.path";
+    private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final int[] HEAVY_HITTER_WINDOWS = {1, 5};
+    private static final Log LOG = LogFactory.getLog(OpenMetricsExporter.class);
+
+    private static OpenMetricsExporter instance;
+    private static int references;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final OpenMetricsWriter writer = new OpenMetricsWriter();
+
+    private OpenMetricsExporter(String host, int port, String path) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-stats-openmetrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(path, this::scrape);
+        server.start();
+    }
+
+    /**
+     * Starts the listener if it is enabled and not yet started, and counts the caller as its user.
+     *
+     * @param configuration the monitoring configuration
+     * @return the listener, which the caller must {@link #release()} once, or null if it is disabled or failed to
+     * start, in which case there is nothing to release
+     */
+    public static synchronized OpenMetricsExporter acquire(MonitoringConfiguration configuration) {
+        if (!configuration.getBoolean(ENABLED, false)) {
+            return null;
+        }
+        if (instance == null) {
+            String host = configuration.getString(HOST, "127.0.0.1");
+            int port = configuration.getInt(PORT, 9464);
+            String path = configuration.getString(PATH, "/metrics");
+            try {
+                instance = new OpenMetricsExporter(host, port, path);
+                LOG.info("Serving HTTP statistics in the OpenMetrics format at http://" + host + ":" + port + path);
+            } catch (IOException e) {
+                LOG.error("Starting the OpenMetrics listener on " + host + ":" + port + " failed: " + e);
+                return null;
+            }
+        }
+        references++;
+        return instance;
+    }
+
+    /**
+     * Stops the listener once its last user releases it. Releasing a listener that was already stopped has no effect.
+     */
+    public void release() {
+        synchronized (OpenMetricsExporter.class) {
+            if (instance != this || --references > 0) {
+                return;
+            }
+            server.stop(0);
+            executor.shutdown();
+            instance = null;
+        }
+    }
+
+    private void scrape(HttpExchange exchange) throws IOException {
+        try {
+            writer.reset();
+            format(writer);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, writer.length());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                writer.writeTo(outputStream);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes the metrics of every running web application.
+     *
+     * @param writer the writer to write to
+     */
+    static void format(OpenMetricsWriter writer) {
+        writer.write("# TYPE http_server_requests counter\n")
+                .write("# HELP http_server_requests Requests served.\n");
+        for (RequestMetrics metrics : RequestMetrics.getRegistered()) {
+            for (RequestSeries series : metrics.getSeries()) {
+                writeSample(writer, "http_server_requests_total", series.getLabels(), series.getRequests());
+            }
+        }
+        writer.write("# TYPE http_server_errors counter\n")
+                .write("# HELP http_server_errors Responses with a 5xx status.\n");
+        for (RequestMetrics metrics : RequestMetrics.getRegistered()) {
+            for (RequestMetrics.ErrorCounter errors : metrics.getErrors()) {
+                writeSample(writer, "http_server_errors_total", errors.labels, errors.count.sum());
+            }
+        }
+        writer.write("# TYPE http_server_request_bytes counter\n")
+                .write("# UNIT http_server_request_bytes bytes\n")
+                .write("# HELP http_server_request_bytes Bytes received in request bodies.\n");
+        for (RequestMetrics metrics : RequestMetrics.getRegistered()) {
+            for (RequestSeries series : metrics.getSeries()) {
+                writeSample(writer, "http_server_request_bytes_total", series.getLabels(), series.getRequestBytes());
+            }
+        }
+        writer.write("# TYPE http_server_response_bytes counter\n")
+                .write("# UNIT http_server_response_bytes bytes\n")
+                .write("# HELP http_server_response_bytes Bytes sent in responses.\n");
+        for (RequestMetrics metrics : RequestMetrics.getRegistered()) {
+            for (RequestSeries series : metrics.getSeries()) {
+                writeSample(writer, "http_server_response_bytes_total", series.getLabels(),
+                        series.getResponseBytes());
+            }
+        }
+        writer.write("# TYPE http_server_request_duration_seconds histogram\n")
+                .write("# UNIT http_server_request_duration_seconds seconds\n")
+                .write("# HELP http_server_request_duration_seconds Time taken by the web application.\n");
+        for (RequestMetrics metrics : RequestMetrics.getRegistered()) {
+            long[] bounds = metrics.getBucketBoundsMicros();
+            for (RequestSeries series : metrics.getSeries()) {
+                long cumulative = 0;
+                for (int i = 0; i < bounds.length; i++) {
+                    cumulative += series.getBucketCount(i);
+                    writer.write("http_server_request_duration_seconds_bucket{").write(series.getLabels())
+                            .write(",le=\"").writeMicros(bounds[i]).write("\"} ").write(cumulative).write('\n');
+                }
+                long count = Math.max(cumulative, series.getRequests());
+                writer.write("http_server_request_duration_seconds_bucket{").write(series.getLabels())
+                        .write(",le=\"+Inf\"} ").write(count).write('\n');
+                writeSample(writer, "http_server_request_duration_seconds_count", series.getLabels(), count);
+                writer.write("http_server_request_duration_seconds_sum{").write(series.getLabels()).write("} ")
+                        .writeMicros(series.getDurationMicros()).write('\n');
+            }
+        }
+        writer.write("# TYPE http_server_heavy_hitter_requests gauge\n")
+                .write("# HELP http_server_heavy_hitter_requests Estimated requests of the most frequent values.\n");
+        for (HeavyHitters heavyHitters : HeavyHitters.getRegistered()) {
+            writeHeavyHitters(writer, heavyHitters);
+        }
+        writer.write("# EOF\n");
+    }
+
+    private static void writeHeavyHitters(OpenMetricsWriter writer, HeavyHitters heavyHitters) {
+        String webapp = RequestSeries.escape(heavyHitters.getContextName());
+        for (HeavyHitters.Dimension dimension : HeavyHitters.Dimension.values()) {
+            for (int minutes : HEAVY_HITTER_WINDOWS) {
+                for (HeavyHitter heavyHitter : heavyHitters.getTop(dimension, minutes)) {
+                    // the values are few, so their labels are encoded on each scrape
+                    byte[] labels = ("webapp=\"" + webapp + "\",dimension=\"" + dimension.getLabel() +
+                            "\",window=\"" + minutes + "m\",value=\"" + RequestSeries.escape(heavyHitter.getValue()) +
+                            "\"").getBytes(StandardCharsets.UTF_8);
+                    writeSample(writer, "http_server_heavy_hitter_requests", labels, heavyHitter.getCount());
+                }
+            }
+        }
+    }
+
+    private static void writeSample(OpenMetricsWriter writer, String name, byte[] labels, long value) {
+        writer.write(name).write('{').write(labels).write("} ").write(value).write('\n');
+    }
+}
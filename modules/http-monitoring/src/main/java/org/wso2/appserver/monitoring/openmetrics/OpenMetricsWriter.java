@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.openmetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes OpenMetrics text into a growable byte buffer that is reused across scrapes.
+ * <p>
+ * Numbers are written digit by digit and labels are pre-encoded by the series, so formatting a scrape allocates
+ * nothing once the buffer has grown to the size of the exposition.
+ *
+ * @since 1.0.1
+ */
+class OpenMetricsWriter {
+
+    private static final int MAX_RETAINED_BUFFER = 4 * 1024 * 1024;
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer = new byte[64 * 1024];
+    private int length;
+
+    void reset() {
+        if (buffer.length > MAX_RETAINED_BUFFER) {
+            buffer = new byte[64 * 1024];
+        }
+        length = 0;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, length);
+    }
+
+    OpenMetricsWriter write(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+        return this;
+    }
+
+    OpenMetricsWriter write(char character) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) character;
+        return this;
+    }
+
+    /**
+     * Writes an ASCII string, such as a metric name.
+     */
+    OpenMetricsWriter write(String ascii) {
+        ensureCapacity(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer[length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    OpenMetricsWriter write(long value) {
+        if (value == Long.MIN_VALUE) {
+            return write(MIN_LONG);
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Writes a non-negative value given in millionths, such as microseconds as seconds, as a decimal number.
+     */
+    OpenMetricsWriter writeMicros(long micros) {
+        write(micros / 1000000).write('.');
+        ensureCapacity(6);
+        long fraction = micros % 1000000;
+        for (int i = length + 5; i >= length; i--) {
+            buffer[i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        length += 6;
+        return this;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, length + additional)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.openmetrics;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+import org.wso2.appserver.monitoring.utils.HttpMethods;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The request counters of a web application, by method and status, that are served by the
+ * {@link OpenMetricsExporter}.
+ * <p>
+ * Series are looked up by method and then by status in a small copy-on-write array holding only the statuses seen, so
+ * recording a request allocates nothing once its series exists. Methods outside the standard ones are counted as
+ * {@link HttpMethods#OTHER}, so clients cannot create series at will. The metrics of every running web application
+ * are listed in a registry that scrapes iterate without locking; a web application leaves the registry when its
+ * context stops.
+ *
+ * @since 1.0.1
+ */
+public class RequestMetrics implements Closeable {
+
+    public static final String BUCKETS = "http.monitoring.openmetrics.buckets";
+    private static final String DEFAULT_BUCKETS = "0.005,0.01,0.025,0.05,0.1,0.25,0.5,1,2.5,5,10";
+    private static final int MAX_STATUS = 600;
+    private static final Log LOG = LogFactory.getLog(RequestMetrics.class);
+    private static final Set<RequestMetrics> REGISTRY = ConcurrentHashMap.newKeySet();
+
+    private final String webapp;
+    private final long[] bucketBoundsMicros;
+    private final ConcurrentHashMap<String, StatusSeries> methods = new ConcurrentHashMap<>();
+    private final Collection<RequestSeries> series = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, ErrorCounter> errors = new ConcurrentHashMap<>();
+
+    RequestMetrics(String webapp, long[] bucketBoundsMicros) {
+        this.webapp = webapp;
+        this.bucketBoundsMicros = bucketBoundsMicros;
+    }
+
+    /**
+     * Returns the metrics of the web application serving a request, creating and registering them on first use.
+     *
+     * @param request the Request object of client
+     * @return the metrics of the web application
+     */
+    public static RequestMetrics of(Request request) {
+        ContextInfo contextInfo = ContextInfo.of(request.getContext());
+        return contextInfo.getAttribute(RequestMetrics.class,
+                configuration -> register(contextInfo.getName(), getBucketBoundsMicros(configuration)));
+    }
+
+    /**
+     * Creates the metrics of a web application and adds them to the registry.
+     *
+     * @param webapp             the name of the web application
+     * @param bucketBoundsMicros the upper bounds of the latency histogram buckets in microseconds, ascending
+     * @return the metrics of the web application
+     */
+    static RequestMetrics register(String webapp, long[] bucketBoundsMicros) {
+        RequestMetrics metrics = new RequestMetrics(webapp, bucketBoundsMicros);
+        REGISTRY.add(metrics);
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of every running web application
+     */
+    static Collection<RequestMetrics> getRegistered() {
+        return REGISTRY;
+    }
+
+    /**
+     * Records a served request.
+     *
+     * @param request       the Request object of client
+     * @param response      the Response object of client
+     * @param durationNanos the nanoseconds taken by the web application to complete the request
+     */
+    public void record(Request request, Response response, long durationNanos) {
+        org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+        long requestBytes = (coyoteRequest != null) ? coyoteRequest.getBytesRead() : request.getContentLengthLong();
+        record(request.getMethod(), response.getStatus(), requestBytes, response.getBytesWritten(false),
+                durationNanos);
+    }
+
+    void record(String method, int status, long requestBytes, long responseBytes, long durationNanos) {
+        String normalizedMethod = HttpMethods.normalize(method);
+        StatusSeries statuses = methods.get(normalizedMethod);
+        if (statuses == null) {
+            statuses = methods.computeIfAbsent(normalizedMethod, StatusSeries::new);
+        }
+        statuses.get((status >= 0 && status < MAX_STATUS) ? status : 0)
+                .record(requestBytes, responseBytes, durationNanos);
+        if (status >= 500) {
+            ErrorCounter methodErrors = errors.get(normalizedMethod);
+            if (methodErrors == null) {
+                methodErrors = errors.computeIfAbsent(normalizedMethod, key -> new ErrorCounter(webapp, key));
+            }
+            methodErrors.count.increment();
+        }
+    }
+
+    String getWebapp() {
+        return webapp;
+    }
+
+    long[] getBucketBoundsMicros() {
+        return bucketBoundsMicros;
+    }
+
+    Collection<RequestSeries> getSeries() {
+        return series;
+    }
+
+    /**
+     * @return the counters of responses with a 5xx status, one per method
+     */
+    Collection<ErrorCounter> getErrors() {
+        return errors.values();
+    }
+
+    /**
+     * Removes the web application from the registry.
+     */
+    @Override
+    public void close() {
+        REGISTRY.remove(this);
+    }
+
+    /**
+     * Reads the upper bounds of the latency histogram buckets, in seconds, and converts them to microseconds.
+     */
+    private static long[] getBucketBoundsMicros(MonitoringConfiguration configuration) {
+        String buckets = configuration.getString(BUCKETS, DEFAULT_BUCKETS);
+        try {
+            return parseBuckets(buckets);
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid latency buckets '" + buckets + "', using " + DEFAULT_BUCKETS);
+            return parseBuckets(DEFAULT_BUCKETS);
+        }
+    }
+
+    static long[] parseBuckets(String buckets) {
+        return Arrays.stream(buckets.split(","))
+                .mapToLong(bound -> Math.round(Double.parseDouble(bound.trim()) * 1000000))
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * The series of one method, by status. A web application answers with a handful of statuses, so they are found by
+     * a linear scan of an array that is copied when a status is first seen.
+     */
+    private class StatusSeries {
+        private final String method;
+        private volatile RequestSeries[] entries = new RequestSeries[0];
+
+        StatusSeries(String method) {
+            this.method = method;
+        }
+
+        RequestSeries get(int status) {
+            for (RequestSeries entry : entries) {
+                if (entry.getStatus() == status) {
+                    return entry;
+                }
+            }
+            return add(status);
+        }
+
+        private synchronized RequestSeries add(int status) {
+            RequestSeries[] current = entries;
+            for (RequestSeries entry : current) {
+                if (entry.getStatus() == status) {
+                    return entry;
+                }
+            }
+            RequestSeries entry = new RequestSeries(webapp, method, status, bucketBoundsMicros);
+            RequestSeries[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = entry;
+            entries = grown;
+            series.add(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * The number of responses of a method with a 5xx status.
+     */
+    static class ErrorCounter {
+        final byte[] labels;
+        final LongAdder count = new LongAdder();
+
+        ErrorCounter(String webapp, String method) {
+            this.labels = ("webapp=\"" + RequestSeries.escape(webapp) + "\",method=\"" + RequestSeries.escape(method) +
+                    "\"").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.openmetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the requests of one web application, method and status.
+ * <p>
+ * Counters are striped {@link LongAdder}s, so request threads never wait for each other or for a scrape. The labels
+ * of the series are encoded once, when it is created.
+ *
+ * @since 1.0.1
+ */
+class RequestSeries {
+
+    private final byte[] labels;
+    private final int status;
+    private final long[] bucketBoundsMicros;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder durationMicros = new LongAdder();
+    private final LongAdder[] buckets;
+
+    RequestSeries(String webapp, String method, int status, long[] bucketBoundsMicros) {
+        this.labels = ("webapp=\"" + escape(webapp) + "\",method=\"" + escape(method) + "\",status=\"" + status + "\"")
+                .getBytes(StandardCharsets.UTF_8);
+        this.status = status;
+        this.bucketBoundsMicros = bucketBoundsMicros;
+        this.buckets = new LongAdder[bucketBoundsMicros.length];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long requestContentLength, long responseContentLength, long durationNanos) {
+        requests.increment();
+        if (requestContentLength > 0) {
+            requestBytes.add(requestContentLength);
+        }
+        if (responseContentLength > 0) {
+            responseBytes.add(responseContentLength);
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        durationMicros.add(micros);
+        for (int i = 0; i < bucketBoundsMicros.length; i++) {
+            if (micros <= bucketBoundsMicros[i]) {
+                buckets[i].increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the status of the responses counted by the series
+     */
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the labels of the series, encoded and without braces
+     */
+    byte[] getLabels() {
+        return labels;
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    long getDurationMicros() {
+        return durationMicros.sum();
+    }
+
+    /**
+     * @param bucket the index of a bucket bound
+     * @return the number of requests that took longer than the previous bound and at most this bound
+     */
+    long getBucketCount(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * Escapes a label value as required by the OpenMetrics text format.
+     */
+    static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character == '\\' || character == '"') {
+                builder.append('\\').append(character);
+            } else if (character == '\n') {
+                builder.append("\\n");
+            } else {
+                builder.append(character);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.route;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+import org.wso2.appserver.monitoring.utils.SlotCache;
+
+/**
+ * Collapses the requested URIs of a web application into route templates, such as {@code /shop/orders/{id}} for
+ * {@code /shop/orders/123}, so that per endpoint analytics and aggregation see a bounded number of keys.
+ * <p>
+ * A URI is matched against the configured route patterns, which are relative to the context path and compiled into a
+ * {@link RouteTrie}. A URI that matches no pattern is normalized by the {@link UriNormalizer} heuristics for numeric
+ * identifiers, UUIDs and hashes, unless they are disabled. Path parameters, such as {@code ;jsessionid=...}, are
+ * dropped. Templates are kept in a bounded {@link SlotCache} keyed by the raw URI, so a URI seen recently costs a
+ * single lookup that takes no lock. The valve resolves the template of a request once and hands it to the metrics,
+ * heavy hitters and snapshot of the request.
+ *
+ * @since 1.0.1
+ */
+public class RouteTemplates {
+
+    public static final String PATTERNS = "http.monitoring.routes.patterns";
+    public static final String HEURISTICS = "http.monitoring.routes.heuristics";
+    public static final String CACHE_SIZE = "http.monitoring.routes.cacheSize";
+    private static final Log LOG = LogFactory.getLog(RouteTemplates.class);
+
+    private final String contextPath;
+    private final RouteTrie routes = new RouteTrie();
+    private final boolean heuristics;
+    private final SlotCache<String, String> cache;
+
+    /**
+     * @param contextPath   the context path of the web application, empty for the root context
+     * @param configuration the configuration of the web application
+     */
+    public RouteTemplates(String contextPath, MonitoringConfiguration configuration) {
+        this.contextPath = contextPath;
+        for (String pattern : configuration.getString(PATTERNS, "").split(",")) {
+            pattern = pattern.trim();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            try {
+                routes.add(pattern, contextPath + pattern);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Ignoring route pattern in " + PATTERNS + " of " + (contextPath.isEmpty() ? "/" : contextPath)
+                        + ": " + e.getMessage());
+            }
+        }
+        this.heuristics = configuration.getBoolean(HEURISTICS, true);
+        this.cache = new SlotCache<>(configuration.getInt(CACHE_SIZE, 4096));
+    }
+
+    /**
+     * Returns the route templates of a web application, compiling them on first use.
+     *
+     * @param contextInfo the values of the web application
+     * @return the route templates of the web application
+     */
+    public static RouteTemplates of(ContextInfo contextInfo) {
+        String name = contextInfo.getName();
+        return contextInfo.getAttribute(RouteTemplates.class,
+                configuration -> new RouteTemplates("/".equals(name) ? "" : name, configuration));
+    }
+
+    /**
+     * @param requestURI the requested URI, may be null
+     * @return the template of the URI, which is the URI itself if it has no variable segments
+     */
+    public String getTemplate(String requestURI) {
+        return (requestURI == null) ? null : cache.get(requestURI, this::toTemplate);
+    }
+
+    private String toTemplate(String requestURI) {
+        int parameters = requestURI.indexOf(';');
+        String path = (parameters < 0) ? requestURI : requestURI.substring(0, parameters);
+        int start = contextPath.length();
+        if (path.startsWith(contextPath) && path.length() > start && path.charAt(start) == '/') {
+            String template = routes.match(path, start);
+            if (template != null) {
+                return template;
+            }
+        }
+        return heuristics ? UriNormalizer.normalize(path) : path;
+    }
+}
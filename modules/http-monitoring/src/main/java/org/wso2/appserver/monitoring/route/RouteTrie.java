@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.route;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Route patterns compiled into a trie of path segments.
+ * <p>
+ * A pattern is a path of which a segment is either literal, a variable written as {@code {name}} or {@code *} that
+ * matches any one segment, or a trailing {@code **} that matches the rest of the path. A path is matched segment by
+ * segment, preferring a literal segment over a variable over the rest of the path, and backtracking when the
+ * preferred branch does not lead to a pattern. The match is the pattern itself, used as the template of the path.
+ *
+ * @since 1.0.1
+ */
+class RouteTrie {
+
+    private static final String WILDCARD = "*";
+    private static final String REST = "**";
+
+    private final Node root = new Node();
+
+    /**
+     * Adds a pattern.
+     *
+     * @param pattern  the pattern, such as {@code /orders/{id}/items}
+     * @param template the template matched paths are collapsed into
+     * @throws IllegalArgumentException if the pattern does not start with a slash, or has {@code **} before its last
+     *                                  segment
+     */
+    void add(String pattern, String template) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("Route pattern does not start with '/': " + pattern);
+        }
+        Node node = root;
+        int start = 1;
+        while (true) {
+            int end = pattern.indexOf('/', start);
+            String segment = pattern.substring(start, (end < 0) ? pattern.length() : end);
+            if (REST.equals(segment)) {
+                if (end >= 0) {
+                    throw new IllegalArgumentException("Route pattern has '**' before its end: " + pattern);
+                }
+                node.restTemplate = template;
+                return;
+            }
+            if (isVariable(segment)) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                node = node.literals.computeIfAbsent(segment, key -> new Node());
+            }
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.template == null) {
+            node.template = template;
+        }
+    }
+
+    /**
+     * @param path  a sequence holding the path
+     * @param start the index of the first slash of the path in the sequence
+     * @return the template of the pattern matching the path, or null if no pattern matches it
+     */
+    String match(String path, int start) {
+        return match(root, path, start + 1);
+    }
+
+    private String match(Node node, String path, int start) {
+        int end = path.indexOf('/', start);
+        int segmentEnd = (end < 0) ? path.length() : end;
+        Node literal = node.literals.isEmpty() ? null : node.literals.get(path.substring(start, segmentEnd));
+        String template = (literal != null) ? matchRest(literal, path, end) : null;
+        if (template == null && node.variable != null && segmentEnd > start) {
+            template = matchRest(node.variable, path, end);
+        }
+        return (template != null) ? template : node.restTemplate;
+    }
+
+    private String matchRest(Node node, String path, int end) {
+        return (end < 0) ? node.template : match(node, path, end + 1);
+    }
+
+    private static boolean isVariable(String segment) {
+        return WILDCARD.equals(segment) || (segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}"));
+    }
+
+    /**
+     * A segment of the patterns, with its literal and variable children.
+     */
+    private static final class Node {
+        private final Map<String, Node> literals = new HashMap<>();
+        private Node variable;
+        private String template;
+        private String restTemplate;
+    }
+}
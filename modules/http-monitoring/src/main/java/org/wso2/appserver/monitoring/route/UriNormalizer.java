@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.route;
+
+/**
+ * Normalizes requested URIs into endpoints by replacing path segments that look like identifiers with
+ * {@link #PLACEHOLDER}, so that "/shop/orders/1234" and "/shop/orders/5678" share one endpoint.
+ * <p>
+ * A segment is an identifier if it is a number, or if it is at least {@link #MIN_TOKEN_LENGTH} characters of
+ * hexadecimal digits and dashes with at least one digit, which covers UUIDs and hashes.
+ *
+ * @since 1.0.1
+ */
+public class UriNormalizer {
+
+    public static final String PLACEHOLDER = "{id}";
+    private static final int MIN_TOKEN_LENGTH = 16;
+
+    private UriNormalizer() {
+    }
+
+    /**
+     * Normalizes a requested URI.
+     *
+     * @param requestURI the requested URI
+     * @return the URI with identifier segments replaced, or the URI itself if it has none
+     */
+    public static String normalize(String requestURI) {
+        if (requestURI == null) {
+            return null;
+        }
+        StringBuilder builder = null;
+        int start = 0;
+        int length = requestURI.length();
+        while (start <= length) {
+            int end = requestURI.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (isIdentifier(requestURI, start, end)) {
+                if (builder == null) {
+                    builder = new StringBuilder(length).append(requestURI, 0, start);
+                }
+                builder.append(PLACEHOLDER);
+            } else if (builder != null) {
+                builder.append(requestURI, start, end);
+            }
+            if (builder != null && end < length) {
+                builder.append('/');
+            }
+            start = end + 1;
+        }
+        return (builder != null) ? builder.toString() : requestURI;
+    }
+
+    private static boolean isIdentifier(String uri, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        boolean numeric = true;
+        boolean hexadecimal = true;
+        boolean digit = false;
+        for (int i = start; i < end; i++) {
+            char character = uri.charAt(i);
+            if (character >= '0' && character <= '9') {
+                digit = true;
+            } else {
+                numeric = false;
+                if (!((character >= 'a' && character <= 'f') || (character >= 'A' && character <= 'F') ||
+                        character == '-')) {
+                    hexadecimal = false;
+                }
+            }
+        }
+        return numeric || (hexadecimal && digit && end - start >= MIN_TOKEN_LENGTH);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A sampler, applied once the web application has responded, that holds the events published by the node to a
+ * budget while keeping every request that matters.
+ * <p>
+ * Responses with an error status and requests slower than a threshold are always published with a weight of 1, even if
+ * the head {@link RateSampler} or the publish filter of the web application would have dropped them, so the valve times
+ * every request while adaptive sampling is enabled. Of the remaining, normal requests a fraction is published, each
+ * weighted by the inverse of that fraction. The fraction is recomputed every adjustment interval from the traffic seen
+ * in the last interval, so that priority and sampled events together approach the target rate. A floor on the fraction
+ * keeps a sample of normal traffic even when errors alone exceed the budget.
+ * <p>
+ * Adjustments are made by whichever request thread first observes the end of an interval, so the sampler needs no
+ * thread of its own. The current rate and counters are exposed through JMX.
+ *
+ * @since 1.0.1
+ */
+public class AdaptiveSampler implements AdaptiveSamplerMBean {
+
+    public static final String ENABLED = "http.monitoring.sampling.adaptive.enabled";
+    public static final String TARGET_EVENTS_PER_SECOND = "http.monitoring.sampling.adaptive.targetEventsPerSecond";
+    public static final String MIN_RATE = "http.monitoring.sampling.adaptive.minRate";
+    public static final String MIN_STATUS = "http.monitoring.sampling.adaptive.keepStatusFrom";
+    public static final String SLOW_THRESHOLD_MILLIS = "http.monitoring.sampling.adaptive.slowThresholdMillis";
+    public static final String INTERVAL_MILLIS = "http.monitoring.sampling.adaptive.intervalMillis";
+    private static final String OBJECT_NAME = "org.wso2.appserver.monitoring:type=AdaptiveSampler";
+    private static final Log LOG = LogFactory.getLog(AdaptiveSampler.class);
+
+    private final double minRate;
+    private final int minStatus;
+    private final long slowThresholdNanos;
+    private final long intervalNanos;
+    private final AtomicLong nextAdjustment;
+    private final LongAdder priorityInInterval = new LongAdder();
+    private final LongAdder normalInInterval = new LongAdder();
+    private final LongAdder priorityCount = new LongAdder();
+    private final LongAdder sampledCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private volatile double targetEventsPerSecond;
+    private volatile double rate = 1;
+
+    AdaptiveSampler(double targetEventsPerSecond, double minRate, int minStatus, long slowThresholdNanos,
+            long intervalNanos, long now) {
+        this.targetEventsPerSecond = targetEventsPerSecond;
+        this.minRate = Math.max(Double.MIN_VALUE, Math.min(1, minRate));
+        this.minStatus = minStatus;
+        this.slowThresholdNanos = slowThresholdNanos;
+        this.intervalNanos = intervalNanos;
+        this.nextAdjustment = new AtomicLong(now + intervalNanos);
+    }
+
+    /**
+     * Returns the adaptive sampler of the node, shared by all valves so that they share one budget.
+     *
+     * @return the sampler, or null if adaptive sampling is disabled
+     */
+    public static AdaptiveSampler getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates an adaptive sampler if it is enabled, and registers it with the platform MBean server.
+     *
+     * @param configuration the monitoring configuration
+     * @return the sampler, or null if adaptive sampling is disabled
+     */
+    static AdaptiveSampler create(MonitoringConfiguration configuration) {
+        if (!configuration.getBoolean(ENABLED, false)) {
+            return null;
+        }
+        AdaptiveSampler sampler = new AdaptiveSampler(configuration.getDouble(TARGET_EVENTS_PER_SECOND, 1000),
+                configuration.getDouble(MIN_RATE, 0.001), configuration.getInt(MIN_STATUS, 400),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getLong(SLOW_THRESHOLD_MILLIS, 1000)),
+                TimeUnit.MILLISECONDS.toNanos(configuration.getLong(INTERVAL_MILLIS, 1000)), System.nanoTime());
+        sampler.register();
+        return sampler;
+    }
+
+    /**
+     * Decides whether a served request is published.
+     *
+     * @param request           the Request object of client
+     * @param response          the Response object of client
+     * @param responseTimeNanos the nanoseconds taken by the web application to complete the request
+     * @return 0 if the request is dropped, otherwise the number of requests the published event stands for
+     */
+    public double sample(Request request, Response response, long responseTimeNanos) {
+        return sample(response.getStatus(), responseTimeNanos, System.nanoTime());
+    }
+
+    double sample(int status, long responseTimeNanos, long now) {
+        if (now - nextAdjustment.get() >= 0) {
+            adjust(now);
+        }
+        if (isPriority(status, responseTimeNanos)) {
+            priorityInInterval.increment();
+            priorityCount.increment();
+            return Sampler.UNSAMPLED;
+        }
+        normalInInterval.increment();
+        double currentRate = rate;
+        if (currentRate >= 1 || ThreadLocalRandom.current().nextDouble() < currentRate) {
+            sampledCount.increment();
+            return 1 / currentRate;
+        }
+        droppedCount.increment();
+        return 0;
+    }
+
+    /**
+     * @param status            the status of the response
+     * @param responseTimeNanos the nanoseconds taken by the web application to complete the request
+     * @return true if the request has an error status or is slow, and so is always published
+     */
+    public boolean isPriority(int status, long responseTimeNanos) {
+        return status >= minStatus || responseTimeNanos >= slowThresholdNanos;
+    }
+
+    /**
+     * Recomputes the sampling rate from the requests seen in the interval that ended, if no other thread did.
+     *
+     * @param now the current value of {@link System#nanoTime()}
+     */
+    private void adjust(long now) {
+        long adjustment = nextAdjustment.get();
+        if (now - adjustment < 0 || !nextAdjustment.compareAndSet(adjustment, now + intervalNanos)) {
+            return;
+        }
+        double seconds = (double) (now - adjustment + intervalNanos) / TimeUnit.SECONDS.toNanos(1);
+        double priorityPerSecond = priorityInInterval.sumThenReset() / seconds;
+        double normalPerSecond = normalInInterval.sumThenReset() / seconds;
+        double budget = targetEventsPerSecond - priorityPerSecond;
+        double newRate = (normalPerSecond <= budget) ? 1 : Math.max(minRate, budget / normalPerSecond);
+        rate = newRate;
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Adaptive sampling rate set to " + newRate + " for " + normalPerSecond +
+                    " normal and " + priorityPerSecond + " priority requests per second.");
+        }
+    }
+
+    private void register() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            LOG.warn("Registering " + OBJECT_NAME + " failed: " + e);
+        }
+    }
+
+    @Override
+    public double getSamplingRate() {
+        return rate;
+    }
+
+    @Override
+    public double getTargetEventsPerSecond() {
+        return targetEventsPerSecond;
+    }
+
+    @Override
+    public void setTargetEventsPerSecond(double targetEventsPerSecond) {
+        this.targetEventsPerSecond = targetEventsPerSecond;
+    }
+
+    @Override
+    public long getPriorityCount() {
+        return priorityCount.sum();
+    }
+
+    @Override
+    public long getSampledCount() {
+        return sampledCount.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Lazily creates the shared sampler on first use.
+     */
+    private static class Holder {
+        private static final AdaptiveSampler INSTANCE = create(MonitoringConfiguration.getInstance());
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+/**
+ * Management interface of the {@link AdaptiveSampler}.
+ *
+ * @since 1.0.1
+ */
+public interface AdaptiveSamplerMBean {
+
+    /**
+     * @return the fraction of normal requests currently published
+     */
+    double getSamplingRate();
+
+    /**
+     * @return the number of events per second the sampler aims to publish
+     */
+    double getTargetEventsPerSecond();
+
+    void setTargetEventsPerSecond(double targetEventsPerSecond);
+
+    /**
+     * @return the number of error and slow requests published
+     */
+    long getPriorityCount();
+
+    /**
+     * @return the number of normal requests published
+     */
+    long getSampledCount();
+
+    /**
+     * @return the number of normal requests dropped
+     */
+    long getDroppedCount();
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+import org.apache.catalina.connector.Request;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.ContextInfo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link Sampler} that keeps a fixed fraction of the requests of a web application.
+ * <p>
+ * The rate is read from {@link #RATE}, which a web application may override with a context parameter of the same
+ * name. When sampling on a session ID or header, the key is hashed into [0, 1) and the request is kept if the hash
+ * is below the rate, so the decision is the same for every request carrying the key. Kept requests are weighted by
+ * the inverse of the rate so that counts aggregated from the events can be scaled back up.
+ *
+ * @since 1.0.1
+ */
+public class RateSampler implements Sampler {
+
+    public static final String RATE = "http.monitoring.sampling.rate";
+    public static final String KEY = "http.monitoring.sampling.key";
+    public static final String KEY_HEADER = "http.monitoring.sampling.keyHeader";
+    private static final String DEFAULT_KEY_HEADER = "X-B3-TraceId";
+
+    private final double rate;
+    private final double weight;
+    private final SamplingKey key;
+    private final String keyHeader;
+
+    public RateSampler(MonitoringConfiguration configuration) {
+        this.rate = Math.max(0, Math.min(1, configuration.getDouble(RATE, 1)));
+        this.weight = (rate > 0) ? 1 / rate : 0;
+        this.key = configuration.getEnum(KEY, SamplingKey.class, SamplingKey.RANDOM);
+        this.keyHeader = configuration.getString(KEY_HEADER, DEFAULT_KEY_HEADER);
+    }
+
+    /**
+     * Returns the sampler of the web application serving a request, creating it on first use.
+     *
+     * @param request the Request object of client
+     * @return the sampler of the web application
+     */
+    public static RateSampler of(Request request) {
+        return ContextInfo.of(request.getContext()).getAttribute(RateSampler.class, RateSampler::new);
+    }
+
+    @Override
+    public double sample(Request request) {
+        if (rate >= 1) {
+            return UNSAMPLED;
+        }
+        if (rate <= 0) {
+            return 0;
+        }
+        return isSampled(getKey(request), rate) ? weight : 0;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    private String getKey(Request request) {
+        switch (key) {
+            case SESSION:
+                return request.getRequestedSessionId();
+            case HEADER:
+                return request.getHeader(keyHeader);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Decides whether a request is kept.
+     *
+     * @param key  the key to decide on, or null to decide at random
+     * @param rate the fraction of keys to keep
+     * @return true if the request is kept
+     */
+    static boolean isSampled(String key, double rate) {
+        double position = (key == null || key.isEmpty()) ? ThreadLocalRandom.current().nextDouble() : hash(key);
+        return position < rate;
+    }
+
+    /**
+     * Hashes a key uniformly into [0, 1).
+     *
+     * @param key the key to hash
+     * @return the position of the key
+     */
+    static double hash(String key) {
+        long hash = 0;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        // the finalizer of MurmurHash3 spreads every input bit over the whole hash
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+import org.apache.catalina.connector.Request;
+
+/**
+ * Decides, before any event work is done, whether a request is published.
+ *
+ * @since 1.0.1
+ */
+@FunctionalInterface
+public interface Sampler {
+
+    /**
+     * A weight of 1, returned when a request is kept without sampling.
+     */
+    double UNSAMPLED = 1.0;
+
+    /**
+     * Decides whether a request is published.
+     *
+     * @param request the Request object of client, before it reaches the web application
+     * @return 0 if the request is dropped, otherwise the number of requests the published event stands for
+     */
+    double sample(Request request);
+}
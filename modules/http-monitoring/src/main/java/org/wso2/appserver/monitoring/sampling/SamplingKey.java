@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+/**
+ * The value a sampling decision is made on.
+ *
+ * @since 1.0.1
+ */
+public enum SamplingKey {
+    /**
+     * Each request is decided independently.
+     */
+    RANDOM,
+
+    /**
+     * The requested session ID, so all requests of a session are kept or dropped together. Requests without a
+     * session ID, such as the first request of a session, are decided independently.
+     */
+    SESSION,
+
+    /**
+     * The value of a request header such as a trace ID, so all requests of a trace are kept or dropped together,
+     * on every server that uses the same rate. Requests without the header are decided independently.
+     */
+    HEADER
+}
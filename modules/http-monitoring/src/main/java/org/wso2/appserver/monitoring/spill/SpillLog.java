@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.spill;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.utils.DirectoryLock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A durable first-in first-out queue of records, kept in memory-mapped segment files on local disk.
+ * <p>
+ * Records are appended to the newest segment and read from the oldest one. Each record is stored as its length, a
+ * CRC32 of its bytes and the bytes. The length is written last, so a record torn by a crash reads as the end of the
+ * segment. A consumed record has its length negated in place, which lets a reopened log resume after the last consumed
+ * record without a separate checkpoint file. Segments are deleted once all of their records are consumed.
+ * <p>
+ * Appends are rejected, rather than blocking, when a record does not fit in the disk budget. Records are not forced to
+ * disk on every append; the operating system writes the mapped pages back, so a record survives a crash of the server
+ * but not necessarily of the host.
+ * <p>
+ * The log locks its directory while it is open, so a second log cannot be opened on the same directory until the first
+ * is closed.
+ *
+ * @since 1.0.1
+ */
+public class SpillLog implements Closeable {
+
+    private static final Log LOG = LogFactory.getLog(SpillLog.class);
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final DirectoryLock lock;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private long pendingRecords;
+    private long rejectedRecords;
+
+    /**
+     * Opens the log in a directory, resuming after the last consumed record of segments left by a previous run.
+     *
+     * @param directory    the directory holding the segment files, which is created if missing
+     * @param segmentBytes the size of each segment file
+     * @param maxBytes     the disk budget of all segment files together
+     * @throws IOException if the directory or existing segments cannot be opened, or another log holds the directory
+     */
+    public SpillLog(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        if (segmentBytes <= RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Spill segment size is too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / segmentBytes));
+        Files.createDirectories(directory);
+        this.lock = DirectoryLock.acquire(directory);
+        try {
+            recover();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        if (pendingRecords > 0) {
+            LOG.info("Resuming " + pendingRecords + " spilled statistics events from " + directory);
+        }
+    }
+
+    private void recover() throws IOException {
+        for (Path path : listSegments()) {
+            Segment segment = new Segment(path, sequenceOf(path), Math.max(segmentBytes, (int) Files.size(path)));
+            nextSequence = segment.sequence + 1;
+            segment.recover();
+            if (segment.isConsumed()) {
+                segment.delete();
+            } else {
+                segments.addLast(segment);
+                pendingRecords += segment.pendingRecords;
+            }
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param record the record bytes
+     * @return true if the record was appended and false if it does not fit in the disk budget
+     * @throws IOException if a new segment cannot be created
+     */
+    public synchronized boolean append(byte[] record) throws IOException {
+        int size = RECORD_HEADER_BYTES + record.length;
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + size > tail.capacity) {
+            if (size > segmentBytes || segments.size() >= maxSegments) {
+                rejectedRecords++;
+                return false;
+            }
+            tail = new Segment(directory.resolve(SEGMENT_PREFIX + nextSequence + SEGMENT_SUFFIX), nextSequence,
+                    segmentBytes);
+            nextSequence++;
+            segments.addLast(tail);
+        }
+        tail.write(record);
+        pendingRecords++;
+        return true;
+    }
+
+    /**
+     * Returns the oldest record that has not been removed, without removing it.
+     *
+     * @return the oldest record, or null if the log is empty
+     */
+    public synchronized byte[] peek() {
+        Segment head = head();
+        return (head == null) ? null : head.read();
+    }
+
+    /**
+     * Marks the oldest record consumed, deleting its segment if it was the last record in a full segment.
+     */
+    public synchronized void remove() {
+        Segment head = head();
+        if (head != null && head.consume()) {
+            pendingRecords--;
+            head();
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingRecords == 0;
+    }
+
+    public synchronized long getPendingCount() {
+        return pendingRecords;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedRecords;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        try {
+            lock.close();
+        } catch (IOException e) {
+            LOG.warn("Releasing the lock of " + directory + " failed: " + e);
+        }
+    }
+
+    /**
+     * Deletes consumed segments that are no longer appended to and returns the oldest remaining segment.
+     */
+    private Segment head() {
+        while (segments.size() > 1 && segments.peekFirst().isConsumed()) {
+            segments.removeFirst().delete();
+        }
+        return segments.peekFirst();
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                if (sequenceOf(path) >= 0) {
+                    paths.add(path);
+                }
+            }
+        }
+        Collections.sort(paths, (first, second) -> Long.compare(sequenceOf(first), sequenceOf(second)));
+        return paths;
+    }
+
+    private static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static class Segment {
+
+        private final Path path;
+        private final long sequence;
+        private final int capacity;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+        private int writePosition;
+        private long pendingRecords;
+
+        Segment(Path path, long sequence, int capacity) throws IOException {
+            this.path = path;
+            this.sequence = sequence;
+            this.capacity = capacity;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+        }
+
+        /**
+         * Finds the first pending record and the end of the written records. A record that fails its checksum ends
+         * the segment, and the records after it are discarded.
+         */
+        void recover() {
+            int position = 0;
+            boolean consumedSoFar = true;
+            while (position + RECORD_HEADER_BYTES <= capacity) {
+                int length = buffer.getInt(position);
+                int recordLength = Math.abs(length);
+                if (length == 0 || length == Integer.MIN_VALUE
+                        || recordLength > capacity - position - RECORD_HEADER_BYTES) {
+                    break;
+                }
+                if (length > 0) {
+                    if (checksum(position + RECORD_HEADER_BYTES, length) != buffer.getInt(position + 4)) {
+                        LOG.warn("Discarding corrupt spilled statistics events from " + path + " at " + position);
+                        buffer.putInt(position, 0);
+                        break;
+                    }
+                    consumedSoFar = false;
+                    pendingRecords++;
+                } else if (consumedSoFar) {
+                    readPosition = position + RECORD_HEADER_BYTES + recordLength;
+                }
+                position += RECORD_HEADER_BYTES + recordLength;
+            }
+            writePosition = position;
+        }
+
+        void write(byte[] record) {
+            int position = writePosition;
+            buffer.position(position + RECORD_HEADER_BYTES);
+            buffer.put(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, record.length);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            buffer.putInt(position, record.length);
+            writePosition = position + RECORD_HEADER_BYTES + record.length;
+            pendingRecords++;
+        }
+
+        byte[] read() {
+            skipConsumed();
+            if (pendingRecords == 0) {
+                return null;
+            }
+            byte[] record = new byte[buffer.getInt(readPosition)];
+            buffer.position(readPosition + RECORD_HEADER_BYTES);
+            buffer.get(record);
+            return record;
+        }
+
+        boolean consume() {
+            skipConsumed();
+            if (pendingRecords == 0) {
+                return false;
+            }
+            int length = buffer.getInt(readPosition);
+            buffer.putInt(readPosition, -length);
+            readPosition += RECORD_HEADER_BYTES + length;
+            pendingRecords--;
+            return true;
+        }
+
+        private void skipConsumed() {
+            while (readPosition < writePosition) {
+                int length = buffer.getInt(readPosition);
+                if (length > 0) {
+                    return;
+                }
+                readPosition += RECORD_HEADER_BYTES - length;
+            }
+        }
+
+        boolean isConsumed() {
+            return pendingRecords == 0;
+        }
+
+        private int checksum(int position, int length) {
+            ByteBuffer record = buffer.duplicate();
+            record.limit(position + length).position(position);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return (int) crc.getValue();
+        }
+
+        void close() {
+            buffer.force();
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOG.warn("Deleting spill segment " + path + " failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.spill;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.codec.EventCodec;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes events through the data agent, spilling them to a {@link SpillLog} on local disk when the agent queue
+ * does not accept them, for example while DAS is unreachable.
+ * <p>
+ * Once anything is spilled, new events are appended to the spill as well until it has been replayed, so that events
+ * reach DAS in the order they were published. A replay thread sends spilled events back through the agent as fast as
+ * the agent queue accepts them, so it catches up with live traffic, and only backs off while the agent refuses them.
+ *
+ * @since 1.0.1
+ */
+public class SpillingEventPublisher implements Closeable {
+
+    private static final Log LOG = LogFactory.getLog(SpillingEventPublisher.class);
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+    private static final long MEGABYTE = 1024 * 1024;
+
+    public static final String ENABLED = "http.monitoring.spill.enabled";
+    public static final String DIRECTORY = "http.monitoring.spill.directory";
+    public static final String SEGMENT_MEGABYTES = "http.monitoring.spill.segmentMegabytes";
+    public static final String MAX_MEGABYTES = "http.monitoring.spill.maxMegabytes";
+
+    private final Sender sender;
+    private final SpillLog spillLog;
+    private final Thread replayer;
+    private volatile boolean running;
+    private volatile boolean catchingUp;
+
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final AtomicLong lastRejectionLog = new AtomicLong(System.nanoTime() - LOG_INTERVAL_NANOS);
+
+    public SpillingEventPublisher(Sender sender, SpillLog spillLog) {
+        this.sender = sender;
+        this.spillLog = spillLog;
+        this.catchingUp = !spillLog.isEmpty();
+        this.replayer = new Thread(this::replay, "http-stats-spill-replay");
+        this.replayer.setDaemon(true);
+    }
+
+    /**
+     * Creates a spilling publisher tuned by the monitoring configuration.
+     * <p>
+     * Each publisher spills to a subdirectory of its own, which it locks for as long as the spill is open.
+     *
+     * @param sender        offers events to the data agent without blocking
+     * @param configuration the monitoring configuration
+     * @param name          the name of the spill subdirectory of the publisher
+     * @return a spilling publisher which is not yet started
+     * @throws IOException if the spill directory cannot be opened or is in use by another publisher
+     */
+    public static SpillingEventPublisher create(Sender sender, MonitoringConfiguration configuration, String name)
+            throws IOException {
+        Path directory = Paths.get(configuration.getString(DIRECTORY, getDefaultDirectory())).resolve(name);
+        int segmentBytes = (int) Math.min(Integer.MAX_VALUE,
+                configuration.getLong(SEGMENT_MEGABYTES, 64) * MEGABYTE);
+        long maxBytes = configuration.getLong(MAX_MEGABYTES, 1024) * MEGABYTE;
+        SpillLog spillLog = new SpillLog(directory, segmentBytes, maxBytes);
+        return new SpillingEventPublisher(sender, spillLog);
+    }
+
+    public void start() {
+        running = true;
+        replayer.start();
+    }
+
+    /**
+     * Publishes an event, spilling it to disk if the data agent does not accept it or earlier events are still
+     * waiting to be replayed.
+     *
+     * @param event the event to publish
+     */
+    public void publish(Event event) {
+        if (!catchingUp && sender.trySend(event)) {
+            return;
+        }
+        spill(event);
+    }
+
+    /**
+     * Appends an event to the spill without offering it to the data agent first.
+     *
+     * @param event the event to spill
+     */
+    public void spill(Event event) {
+        boolean appended;
+        try {
+            appended = spillLog.append(EventCodec.encode(event));
+        } catch (IOException e) {
+            logRejection("Spilling a statistics event failed: " + e);
+            return;
+        }
+        if (appended) {
+            catchingUp = true;
+            spilled.increment();
+            LockSupport.unpark(replayer);
+        } else {
+            logRejection("Statistics spill is full, " + spillLog.getRejectedCount() + " events dropped so far.");
+        }
+    }
+
+    private void replay() {
+        long backoffNanos = MIN_BACKOFF_NANOS;
+        while (running) {
+            byte[] record = spillLog.peek();
+            if (record == null) {
+                if (catchingUp) {
+                    // an event spilled between the peek and this write sets the flag again, or is seen here
+                    catchingUp = false;
+                    catchingUp = !spillLog.isEmpty();
+                    continue;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            Event event;
+            try {
+                event = EventCodec.decode(ByteBuffer.wrap(record));
+            } catch (RuntimeException e) {
+                LOG.warn("Discarding a spilled statistics event that cannot be decoded: " + e);
+                spillLog.remove();
+                continue;
+            }
+            if (sender.trySend(event)) {
+                spillLog.remove();
+                replayed.increment();
+                backoffNanos = MIN_BACKOFF_NANOS;
+            } else {
+                LockSupport.parkNanos(backoffNanos);
+                backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    private void logRejection(String message) {
+        long now = System.nanoTime();
+        long last = lastRejectionLog.get();
+        if (now - last >= LOG_INTERVAL_NANOS && lastRejectionLog.compareAndSet(last, now)) {
+            LOG.warn(message);
+        }
+    }
+
+    /**
+     * Stops replaying and closes the spill. Events still in the spill are replayed when the server starts again.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(replayer);
+        try {
+            replayer.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!spillLog.isEmpty()) {
+            LOG.info("Keeping " + spillLog.getPendingCount() + " spilled statistics events for the next start.");
+        }
+        spillLog.close();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    public long getPendingCount() {
+        return spillLog.getPendingCount();
+    }
+
+    public long getRejectedCount() {
+        return spillLog.getRejectedCount();
+    }
+
+    private static String getDefaultDirectory() {
+        String base = System.getProperty("catalina.base", System.getProperty("java.io.tmpdir"));
+        return Paths.get(base, "work", "http-monitoring-spill").toString();
+    }
+
+    /**
+     * Offers events to the data agent.
+     */
+    @FunctionalInterface
+    public interface Sender {
+
+        /**
+         * @param event the event to offer
+         * @return true if the agent accepted the event and false if it must be kept for later
+         */
+        boolean trySend(Event event);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.useragent;
+
+/**
+ * The classification of a User-Agent header: the browser or bot, the operating system and the kind of device.
+ *
+ * @since 1.0.1
+ */
+public final class UserAgent {
+
+    public static final String DESKTOP = "desktop";
+    public static final String MOBILE = "mobile";
+    public static final String TABLET = "tablet";
+    public static final String BOT = "bot";
+    public static final String OTHER = "other";
+
+    private final String browser;
+    private final String operatingSystem;
+    private final String device;
+    private final String summary;
+
+    public UserAgent(String browser, String operatingSystem, String device) {
+        this.browser = browser;
+        this.operatingSystem = operatingSystem;
+        this.device = device;
+        this.summary = browser + '/' + operatingSystem + '/' + device;
+    }
+
+    /**
+     * @return the browser or bot name, with the major version if known, such as "Chrome 51"
+     */
+    public String getBrowser() {
+        return browser;
+    }
+
+    /**
+     * @return the operating system, with the version if known, such as "Windows 10"
+     */
+    public String getOperatingSystem() {
+        return operatingSystem;
+    }
+
+    /**
+     * @return one of {@link #DESKTOP}, {@link #MOBILE}, {@link #TABLET}, {@link #BOT} or {@link #OTHER}
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    /**
+     * @return the browser, operating system and device separated by slashes, published instead of the raw header
+     * when configured
+     */
+    public String getSummary() {
+        return summary;
+    }
+
+    public boolean isBot() {
+        return BOT.equals(device);
+    }
+
+    @Override
+    public String toString() {
+        return summary;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.useragent;
+
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.utils.LruCache;
+
+/**
+ * Classifies the User-Agent headers of published requests into browser, operating system and device, so that DAS
+ * does not parse the raw header of every event again.
+ * <p>
+ * Classifications are kept in a bounded {@link LruCache} keyed by the raw header. A few hundred distinct headers make
+ * up most traffic, so nearly every classification is a cache hit.
+ *
+ * @since 1.0.1
+ */
+public class UserAgentClassifier {
+
+    public static final String CLASSIFY = "http.monitoring.userAgent.classify";
+    public static final String REPLACE_HEADER = "http.monitoring.userAgent.replaceHeader";
+    public static final String CACHE_SIZE = "http.monitoring.userAgent.cacheSize";
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private final LruCache<String, UserAgent> cache;
+    private final boolean replaceHeader;
+
+    UserAgentClassifier(int cacheSize, boolean replaceHeader) {
+        this.cache = new LruCache<>(cacheSize);
+        this.replaceHeader = replaceHeader;
+    }
+
+    /**
+     * Returns the classifier of the node.
+     *
+     * @return the classifier, or null if classification is disabled
+     */
+    public static UserAgentClassifier getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates a classifier if classification is enabled.
+     *
+     * @param configuration the monitoring configuration
+     * @return the classifier, or null if classification is disabled
+     */
+    static UserAgentClassifier create(MonitoringConfiguration configuration) {
+        if (!configuration.getBoolean(CLASSIFY, false)) {
+            return null;
+        }
+        return new UserAgentClassifier(configuration.getInt(CACHE_SIZE, 1024),
+                configuration.getBoolean(REPLACE_HEADER, false));
+    }
+
+    /**
+     * @param header the value of the User-Agent header, may be null
+     * @return the classification of the header, or null if there is no header
+     */
+    public UserAgent classify(String header) {
+        if (header == null || header.isEmpty()) {
+            return null;
+        }
+        if (header.length() > MAX_HEADER_LENGTH) {
+            return UserAgentParser.parse(header.substring(0, MAX_HEADER_LENGTH));
+        }
+        return cache.get(header, UserAgentParser::parse);
+    }
+
+    /**
+     * @return true if the summary of the classification is published instead of the raw header
+     */
+    public boolean isReplacingHeader() {
+        return replaceHeader;
+    }
+
+    /**
+     * Lazily creates the classifier on first use.
+     */
+    private static class Holder {
+        private static final UserAgentClassifier INSTANCE = create(MonitoringConfiguration.getInstance());
+    }
+}
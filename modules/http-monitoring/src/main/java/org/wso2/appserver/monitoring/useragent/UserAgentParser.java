@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.useragent;
+
+import org.wso2.appserver.monitoring.Constants;
+
+import java.util.Locale;
+
+/**
+ * Classifies User-Agent headers with a fixed table of product tokens, without regular expressions.
+ * <p>
+ * Browsers are recognized by the token of their own product, tested in an order that puts browsers before the
+ * browsers whose tokens they copy: Edge and Opera announce themselves as Chrome, and Chrome as Safari. Bots and
+ * programmatic clients are recognized by markers in the header and named after the product token holding the first
+ * marker.
+ *
+ * @since 1.0.1
+ */
+final class UserAgentParser {
+
+    private static final int MAX_NAME_LENGTH = 64;
+    private static final String[] BOT_MARKERS = {"bot", "crawl", "spider", "slurp", "curl/", "wget/", "python-",
+            "java/", "httpclient", "okhttp", "go-http-client", "headlesschrome", "phantomjs", "facebookexternalhit"};
+    private static final String[][] BROWSERS = {
+            {"Edg/", "Edge"}, {"Edge/", "Edge"}, {"OPR/", "Opera"}, {"Opera/", "Opera"},
+            {"SamsungBrowser/", "Samsung Internet"}, {"UCBrowser/", "UC Browser"}, {"YaBrowser/", "Yandex Browser"},
+            {"Vivaldi/", "Vivaldi"}, {"FxiOS/", "Firefox"}, {"Firefox/", "Firefox"}, {"CriOS/", "Chrome"},
+            {"Chromium/", "Chromium"}, {"Chrome/", "Chrome"}, {"MSIE ", "Internet Explorer"}
+    };
+    private static final String[][] WINDOWS_VERSIONS = {
+            {"10.0", "Windows 10"}, {"6.3", "Windows 8.1"}, {"6.2", "Windows 8"}, {"6.1", "Windows 7"},
+            {"6.0", "Windows Vista"}, {"5.1", "Windows XP"}
+    };
+
+    private UserAgentParser() {
+    }
+
+    /**
+     * @param header the value of the User-Agent header
+     * @return the classification of the header
+     */
+    static UserAgent parse(String header) {
+        String operatingSystem = parseOperatingSystem(header);
+        String lowerCase = header.toLowerCase(Locale.ENGLISH);
+        int bot = -1;
+        for (String marker : BOT_MARKERS) {
+            int index = lowerCase.indexOf(marker);
+            if (index >= 0 && (bot < 0 || index < bot)) {
+                bot = index;
+            }
+        }
+        if (bot >= 0) {
+            return new UserAgent(productName(header, bot), operatingSystem, UserAgent.BOT);
+        }
+        return new UserAgent(parseBrowser(header), operatingSystem, parseDevice(header, operatingSystem));
+    }
+
+    private static String parseBrowser(String header) {
+        for (String[] browser : BROWSERS) {
+            int index = header.indexOf(browser[0]);
+            if (index >= 0) {
+                return withMajorVersion(browser[1], header, index + browser[0].length());
+            }
+        }
+        int trident = header.indexOf("Trident/");
+        if (trident >= 0) {
+            int revision = header.indexOf("rv:", trident);
+            return (revision < 0) ? "Internet Explorer"
+                    : withMajorVersion("Internet Explorer", header, revision + "rv:".length());
+        }
+        int version = header.indexOf("Version/");
+        if (version >= 0 && header.contains("Safari/")) {
+            return withMajorVersion("Safari", header, version + "Version/".length());
+        }
+        return UserAgent.OTHER;
+    }
+
+    private static String parseOperatingSystem(String header) {
+        if (header.contains("Windows Phone")) {
+            return "Windows Phone";
+        }
+        int windows = header.indexOf("Windows NT ");
+        if (windows >= 0) {
+            for (String[] version : WINDOWS_VERSIONS) {
+                if (header.startsWith(version[0], windows + "Windows NT ".length())) {
+                    return version[1];
+                }
+            }
+            return "Windows";
+        }
+        if (header.contains("Windows")) {
+            return "Windows";
+        }
+        if (header.contains("iPhone") || header.contains("iPad") || header.contains("iPod")) {
+            int version = header.indexOf(" OS ");
+            return (version < 0) ? "iOS" : withMajorVersion("iOS", header, version + " OS ".length());
+        }
+        int android = header.indexOf("Android");
+        if (android >= 0) {
+            return withMajorVersion("Android", header, android + "Android ".length());
+        }
+        if (header.contains("CrOS")) {
+            return "Chrome OS";
+        }
+        if (header.contains("Mac OS X") || header.contains("Macintosh")) {
+            return "macOS";
+        }
+        if (header.contains("Linux")) {
+            return "Linux";
+        }
+        return Constants.UNKNOWN;
+    }
+
+    private static String parseDevice(String header, String operatingSystem) {
+        if (header.contains("iPad") || header.contains("Tablet")) {
+            return UserAgent.TABLET;
+        }
+        if (operatingSystem.startsWith("Android")) {
+            return header.contains("Mobile") ? UserAgent.MOBILE : UserAgent.TABLET;
+        }
+        if (header.contains("Mobi") || operatingSystem.startsWith("iOS") || operatingSystem.equals("Windows Phone")) {
+            return UserAgent.MOBILE;
+        }
+        if (operatingSystem.startsWith("Windows") || operatingSystem.equals("macOS")
+                || operatingSystem.equals("Linux") || operatingSystem.equals("Chrome OS")) {
+            return UserAgent.DESKTOP;
+        }
+        return UserAgent.OTHER;
+    }
+
+    /**
+     * Appends the digits at an index, which make up the major version, to a name.
+     */
+    private static String withMajorVersion(String name, String header, int index) {
+        int end = index;
+        while (end < header.length() && end - index < 8 && Character.isDigit(header.charAt(end))) {
+            end++;
+        }
+        return (end == index) ? name : name + ' ' + header.substring(index, end);
+    }
+
+    /**
+     * Returns the product token around an index, such as "Googlebot" for the index of "bot" in "Googlebot/2.1".
+     */
+    private static String productName(String header, int index) {
+        int start = index;
+        while (start > 0 && isNameChar(header.charAt(start - 1))) {
+            start--;
+        }
+        int end = index;
+        while (end < header.length() && isNameChar(header.charAt(end))) {
+            end++;
+        }
+        return (end == start) ? UserAgent.BOT : header.substring(start, Math.min(end, start + MAX_NAME_LENGTH));
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.';
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The arbitrary data of an event: the shared values read from the environment, followed by values of the request.
+ * <p>
+ * The map is immutable and converts the request values to strings only when it is read, which happens when the data
+ * agent serializes the event, so building an event does not allocate the strings. Entries whose value is null are
+ * left out.
+ *
+ * @since 1.0.1
+ */
+public final class ArbitraryDataMap extends AbstractMap<String, String> {
+
+    private final Map<String, String> sharedData;
+    private final String[] keys;
+    private final Object[] values;
+    private Set<Entry<String, String>> entrySet;
+
+    /**
+     * @param sharedData the data shared by all events
+     * @param keys       the keys of the request values, which must not be keys of the shared data
+     * @param values     the request values, in the order of the keys
+     */
+    public ArbitraryDataMap(Map<String, String> sharedData, String[] keys, Object[] values) {
+        this.sharedData = sharedData;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @Override
+    public String get(Object key) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(key)) {
+                return (values[i] == null) ? null : values[i].toString();
+            }
+        }
+        return sharedData.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        @Override
+        public int size() {
+            int size = sharedData.size();
+            for (Object value : values) {
+                if (value != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new Iterator<Entry<String, String>>() {
+                private final Iterator<Entry<String, String>> sharedEntries = sharedData.entrySet().iterator();
+                private int index = nextIndex(0);
+
+                private int nextIndex(int from) {
+                    int i = from;
+                    while (i < values.length && values[i] == null) {
+                        i++;
+                    }
+                    return i;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return sharedEntries.hasNext() || index < values.length;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (sharedEntries.hasNext()) {
+                        return sharedEntries.next();
+                    }
+                    if (index >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<String, String> entry = new SimpleImmutableEntry<>(keys[index], values[index].toString());
+                    index = nextIndex(index + 1);
+                    return entry;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.Arrays;
+
+/**
+ * A set of IPv4 and IPv6 address ranges in CIDR notation, compiled into a binary trie with one level per address bit.
+ * <p>
+ * Ranges are added once, while the set is built. Looking up an address parses its characters while walking the trie,
+ * so it neither allocates nor resolves host names, and it costs at most one step per prefix bit of the deepest range.
+ * An IPv4-mapped IPv6 address, such as {@code ::ffff:10.0.0.1}, matches the IPv4 ranges. Instances are not safe for
+ * concurrent modification, but may be shared for lookups once built.
+ *
+ * @since 1.0.1
+ */
+public class CidrTrie {
+
+    private static final int NONE = 0;
+    private static final int MATCH = -1;
+    private static final int IPV4_ROOT = 1;
+    private static final int IPV6_ROOT = 2;
+
+    // the children of node n are at 2n and 2n + 1, where NONE means no child; nodes 1 and 2 are the roots
+    private int[] children = new int[16];
+    private boolean[] terminal = new boolean[8];
+    private int nodes = 3;
+
+    /**
+     * Adds a range to the set.
+     *
+     * @param cidr an address, optionally followed by a slash and a prefix length, such as {@code 10.0.0.0/8} or
+     *             {@code fc00::/7}
+     * @throws IllegalArgumentException if the range is not a valid IPv4 or IPv6 range
+     */
+    public void add(String cidr) {
+        String value = cidr.trim();
+        int slash = value.indexOf('/');
+        String address = (slash < 0) ? value : value.substring(0, slash);
+        boolean ipv4 = parseIpv4(address, 0, address.length()) >= 0;
+        if (!ipv4 && !isIpv6(address, 0, address.length())) {
+            throw new IllegalArgumentException("Invalid address range: " + cidr);
+        }
+        int bits = ipv4 ? 32 : 128;
+        int prefix = bits;
+        if (slash >= 0) {
+            try {
+                prefix = Integer.parseInt(value.substring(slash + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr, e);
+            }
+            if (prefix < 0 || prefix > bits) {
+                throw new IllegalArgumentException("Invalid prefix length: " + cidr);
+            }
+        }
+        long mapped = ipv4 ? -1 : ipv4Mapped(address, 0, address.length());
+        if (mapped >= 0 && prefix >= 96) {
+            ipv4 = true;
+            prefix -= 96;
+        }
+        long[] words = ipv4 ? new long[]{(mapped >= 0 ? mapped : parseIpv4(address, 0, address.length())) << 32, 0}
+                : ipv6Words(address);
+        int node = ipv4 ? IPV4_ROOT : IPV6_ROOT;
+        for (int i = 0; i < prefix && !terminal[node]; i++) {
+            int bit = (int) (words[i >> 6] >>> (63 - (i & 63))) & 1;
+            int child = children[2 * node + bit];
+            if (child == NONE) {
+                child = newNode();
+                children[2 * node + bit] = child;
+            }
+            node = child;
+        }
+        terminal[node] = true;
+    }
+
+    /**
+     * @param address an IPv4 or IPv6 address
+     * @return true if the address is in one of the ranges of the set, false if not or if it is not a valid address
+     */
+    public boolean contains(CharSequence address) {
+        return address != null && contains(address, 0, address.length());
+    }
+
+    /**
+     * Tells if the characters from start to end of a sequence form an address in one of the ranges of the set.
+     *
+     * @param address a sequence containing an IPv4 or IPv6 address
+     * @param start   the index of the first character of the address
+     * @param end     the index after the last character of the address
+     * @return true if the address is in one of the ranges of the set, false if not or if it is not a valid address
+     */
+    public boolean contains(CharSequence address, int start, int end) {
+        long ipv4 = parseIpv4(address, start, end);
+        if (ipv4 >= 0) {
+            return walk(IPV4_ROOT, ipv4, 32) == MATCH;
+        }
+        return isIpv6(address, start, end) && containsIpv6(address, start, end);
+    }
+
+    /**
+     * @param address a sequence of characters
+     * @return true if the sequence is an IPv4 or IPv6 address, without brackets, port or zone
+     */
+    public static boolean isAddress(CharSequence address) {
+        return address != null && isAddress(address, 0, address.length());
+    }
+
+    static boolean isAddress(CharSequence address, int start, int end) {
+        return parseIpv4(address, start, end) >= 0 || isIpv6(address, start, end);
+    }
+
+    /**
+     * Parses a dotted quad IPv4 address.
+     *
+     * @return the address as an unsigned 32-bit value, or -1 if the characters are not a valid IPv4 address
+     */
+    static long parseIpv4(CharSequence address, int start, int end) {
+        long value = 0;
+        int octets = 0;
+        int i = start;
+        while (i < end) {
+            int octet = 0;
+            int digits = 0;
+            while (i < end && address.charAt(i) >= '0' && address.charAt(i) <= '9') {
+                octet = octet * 10 + (address.charAt(i++) - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            }
+            if (digits == 0 || ++octets > 4) {
+                return -1;
+            }
+            value = (value << 8) | octet;
+            if (i < end) {
+                if (address.charAt(i) != '.' || i == end - 1) {
+                    return -1;
+                }
+                i++;
+            }
+        }
+        return (octets == 4) ? value : -1;
+    }
+
+    /**
+     * Tells if the characters form a valid IPv6 address: eight groups of up to four hexadecimal digits, of which one
+     * run of zero groups may be written as {@code ::} and the last two may be written as an IPv4 address.
+     */
+    static boolean isIpv6(CharSequence address, int start, int end) {
+        int groups = 0;
+        boolean compressed = false;
+        int i = start;
+        if (end - start >= 2 && address.charAt(i) == ':' && address.charAt(i + 1) == ':') {
+            compressed = true;
+            i += 2;
+        }
+        while (i < end) {
+            int groupEnd = i;
+            while (groupEnd < end && hexValue(address.charAt(groupEnd)) >= 0) {
+                groupEnd++;
+            }
+            if (groupEnd < end && address.charAt(groupEnd) == '.') {
+                if (parseIpv4(address, i, end) < 0) {
+                    return false;
+                }
+                groups += 2;
+                break;
+            }
+            if (groupEnd == i || groupEnd - i > 4) {
+                return false;
+            }
+            groups++;
+            i = groupEnd;
+            if (i < end) {
+                if (address.charAt(i) != ':' || i == end - 1) {
+                    return false;
+                }
+                i++;
+                if (address.charAt(i) == ':') {
+                    if (compressed) {
+                        return false;
+                    }
+                    compressed = true;
+                    i++;
+                }
+            }
+        }
+        return compressed ? groups < 8 : groups == 8;
+    }
+
+    /**
+     * Walks the IPv6 trie with a valid IPv6 address, expanding its {@code ::} to the number of missing zero groups.
+     */
+    private boolean containsIpv6(CharSequence address, int start, int end) {
+        long mapped = ipv4Mapped(address, start, end);
+        if (mapped >= 0) {
+            return walk(IPV4_ROOT, mapped, 32) == MATCH;
+        }
+        int missing = 8 - countGroups(address, start, end);
+        int node = IPV6_ROOT;
+        int i = start;
+        while (i < end && node > 0) {
+            if (address.charAt(i) == ':') {
+                if (i + 1 < end && address.charAt(i + 1) == ':') {
+                    for (int group = 0; group < missing && node > 0; group++) {
+                        node = walk(node, 0, 16);
+                    }
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            int groupEnd = i;
+            while (groupEnd < end && address.charAt(groupEnd) != ':' && address.charAt(groupEnd) != '.') {
+                groupEnd++;
+            }
+            if (groupEnd < end && address.charAt(groupEnd) == '.') {
+                return walk(node, parseIpv4(address, i, end), 32) == MATCH;
+            }
+            int group = 0;
+            for (int j = i; j < groupEnd; j++) {
+                group = (group << 4) | hexValue(address.charAt(j));
+            }
+            node = walk(node, group, 16);
+            i = groupEnd;
+        }
+        return node == MATCH || (node > 0 && terminal[node]);
+    }
+
+    /**
+     * @return the IPv4 address of an IPv4-mapped IPv6 address ({@code ::ffff:a.b.c.d}), or -1 for any other address
+     */
+    private static long ipv4Mapped(CharSequence address, int start, int end) {
+        String prefix = "::ffff:";
+        if (end - start <= prefix.length()) {
+            return -1;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(address.charAt(start + i)) != prefix.charAt(i)) {
+                return -1;
+            }
+        }
+        return parseIpv4(address, start + prefix.length(), end);
+    }
+
+    /**
+     * @return the number of groups written in a valid IPv6 address, counting a trailing IPv4 address as two
+     */
+    private static int countGroups(CharSequence address, int start, int end) {
+        int groups = 0;
+        boolean inGroup = false;
+        for (int i = start; i < end; i++) {
+            char c = address.charAt(i);
+            if (c == '.') {
+                return groups + 1;
+            }
+            if (c == ':') {
+                inGroup = false;
+            } else if (!inGroup) {
+                inGroup = true;
+                groups++;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Follows the given number of low order bits of a value from a node, most significant first.
+     *
+     * @return the node reached, {@link #MATCH} if a range ends on the way or {@link #NONE} if the path leaves the trie
+     */
+    private int walk(int node, long value, int bits) {
+        for (int i = bits - 1; i >= 0; i--) {
+            if (node <= 0) {
+                return node;
+            }
+            if (terminal[node]) {
+                return MATCH;
+            }
+            node = children[2 * node + (int) ((value >>> i) & 1)];
+        }
+        return (node > 0 && terminal[node]) ? MATCH : node;
+    }
+
+    private static long[] ipv6Words(String address) {
+        long[] words = new long[2];
+        int groups = 8 - countGroups(address, 0, address.length());
+        int index = 0;
+        int i = 0;
+        while (i < address.length()) {
+            if (address.charAt(i) == ':') {
+                if (i + 1 < address.length() && address.charAt(i + 1) == ':') {
+                    index += groups;
+                    i++;
+                }
+                i++;
+                continue;
+            }
+            int groupEnd = i;
+            while (groupEnd < address.length() && address.charAt(groupEnd) != ':' && address.charAt(groupEnd) != '.') {
+                groupEnd++;
+            }
+            if (groupEnd < address.length() && address.charAt(groupEnd) == '.') {
+                long ipv4 = parseIpv4(address, i, address.length());
+                words[1] |= ipv4;
+                break;
+            }
+            long group = Long.parseLong(address.substring(i, groupEnd), 16);
+            words[index >> 2] |= group << (16 * (3 - (index & 3)));
+            index++;
+            i = groupEnd;
+        }
+        return words;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private int newNode() {
+        if (nodes == terminal.length) {
+            terminal = Arrays.copyOf(terminal, nodes * 2);
+            children = Arrays.copyOf(children, nodes * 4);
+        }
+        return nodes++;
+    }
+}
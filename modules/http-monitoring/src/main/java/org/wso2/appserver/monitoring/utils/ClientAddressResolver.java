@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.apache.catalina.connector.Request;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.Constants;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Enumeration;
+
+/**
+ * Resolves the address of the client that sent a request through trusted proxies and load balancers.
+ * <p>
+ * The forwarding header is only considered if the request was received from a trusted proxy. Its hops are then
+ * walked from right to left, which is from the nearest proxy towards the client, skipping hops in the trusted ranges.
+ * The first hop that is not trusted is the client. If every hop is trusted, the leftmost one is the client, and if a
+ * hop is not an address, such as {@code unknown} or an obfuscated identifier, the walk stops at the hop before it.
+ * The header is either {@code X-Forwarded-For} or the {@code Forwarded} header of RFC 7239, of which the
+ * {@code for} parameters are used. Trusted ranges are compiled into a {@link CidrTrie}, so matching a hop does not
+ * allocate, and only the resolved address is copied out of the header.
+ *
+ * @since 1.0.1
+ */
+public class ClientAddressResolver {
+
+    public static final String TRUSTED_PROXIES = "http.monitoring.clientIp.trustedProxies";
+    public static final String HEADER = "http.monitoring.clientIp.header";
+    private static final String DEFAULT_TRUSTED_PROXIES =
+            "10.0.0.0/8,172.16.0.0/12,192.168.0.0/16,127.0.0.0/8,::1,fc00::/7";
+    private static final String NONE = "none";
+    private static final Log LOG = LogFactory.getLog(ClientAddressResolver.class);
+
+    private final CidrTrie trustedProxies = new CidrTrie();
+    private final String header;
+    private final boolean forwarded;
+
+    public ClientAddressResolver(MonitoringConfiguration configuration) {
+        String ranges = configuration.getString(TRUSTED_PROXIES, DEFAULT_TRUSTED_PROXIES);
+        if (!NONE.equalsIgnoreCase(ranges)) {
+            for (String range : ranges.split(",")) {
+                if (range.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    trustedProxies.add(range);
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring trusted proxy range '" + range.trim() + "' in " + TRUSTED_PROXIES + ": " +
+                            e.getMessage());
+                }
+            }
+        }
+        this.header = configuration.getString(HEADER, Constants.X_FORWARDED_FOR);
+        this.forwarded = Constants.FORWARDED.equalsIgnoreCase(header);
+    }
+
+    /**
+     * Returns the client address resolver of a web application, creating it on first use.
+     *
+     * @param contextInfo the values of the web application
+     * @return the client address resolver of the web application
+     */
+    public static ClientAddressResolver of(ContextInfo contextInfo) {
+        return contextInfo.getAttribute(ClientAddressResolver.class, ClientAddressResolver::new);
+    }
+
+    /**
+     * @param request the request
+     * @return the address of the client that sent the request
+     */
+    public String resolve(Request request) {
+        String remoteAddress = request.getRemoteAddr();
+        if (remoteAddress == null || !trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+        Enumeration<String> values = request.getHeaders(header);
+        if (values == null || !values.hasMoreElements()) {
+            return remoteAddress;
+        }
+        String value = values.nextElement();
+        while (values.hasMoreElements()) {
+            // repeated header lines form one list, in order
+            value = value + "," + values.nextElement();
+        }
+        return resolve(remoteAddress, value);
+    }
+
+    /**
+     * @param remoteAddress the address the request was received from
+     * @param value         the value of the forwarding header, or null
+     * @return the address of the client
+     */
+    String resolve(String remoteAddress, String value) {
+        if (value == null || !trustedProxies.contains(remoteAddress)) {
+            return remoteAddress;
+        }
+        long client = -1;
+        int end = value.length();
+        while (end >= 0) {
+            int start = value.lastIndexOf(',', end - 1) + 1;
+            long hop = hopRange(value, start, end);
+            if (hop < 0) {
+                break;
+            }
+            client = hop;
+            if (!trustedProxies.contains(value, (int) (hop >>> 32), (int) hop)) {
+                break;
+            }
+            end = start - 1;
+        }
+        return (client < 0) ? remoteAddress : value.substring((int) (client >>> 32), (int) client);
+    }
+
+    /**
+     * Locates the address of a hop of the forwarding header, without the quotes, brackets and port around it.
+     *
+     * @return the start index of the address in the high and its end index in the low 32 bits, or -1 if the hop is
+     * not an IPv4 or IPv6 address
+     */
+    private long hopRange(String value, int start, int end) {
+        if (forwarded) {
+            int parameterStart = start;
+            int parameterEnd;
+            do {
+                parameterEnd = value.indexOf(';', parameterStart);
+                if (parameterEnd < 0 || parameterEnd > end) {
+                    parameterEnd = end;
+                }
+                while (parameterStart < parameterEnd && value.charAt(parameterStart) == ' ') {
+                    parameterStart++;
+                }
+                if (value.regionMatches(true, parameterStart, "for=", 0, 4)) {
+                    break;
+                }
+                parameterStart = parameterEnd + 1;
+            } while (parameterEnd < end);
+            if (parameterStart > end) {
+                return -1;
+            }
+            start = parameterStart + 4;
+            end = parameterEnd;
+        }
+        while (start < end && value.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start >= 2 && value.charAt(start) == '"' && value.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        if (start < end && value.charAt(start) == '[') {
+            int bracket = value.indexOf(']', start);
+            if (bracket < 0 || bracket >= end) {
+                return -1;
+            }
+            start++;
+            end = bracket;
+        } else {
+            int colon = value.indexOf(':', start);
+            if (colon >= 0 && colon < end) {
+                int next = value.indexOf(':', colon + 1);
+                if (next < 0 || next >= end) {
+                    // a single colon separates an IPv4 address from a port
+                    end = colon;
+                }
+            }
+        }
+        return CidrTrie.isAddress(value, start, end) ? ((long) start << 32) | end : -1;
+    }
+}
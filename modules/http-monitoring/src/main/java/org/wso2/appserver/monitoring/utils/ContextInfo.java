@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.apache.catalina.Container;
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Values of a web application that do not change between requests, computed once per {@link Context}.
+ * <p>
+ * Besides the values used in events, other components cache their per web application state as attributes, for
+ * example settings parsed from the {@link MonitoringConfiguration} of the web application. Attributes that are
+ * {@link Closeable} are closed when the context stops.
+ * <p>
+ * Entries are kept in a lock-free map and evicted when the context stops, so redeployed web applications do not
+ * leak. Values of a context that is not available are computed for the caller but not cached, as no stop event may
+ * follow to evict them.
+ *
+ * @since 1.0.1
+ */
+public final class ContextInfo {
+
+    private static final Log LOG = LogFactory.getLog(ContextInfo.class);
+    private static final ConcurrentHashMap<Context, ContextInfo> CONTEXTS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final String hostName;
+    private final String servletVersion;
+    private final String displayName;
+    private final MonitoringConfiguration configuration;
+    private final ConcurrentHashMap<Object, Object> attributes = new ConcurrentHashMap<>();
+    private volatile Object[] metaData = new Object[2];
+
+    private ContextInfo(Context context) {
+        String contextName = context.getName();
+        this.name = (contextName == null || contextName.isEmpty()) ? "/" : contextName;
+        Container host = context.getParent();
+        this.hostName = (host == null || host.getName() == null) ? "" : host.getName();
+        this.servletVersion = context.getEffectiveMajorVersion() + "." + context.getEffectiveMinorVersion();
+        this.displayName = context.getDisplayName();
+        this.configuration = MonitoringConfiguration.getInstance().forContext(context);
+    }
+
+    /**
+     * Returns the cached values of a web application, computing them on first use.
+     *
+     * @param context the context of the web application
+     * @return the values of the web application
+     */
+    public static ContextInfo of(Context context) {
+        ContextInfo contextInfo = CONTEXTS.get(context);
+        if (contextInfo == null) {
+            contextInfo = new ContextInfo(context);
+            if (!context.getState().isAvailable()) {
+                return contextInfo;
+            }
+            ContextInfo existing = CONTEXTS.putIfAbsent(context, contextInfo);
+            if (existing != null) {
+                return existing;
+            }
+            context.addLifecycleListener(new EvictionListener(context));
+        }
+        return contextInfo;
+    }
+
+    /**
+     * @return the name of the context, which is its path or "/" for the root context
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the virtual host deploying the context, or an empty string if it is not deployed to a host
+     */
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * @return the effective servlet specification version of the web application, as "major.minor"
+     */
+    public String getServletVersion() {
+        return servletVersion;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return the monitoring configuration of the web application
+     */
+    public MonitoringConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Returns an attribute of the web application, computing it on first use.
+     *
+     * @param key      the key of the attribute, usually the class of the component owning it
+     * @param function the function computing the attribute from the configuration of the web application
+     * @param <T>      the type of the attribute
+     * @return the attribute
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getAttribute(Object key, Function<MonitoringConfiguration, T> function) {
+        Object attribute = attributes.get(key);
+        if (attribute == null) {
+            attribute = attributes.computeIfAbsent(key, k -> function.apply(configuration));
+        }
+        return (T) attribute;
+    }
+
+    /**
+     * Returns the event meta data for a server and local host name. The array of the previous call is reused as long
+     * as the names do not change, which holds for nearly every request of a web application. Callers must not modify
+     * the returned array.
+     *
+     * @param serverName the host name the request was sent to
+     * @param localName  the host name of the interface that received the request
+     * @return the meta data array holding the server name and local name
+     */
+    public Object[] getMetaData(String serverName, String localName) {
+        Object[] cached = metaData;
+        if (equals(cached[0], serverName) && equals(cached[1], localName)) {
+            return cached;
+        }
+        cached = new Object[]{serverName, localName};
+        metaData = cached;
+        return cached;
+    }
+
+    private void closeAttributes() {
+        for (Object attribute : attributes.values()) {
+            if (attribute instanceof Closeable) {
+                try {
+                    ((Closeable) attribute).close();
+                } catch (IOException e) {
+                    LOG.warn("Closing " + attribute + " of " + name + " failed: " + e);
+                }
+            }
+        }
+    }
+
+    private static boolean equals(Object cached, String value) {
+        return (cached == null) ? value == null : cached.equals(value);
+    }
+
+    /**
+     * Drops the cached values once the context stops.
+     */
+    private static class EvictionListener implements LifecycleListener {
+        private final Context context;
+
+        EvictionListener(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public void lifecycleEvent(LifecycleEvent event) {
+            if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+                ContextInfo contextInfo = CONTEXTS.remove(context);
+                context.removeLifecycleListener(this);
+                if (contextInfo != null) {
+                    contextInfo.closeAttributes();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An exclusive lock on a directory, held on a lock file inside it, so that two writers never share the files of one
+ * directory. The lock excludes other processes as well as other writers of this server.
+ *
+ * @since 1.0.1
+ */
+public class DirectoryLock implements Closeable {
+
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private DirectoryLock(Path directory, FileChannel channel, FileLock lock) {
+        this.directory = directory;
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * Locks a directory, which must exist.
+     *
+     * @param directory the directory to lock
+     * @return the held lock
+     * @throws IOException if the lock file cannot be opened or the directory is already locked
+     */
+    public static DirectoryLock acquire(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("Directory " + directory + " is already in use by another writer");
+        }
+        return new DirectoryLock(directory, channel, lock);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Releases the lock. The lock file is left in place, as deleting it could let two writers lock different files.
+     * Closing a released lock does nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -19,20 +19,23 @@ package org.wso2.appserver.monitoring.utils;
 
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
-import org.apache.commons.lang3.StringUtils;
 import org.wso2.appserver.monitoring.Constants;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.appserver.monitoring.aggregation.AggregationKey;
+import org.wso2.appserver.monitoring.aggregation.WebappCardinality;
+import org.wso2.appserver.monitoring.aggregation.Window;
+import org.wso2.appserver.monitoring.aggregation.WindowStatistics;
 import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+import org.wso2.appserver.monitoring.geoip.GeoIpEnricher;
+import org.wso2.appserver.monitoring.geoip.GeoLocation;
+import org.wso2.appserver.monitoring.sampling.Sampler;
+import org.wso2.appserver.monitoring.useragent.UserAgent;
+import org.wso2.appserver.monitoring.useragent.UserAgentClassifier;
 import org.wso2.carbon.databridge.commons.Event;
 
-import java.security.Principal;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Collectors;
-import javax.servlet.http.HttpSession;
 
 /**
  * Utility class to create an Event to be published by the DataPublisher.
@@ -41,8 +44,35 @@ import javax.servlet.http.HttpSession;
  */
 public class EventBuilder {
 
+    private static final int PAYLOAD_SIZE = 25;
+    private static final int SUMMARY_PAYLOAD_SIZE = 15;
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final String FORWARD_SLASH = "/";
+    private static final ThreadLocal<StringBuilder> HEADER_BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(1024));
+    private static final Long[] BOXED_STATUSES = new Long[600];
+    private static final String TIMING_FIELDS = "http.monitoring.event.timingFields";
+    private static final boolean TIMING_FIELDS_ENABLED =
+            MonitoringConfiguration.getInstance().getBoolean(TIMING_FIELDS, false);
+    private static final String URI_TEMPLATE_FIELD = "http.monitoring.event.uriTemplate";
+    private static final boolean URI_TEMPLATE_ENABLED =
+            MonitoringConfiguration.getInstance().getBoolean(URI_TEMPLATE_FIELD, false);
+    private static final String[] ARBITRARY_KEYS = {Constants.QUEUE_TIME_NANOS, Constants.TIME_TO_COMMIT_NANOS,
+            Constants.RESPONSE_TIME_NANOS, Constants.SAMPLE_WEIGHT, Constants.USER_AGENT_BROWSER,
+            Constants.USER_AGENT_OS, Constants.USER_AGENT_DEVICE, Constants.GEO_COUNTRY, Constants.GEO_REGION,
+            Constants.GEO_ASN, Constants.URI_TEMPLATE};
+    private static final String[] SUMMARY_ARBITRARY_KEYS = {Constants.DISTINCT_URIS, Constants.DISTINCT_USERS,
+            Constants.DISTINCT_CLIENT_IPS, Constants.DISTINCT_SESSIONS, Constants.OVERFLOW_REQUESTS};
+    private static final UserAgentClassifier USER_AGENT_CLASSIFIER = UserAgentClassifier.getInstance();
+    private static final GeoIpEnricher GEO_IP_ENRICHER = GeoIpEnricher.getInstance();
     private static Map<String, String> arbitraryData;
 
+    static {
+        for (int i = 0; i < BOXED_STATUSES.length; i++) {
+            BOXED_STATUSES[i] = (long) i;
+        }
+    }
+
     /**
      * Creates an Event to be published by the DataPublisher.
      *
@@ -56,11 +86,124 @@ public class EventBuilder {
      */
     public static Event buildEvent(String streamId, Request request, Response response, long startTime,
             long responseTime) throws StatPublisherException {
-        List<Object> payload = buildPayloadData(request, response, startTime, responseTime);
+        return buildEvent(streamId, RequestSnapshot.capture(request, response, startTime, responseTime));
+    }
 
-        return new Event(streamId, startTime,
-                new ArrayList<>(Arrays.asList(request.getServerName(), request.getLocalName())).toArray(), null,
-                payload.toArray(), getArbitraryData());
+    /**
+     * Creates an Event to be published by the DataPublisher from a captured request.
+     *
+     * @param streamId unique ID of the event stream definition deployed in DAS
+     * @param snapshot the values captured from the served request
+     * @return an Event object populated with data to be published
+     * @throws StatPublisherException
+     */
+    public static Event buildEvent(String streamId, RequestSnapshot snapshot) throws StatPublisherException {
+        UserAgent userAgent = (USER_AGENT_CLASSIFIER != null) ?
+                USER_AGENT_CLASSIFIER.classify(snapshot.getUserAgent()) : null;
+        GeoLocation location = (GEO_IP_ENRICHER != null) ?
+                GEO_IP_ENRICHER.locate(snapshot.getClientIpAddress()) : null;
+        return new Event(streamId, snapshot.getStartTime(),
+                snapshot.getContextInfo().getMetaData(snapshot.getServerName(), snapshot.getLocalName()), null,
+                buildPayloadData(snapshot, userAgent), buildArbitraryData(snapshot, userAgent, location));
+    }
+
+    /**
+     * Creates a summary Event of the requests of one key in a window.
+     *
+     * @param streamId      unique ID of the summary stream definition deployed in DAS
+     * @param window        the window that ended
+     * @param key           the web application, URI, method and status of the requests
+     * @param statistics    the statistics of the requests
+     * @param arbitraryData the arbitrary data of the summaries of the web application, as built by
+     *                      {@link #buildSummaryArbitraryData(WebappCardinality)}
+     * @return an Event object populated with the summary
+     */
+    public static Event buildSummaryEvent(String streamId, Window window, AggregationKey key,
+            WindowStatistics statistics, Map<String, String> arbitraryData) {
+        Object[] payload = new Object[SUMMARY_PAYLOAD_SIZE];
+        int index = 0;
+
+        long count = statistics.getCount();
+        payload[index++] = key.getWebapp();
+        payload[index++] = key.getRequestURI();
+        payload[index++] = key.getMethod();
+        payload[index++] = boxStatus(key.getStatus());
+        payload[index++] = window.getStartTime();
+        payload[index++] = window.getDurationMillis();
+        payload[index++] = count;
+        payload[index++] = statistics.getWeightedCount();
+        payload[index++] = statistics.getRequestBytes();
+        payload[index++] = statistics.getResponseBytes();
+        payload[index++] = (count > 0) ? toMillis(statistics.getLatencyNanos()) / count : 0.0;
+        payload[index++] = toMillis(statistics.getMaxLatencyNanos());
+        payload[index++] = toMillis(statistics.getLatencyPercentileNanos(50));
+        payload[index++] = toMillis(statistics.getLatencyPercentileNanos(90));
+        payload[index] = toMillis(statistics.getLatencyPercentileNanos(99));
+
+        return new Event(streamId, window.getStartTime(), null, null, payload, arbitraryData);
+    }
+
+    /**
+     * Creates the arbitrary data of the summary events of a web application, adding its distinct counts in the window.
+     * Estimating the counts takes a pass over the sketches, so the data is meant to be built once per web application
+     * and window and shared by its summaries.
+     *
+     * @param cardinality the distinct counts of the web application, or null
+     * @return the arbitrary data map
+     */
+    public static Map<String, String> buildSummaryArbitraryData(WebappCardinality cardinality) {
+        if (cardinality == null) {
+            return getArbitraryData();
+        }
+        Object[] values = {
+                cardinality.getDistinctUris(),
+                cardinality.getDistinctUsers(),
+                cardinality.getDistinctClientIpAddresses(),
+                cardinality.getDistinctSessions(),
+                cardinality.getOverflowCount()
+        };
+        return new ArbitraryDataMap(getArbitraryData(), SUMMARY_ARBITRARY_KEYS, values);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Creates the arbitrary data of an event, adding the phase timings of the request to the shared data if enabled,
+     * the sample weight if the request was sampled, the classification of the User-Agent header if any, the
+     * location of the client if found and the route template of the requested URI if enabled.
+     *
+     * @param snapshot  the values captured from the served request
+     * @param userAgent the classification of the User-Agent header, or null
+     * @param location  the location of the client address, or null
+     * @return the arbitrary data map
+     */
+    private static Map<String, String> buildArbitraryData(RequestSnapshot snapshot, UserAgent userAgent,
+            GeoLocation location) {
+        boolean sampled = snapshot.getSampleWeight() != Sampler.UNSAMPLED;
+        String uriTemplate = URI_TEMPLATE_ENABLED ? snapshot.getUriTemplate() : null;
+        if (!TIMING_FIELDS_ENABLED && !sampled && userAgent == null && location == null && uriTemplate == null) {
+            return getArbitraryData();
+        }
+        Object[] values = {
+                TIMING_FIELDS_ENABLED ? knownOrNull(snapshot.getQueueTimeNanos()) : null,
+                TIMING_FIELDS_ENABLED ? knownOrNull(snapshot.getTimeToCommitNanos()) : null,
+                TIMING_FIELDS_ENABLED ? snapshot.getResponseTimeNanos() : null,
+                sampled ? snapshot.getSampleWeight() : null,
+                (userAgent != null) ? userAgent.getBrowser() : null,
+                (userAgent != null) ? userAgent.getOperatingSystem() : null,
+                (userAgent != null) ? userAgent.getDevice() : null,
+                (location != null) ? location.getCountry() : null,
+                (location != null) ? location.getRegion() : null,
+                (location != null) ? location.getAsn() : null,
+                uriTemplate
+        };
+        return new ArbitraryDataMap(getArbitraryData(), ARBITRARY_KEYS, values);
+    }
+
+    private static Long knownOrNull(long value) {
+        return (value < 0) ? null : value;
     }
 
     /**
@@ -89,144 +232,103 @@ public class EventBuilder {
     /**
      * Creates the payload.
      *
-     * @param request      the Request object of client
-     * @param response     the Response object of client
-     * @param startTime    the time at which the valve is invoked
-     * @param responseTime the time that is taken for the client to receive a response
-     * @return a list containing all payload data that were extracted from the request and response
+     * @param snapshot  the values captured from the served request
+     * @param userAgent the classification of the User-Agent header, or null
+     * @return an array containing all payload data that were extracted from the request and response
      */
-    private static List<Object> buildPayloadData(Request request, Response response, long startTime,
-            long responseTime) {
-        List<Object> payload = new ArrayList<>();
-        final String forwardSlash = "/";
-
-        Optional.ofNullable(request.getRequestURI())
-                .map(String::trim)
-                .ifPresent(requestedURI -> {
-                    String[] requestedUriParts = requestedURI.split(forwardSlash);
-                    if (!forwardSlash.equals(requestedURI)) {
-                        payload.add((requestedUriParts[1]));
-                    } else {
-                        payload.add((forwardSlash));
-                    }
-                });
-
-        String webappServletVersion = request.getContext().getEffectiveMajorVersion() + "." +
-                request.getContext().getEffectiveMinorVersion();
-
-        payload.add(webappServletVersion);
-        payload.add(extractUsername(request));
-        payload.add(request.getRequestURI());
-        payload.add(startTime);
-        payload.add(request.getPathInfo());
-        payload.add(Constants.APP_TYPE);
-        payload.add(request.getContext().getDisplayName());
-        payload.add(extractSessionId(request));
-        payload.add(request.getMethod());
-        payload.add(request.getContentType());
-        payload.add(response.getContentType());
-        payload.add((long) response.getStatus());
-        payload.add(getClientIpAddress(request));
-        payload.add(request.getHeader(Constants.REFERRER));
-        payload.add(request.getHeader(Constants.USER_AGENT));
-        payload.add(request.getHeader(Constants.HOST));
-        payload.add(request.getRemoteUser());
-        payload.add(request.getAuthType());
-        payload.add(responseTime);
-        payload.add((long) request.getContentLength());
-        payload.add((long) response.getContentLength());
-        payload.add(getRequestHeaders(request));
-        payload.add(getResponseHeaders(response));
-        payload.add(request.getLocale().getLanguage());
+    private static Object[] buildPayloadData(RequestSnapshot snapshot, UserAgent userAgent) {
+        Object[] payload = new Object[PAYLOAD_SIZE];
+        int index = 0;
 
-        return payload;
-    }
-
-    /**
-     * Gets all request headers and their corresponding values.
-     *
-     * @param request the Request object of client
-     * @return a {@link String} containing all request headers and their values
-     */
-    private static String getRequestHeaders(Request request) {
-        List<String> requestHeaders = new ArrayList<>();
-        Collections.list(request.getHeaderNames())
-                .forEach(header -> {
-                    List<String> values = new ArrayList<>();
-                    values.add(request.getHeader(header));
-                    String tmpString = "(" + StringUtils.join(values, ",") + ")";
-                    requestHeaders.add(header + ":" + tmpString);
-                });
-        return StringUtils.join(requestHeaders, ";");
-    }
+        payload[index++] = getWebappSegment(snapshot.getRequestURI());
+        payload[index++] = snapshot.getServletVersion();
+        payload[index++] = snapshot.getUsername();
+        payload[index++] = snapshot.getRequestURI();
+        payload[index++] = snapshot.getStartTime();
+        payload[index++] = snapshot.getPathInfo();
+        payload[index++] = Constants.APP_TYPE;
+        payload[index++] = snapshot.getWebappDisplayName();
+        payload[index++] = snapshot.getSessionId();
+        payload[index++] = snapshot.getMethod();
+        payload[index++] = snapshot.getRequestContentType();
+        payload[index++] = snapshot.getResponseContentType();
+        payload[index++] = boxStatus(snapshot.getStatus());
+        payload[index++] = snapshot.getClientIpAddress();
+        payload[index++] = snapshot.getReferrer();
+        payload[index++] = (userAgent != null && USER_AGENT_CLASSIFIER.isReplacingHeader()) ?
+                userAgent.getSummary() : snapshot.getUserAgent();
+        payload[index++] = snapshot.getHost();
+        payload[index++] = snapshot.getRemoteUser();
+        payload[index++] = snapshot.getAuthType();
+        payload[index++] = snapshot.getResponseTime();
+        payload[index++] = snapshot.getRequestContentLength();
+        payload[index++] = snapshot.getResponseContentLength();
+        payload[index++] = joinHeaders(snapshot.getRequestHeaders(), ';');
+        payload[index++] = joinHeaders(snapshot.getResponseHeaders(), ',');
+        payload[index] = snapshot.getLanguage();
 
-    /**
-     * Gets all response headers and their corresponding values.
-     *
-     * @param response the Response object of client
-     * @return a {@link String} containing all response headers and their values
-     */
-    private static String getResponseHeaders(Response response) {
-        List<String> responseHeaders = new ArrayList<>();
-        response.getHeaderNames()
-                .forEach(header -> {
-                    List<String> values = new ArrayList<>();
-                    values.add(response.getHeader(header));
-                    String tmpString = "(" + StringUtils.join(values, ",") + ")";
-                    responseHeaders.add(header + ":" + tmpString);
-                });
-        return StringUtils.join(responseHeaders, ",");
+        return payload;
     }
 
     /**
-     * Extracts the session ID of the current session associated with the request.
+     * Extracts the first segment of the requested URI, which names the web application, without splitting the URI.
      *
-     * @param request the Request object of client
-     * @return the session ID of client
+     * @param requestURI the requested URI
+     * @return the first path segment, "/" for the root URI, or null if there is no URI
      */
-    private static String extractSessionId(Request request) {
-        HttpSession session = request.getSession(false);
-        //  CXF web services does not have a session id, because they are stateless
-        return (session != null && session.getId() != null) ? session.getId() : "-";
+    public static String getWebappSegment(String requestURI) {
+        if (requestURI == null) {
+            return null;
+        }
+        String requestedURI = requestURI.trim();
+        if (FORWARD_SLASH.equals(requestedURI)) {
+            return FORWARD_SLASH;
+        }
+        int start = requestedURI.indexOf('/') + 1;
+        if (start == 0) {
+            return "";
+        }
+        int end = requestedURI.indexOf('/', start);
+        return requestedURI.substring(start, (end < 0) ? requestedURI.length() : end);
     }
 
     /**
-     * Extracts the name of the current authenticated user for the request.
+     * Serializes captured headers and their corresponding values into a buffer that is reused by the thread.
      *
-     * @param request the Request object of client
-     * @return the username of the current authenticated user
+     * @param headers   header names and values, alternating
+     * @param separator the separator placed between two headers
+     * @return a {@link String} containing all headers and their values
      */
-    private static String extractUsername(Request request) {
-        String consumerName;
-        Principal principal = request.getUserPrincipal();
-        if (principal != null) {
-            consumerName = principal.getName();
-        } else {
-            consumerName = Constants.ANONYMOUS_USER;
+    static String joinHeaders(String[] headers, char separator) {
+        if (headers.length == 0) {
+            return "";
         }
-        return consumerName;
+        StringBuilder builder = HEADER_BUFFER.get();
+        builder.setLength(0);
+        for (int i = 0; i < headers.length; i += 2) {
+            if (i > 0) {
+                builder.append(separator);
+            }
+            builder.append(headers[i]).append(":(");
+            if (headers[i + 1] != null) {
+                builder.append(headers[i + 1]);
+            }
+            builder.append(')');
+        }
+        String joined = builder.toString();
+        if (builder.capacity() > MAX_RETAINED_BUFFER) {
+            HEADER_BUFFER.remove();
+        }
+        return joined;
     }
 
     /**
-     * Gets the original client IP address.
+     * Returns a shared boxed instance for the common HTTP status codes.
      *
-     * @param request the Request object of client
-     * @return the original IP address of the client
+     * @param status the HTTP status code
+     * @return the boxed status code
      */
-    private static String getClientIpAddress(Request request) {
-        List<String> headers = Arrays.
-                asList(Constants.X_FORWARDED_FOR, Constants.PROXY_CLIENT_IP, Constants.WL_PROXY_CLIENT_IP,
-                        Constants.HTTP_CLIENT_IP, Constants.HTTP_X_FORWARDED_FOR);
-
-        for (String header : headers) {
-            String ip = request.getHeader(header);
-            if (ip != null && ip.length() != 0 && !Constants.UNKNOWN.equalsIgnoreCase(ip)) {
-                return ip;
-            } else {
-                return request.getRemoteAddr();
-            }
-        }
-
-        return request.getRemoteAddr();
+    private static Long boxStatus(int status) {
+        return (status >= 0 && status < BOXED_STATUSES.length) ? BOXED_STATUSES[status] : Long.valueOf(status);
     }
 }
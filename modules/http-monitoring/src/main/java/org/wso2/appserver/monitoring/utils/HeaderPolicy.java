@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Decides which request and response headers of a web application are captured into events.
+ * <p>
+ * A header is captured if it is in the allowlist, or the allowlist is empty, and it is not in the denylist. Names
+ * are compared ignoring case. By default credentials and cookies are denied. Captured headers of a request or a
+ * response are limited to {@link #MAX_BYTES} bytes in their serialized form, encoded in UTF-8 as events are: headers
+ * that would exceed the limit are skipped, so the serialized field never holds a partial header.
+ *
+ * @since 1.0.1
+ */
+public class HeaderPolicy {
+
+    public static final String CAPTURE = "http.monitoring.headers.capture";
+    public static final String ALLOW = "http.monitoring.headers.allow";
+    public static final String DENY = "http.monitoring.headers.deny";
+    public static final String MAX_BYTES = "http.monitoring.headers.maxBytes";
+    private static final String DEFAULT_DENY = "Authorization,Proxy-Authorization,Cookie,Set-Cookie";
+
+    private final boolean capture;
+    private final Set<String> allowed;
+    private final Set<String> denied;
+    private final int maxBytes;
+
+    public HeaderPolicy(MonitoringConfiguration configuration) {
+        this.capture = configuration.getBoolean(CAPTURE, true);
+        this.allowed = toSet(configuration.getString(ALLOW, ""));
+        this.denied = toSet(configuration.getString(DENY, DEFAULT_DENY));
+        this.maxBytes = configuration.getInt(MAX_BYTES, 2048);
+    }
+
+    /**
+     * Returns the header policy of a web application, creating it on first use.
+     *
+     * @param contextInfo the values of the web application
+     * @return the header policy of the web application
+     */
+    public static HeaderPolicy of(ContextInfo contextInfo) {
+        return contextInfo.getAttribute(HeaderPolicy.class, HeaderPolicy::new);
+    }
+
+    /**
+     * @return false if no headers are captured at all
+     */
+    public boolean isCaptured() {
+        return capture;
+    }
+
+    /**
+     * @param name the name of a header
+     * @return true if the header is captured
+     */
+    public boolean isCaptured(String name) {
+        return capture && (allowed.isEmpty() || allowed.contains(name)) && !denied.contains(name);
+    }
+
+    /**
+     * @return the maximum UTF-8 length of the serialized headers of a request or response, or 0 for no limit
+     */
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Computes the UTF-8 length of a header serialized as "name:(value)" with its separator, by scanning its
+     * characters rather than encoding them.
+     *
+     * @param name  the name of the header
+     * @param value the value of the header, may be null
+     * @return the number of bytes the header takes in the serialized field
+     */
+    public static int getSerializedBytes(String name, String value) {
+        return getUtf8Length(name) + ((value != null) ? getUtf8Length(value) : 0) + 4;
+    }
+
+    static int getUtf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            if (character < 0x80) {
+                continue;
+            }
+            if (character < 0x800) {
+                length++;
+            } else if (Character.isHighSurrogate(character) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                // four bytes for the two characters of a supplementary code point
+                length += 2;
+                i++;
+            } else if (!Character.isSurrogate(character)) {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    private static Set<String> toSet(String names) {
+        Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .forEach(set::add);
+        return set;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The standard HTTP methods. The method of a request is chosen by the client, so anything keyed by method folds the
+ * methods outside this set into {@link #OTHER}.
+ *
+ * @since 1.0.1
+ */
+public final class HttpMethods {
+
+    public static final String OTHER = "OTHER";
+    private static final Map<String, String> STANDARD = new HashMap<>();
+
+    static {
+        for (String method : new String[] { "GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE" }) {
+            STANDARD.put(method, method);
+        }
+    }
+
+    private HttpMethods() {
+    }
+
+    /**
+     * @param method the method of a request, may be null
+     * @return the shared instance of a standard method, or null if the method is not standard
+     */
+    public static String standard(String method) {
+        return (method != null) ? STANDARD.get(method) : null;
+    }
+
+    /**
+     * @param method the method of a request, may be null
+     * @return the shared instance of a standard method, or {@link #OTHER}
+     */
+    public static String normalize(String method) {
+        String standard = standard(method);
+        return (standard != null) ? standard : OTHER;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache that evicts the least recently used entries, safe for use by concurrent threads.
+ * <p>
+ * Keys are spread over a number of independently locked stripes, each an access ordered map holding its share of the
+ * capacity, so threads contend only when they look up keys of the same stripe. Eviction is least recently used within
+ * a stripe, which approximates it for the whole cache.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @since 1.0.1
+ */
+public class LruCache<K, V> {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    public LruCache(int maxSize) {
+        int stripeSize = Math.max(1, (maxSize + STRIPES - 1) / STRIPES);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe<>(stripeSize);
+        }
+    }
+
+    /**
+     * Returns the value of a key, computing and caching it if the key is not cached. The value is computed outside
+     * the lock, so two threads may compute the value of the same key at the same time.
+     *
+     * @param key             the key
+     * @param mappingFunction computes the value of a key that is not cached
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<K, V> mappingFunction) {
+        Stripe<K, V> stripe = stripes[spread(key.hashCode()) & (STRIPES - 1)];
+        V value;
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            synchronized (stripe) {
+                stripe.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16) ^ (hash >>> 8);
+    }
+
+    /**
+     * An access ordered map that removes its eldest entry when it grows beyond its share of the capacity.
+     */
+    private static class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        Stripe(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * A bounded cache whose lookups take no lock, for values looked up on every request.
+ * <p>
+ * Like {@link StringInterner}, the cache is a table of slots indexed by the hash of the key, in which an entry that
+ * is not cached replaces the one in its slot. Eviction is approximate: a key that stops being looked up is evicted by
+ * the next key of its slot, and a flood of distinct keys only costs a repeating key its slot until it is looked up
+ * again. Unlike {@link LruCache}, a hit is a single volatile read.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ * @since 1.0.1
+ */
+public class SlotCache<K, V> {
+
+    private final AtomicReferenceArray<Entry<K, V>> slots;
+    private final int mask;
+
+    /**
+     * @param maxSize the maximum number of cached entries, rounded down to a power of two
+     */
+    public SlotCache(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(1, maxSize));
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value of a key, computing and caching it if the key is not cached. Two threads may compute the
+     * value of the same key at the same time.
+     *
+     * @param key             the key
+     * @param mappingFunction computes the value of a key that is not cached
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<K, V> mappingFunction) {
+        int hash = key.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        Entry<K, V> entry = slots.get(index);
+        if (entry != null && entry.hash == hash && key.equals(entry.key)) {
+            return entry.value;
+        }
+        V value = mappingFunction.apply(key);
+        slots.lazySet(index, new Entry<>(hash, key, value));
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A cached key and its value; entries are immutable, so a slot is replaced as a whole.
+     */
+    private static class Entry<K, V> {
+
+        private final int hash;
+        private final K key;
+        private final V value;
+
+        Entry(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
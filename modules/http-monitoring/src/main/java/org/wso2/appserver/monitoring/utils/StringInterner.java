@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of canonical string instances.
+ * <p>
+ * Tomcat creates new strings for header values, methods and content types on every request. Values that repeat are
+ * replaced with a shared instance, so buffered snapshots do not keep thousands of copies alive. Many of these values
+ * are chosen by clients, so the pool is a table of slots indexed by the hash of the string, in which a string that is
+ * not pooled replaces the one in its slot: values that stop repeating are evicted, and a flood of distinct values only
+ * costs a repeating value its slot until it is seen again.
+ * <p>
+ * Every request interns several values, so a lookup takes no lock.
+ *
+ * @since 1.0.1
+ */
+public class StringInterner {
+
+    private final AtomicReferenceArray<String> pool;
+    private final int mask;
+
+    /**
+     * @param maxSize the maximum number of pooled strings, rounded down to a power of two
+     */
+    public StringInterner(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(1, maxSize));
+        this.pool = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param value the string to canonicalize, may be null
+     * @return the pooled instance equal to the value, or the value itself, which is pooled
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String pooled = pool.get(index);
+        if (value.equals(pooled)) {
+            return pooled;
+        }
+        pool.lazySet(index, value);
+        return value;
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < pool.length(); i++) {
+            if (pool.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
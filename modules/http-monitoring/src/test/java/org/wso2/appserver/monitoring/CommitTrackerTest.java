@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.connector.Response;
+import org.apache.coyote.ActionCode;
+import org.apache.coyote.ActionHook;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for tracking the commit of a response.
+ *
+ * @since 1.0.1
+ */
+public class CommitTrackerTest {
+
+    @Test(description = "Checks that the commit is timed and that the connector hook is restored")
+    public void commitTest() {
+        List<ActionCode> actions = new ArrayList<>();
+        ActionHook hook = (actionCode, param) -> actions.add(actionCode);
+        org.apache.coyote.Response coyoteResponse = new org.apache.coyote.Response();
+        coyoteResponse.setHook(hook);
+        Response response = mock(Response.class);
+        when(response.getCoyoteResponse()).thenReturn(coyoteResponse);
+
+        CommitTracker commitTracker = CommitTracker.install(response, System.nanoTime());
+        Assert.assertNotNull(commitTracker);
+        Assert.assertEquals(commitTracker.getTimeToCommitNanos(), -1L);
+        coyoteResponse.action(ActionCode.ACK, null);
+        Assert.assertEquals(commitTracker.getTimeToCommitNanos(), -1L);
+        coyoteResponse.sendHeaders();
+        long timeToCommitNanos = commitTracker.getTimeToCommitNanos();
+        Assert.assertTrue(timeToCommitNanos >= 0, "Commit not recorded");
+        coyoteResponse.action(ActionCode.COMMIT, null);
+        Assert.assertEquals(commitTracker.getTimeToCommitNanos(), timeToCommitNanos);
+        commitTracker.uninstall();
+
+        Assert.assertSame(coyoteResponse.getHook(), hook);
+        Assert.assertEquals(actions.size(), 3, "Actions not passed on to the connector");
+    }
+
+    @Test(description = "Checks that nothing is installed on a response without a connector")
+    public void noConnectorTest() {
+        Assert.assertNull(CommitTracker.install(new Response(), System.nanoTime()));
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardContext;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.configuration.context.WebAppStatsPublishing;
+import org.wso2.appserver.monitoring.exceptions.StatPublisherException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the per web application registry of data publishers.
+ *
+ * @since 1.0.1
+ */
+public class PublisherRegistryTest {
+
+    @Test(description = "Checks that web applications with the same configuration share one publisher")
+    public void sharedPublisherTest() throws Exception {
+        Map<Context, WebAppStatsPublishing> configurations = new HashMap<>();
+        Context first = new StartedContext();
+        Context second = new StartedContext();
+        Context other = new StartedContext();
+        configurations.put(first, newConfiguration(true, "org.example.FirstPublisher"));
+        configurations.put(second, newConfiguration(true, "org.example.FirstPublisher"));
+        configurations.put(other, newConfiguration(true, "org.example.OtherPublisher"));
+        List<ClosablePublisher> built = new ArrayList<>();
+        PublisherRegistry registry = new PublisherRegistry(configurations::get, configuration -> {
+            ClosablePublisher publisher = new ClosablePublisher();
+            built.add(publisher);
+            return publisher;
+        });
+
+        PublisherRegistry.Publication publication = registry.register(first);
+        Assert.assertSame(registry.get(first), publication);
+        Assert.assertSame(registry.get(second), publication);
+        Assert.assertNotSame(registry.get(other), publication);
+        awaitReady(publication);
+        awaitReady(registry.get(other));
+        Assert.assertEquals(built.size(), 2);
+
+        registry.unregister(first);
+        Assert.assertFalse(built.get(0).closed, "The publisher is still used by the second web application");
+        registry.unregister(second);
+        Assert.assertTrue(built.get(0).closed);
+        Assert.assertFalse(built.get(1).closed);
+
+        registry.stop();
+        Assert.assertTrue(built.get(1).closed);
+    }
+
+    @Test(description = "Checks that a publisher is closed when the last web application using it stops")
+    public void contextStopTest() throws Exception {
+        Context first = new StartedContext();
+        Context second = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(true, "org.example.FirstPublisher");
+        List<ClosablePublisher> built = Collections.synchronizedList(new ArrayList<>());
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            ClosablePublisher publisher = new ClosablePublisher();
+            built.add(publisher);
+            return publisher;
+        });
+
+        registry.lifecycleEvent(new LifecycleEvent(first, Lifecycle.AFTER_START_EVENT, null));
+        registry.lifecycleEvent(new LifecycleEvent(second, Lifecycle.AFTER_START_EVENT, null));
+        PublisherRegistry.Publication publication = registry.get(first);
+        awaitReady(publication);
+        Assert.assertEquals(built.size(), 1);
+
+        registry.lifecycleEvent(new LifecycleEvent(first, Lifecycle.AFTER_STOP_EVENT, null));
+        Assert.assertFalse(built.get(0).closed);
+        registry.lifecycleEvent(new LifecycleEvent(second, Lifecycle.AFTER_STOP_EVENT, null));
+        Assert.assertTrue(built.get(0).closed);
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.CLOSED);
+
+        // a web application started again gets a new publisher
+        registry.lifecycleEvent(new LifecycleEvent(first, Lifecycle.AFTER_START_EVENT, null));
+        awaitReady(registry.get(first));
+        Assert.assertEquals(built.size(), 2);
+        registry.stop();
+        Assert.assertTrue(built.get(1).closed);
+    }
+
+    @Test(description = "Checks that concurrent first requests build the publisher of a web application once")
+    public void concurrentInitializationTest() throws Exception {
+        Context context = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(true, "org.example.FirstPublisher");
+        AtomicInteger builds = new AtomicInteger();
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            builds.incrementAndGet();
+            return new ClosablePublisher();
+        });
+        Map<PublisherRegistry.Publication, Boolean> seen = new ConcurrentHashMap<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    seen.put(registry.get(context), Boolean.TRUE);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        awaitReady(registry.get(context));
+
+        Assert.assertEquals(builds.get(), 1);
+        Assert.assertEquals(seen.size(), 1);
+    }
+
+    @Test(description = "Checks that requests are buffered while the publisher warms up and published once it is ready")
+    public void warmUpTest() throws Exception {
+        Context context = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(true, RecordingPublisher.class.getName());
+        CountDownLatch connected = new CountDownLatch(1);
+        RecordingPublisher publisher = new RecordingPublisher();
+        List<String> published = publisher.threads;
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            try {
+                connected.await();
+            } catch (InterruptedException e) {
+                throw new StatPublisherException("Interrupted while connecting", e);
+            }
+            return publisher;
+        });
+
+        PublisherRegistry.Publication publication = registry.get(context);
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.WARMING_UP);
+        Assert.assertNull(publication.getDataPublisher());
+        Assert.assertTrue(publication.isBuffering());
+        RequestSnapshot snapshot = newSnapshot();
+        publication.buffer(snapshot);
+        publication.buffer(snapshot);
+
+        connected.countDown();
+        awaitReady(publication);
+        Assert.assertFalse(publication.isBuffering());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (published.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(published.size(), 2);
+        Assert.assertEquals(publication.getDroppedCount(), 0L);
+
+        // a snapshot buffered as the publisher became ready is published from the warm-up thread
+        publication.buffer(snapshot);
+        deadline = System.currentTimeMillis() + 5000;
+        while (published.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(published.size(), 3);
+        Assert.assertEquals(published.get(2), "http-stats-publisher-warmup");
+        registry.stop();
+    }
+
+    @Test(description = "Checks that requests are not buffered for publishers that cannot publish snapshots")
+    public void unbufferedWarmUpTest() throws Exception {
+        Context context = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(true, ClosablePublisher.class.getName());
+        CountDownLatch connected = new CountDownLatch(1);
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            try {
+                connected.await();
+            } catch (InterruptedException e) {
+                throw new StatPublisherException("Interrupted while connecting", e);
+            }
+            return new ClosablePublisher();
+        });
+
+        PublisherRegistry.Publication publication = registry.get(context);
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.WARMING_UP);
+        Assert.assertFalse(publication.isBuffering());
+        Assert.assertTrue(PublisherRegistry.publishesSnapshots(RecordingPublisher.class.getName()));
+        Assert.assertFalse(PublisherRegistry.publishesSnapshots("org.example.MissingPublisher"));
+        Assert.assertFalse(PublisherRegistry.publishesSnapshots(null));
+
+        connected.countDown();
+        awaitReady(publication);
+        registry.stop();
+    }
+
+    @Test(description = "Checks that a publisher that cannot be built is retried without failing requests")
+    public void retryTest() throws Exception {
+        Context context = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(true, RecordingPublisher.class.getName());
+        AtomicInteger attempts = new AtomicInteger();
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            throw new StatPublisherException("Connection failed: attempt " + attempts.incrementAndGet());
+        });
+
+        PublisherRegistry.Publication publication = registry.get(context);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publication.getState() != PublisherRegistry.Publication.State.FAILED &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.FAILED);
+        Assert.assertTrue(publication.isBuffering());
+        Assert.assertNull(publication.getDataPublisher());
+
+        registry.stop();
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.CLOSED);
+        Assert.assertFalse(publication.isBuffering());
+    }
+
+    @Test(description = "Checks that web applications with publishing disabled get no publisher")
+    public void disabledTest() throws Exception {
+        Context context = new StartedContext();
+        WebAppStatsPublishing configuration = newConfiguration(false, "org.example.FirstPublisher");
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> {
+            throw new AssertionError("No publisher is built for a disabled web application");
+        });
+
+        Assert.assertSame(registry.get(context), PublisherRegistry.DISABLED);
+        Assert.assertNull(registry.get(context).getDataPublisher());
+        Assert.assertSame(new PublisherRegistry(c -> null, c -> null).get(context), PublisherRegistry.DISABLED);
+    }
+
+    @Test(description = "Checks that contexts that are not available and requests after stopping get no publisher")
+    public void unavailableContextTest() throws Exception {
+        WebAppStatsPublishing configuration = newConfiguration(true, "org.example.FirstPublisher");
+        PublisherRegistry registry = new PublisherRegistry(c -> configuration, c -> new ClosablePublisher());
+        Context stopping = new StandardContext();
+        Assert.assertSame(registry.get(stopping), PublisherRegistry.DISABLED);
+        Context started = new StartedContext();
+        Assert.assertNotSame(registry.get(started), PublisherRegistry.DISABLED);
+
+        registry.stop();
+        Assert.assertSame(registry.get(started), PublisherRegistry.DISABLED);
+        Assert.assertSame(registry.get(new StartedContext()), PublisherRegistry.DISABLED);
+    }
+
+    private static void awaitReady(PublisherRegistry.Publication publication) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (publication.getState() != PublisherRegistry.Publication.State.READY &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(publication.getState(), PublisherRegistry.Publication.State.READY);
+    }
+
+    private static RequestSnapshot newSnapshot() {
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+        when(request.getContext()).thenReturn(new StandardContext());
+        when(request.getRequestURI()).thenReturn("/examples/servlets/HelloWorld");
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        when(request.getLocale()).thenReturn(Locale.ENGLISH);
+        when(request.getHeaderNames()).thenReturn(Collections.emptyEnumeration());
+        when(response.getHeaderNames()).thenReturn(Collections.emptyList());
+        when(response.getStatus()).thenReturn(200);
+        return RequestSnapshot.capture(request, response, System.currentTimeMillis(), 12);
+    }
+
+    private static WebAppStatsPublishing newConfiguration(boolean enabled, String implementation) {
+        return new WebAppStatsPublishing() {
+            @Override
+            public Boolean isStatsPublisherEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public String getPublisherImplementation() {
+                return implementation;
+            }
+        };
+    }
+
+    /**
+     * A context that reports itself as started, as the contexts serving requests are.
+     */
+    private static class StartedContext extends StandardContext {
+        @Override
+        public LifecycleState getState() {
+            return LifecycleState.STARTED;
+        }
+    }
+
+    /**
+     * A publisher of snapshots that records the threads it published on.
+     */
+    private static class RecordingPublisher implements SnapshotDataPublisher {
+        private final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void publish(RequestSnapshot snapshot) {
+            threads.add(Thread.currentThread().getName());
+        }
+    }
+
+    /**
+     * A publisher that records whether it was closed.
+     */
+    private static class ClosablePublisher implements DataPublisher, AutoCloseable {
+        private volatile boolean closed;
+
+        @Override
+        public void publish(Request request, Response response, Map additionalData) {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -153,4 +154,26 @@ public class StatPublisherUnitTest {
 
         Assert.assertEquals(testEvent, event, "Event created");
     }
+
+    @Test(description = "Checks that a snapshot publisher can be called through the original DataPublisher interface")
+    public void snapshotPublisherAdapterTest() throws Exception {
+        List<RequestSnapshot> snapshots = new ArrayList<>();
+        DataPublisher dataPublisher = (SnapshotDataPublisher) snapshots::add;
+
+        Map<String, Object> additionalData = new HashMap<>();
+        additionalData.put(Constants.START_TIME, 1000L);
+        additionalData.put(Constants.RESPONSE_TIME, 25L);
+        dataPublisher.publish(request, response, additionalData);
+
+        Assert.assertEquals(snapshots.size(), 1, "Snapshot published");
+        RequestSnapshot snapshot = snapshots.get(0);
+        Assert.assertEquals(snapshot.getStartTime(), 1000L);
+        Assert.assertEquals(snapshot.getResponseTime(), 25L);
+        Assert.assertEquals(snapshot.getServletVersion(), "3.1");
+        Assert.assertEquals(snapshot.getWebappDisplayName(), "Test Display Name");
+        Assert.assertEquals(snapshot.getMethod(), "GET");
+        Assert.assertEquals(snapshot.getStatus(), 200);
+        Assert.assertEquals(snapshot.getResponseContentType(), "text/html;charset=utf-8");
+        Assert.assertEquals(snapshot.getClientIpAddress(), "127.0.0.1");
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.aggregation;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for windowed aggregation.
+ *
+ * @since 1.0.1
+ */
+public class WindowStatisticsTest {
+
+    @Test(description = "Checks the sums and latency percentiles of a key")
+    public void statisticsTest() {
+        WindowStatistics statistics = new WindowStatistics();
+        for (int i = 1; i <= 100; i++) {
+            statistics.add(2.0, 10, -1, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        Assert.assertEquals(statistics.getCount(), 100L);
+        Assert.assertEquals(statistics.getWeightedCount(), 200.0);
+        Assert.assertEquals(statistics.getRequestBytes(), 1000L);
+        Assert.assertEquals(statistics.getResponseBytes(), 0L);
+        Assert.assertEquals(statistics.getMaxLatencyNanos(), TimeUnit.MILLISECONDS.toNanos(100));
+        long median = statistics.getLatencyPercentileNanos(50);
+        Assert.assertTrue(median >= TimeUnit.MILLISECONDS.toNanos(50) && median <= TimeUnit.MICROSECONDS.toNanos(56250),
+                "Median of " + median);
+        Assert.assertEquals(statistics.getLatencyPercentileNanos(99), TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test(description = "Checks that latencies fall in log-linear microsecond bins")
+    public void latencyBinTest() {
+        Assert.assertEquals(WindowStatistics.bin(0), 0);
+        Assert.assertEquals(WindowStatistics.bin(TimeUnit.MICROSECONDS.toNanos(7)), 7);
+        Assert.assertEquals(WindowStatistics.bin(TimeUnit.MICROSECONDS.toNanos(15)), 15);
+        Assert.assertEquals(WindowStatistics.bin(TimeUnit.MICROSECONDS.toNanos(16)), 16);
+        Assert.assertEquals(WindowStatistics.bin(TimeUnit.MICROSECONDS.toNanos(17)), 16);
+        Assert.assertEquals(WindowStatistics.bin(Long.MAX_VALUE), WindowStatistics.LATENCY_BINS - 1);
+
+        // a percentile is reported at most one eighth above the latency, where power of two bins doubled it
+        WindowStatistics statistics = new WindowStatistics();
+        statistics.add(1, -1, -1, TimeUnit.MICROSECONDS.toNanos(1025));
+        statistics.add(1, -1, -1, TimeUnit.MICROSECONDS.toNanos(5000));
+        Assert.assertEquals(statistics.getLatencyPercentileNanos(50), TimeUnit.MICROSECONDS.toNanos(1152));
+    }
+
+    @Test(description = "Checks that keys beyond the limit of a window are summarized under the overflow key")
+    public void overflowKeyTest() {
+        Window window = new Window(0, 1000, 3);
+        window.getStatistics(new AggregationKey("app", "/app/a", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("app", "/app/b", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("app", "/app/c", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("app", "/app/d", "POST", 404)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("app", "/app/a", "GET", 200)).add(1, 0, 0, 0);
+        Assert.assertEquals(window.getStatistics().size(), 3);
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey("app", "/app/a", "GET", 200)).getCount(), 2L);
+        Assert.assertEquals(window.getStatistics().get(Window.OVERFLOW_KEY).getCount(), 2L);
+    }
+
+    @Test(description = "Checks that overflow keys count toward the key limit and do not carry the method")
+    public void overflowLimitTest() {
+        Window window = new Window(0, 1000, 10, 10, 1, Window.DEFAULT_PRECISION);
+        for (int i = 0; i < 1000; i++) {
+            window.getStatistics(new AggregationKey("app", "/app/" + i, "M" + i, 200 + i % 300)).add(1, 0, 0, 0);
+        }
+        Assert.assertEquals(window.getStatistics().size(), 10);
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey("app", Window.OVERFLOW_URI,
+                Window.OVERFLOW_URI, 201)).getCount(), 4L);
+        Assert.assertTrue(window.getStatistics().get(Window.OVERFLOW_KEY).getCount() > 900);
+        long total = 0;
+        for (WindowStatistics statistics : window.getStatistics().values()) {
+            total += statistics.getCount();
+        }
+        Assert.assertEquals(total, 1000L);
+    }
+
+    @Test(description = "Checks that the URIs of each web application and the web applications are bounded")
+    public void webappOverflowTest() {
+        Window window = new Window(0, 1000, 100, 2, 2, Window.DEFAULT_PRECISION);
+        window.getStatistics(new AggregationKey("shop", "/shop/a", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("shop", "/shop/b", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("shop", "/shop/c", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("blog", "/blog/a", "GET", 200)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("scan1", "/scan1/x", "GET", 404)).add(1, 0, 0, 0);
+        window.getStatistics(new AggregationKey("scan2", "/scan2/x", "GET", 404)).add(1, 0, 0, 0);
+
+        Assert.assertEquals(window.getStatistics().size(), 5);
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey("shop", Window.OVERFLOW_URI,
+                Window.OVERFLOW_URI, 200)).getCount(), 1L);
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey("blog", "/blog/a", "GET", 200))
+                .getCount(), 1L);
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey(Window.OVERFLOW_URI, Window.OVERFLOW_URI,
+                Window.OVERFLOW_URI, 404)).getCount(), 2L);
+
+        WebappCardinality shop = window.getCardinality(new AggregationKey("shop", "/shop/a", "GET", 200));
+        Assert.assertEquals(shop.getDistinctUris(), 3L);
+        Assert.assertEquals(shop.getOverflowCount(), 1L);
+    }
+
+    @Test(description = "Checks that sealing a window waits for the writers in it and turns new writers away")
+    public void sealTest() throws InterruptedException {
+        Window window = new Window(0, 1000, 2);
+        Assert.assertTrue(window.enter());
+        CountDownLatch sealed = new CountDownLatch(1);
+        Thread rotation = new Thread(() -> {
+            window.seal();
+            sealed.countDown();
+        });
+        rotation.start();
+        Assert.assertFalse(sealed.await(100, TimeUnit.MILLISECONDS), "Sealed while a writer was adding");
+
+        window.getStatistics(new AggregationKey("app", "/app/a", "GET", 200)).add(1, 0, 0, 0);
+        window.exit();
+        Assert.assertTrue(sealed.await(5, TimeUnit.SECONDS), "Not sealed after the writer left");
+        Assert.assertFalse(window.enter(), "A writer entered a sealed window");
+        Assert.assertEquals(window.getStatistics().get(new AggregationKey("app", "/app/a", "GET", 200)).getCount(),
+                1L);
+    }
+}
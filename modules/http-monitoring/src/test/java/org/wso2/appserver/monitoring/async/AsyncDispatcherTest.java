@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.async;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the ring buffer and the asynchronous dispatcher.
+ *
+ * @since 1.0.1
+ */
+public class AsyncDispatcherTest {
+
+    @Test(description = "Checks that the ring buffer is FIFO and rejects offers when full")
+    public void ringBufferBoundsTest() {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(3);
+        Assert.assertEquals(ringBuffer.capacity(), 4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(ringBuffer.offer(i));
+        }
+        Assert.assertFalse(ringBuffer.offer(4), "Offer to a full buffer");
+        Assert.assertEquals(ringBuffer.poll(), 0);
+        Assert.assertTrue(ringBuffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(ringBuffer.poll(), i);
+        }
+        Assert.assertNull(ringBuffer.poll(), "Poll from an empty buffer");
+    }
+
+    @Test(description = "Checks that every element from concurrent producers is handled exactly once")
+    public void concurrentHandOffTest() throws Exception {
+        int producers = 4;
+        int perProducer = 20000;
+        ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(producers * perProducer);
+        AsyncDispatcher<Integer> dispatcher = new AsyncDispatcher<>("test-dispatcher", 1024, 2, OverflowPolicy.WAIT,
+                TimeUnit.SECONDS.toNanos(5), IdleStrategy.YIELD, 0, element -> {
+                    Assert.assertNull(seen.put(element, Boolean.TRUE), "Element handled twice: " + element);
+                    done.countDown();
+                });
+        dispatcher.start();
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    dispatcher.dispatch(base + i);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS), "All elements handled");
+        dispatcher.stop();
+        Assert.assertEquals(seen.size(), producers * perProducer);
+        Assert.assertEquals(dispatcher.getDroppedCount(), 0L);
+        Assert.assertEquals(dispatcher.getHandledCount(), (long) (producers * perProducer));
+    }
+
+    @Test(description = "Checks that a full buffer drops and counts events under the DROP policy")
+    public void dropPolicyTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        AsyncDispatcher<Integer> dispatcher = new AsyncDispatcher<>("test-dispatcher", 2, 1, OverflowPolicy.DROP,
+                0, IdleStrategy.PARK, TimeUnit.MILLISECONDS.toNanos(1), element -> {
+                    release.await();
+                    handled.incrementAndGet();
+                });
+        dispatcher.start();
+
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            if (dispatcher.dispatch(i)) {
+                accepted++;
+            }
+        }
+        release.countDown();
+        dispatcher.stop();
+
+        Assert.assertTrue(accepted <= 3, "At most one element in flight plus a full buffer");
+        Assert.assertEquals(dispatcher.getDroppedCount(), (long) (10 - accepted));
+        Assert.assertEquals(handled.get(), accepted);
+        Assert.assertFalse(dispatcher.dispatch(11), "Dispatch after stop");
+    }
+
+    @Test(description = "Checks that batches are flushed when full and when their oldest element has lingered")
+    public void batchingTest() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        AsyncDispatcher<Integer> dispatcher = new AsyncDispatcher<>("test-dispatcher", 64, 1, OverflowPolicy.DROP,
+                0, IdleStrategy.PARK, TimeUnit.MICROSECONDS.toNanos(100), 10, TimeUnit.MILLISECONDS.toNanos(20),
+                batch -> {
+                    batchSizes.add(batch.size());
+                    handled.addAll(batch);
+                });
+        dispatcher.start();
+        for (int i = 0; i < 25; i++) {
+            Assert.assertTrue(dispatcher.dispatch(i));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getHandledCount() < 25 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(dispatcher.getHandledCount(), 25L, "Partial batch flushed after lingering");
+        dispatcher.stop();
+        for (int i = 0; i < 25; i++) {
+            Assert.assertEquals(handled.get(i), (Integer) i);
+        }
+        for (int size : batchSizes) {
+            Assert.assertTrue(size <= 10, "Batch larger than the batch size: " + size);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.breaker;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for the circuit breaker around the data agent.
+ *
+ * @since 1.0.1
+ */
+public class CircuitBreakerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test(description = "Checks that consecutive failures open the breaker and that a success resets the count")
+    public void tripTest() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, SECOND, 5 * SECOND, 2);
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure(0);
+        circuitBreaker.onFailure(0);
+        Assert.assertEquals(circuitBreaker.getState(), "CLOSED");
+
+        circuitBreaker.onFailure(0);
+        Assert.assertEquals(circuitBreaker.getState(), "OPEN");
+        Assert.assertFalse(circuitBreaker.allowRequest(SECOND));
+        Assert.assertEquals(circuitBreaker.getTripCount(), 1L);
+        Assert.assertEquals(circuitBreaker.getRejectedCount(), 1L);
+    }
+
+    @Test(description = "Checks that successful trials close an open breaker once the open period has passed")
+    public void recoveryTest() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, SECOND, 5 * SECOND, 2);
+        circuitBreaker.onFailure(0);
+        Assert.assertFalse(circuitBreaker.allowRequest(4 * SECOND));
+
+        Assert.assertTrue(circuitBreaker.allowRequest(5 * SECOND));
+        Assert.assertTrue(circuitBreaker.allowRequest(5 * SECOND));
+        Assert.assertFalse(circuitBreaker.allowRequest(5 * SECOND), "More trials permitted than configured");
+        Assert.assertEquals(circuitBreaker.getState(), "HALF_OPEN");
+
+        circuitBreaker.onResult(true, 0);
+        circuitBreaker.onResult(true, 0);
+        Assert.assertTrue(circuitBreaker.isClosed());
+        Assert.assertTrue(circuitBreaker.allowRequest(5 * SECOND));
+    }
+
+    @Test(description = "Checks that a failed or slow trial opens the breaker again")
+    public void failedTrialTest() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, SECOND, 5 * SECOND, 2);
+        circuitBreaker.onFailure(0);
+        Assert.assertTrue(circuitBreaker.allowRequest(5 * SECOND));
+        circuitBreaker.onResult(true, 2 * SECOND);
+        Assert.assertEquals(circuitBreaker.getState(), "OPEN");
+        Assert.assertEquals(circuitBreaker.getTripCount(), 2L);
+        Assert.assertEquals(circuitBreaker.getFailureCount(), 2L);
+    }
+
+    @Test(description = "Checks that accepted attempts count as failures while the watched queue is above high water")
+    public void queueOccupancyTest() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, SECOND, 5 * SECOND, 1, 75);
+        AtomicInteger occupancy = new AtomicInteger(74);
+        circuitBreaker.watchQueue(occupancy::get, 100);
+        circuitBreaker.onResult(true, 0);
+        circuitBreaker.onResult(true, 0);
+        Assert.assertTrue(circuitBreaker.isClosed());
+
+        occupancy.set(75);
+        circuitBreaker.onResult(true, 0);
+        circuitBreaker.onResult(true, 0);
+        Assert.assertEquals(circuitBreaker.getState(), "OPEN");
+
+        occupancy.set(0);
+        Assert.assertTrue(circuitBreaker.allowRequest(System.nanoTime() + 5 * SECOND));
+        circuitBreaker.onResult(true, 0);
+        Assert.assertTrue(circuitBreaker.isClosed());
+    }
+
+    @Test(description = "Checks that each publisher registers a breaker of its own, which it unregisters on close")
+    public void registrationTest() throws JMException {
+        Properties properties = new Properties();
+        properties.setProperty(CircuitBreaker.ENABLED, "true");
+        MonitoringConfiguration configuration = new MonitoringConfiguration(properties);
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName first = new ObjectName("org.wso2.appserver.monitoring:type=CircuitBreaker,publisher=\"first\"");
+        ObjectName second = new ObjectName("org.wso2.appserver.monitoring:type=CircuitBreaker,publisher=\"second\"");
+
+        CircuitBreaker firstBreaker = CircuitBreaker.create(configuration, "first");
+        CircuitBreaker secondBreaker = CircuitBreaker.create(configuration, "second");
+        Assert.assertTrue(mBeanServer.isRegistered(first));
+        Assert.assertTrue(mBeanServer.isRegistered(second));
+
+        firstBreaker.close();
+        Assert.assertFalse(mBeanServer.isRegistered(first));
+        Assert.assertTrue(mBeanServer.isRegistered(second));
+        secondBreaker.close();
+        Assert.assertFalse(mBeanServer.isRegistered(second));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.cardinality;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the distinct count sketch and the cardinality limiter.
+ *
+ * @since 1.0.1
+ */
+public class HyperLogLogTest {
+
+    @Test(description = "Checks that estimates are within a few standard errors of the distinct count")
+    public void estimateTest() {
+        for (int distinct : new int[]{10, 1000, 100000, 1000000}) {
+            HyperLogLog sketch = new HyperLogLog(11);
+            for (int i = 0; i < distinct; i++) {
+                String value = "10." + (i >>> 16) + "." + ((i >>> 8) & 0xFF) + "." + (i & 0xFF);
+                sketch.add(value);
+                sketch.add(value);
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            Assert.assertTrue(error < 0.07, distinct + " distinct values estimated as " + sketch.estimate());
+        }
+        Assert.assertEquals(new HyperLogLog(11).estimate(), 0L);
+    }
+
+    @Test(description = "Checks that merging sketches counts the union of their values")
+    public void mergeTest() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 20000; i++) {
+            first.add("session-" + i);
+            second.add("session-" + (i + 10000));
+        }
+        first.merge(second);
+        Assert.assertEquals(first.estimate(), 30000.0, 30000 * 0.05);
+    }
+
+    @Test(description = "Checks that invalid precisions are rejected",
+            expectedExceptions = IllegalArgumentException.class)
+    public void invalidPrecisionTest() {
+        new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+    }
+
+    @Test(description = "Checks that values beyond the limit are folded into the overflow value but still counted")
+    public void limiterTest() {
+        CardinalityLimiter limiter = new CardinalityLimiter(2, 11);
+
+        Assert.assertEquals(limiter.limit("/a"), "/a");
+        Assert.assertEquals(limiter.limit("/b"), "/b");
+        Assert.assertEquals(limiter.limit("/c"), CardinalityLimiter.OVERFLOW);
+        Assert.assertEquals(limiter.limit("/a"), "/a");
+        Assert.assertEquals(limiter.limit("/d"), CardinalityLimiter.OVERFLOW);
+        Assert.assertNull(limiter.limit(null));
+
+        Assert.assertEquals(limiter.size(), 2);
+        Assert.assertEquals(limiter.getOverflowCount(), 2L);
+        Assert.assertEquals(limiter.getDistinctEstimate(), 4L);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * Unit tests for the dictionary encoding of event sequences.
+ *
+ * @since 1.0.1
+ */
+public class DictionaryEventCodecTest {
+
+    @Test(description = "Checks that a sequence of events survives encoding and decoding, and that repeated strings "
+            + "are only written once")
+    public void roundTripTest() {
+        DictionaryEventEncoder encoder = new DictionaryEventEncoder(1024, 256);
+        DictionaryEventDecoder decoder = new DictionaryEventDecoder();
+        int firstSize = 0;
+        int lastSize = 0;
+        for (int i = 0; i < 100; i++) {
+            Event event = createEvent(i);
+            byte[] encoded = encoder.encode(event);
+            Assert.assertEquals(decoder.decode(ByteBuffer.wrap(encoded)), event);
+            if (i == 0) {
+                firstSize = encoded.length;
+            }
+            lastSize = encoded.length;
+        }
+        Assert.assertTrue(lastSize * 3 < firstSize, "Repeated strings written again: " + firstSize + " and " +
+                lastSize + " bytes");
+    }
+
+    @Test(description = "Checks that an event that did not fit leaves the dictionary as it was")
+    public void overflowTest() {
+        DictionaryEventEncoder encoder = new DictionaryEventEncoder(1024, 256);
+        DictionaryEventDecoder decoder = new DictionaryEventDecoder();
+        Assert.assertEquals(decoder.decode(ByteBuffer.wrap(encoder.encode(createEvent(0)))), createEvent(0));
+        int dictionarySize = encoder.getDictionarySize();
+        try {
+            encoder.encode(createEvent(1), ByteBuffer.allocate(40));
+            Assert.fail("Event encoded into a buffer too small for it");
+        } catch (BufferOverflowException e) {
+            Assert.assertEquals(encoder.getDictionarySize(), dictionarySize);
+        }
+        Assert.assertEquals(decoder.decode(ByteBuffer.wrap(encoder.encode(createEvent(1)))), createEvent(1));
+    }
+
+    @Test(description = "Checks that long strings and strings beyond the dictionary size are written literally")
+    public void literalTest() {
+        DictionaryEventEncoder encoder = new DictionaryEventEncoder(2, 8);
+        DictionaryEventDecoder decoder = new DictionaryEventDecoder();
+        for (int i = 0; i < 3; i++) {
+            Event event = new Event("s", i, null, null, new Object[] { "a", "a long string", "b", "c" + i },
+                    Collections.singletonMap("k", "v"));
+            Assert.assertEquals(decoder.decode(ByteBuffer.wrap(encoder.encode(event))), event);
+        }
+        Assert.assertEquals(encoder.getDictionarySize(), 2);
+    }
+
+    private static Event createEvent(int i) {
+        return new Event("org.wso2.http.stats:1.0.0", 1466000000000L + i * 7, null, null, new Object[] {
+                "/examples", "Servlet and JSP Examples", "3.1", "/examples/items/" + i, 1466000000000L + i * 7,
+                "GET", "text/html;charset=UTF-8", 200, -1L, (i % 2 == 0), 0.25d, 1.5f, null,
+                "Mozilla/5.0 (X11; Linux x86_64; rv:46.0) Gecko/20100101 Firefox/46.0", "localhost"
+        }, Collections.singletonMap("responseNanos", "1200"));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.codec;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Unit tests for the binary encoding of events.
+ *
+ * @since 1.0.1
+ */
+public class EventCodecTest {
+
+    @Test(description = "Checks that an event survives encoding and decoding")
+    public void roundTripTest() {
+        Event event = createEvent();
+        Assert.assertEquals(EventCodec.decode(ByteBuffer.wrap(EventCodec.encode(event))), event);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(4096);
+        EventCodec.encode(event, direct);
+        direct.flip();
+        Assert.assertEquals(EventCodec.decode(direct), event);
+        Assert.assertFalse(direct.hasRemaining(), "Bytes left after decoding");
+    }
+
+    @Test(description = "Checks that encoding into a buffer too small for the event overflows",
+            expectedExceptions = BufferOverflowException.class)
+    public void overflowTest() {
+        EventCodec.encode(createEvent(), ByteBuffer.allocate(16));
+    }
+
+    private static Event createEvent() {
+        Map<String, String> arbitraryData = new HashMap<>();
+        arbitraryData.put("responseNanos", "1200");
+        return new Event("org.wso2.http.stats:1.0.0", 1466000000000L, null, new Object[] { "abc" },
+                new Object[] { "/app", 200, 12L, 0.5d, 1.5f, true, null, "\u00e9t\u00e9" }, arbitraryData);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.file;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the binary event file exporter.
+ *
+ * @since 1.0.1
+ */
+public class EventFileWriterTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("event-file-test");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test(description = "Checks that events are read back in order from the rotated files")
+    public void rotationTest() throws IOException {
+        EventFileWriter writer = new EventFileWriter(directory, 4096, 8192, TimeUnit.HOURS.toNanos(1), 0,
+                FsyncPolicy.NEVER, 1024);
+        for (int i = 0; i < 500; i++) {
+            writer.append(createEvent(i));
+        }
+        writer.close();
+
+        List<Path> files = EventFileWriter.listFiles(directory);
+        Assert.assertTrue(files.size() > 1, "Files were not rotated by size");
+        int next = 0;
+        for (Path file : files) {
+            Assert.assertTrue(Files.size(file) < 8192 + 1024, "File much larger than the limit");
+            try (EventFileReader reader = new EventFileReader(file)) {
+                while (reader.hasNext()) {
+                    Assert.assertEquals(reader.next(), createEvent(next++));
+                }
+            }
+        }
+        Assert.assertEquals(next, 500);
+    }
+
+    @Test(description = "Checks that events are written in order once every write buffer has filled up")
+    public void fullBuffersTest() throws IOException {
+        EventFileWriter writer = new EventFileWriter(directory, 4096, 1 << 20, TimeUnit.HOURS.toNanos(1), 0,
+                FsyncPolicy.NEVER, 1024);
+        for (int i = 0; i < 5000; i++) {
+            writer.append(createEvent(i));
+        }
+        writer.close();
+
+        List<Path> files = EventFileWriter.listFiles(directory);
+        Assert.assertEquals(files.size(), 1);
+        Assert.assertTrue(Files.size(files.get(0)) > 4 * 4096, "Write buffers not filled up");
+        int next = 0;
+        try (EventFileReader reader = new EventFileReader(files.get(0))) {
+            while (reader.hasNext()) {
+                Assert.assertEquals(reader.next(), createEvent(next++));
+            }
+        }
+        Assert.assertEquals(next, 5000);
+    }
+
+    @Test(description = "Checks that events larger than a write buffer are written whole")
+    public void largeEventTest() throws IOException {
+        EventFileWriter writer = new EventFileWriter(directory, 4096, 1 << 20, TimeUnit.HOURS.toNanos(1), 0,
+                FsyncPolicy.FLUSH, 1024);
+        StringBuilder uri = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            uri.append("/segment");
+        }
+        Event large = new Event("stream:1.0.0", 1L, null, null, new Object[] { uri.toString() }, null);
+        writer.append(createEvent(0));
+        writer.append(large);
+        writer.append(createEvent(1));
+        writer.close();
+
+        try (EventFileReader reader = new EventFileReader(EventFileWriter.listFiles(directory).get(0))) {
+            Assert.assertEquals(reader.next(), createEvent(0));
+            Assert.assertEquals(reader.next(), large);
+            Assert.assertEquals(reader.next(), createEvent(1));
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test(description = "Checks that a second writer cannot take over the directory of an open writer")
+    public void lockTest() throws IOException {
+        EventFileWriter writer = new EventFileWriter(directory, 4096, 1 << 20, TimeUnit.HOURS.toNanos(1), 0,
+                FsyncPolicy.NEVER, 1024);
+        writer.append(createEvent(0));
+        writer.flushOrRotate();
+        try {
+            new EventFileWriter(directory, 4096, 1 << 20, TimeUnit.HOURS.toNanos(1), 0, FsyncPolicy.NEVER, 1024)
+                    .close();
+            Assert.fail("A second writer was opened on a locked directory");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("already in use"), e.getMessage());
+        }
+        writer.append(createEvent(1));
+        writer.close();
+
+        try (EventFileReader reader = new EventFileReader(EventFileWriter.listFiles(directory).get(0))) {
+            Assert.assertEquals(reader.next(), createEvent(0));
+            Assert.assertEquals(reader.next(), createEvent(1));
+            Assert.assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test(description = "Checks that the oldest files are deleted and that a torn last record ends reading")
+    public void retentionAndTornRecordTest() throws IOException {
+        EventFileWriter writer = new EventFileWriter(directory, 4096, 4096, TimeUnit.HOURS.toNanos(1), 2,
+                FsyncPolicy.NEVER, 1024);
+        for (int i = 0; i < 500; i++) {
+            writer.append(createEvent(i));
+        }
+        writer.close();
+        List<Path> files = EventFileWriter.listFiles(directory);
+        Assert.assertEquals(files.size(), 2);
+
+        Path last = files.get(1);
+        int events = 0;
+        try (EventFileReader reader = new EventFileReader(last)) {
+            while (reader.hasNext()) {
+                reader.next();
+                events++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        int tornEvents = 0;
+        try (EventFileReader reader = new EventFileReader(last)) {
+            while (reader.hasNext()) {
+                reader.next();
+                tornEvents++;
+            }
+        }
+        Assert.assertEquals(tornEvents, events - 1);
+    }
+
+    private static Event createEvent(int i) {
+        return new Event("org.wso2.http.stats:1.0.0", 1466000000000L + i, null, null,
+                new Object[] { "/app/items/" + i, "GET", 200, (long) i }, null);
+    }
+}
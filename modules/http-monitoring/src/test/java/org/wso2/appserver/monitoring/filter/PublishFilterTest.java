@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.filter;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the publish filter.
+ *
+ * @since 1.0.1
+ */
+public class PublishFilterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    @Test(description = "Checks that the default rule publishes text/html responses only")
+    public void defaultRuleTest() {
+        PublishFilter filter = new PublishFilter(Collections.singletonList(PublishFilter.DEFAULT_RULE), false);
+        Assert.assertTrue(filter.isPublished("/app/index", "GET", 200, "text/html;charset=UTF-8", FAST));
+        Assert.assertFalse(filter.isPublished("/app/api", "GET", 200, "application/json", FAST));
+        Assert.assertFalse(filter.isPublished("/app/api", "GET", 204, null, FAST));
+    }
+
+    @Test(description = "Checks that the first matching rule decides")
+    public void ruleOrderTest() {
+        PublishFilter filter = new PublishFilter(Arrays.asList(
+                "include status=5xx",
+                "include minLatencyMillis=1000",
+                "exclude path=/app/static/,/app/**/*.css",
+                "include path=/app/api/ contentType=application/json method=GET,POST",
+                "include contentType=text/html status=200-399"), false);
+        Assert.assertTrue(filter.isPublished("/app/static/logo.png", "GET", 503, "image/png", FAST));
+        Assert.assertTrue(filter.isPublished("/app/static/logo.png", "GET", 200, "image/png", SLOW));
+        Assert.assertFalse(filter.isPublished("/app/static/page.html", "GET", 200, "text/html", FAST));
+        Assert.assertFalse(filter.isPublished("/app/themes/dark/site.css", "GET", 200, "text/css", FAST));
+        Assert.assertTrue(filter.isPublished("/app/api/orders", "post", 201, "application/json", FAST));
+        Assert.assertFalse(filter.isPublished("/app/api/orders", "DELETE", 200, "application/json", FAST));
+        Assert.assertFalse(filter.isPublished("/app/apis", "GET", 200, "application/json", FAST));
+        Assert.assertTrue(filter.isPublished("/app/index", "GET", 302, "text/html", FAST));
+        Assert.assertFalse(filter.isPublished("/app/index", "GET", 404, "text/html", FAST));
+    }
+
+    @Test(description = "Checks that * and ? match within a segment, ** across segments and prefixes beside globs")
+    public void globTest() {
+        PublishFilter filter = new PublishFilter(Arrays.asList(
+                "include path=/app/api/*/orders,/app/**/export/**",
+                "exclude path=/app/**/*.css,/app/img/?.png",
+                "exclude path=/app/health,**/ping,*/top,/app/api/"), true);
+        Assert.assertFalse(filter.isPublished("/app/themes/site.css", "GET", 200, "text/css", FAST));
+        Assert.assertFalse(filter.isPublished("/app/themes/dark/site.css", "GET", 200, "text/css", FAST));
+        Assert.assertFalse(filter.isPublished("/app/img/a.png", "GET", 200, "image/png", FAST));
+        Assert.assertFalse(filter.isPublished("/app/health/live", "GET", 200, "text/plain", FAST));
+        Assert.assertFalse(filter.isPublished("/app/ping", "GET", 200, "text/plain", FAST));
+        Assert.assertFalse(filter.isPublished("/top", "GET", 200, "text/html", FAST));
+        Assert.assertTrue(filter.isPublished("/app/api/v1/orders", "GET", 200, "application/json", FAST));
+        Assert.assertTrue(filter.isPublished("/app/a/b/export/c/d", "GET", 200, "text/csv", FAST));
+        Assert.assertFalse(filter.isPublished("/app/api/v1/x/orders", "GET", 200, "application/json", FAST));
+        Assert.assertFalse(filter.isPublished("/app/api/v1/orders/7", "GET", 200, "application/json", FAST));
+        Assert.assertTrue(filter.isPublished("/app/img/ab.png", "GET", 200, "image/png", FAST));
+        Assert.assertTrue(filter.isPublished("/app/top", "GET", 200, "text/html", FAST));
+        Assert.assertTrue(filter.isPublished("/app/site.css", "GET", 200, "text/css", FAST));
+        Assert.assertTrue(filter.isPublished("/app/themes/site.css.map", "GET", 200, "application/json", FAST));
+    }
+
+    @Test(description = "Checks that invalid rules are ignored and the default action applies")
+    public void invalidRuleTest() {
+        PublishFilter filter = new PublishFilter(Arrays.asList("publish everything", "include status=abc",
+                "exclude colour=red", "exclude method=HEAD"), true);
+        Assert.assertTrue(filter.isPublished("/app", "GET", 200, "application/json", FAST));
+        Assert.assertFalse(filter.isPublished("/app", "HEAD", 200, "application/json", FAST));
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.geoip;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the GeoIP enrichment from memory-mapped MaxMind DB files, which are written by the test.
+ *
+ * @since 1.0.1
+ */
+public class GeoIpEnricherTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("geoip-test");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test(description = "Checks looking up records and values with each record size")
+    public void recordSizeTest() throws IOException {
+        for (int recordSize : new int[]{24, 28, 32}) {
+            MaxMindDatabase database = MaxMindDatabase.open(writeCityDatabase("city-" + recordSize + ".mmdb",
+                    recordSize, "AU"));
+
+            Assert.assertEquals(database.getDatabaseType(), "Test-City");
+            int record = database.findRecord(InetAddress.getByName("203.0.113.9").getAddress());
+            Assert.assertTrue(record >= 0);
+            Assert.assertEquals(database.get(record, "country", "iso_code"), "AU");
+            Assert.assertEquals(database.get(record, "subdivisions", "0", "iso_code"), "NSW");
+            Assert.assertEquals(database.get(record, "population"), 5312000L);
+            Assert.assertNull(database.get(record, "subdivisions", "1", "iso_code"));
+            Assert.assertNull(database.get(record, "continent", "code"));
+            Assert.assertEquals(database.findRecord(InetAddress.getByName("198.51.100.1").getAddress()), -1);
+        }
+    }
+
+    @Test(description = "Checks the locations published for client addresses")
+    public void locateTest() throws IOException {
+        GeoIpEnricher enricher = new GeoIpEnricher(writeCityDatabase("city.mmdb", 28, "AU"),
+                writeAsnDatabase("asn.mmdb"), 16);
+
+        GeoLocation location = enricher.locate("203.0.113.9");
+        Assert.assertEquals(location.getCountry(), "AU");
+        Assert.assertEquals(location.getRegion(), "NSW");
+        Assert.assertEquals(location.getAsn(), Long.valueOf(64500));
+        Assert.assertSame(enricher.locate("203.0.113.9"), location);
+        Assert.assertEquals(enricher.locate("::ffff:203.0.113.9").getCountry(), "AU");
+
+        // the record of this network refers to the country of the first one through a pointer
+        location = enricher.locate("2001:db8::1");
+        Assert.assertEquals(location.getCountry(), "AU");
+        Assert.assertNull(location.getRegion());
+        Assert.assertNull(location.getAsn());
+
+        Assert.assertNull(enricher.locate("198.51.100.1"));
+        Assert.assertNull(enricher.locate("localhost"));
+        Assert.assertNull(enricher.locate(null));
+    }
+
+    @Test(description = "Checks that a replaced database file is swapped in")
+    public void reloadTest() throws IOException {
+        Path path = writeCityDatabase("city.mmdb", 24, "AU");
+        GeoIpEnricher enricher = new GeoIpEnricher(path, null, 16);
+        Assert.assertEquals(enricher.locate("203.0.113.9").getCountry(), "AU");
+
+        enricher.reloadIfModified();
+        Assert.assertEquals(enricher.locate("203.0.113.9").getCountry(), "AU");
+
+        Path update = writeCityDatabase("update.mmdb", 24, "NZ");
+        Files.setLastModifiedTime(update, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 60000));
+        Files.move(update, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        enricher.reloadIfModified();
+        Assert.assertEquals(enricher.locate("203.0.113.9").getCountry(), "NZ");
+    }
+
+    private Path writeCityDatabase(String name, int recordSize, String country) throws IOException {
+        Data data = new Data();
+        data.map(3).string("country");
+        int countryOffset = data.size();
+        data.map(1).string("iso_code").string(country);
+        data.string("subdivisions").array(1).map(1).string("iso_code").string("NSW");
+        data.string("population").uint32(5312000);
+        int secondRecord = data.size();
+        data.map(1).string("country").pointer(countryOffset);
+
+        Tree tree = new Tree(6);
+        tree.insert("203.0.113.0", 24, 0);
+        tree.insert("2001:db8::", 32, secondRecord);
+        return write(name, tree, recordSize, data, "Test-City");
+    }
+
+    private Path writeAsnDatabase(String name) throws IOException {
+        Data data = new Data();
+        data.map(2).string("autonomous_system_number").uint32(64500)
+                .string("autonomous_system_organization").string("Example Networks");
+
+        Tree tree = new Tree(4);
+        tree.insert("203.0.113.0", 24, 0);
+        return write(name, tree, 24, data, "Test-ASN");
+    }
+
+    private Path write(String name, Tree tree, int recordSize, Data data, String type) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        int nodeCount = tree.nodes.size();
+        for (long[] node : tree.nodes) {
+            long left = tree.recordValue(node[0], nodeCount);
+            long right = tree.recordValue(node[1], nodeCount);
+            if (recordSize == 24) {
+                writeUnsigned(file, left, 3);
+                writeUnsigned(file, right, 3);
+            } else if (recordSize == 28) {
+                writeUnsigned(file, left & 0xFFFFFF, 3);
+                file.write((int) (((left >>> 24) & 0xF) << 4 | ((right >>> 24) & 0xF)));
+                writeUnsigned(file, right & 0xFFFFFF, 3);
+            } else {
+                writeUnsigned(file, left, 4);
+                writeUnsigned(file, right, 4);
+            }
+        }
+        file.write(new byte[16]);
+        file.write(data.bytes.toByteArray());
+        file.write(new byte[]{(byte) 0xAB, (byte) 0xCD, (byte) 0xEF});
+        file.write("MaxMind.com".getBytes(StandardCharsets.US_ASCII));
+        Data metadata = new Data();
+        metadata.map(4).string("node_count").uint32(nodeCount)
+                .string("record_size").uint16(recordSize)
+                .string("ip_version").uint16(tree.ipVersion)
+                .string("database_type").string(type);
+        file.write(metadata.bytes.toByteArray());
+
+        Path path = directory.resolve(name);
+        Files.write(path, file.toByteArray());
+        return path;
+    }
+
+    private static void writeUnsigned(ByteArrayOutputStream out, long value, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)));
+        }
+    }
+
+    /**
+     * A search tree of networks, where a record is a node index, -1 for no data or -2 - offset for data.
+     */
+    private static final class Tree {
+
+        private final int ipVersion;
+        private final List<long[]> nodes = new ArrayList<>();
+
+        Tree(int ipVersion) {
+            this.ipVersion = ipVersion;
+            nodes.add(new long[]{-1, -1});
+        }
+
+        void insert(String network, int prefix, int dataOffset) throws IOException {
+            byte[] address = InetAddress.getByName(network).getAddress();
+            int skip = (ipVersion == 6 && address.length == 4) ? 96 : 0;
+            int node = 0;
+            for (int i = 0; i < skip + prefix; i++) {
+                int bit = (i < skip) ? 0 : (address[(i - skip) >> 3] >>> (7 - ((i - skip) & 7))) & 1;
+                if (i == skip + prefix - 1) {
+                    nodes.get(node)[bit] = -2 - dataOffset;
+                } else {
+                    if (nodes.get(node)[bit] < 0) {
+                        nodes.add(new long[]{-1, -1});
+                        nodes.get(node)[bit] = nodes.size() - 1;
+                    }
+                    node = (int) nodes.get(node)[bit];
+                }
+            }
+        }
+
+        long recordValue(long record, int nodeCount) {
+            if (record == -1) {
+                return nodeCount;
+            }
+            return (record < 0) ? nodeCount + 16 + (-2 - record) : record;
+        }
+    }
+
+    /**
+     * Writes values in the MaxMind DB data section format.
+     */
+    private static final class Data {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        int size() {
+            return bytes.size();
+        }
+
+        Data map(int entries) {
+            bytes.write(7 << 5 | entries);
+            return this;
+        }
+
+        Data array(int elements) {
+            bytes.write(elements);
+            bytes.write(11 - 7);
+            return this;
+        }
+
+        Data string(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length < 29) {
+                bytes.write(2 << 5 | utf8.length);
+            } else {
+                bytes.write(2 << 5 | 29);
+                bytes.write(utf8.length - 29);
+            }
+            bytes.write(utf8, 0, utf8.length);
+            return this;
+        }
+
+        Data uint16(int value) {
+            bytes.write(5 << 5 | 2);
+            writeUnsigned(bytes, value, 2);
+            return this;
+        }
+
+        Data uint32(long value) {
+            bytes.write(6 << 5 | 4);
+            writeUnsigned(bytes, value, 4);
+            return this;
+        }
+
+        Data pointer(int offset) {
+            bytes.write(1 << 5 | (offset >>> 8));
+            bytes.write(offset & 0xFF);
+            return this;
+        }
+    }
+}
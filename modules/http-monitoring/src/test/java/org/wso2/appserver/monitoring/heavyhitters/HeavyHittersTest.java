@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.heavyhitters;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.cardinality.CountMinSketch;
+import org.wso2.appserver.monitoring.cardinality.HyperLogLog;
+import org.wso2.appserver.monitoring.utils.ClientAddressResolver;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the frequency sketch and the heavy hitters tracked over sliding windows.
+ *
+ * @since 1.0.1
+ */
+public class HeavyHittersTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 1000 * MINUTE;
+
+    @Test(description = "Checks that frequencies are never undercounted and overcounted within the sketch error")
+    public void countMinSketchTest() {
+        CountMinSketch sketch = new CountMinSketch(4, 1000);
+        for (int i = 0; i < 100000; i++) {
+            sketch.add(HyperLogLog.hash("value-" + (i % 5000)));
+        }
+        for (int i = 0; i < 5000; i++) {
+            int estimate = sketch.estimate(HyperLogLog.hash("value-" + i));
+            Assert.assertTrue(estimate >= 20 && estimate < 20 + 2 * 100000 / 1024, "value-" + i + ": " + estimate);
+        }
+        sketch.clear();
+        Assert.assertEquals(sketch.estimate(HyperLogLog.hash("value-0")), 0);
+    }
+
+    @Test(description = "Checks that the most frequent values are found among a long tail of infrequent ones")
+    public void topTest() {
+        SlidingTopK topK = new SlidingTopK(3, 1024, MINUTE, 5);
+        for (int i = 0; i < 50000; i++) {
+            topK.add("10.0.0." + (i % 1000) + "." + (i / 1000), START + i);
+            if (i % 10 == 0) {
+                topK.add("203.0.113.7", START + i);
+            }
+            if (i % 20 == 0) {
+                topK.add("198.51.100.1", START + i);
+            }
+            if (i % 50 == 0) {
+                topK.add("192.0.2.1", START + i);
+            }
+        }
+        List<HeavyHitter> top = topK.getTop(1, START + 50000);
+        Assert.assertEquals(top.size(), 3);
+        Assert.assertEquals(top.get(0).getValue(), "203.0.113.7");
+        Assert.assertEquals(top.get(1).getValue(), "198.51.100.1");
+        Assert.assertEquals(top.get(2).getValue(), "192.0.2.1");
+        Assert.assertTrue(top.get(0).getCount() >= 5000 && top.get(0).getCount() < 5200, top.toString());
+        Assert.assertEquals(top.get(0).toString(), top.get(0).getCount() + " 203.0.113.7");
+    }
+
+    @Test(description = "Checks that values leave the one minute window before the five minute window")
+    public void slidingWindowTest() {
+        SlidingTopK topK = new SlidingTopK(5, 1024, MINUTE, 5);
+        for (int i = 0; i < 100; i++) {
+            topK.add("/shop/orders/{id}", START);
+        }
+        for (int i = 0; i < 10; i++) {
+            topK.add("/shop/cart", START + 3 * MINUTE);
+        }
+
+        List<HeavyHitter> oneMinute = topK.getTop(1, START + 3 * MINUTE);
+        Assert.assertEquals(oneMinute.size(), 1);
+        Assert.assertEquals(oneMinute.get(0).getValue(), "/shop/cart");
+        List<HeavyHitter> fiveMinutes = topK.getTop(5, START + 3 * MINUTE);
+        Assert.assertEquals(fiveMinutes.get(0).getValue(), "/shop/orders/{id}");
+        Assert.assertEquals(fiveMinutes.get(0).getCount(), 100L);
+        Assert.assertEquals(fiveMinutes.get(1).getCount(), 10L);
+
+        // half of the oldest minute is still inside the five minute window
+        Assert.assertEquals(topK.getTop(5, START + 5 * MINUTE + MINUTE / 2).get(0).getCount(), 50L);
+        Assert.assertTrue(topK.getTop(5, START + 9 * MINUTE).isEmpty());
+
+        // a reused bucket counts only the values of its new minute
+        topK.add("/shop/cart", START + 6 * MINUTE);
+        Assert.assertEquals(topK.getTop(1, START + 6 * MINUTE).get(0).getCount(), 1L);
+    }
+
+    @Test(description = "Checks that each request property is tracked separately and anonymous requests skip users")
+    public void dimensionsTest() {
+        MonitoringConfiguration configuration = new MonitoringConfiguration(new Properties());
+        HeavyHitters heavyHitters = new HeavyHitters("localhost", "/shop", new ClientAddressResolver(configuration),
+                configuration);
+        heavyHitters.record("203.0.113.7", "/shop/orders/{id}", "alice", "curl/8.0", START);
+        heavyHitters.record("203.0.113.7", "/shop/cart", null, "curl/8.0", START);
+
+        Assert.assertEquals(heavyHitters.getTop(HeavyHitters.Dimension.CLIENT_IP, 1, START).get(0).getCount(), 2L);
+        Assert.assertEquals(heavyHitters.getTop(HeavyHitters.Dimension.URI, 5, START).size(), 2);
+        Assert.assertEquals(heavyHitters.getTop(HeavyHitters.Dimension.USER, 1, START).size(), 1);
+        Assert.assertEquals(heavyHitters.getTop(HeavyHitters.Dimension.USER_AGENT, 1, START).get(0).getValue(),
+                "curl/8.0");
+    }
+}
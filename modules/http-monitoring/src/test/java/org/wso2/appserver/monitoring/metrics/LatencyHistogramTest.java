@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.metrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+import org.wso2.appserver.monitoring.route.UriNormalizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for the latency histograms.
+ *
+ * @since 1.0.1
+ */
+public class LatencyHistogramTest {
+
+    @Test(description = "Checks that every value falls in a bucket whose bounds are within the relative error")
+    public void bucketBoundsTest() {
+        Assert.assertEquals(LatencyHistogram.BUCKETS, 1024);
+        for (long micros = 0; micros < 1 << 20; micros += 7) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.bucket(micros));
+            Assert.assertTrue(highest >= micros, "Bucket of " + micros + " ends at " + highest);
+            Assert.assertTrue(highest - micros <= micros / LatencyHistogram.SUB_BUCKETS,
+                    "Bucket of " + micros + " ends at " + highest);
+        }
+        Assert.assertEquals(LatencyHistogram.bucket(LatencyHistogram.MAX_MICROS), LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test(description = "Checks the percentiles and maximum recorded from concurrent threads")
+    public void concurrentRecordingTest() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toMillis(1));
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 10000; i++) {
+                    histogram.record(TimeUnit.MICROSECONDS.toNanos(i * 100));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(histogram.getCount(), 80000L);
+        Assert.assertEquals(histogram.getMax(), 1000.0);
+        Assert.assertEquals(histogram.getP50(), 500.0, 500.0 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(histogram.getP99(), 990.0, 990.0 / LatencyHistogram.SUB_BUCKETS);
+        Assert.assertEquals(histogram.getMean(), 500.05, 0.001);
+    }
+
+    @Test(description = "Checks that a histogram does not grow beyond its stripe limit under contention")
+    public void stripeLimitTest() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MINUTES.toMillis(1), 3);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(histogram.getCount(), 80000L);
+        Assert.assertTrue(histogram.getStripeCount() <= 2, histogram.getStripeCount() + " stripes");
+    }
+
+    @Test(description = "Checks that web applications with the same path on different hosts register apart")
+    public void hostObjectNameTest() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        MonitoringConfiguration configuration = new MonitoringConfiguration(new Properties());
+        ContextLatencyMetrics first = new ContextLatencyMetrics("a.example.com", "/shop", configuration);
+        ContextLatencyMetrics second = new ContextLatencyMetrics("b.example.com", "/shop", configuration);
+        try {
+            first.record("/shop/cart", TimeUnit.MILLISECONDS.toNanos(3));
+            Assert.assertTrue(mBeanServer.isRegistered(new ObjectName(
+                    "org.wso2.appserver.monitoring:type=LatencyHistogram,host=\"a.example.com\",context=\"/shop\"")));
+            Assert.assertTrue(mBeanServer.isRegistered(new ObjectName(
+                    "org.wso2.appserver.monitoring:type=LatencyHistogram,host=\"b.example.com\",context=\"/shop\"")));
+            Assert.assertTrue(mBeanServer.isRegistered(new ObjectName("org.wso2.appserver.monitoring:"
+                    + "type=LatencyHistogram,host=\"a.example.com\",context=\"/shop\",endpoint=\"/shop/cart\"")));
+            Assert.assertEquals(second.getContextHistogram().getCount(), 0L);
+        } finally {
+            first.close();
+            second.close();
+        }
+        Assert.assertTrue(mBeanServer.queryNames(new ObjectName(
+                "org.wso2.appserver.monitoring:type=LatencyHistogram,context=\"/shop\",*"), null).isEmpty());
+    }
+
+    @Test(description = "Checks that identifier segments are replaced when normalizing URIs")
+    public void uriNormalizationTest() {
+        Assert.assertEquals(UriNormalizer.normalize("/shop/orders/1234"), "/shop/orders/{id}");
+        Assert.assertEquals(UriNormalizer.normalize("/shop/orders/1234/items/"), "/shop/orders/{id}/items/");
+        Assert.assertEquals(UriNormalizer.normalize("/shop/carts/3f2a9c1e-7b4d-4e8a-9f00-1a2b3c4d5e6f"),
+                "/shop/carts/{id}");
+        Assert.assertEquals(UriNormalizer.normalize("/shop/decade/v2/index.html"), "/shop/decade/v2/index.html");
+        Assert.assertEquals(UriNormalizer.normalize("/"), "/");
+    }
+}
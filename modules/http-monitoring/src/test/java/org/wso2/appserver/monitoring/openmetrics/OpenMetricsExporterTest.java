@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.openmetrics;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the OpenMetrics exposition.
+ *
+ * @since 1.0.1
+ */
+public class OpenMetricsExporterTest {
+
+    @Test(description = "Checks the exposition of the counters and latency histogram of a web application")
+    public void formatTest() {
+        RequestMetrics metrics = RequestMetrics.register("/shop", RequestMetrics.parseBuckets("0.01,0.1"));
+        try {
+            metrics.record("GET", 200, 0, 512, TimeUnit.MILLISECONDS.toNanos(5));
+            metrics.record("GET", 200, 0, 512, TimeUnit.MILLISECONDS.toNanos(50));
+            metrics.record("GET", 200, 0, 512, TimeUnit.SECONDS.toNanos(2));
+            metrics.record("POST", 503, 100, 0, TimeUnit.MILLISECONDS.toNanos(1));
+
+            OpenMetricsWriter writer = new OpenMetricsWriter();
+            OpenMetricsExporter.format(writer);
+            String exposition = writer.toString();
+            String get = "webapp=\"/shop\",method=\"GET\",status=\"200\"";
+            Assert.assertTrue(exposition.contains("http_server_requests_total{" + get + "} 3\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_errors_total{webapp=\"/shop\",method=\"POST\"} 1\n"), exposition);
+            Assert.assertTrue(exposition.contains("http_server_response_bytes_total{" + get + "} 1536\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_request_duration_seconds_bucket{" + get + ",le=\"0.010000\"} 1\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_request_duration_seconds_bucket{" + get + ",le=\"0.100000\"} 2\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_request_duration_seconds_bucket{" + get + ",le=\"+Inf\"} 3\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_request_duration_seconds_sum{" + get + "} 2.055000\n"), exposition);
+            Assert.assertTrue(exposition.endsWith("# EOF\n"), exposition);
+        } finally {
+            metrics.close();
+        }
+    }
+
+    @Test(description = "Checks that the listener stops with its last user and that only acquired handles release it")
+    public void referenceCountTest() {
+        Properties properties = new Properties();
+        Assert.assertNull(OpenMetricsExporter.acquire(new MonitoringConfiguration(properties)));
+        properties.setProperty(OpenMetricsExporter.ENABLED, "true");
+        properties.setProperty(OpenMetricsExporter.PORT, "0");
+        MonitoringConfiguration configuration = new MonitoringConfiguration(properties);
+
+        OpenMetricsExporter first = OpenMetricsExporter.acquire(configuration);
+        Assert.assertNotNull(first);
+        Assert.assertSame(OpenMetricsExporter.acquire(configuration), first);
+        first.release();
+        Assert.assertSame(OpenMetricsExporter.acquire(configuration), first, "Stopped while still in use");
+        first.release();
+        first.release();
+
+        OpenMetricsExporter second = OpenMetricsExporter.acquire(configuration);
+        Assert.assertNotSame(second, first);
+        first.release();
+        Assert.assertSame(OpenMetricsExporter.acquire(configuration), second, "Stopped by a stale handle");
+        second.release();
+        second.release();
+    }
+
+    @Test(description = "Checks that non-standard methods and out of range statuses share a few series")
+    public void methodFoldingTest() {
+        RequestMetrics metrics = RequestMetrics.register("/shop", RequestMetrics.parseBuckets("0.01"));
+        try {
+            for (int i = 0; i < 100; i++) {
+                metrics.record("SCAN" + i, 200, 0, 0, 0);
+                metrics.record("GET", 1000 + i, 0, 0, 0);
+            }
+            metrics.record(null, 500, 0, 0, 0);
+            metrics.record("get", 200, 0, 0, 0);
+            Assert.assertEquals(metrics.getSeries().size(), 3);
+
+            OpenMetricsWriter writer = new OpenMetricsWriter();
+            OpenMetricsExporter.format(writer);
+            String exposition = writer.toString();
+            Assert.assertTrue(exposition.contains(
+                    "http_server_requests_total{webapp=\"/shop\",method=\"OTHER\",status=\"200\"} 101\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_requests_total{webapp=\"/shop\",method=\"GET\",status=\"0\"} 100\n"), exposition);
+            Assert.assertTrue(exposition.contains(
+                    "http_server_errors_total{webapp=\"/shop\",method=\"OTHER\"} 1\n"), exposition);
+        } finally {
+            metrics.close();
+        }
+    }
+
+    @Test(description = "Checks that numbers and label values are written as required by the text format")
+    public void writerTest() {
+        OpenMetricsWriter writer = new OpenMetricsWriter();
+        writer.write(0L).write(' ').write(-42L).write(' ').write(Long.MAX_VALUE).write(' ').writeMicros(1234567);
+        Assert.assertEquals(writer.toString(), "0 -42 9223372036854775807 1.234567");
+        Assert.assertEquals(RequestSeries.escape("a\"b\\c\nd"), "a\\\"b\\\\c\\nd");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.route;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Properties;
+
+/**
+ * Unit tests for collapsing requested URIs into route templates.
+ *
+ * @since 1.0.1
+ */
+public class RouteTemplatesTest {
+
+    @Test(description = "Checks matching URIs against the configured route patterns")
+    public void patternTest() {
+        RouteTemplates templates = newTemplates("/shop", "/orders/{orderId}, /orders/{orderId}/items/*, " +
+                "/orders/latest, /users/{name}/profile, /static/**, broken, /a/**/b");
+
+        Assert.assertEquals(templates.getTemplate("/shop/orders/123"), "/shop/orders/{orderId}");
+        Assert.assertEquals(templates.getTemplate("/shop/orders/A-17/items/9"), "/shop/orders/{orderId}/items/*");
+        Assert.assertEquals(templates.getTemplate("/shop/orders/latest"), "/shop/orders/latest");
+        Assert.assertEquals(templates.getTemplate("/shop/users/alice/profile"), "/shop/users/{name}/profile");
+        Assert.assertEquals(templates.getTemplate("/shop/static/css/site.css"), "/shop/static/**");
+        Assert.assertEquals(templates.getTemplate("/shop/orders/123;jsessionid=6A3B0C3F"), "/shop/orders/{orderId}");
+        // URIs matching no pattern fall back to the heuristics
+        Assert.assertEquals(templates.getTemplate("/shop/users/alice"), "/shop/users/alice");
+        Assert.assertEquals(templates.getTemplate("/shop/carts/42"), "/shop/carts/{id}");
+        Assert.assertEquals(templates.getTemplate("/shop"), "/shop");
+        Assert.assertEquals(templates.getTemplate("/shopping/orders/1"), "/shopping/orders/{id}");
+        Assert.assertNull(templates.getTemplate(null));
+    }
+
+    @Test(description = "Checks that a literal segment is preferred, backtracking to a variable one")
+    public void backtrackingTest() {
+        RouteTemplates templates = newTemplates("", "/api/{version}/users, /api/v1/orders/{id}");
+
+        Assert.assertEquals(templates.getTemplate("/api/v1/orders/7"), "/api/v1/orders/{id}");
+        Assert.assertEquals(templates.getTemplate("/api/v1/users"), "/api/{version}/users");
+        Assert.assertEquals(templates.getTemplate("/api/v2/users"), "/api/{version}/users");
+    }
+
+    @Test(description = "Checks that the heuristics can be disabled")
+    public void heuristicsDisabledTest() {
+        Properties properties = new Properties();
+        properties.setProperty(RouteTemplates.HEURISTICS, "false");
+        RouteTemplates templates = new RouteTemplates("", new MonitoringConfiguration(properties));
+
+        Assert.assertEquals(templates.getTemplate("/orders/123"), "/orders/123");
+    }
+
+    private static RouteTemplates newTemplates(String contextPath, String patterns) {
+        Properties properties = new Properties();
+        properties.setProperty(RouteTemplates.PATTERNS, patterns);
+        return new RouteTemplates(contextPath, new MonitoringConfiguration(properties));
+    }
+}
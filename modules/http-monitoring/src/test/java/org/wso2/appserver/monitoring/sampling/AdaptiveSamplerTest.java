@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for the adaptive sampler.
+ *
+ * @since 1.0.1
+ */
+public class AdaptiveSamplerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    @Test(description = "Checks that the rate converges to the budget and errors and slow requests are always kept")
+    public void adaptiveRateTest() {
+        AdaptiveSampler sampler = new AdaptiveSampler(100, 0.001, 500, SLOW, SECOND, 0);
+        long published = 0;
+        for (int second = 0; second < 5; second++) {
+            published = 0;
+            for (int i = 0; i < 10000; i++) {
+                long now = second * SECOND + i * (SECOND / 10000);
+                if (sampler.sample(200, 0, now) > 0) {
+                    published++;
+                }
+                if (i % 100 == 0) {
+                    Assert.assertEquals(sampler.sample(503, 0, now), Sampler.UNSAMPLED, "Error dropped");
+                    Assert.assertEquals(sampler.sample(200, SLOW, now), Sampler.UNSAMPLED, "Slow request dropped");
+                }
+            }
+        }
+        // 200 priority events per second exceed the budget, so only the floor of normal traffic is kept
+        Assert.assertEquals(sampler.getSamplingRate(), 0.001, 1e-9);
+        Assert.assertTrue(published < 100, "Published " + published + " normal requests");
+
+        // the budget left after 200 priority events per second covers a tenth of the normal traffic
+        sampler.setTargetEventsPerSecond(1200);
+        sampler.sample(200, 0, 5 * SECOND);
+        Assert.assertEquals(sampler.getSamplingRate(), 0.1, 0.001);
+
+        // a sampled event stands for the inverse of the rate it was sampled at
+        double weight = 0;
+        while (weight == 0) {
+            weight = sampler.sample(200, 0, 5 * SECOND);
+        }
+        Assert.assertEquals(weight, 1 / sampler.getSamplingRate(), 1e-9);
+        Assert.assertTrue(sampler.isPriority(503, 0));
+        Assert.assertTrue(sampler.isPriority(200, SLOW));
+        Assert.assertFalse(sampler.isPriority(200, 0));
+    }
+
+    @Test(description = "Checks that all requests are kept while traffic is within budget")
+    public void withinBudgetTest() {
+        AdaptiveSampler sampler = new AdaptiveSampler(1000, 0.001, 500, SLOW, SECOND, 0);
+        for (int i = 0; i < 500; i++) {
+            sampler.sample(200, 0, i * (SECOND / 500));
+        }
+        Assert.assertEquals(sampler.sample(200, 0, SECOND), Sampler.UNSAMPLED);
+        Assert.assertEquals(sampler.getSampledCount(), 501L);
+        Assert.assertEquals(sampler.getDroppedCount(), 0L);
+    }
+}
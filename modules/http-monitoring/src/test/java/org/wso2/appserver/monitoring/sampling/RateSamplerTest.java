@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.sampling;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Properties;
+
+/**
+ * Unit tests for the rate based sampler.
+ *
+ * @since 1.0.1
+ */
+public class RateSamplerTest {
+
+    @Test(description = "Checks that a key is always kept or always dropped at the same rate")
+    public void deterministicSamplingTest() {
+        for (int i = 0; i < 1000; i++) {
+            String key = "session-" + i;
+            boolean sampled = RateSampler.isSampled(key, 0.3);
+            for (int j = 0; j < 5; j++) {
+                Assert.assertEquals(RateSampler.isSampled(key, 0.3), sampled, "Decision changed for " + key);
+            }
+            if (sampled) {
+                Assert.assertTrue(RateSampler.isSampled(key, 0.6), "Key dropped at a higher rate: " + key);
+            }
+        }
+    }
+
+    @Test(description = "Checks that the fraction of keys kept matches the rate")
+    public void samplingRateTest() {
+        int keys = 100000;
+        int keyed = 0;
+        int random = 0;
+        for (int i = 0; i < keys; i++) {
+            if (RateSampler.isSampled(Integer.toHexString(i * 7919), 0.1)) {
+                keyed++;
+            }
+            if (RateSampler.isSampled(null, 0.1)) {
+                random++;
+            }
+        }
+        Assert.assertEquals(keyed / (double) keys, 0.1, 0.01);
+        Assert.assertEquals(random / (double) keys, 0.1, 0.01);
+    }
+
+    @Test(description = "Checks that the configured rate is bounded and weights kept requests by its inverse")
+    public void rateConfigurationTest() {
+        Properties properties = new Properties();
+        properties.setProperty(RateSampler.RATE, "0.25");
+        Assert.assertEquals(new RateSampler(new MonitoringConfiguration(properties)).getRate(), 0.25);
+        properties.setProperty(RateSampler.RATE, "4");
+        Assert.assertEquals(new RateSampler(new MonitoringConfiguration(properties)).sample(null),
+                Sampler.UNSAMPLED);
+        properties.setProperty(RateSampler.RATE, "-1");
+        Assert.assertEquals(new RateSampler(new MonitoringConfiguration(properties)).sample(null), 0.0);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.spill;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for the disk spill of statistics events.
+ *
+ * @since 1.0.1
+ */
+public class SpillLogTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("spill-test");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test(description = "Checks that records are read in order across segments and consumed segments are deleted")
+    public void orderTest() throws IOException {
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 50; i++) {
+                Assert.assertTrue(spillLog.append(record(i)));
+            }
+            Assert.assertEquals(spillLog.getPendingCount(), 50L);
+            Assert.assertTrue(segmentCount() > 1, "Records did not roll over to a new segment");
+
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals(new String(spillLog.peek(), StandardCharsets.UTF_8), "record-" + i);
+                spillLog.remove();
+            }
+            Assert.assertNull(spillLog.peek());
+            Assert.assertTrue(spillLog.isEmpty());
+            Assert.assertEquals(segmentCount(), 1L);
+        }
+    }
+
+    @Test(description = "Checks that a reopened log resumes after the last consumed record")
+    public void resumeTest() throws IOException {
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES)) {
+            for (int i = 0; i < 30; i++) {
+                spillLog.append(record(i));
+            }
+            for (int i = 0; i < 20; i++) {
+                spillLog.remove();
+            }
+        }
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES)) {
+            Assert.assertEquals(spillLog.getPendingCount(), 10L);
+            Assert.assertEquals(new String(spillLog.peek(), StandardCharsets.UTF_8), "record-20");
+            spillLog.append(record(30));
+            Assert.assertEquals(spillLog.getPendingCount(), 11L);
+        }
+    }
+
+    @Test(description = "Checks that records beyond the disk budget are rejected and counted")
+    public void budgetTest() throws IOException {
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 2 * SEGMENT_BYTES)) {
+            int appended = 0;
+            for (int i = 0; i < 100; i++) {
+                if (spillLog.append(record(i))) {
+                    appended++;
+                }
+            }
+            Assert.assertTrue(appended > 0 && appended < 100);
+            Assert.assertEquals(spillLog.getRejectedCount(), 100L - appended);
+            Assert.assertEquals(segmentCount(), 2L);
+            Assert.assertFalse(spillLog.append(new byte[SEGMENT_BYTES]), "Record larger than a segment accepted");
+        }
+    }
+
+    @Test(description = "Checks that a directory is locked while a log is open on it")
+    public void lockTest() throws IOException {
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES)) {
+            spillLog.append(record(0));
+            try {
+                new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES).close();
+                Assert.fail("A second log was opened on a locked directory");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().contains("already in use"), e.getMessage());
+            }
+        }
+        try (SpillLog spillLog = new SpillLog(directory, SEGMENT_BYTES, 100 * SEGMENT_BYTES)) {
+            Assert.assertEquals(spillLog.getPendingCount(), 1L);
+        }
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+}
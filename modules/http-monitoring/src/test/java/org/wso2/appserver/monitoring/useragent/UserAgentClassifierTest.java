@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.useragent;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.utils.LruCache;
+
+/**
+ * Unit tests for the User-Agent classification.
+ *
+ * @since 1.0.1
+ */
+public class UserAgentClassifierTest {
+
+    @Test(description = "Checks the classification of common browsers")
+    public void browserTest() {
+        assertClassified("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) " +
+                "Chrome/51.0.2704.103 Safari/537.36", "Chrome 51/Windows 10/desktop");
+        assertClassified("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) " +
+                "Chrome/91.0.4472.124 Safari/537.36 Edg/91.0.864.59", "Edge 91/Windows 10/desktop");
+        assertClassified("Mozilla/5.0 (X11; Linux x86_64; rv:46.0) Gecko/20100101 Firefox/46.0",
+                "Firefox 46/Linux/desktop");
+        assertClassified("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_11_5) AppleWebKit/601.6.17 (KHTML, like Gecko) " +
+                "Version/9.1.1 Safari/601.6.17", "Safari 9/macOS/desktop");
+        assertClassified("Mozilla/5.0 (Windows NT 6.1; WOW64; Trident/7.0; rv:11.0) like Gecko",
+                "Internet Explorer 11/Windows 7/desktop");
+    }
+
+    @Test(description = "Checks the classification of mobile devices and tablets")
+    public void deviceTest() {
+        assertClassified("Mozilla/5.0 (iPhone; CPU iPhone OS 9_3_2 like Mac OS X) AppleWebKit/601.1.46 " +
+                "(KHTML, like Gecko) Version/9.0 Mobile/13F69 Safari/601.1", "Safari 9/iOS 9/mobile");
+        assertClassified("Mozilla/5.0 (iPad; CPU OS 9_3_2 like Mac OS X) AppleWebKit/601.1.46 (KHTML, like Gecko) " +
+                "Version/9.0 Mobile/13F69 Safari/601.1", "Safari 9/iOS 9/tablet");
+        assertClassified("Mozilla/5.0 (Linux; Android 6.0.1; Nexus 5X Build/MTC19V) AppleWebKit/537.36 " +
+                "(KHTML, like Gecko) Chrome/51.0.2704.81 Mobile Safari/537.36", "Chrome 51/Android 6/mobile");
+        assertClassified("Mozilla/5.0 (Linux; Android 5.0.2; SM-T530 Build/LRX22G) AppleWebKit/537.36 " +
+                "(KHTML, like Gecko) SamsungBrowser/3.3 Chrome/38.0.2125.102 Safari/537.36",
+                "Samsung Internet 3/Android 5/tablet");
+    }
+
+    @Test(description = "Checks that bots and programmatic clients are named after their product")
+    public void botTest() {
+        assertClassified("Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)",
+                "Googlebot/unknown/bot");
+        assertClassified("curl/7.47.0", "curl/unknown/bot");
+        assertClassified("Apache-HttpClient/4.5.2 (Java/1.8.0_92)", "Apache-HttpClient/unknown/bot");
+        assertClassified("SomethingElse", "other/unknown/other");
+        Assert.assertNull(new UserAgentClassifier(16, false).classify(null));
+    }
+
+    @Test(description = "Checks that repeated headers are served from the cache and that the cache stays bounded")
+    public void cacheTest() {
+        UserAgentClassifier classifier = new UserAgentClassifier(16, true);
+        String header = "Mozilla/5.0 (X11; Linux x86_64; rv:46.0) Gecko/20100101 Firefox/46.0";
+        Assert.assertSame(classifier.classify(header), classifier.classify(new String(header)));
+
+        LruCache<Integer, Integer> cache = new LruCache<>(64);
+        for (int i = 0; i < 1000; i++) {
+            cache.get(i, key -> key);
+            Assert.assertEquals(cache.get(0, key -> -1), (Integer) 0, "Recently used entry evicted");
+        }
+        Assert.assertTrue(cache.size() <= 64, "Cache grew beyond its size: " + cache.size());
+    }
+
+    private static void assertClassified(String header, String summary) {
+        Assert.assertEquals(UserAgentParser.parse(header).getSummary(), summary, header);
+    }
+}
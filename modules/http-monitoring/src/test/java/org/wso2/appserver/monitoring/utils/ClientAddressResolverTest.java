@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.util.Properties;
+
+/**
+ * Unit tests for the trusted proxy aware client address resolution.
+ *
+ * @since 1.0.1
+ */
+public class ClientAddressResolverTest {
+
+    @Test(description = "Checks matching IPv4 and IPv6 addresses against CIDR ranges")
+    public void cidrTrieTest() {
+        CidrTrie trie = new CidrTrie();
+        trie.add("10.0.0.0/8");
+        trie.add("192.168.1.17");
+        trie.add("2001:db8::/32");
+        trie.add("::1");
+
+        Assert.assertTrue(trie.contains("10.1.2.3"));
+        Assert.assertTrue(trie.contains("192.168.1.17"));
+        Assert.assertFalse(trie.contains("192.168.1.18"));
+        Assert.assertFalse(trie.contains("11.0.0.1"));
+        Assert.assertTrue(trie.contains("2001:DB8:0:0:1::5"));
+        Assert.assertTrue(trie.contains("::1"));
+        Assert.assertFalse(trie.contains("::2"));
+        Assert.assertFalse(trie.contains("2001:db9::1"));
+        Assert.assertTrue(trie.contains("::ffff:10.0.0.1"));
+        Assert.assertTrue(trie.contains("x10.0.0.1y", 1, 9));
+
+        Assert.assertFalse(trie.contains("10.0.0"));
+        Assert.assertFalse(trie.contains("10.0.0.256"));
+        Assert.assertFalse(trie.contains("2001:db8::1::2"));
+        Assert.assertFalse(trie.contains("unknown"));
+        Assert.assertFalse(trie.contains(""));
+    }
+
+    @Test(description = "Checks that invalid ranges are rejected", expectedExceptions = IllegalArgumentException.class)
+    public void invalidRangeTest() {
+        new CidrTrie().add("10.0.0.0/33");
+    }
+
+    @Test(description = "Checks walking the X-Forwarded-For chain from right to left")
+    public void forwardedForTest() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8", null);
+
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "203.0.113.7, 10.0.0.2, 10.0.0.3"), "203.0.113.7");
+        // a spoofed leftmost entry is skipped, as the nearest untrusted hop is the client
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "1.2.3.4, 198.51.100.9, 10.0.0.2"), "198.51.100.9");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "10.0.0.5, 10.0.0.2"), "10.0.0.5");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "203.0.113.7:51234"), "203.0.113.7");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "[2001:db8::7]:443, 10.0.0.2"), "2001:db8::7");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "unknown, 10.0.0.2"), "10.0.0.2");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "unknown"), "10.0.0.1");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", null), "10.0.0.1");
+        // the header of a request that did not come through a trusted proxy is not believed
+        Assert.assertEquals(resolver.resolve("198.51.100.1", "203.0.113.7"), "198.51.100.1");
+    }
+
+    @Test(description = "Checks reading the for parameters of the Forwarded header")
+    public void forwardedTest() {
+        ClientAddressResolver resolver = newResolver("10.0.0.0/8", "Forwarded");
+
+        Assert.assertEquals(resolver.resolve("10.0.0.1",
+                "for=192.0.2.60;proto=http;by=10.0.0.1, proto=https; For=\"[2001:db8:cafe::17]:4711\""),
+                "2001:db8:cafe::17");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "for=192.0.2.60, for=10.0.0.9;by=10.0.0.1"),
+                "192.0.2.60");
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "for=_hidden, for=10.0.0.9"), "10.0.0.9");
+    }
+
+    @Test(description = "Checks that no proxy is trusted when the trusted ranges are none")
+    public void noTrustedProxiesTest() {
+        ClientAddressResolver resolver = newResolver("none", null);
+        Assert.assertEquals(resolver.resolve("10.0.0.1", "203.0.113.7"), "10.0.0.1");
+    }
+
+    private static ClientAddressResolver newResolver(String trustedProxies, String header) {
+        Properties properties = new Properties();
+        properties.setProperty(ClientAddressResolver.TRUSTED_PROXIES, trustedProxies);
+        if (header != null) {
+            properties.setProperty(ClientAddressResolver.HEADER, header);
+        }
+        return new ClientAddressResolver(new MonitoringConfiguration(properties));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.core.StandardContext;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.RequestSnapshot;
+import org.wso2.carbon.databridge.commons.Event;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the allocation behaviour of the event builder.
+ *
+ * @since 1.0.1
+ */
+public class EventBuilderTest {
+    private static final String STREAM_ID = "org.wso2.http.analytics.stream:1.0.0";
+    private static final int WARM_UP_ITERATIONS = 50000;
+    private static final int MEASURED_ITERATIONS = 50000;
+
+    private RequestSnapshot snapshot;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        Request request = mock(Request.class);
+        Response response = mock(Response.class);
+
+        StandardContext standardContext = new StandardContext();
+        standardContext.setDisplayName("Test Display Name");
+        standardContext.setEffectiveMajorVersion(3);
+        standardContext.setEffectiveMinorVersion(1);
+
+        when(request.getContext()).thenReturn(standardContext);
+        when(request.getRequestURI()).thenReturn("/examples/servlets/HelloWorld");
+        when(request.getLocale()).thenReturn(Locale.ENGLISH);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRemoteAddr()).thenReturn("127.0.0.1");
+        when(request.getServerName()).thenReturn("localhost");
+        when(request.getLocalName()).thenReturn("localhost.localdomain");
+        when(request.getHeaderNames()).thenReturn(Collections.enumeration(Arrays.asList("host", "accept")));
+        when(request.getHeader("host")).thenReturn("localhost:8080");
+        when(request.getHeader("accept")).thenReturn("text/html");
+        when(response.getHeaderNames()).thenReturn(Arrays.asList("Content-Type", "Content-Length"));
+        when(response.getHeader("Content-Type")).thenReturn("text/html;charset=utf-8");
+        when(response.getHeader("Content-Length")).thenReturn("1046");
+        when(response.getContentType()).thenReturn("text/html;charset=utf-8");
+        when(response.getStatus()).thenReturn(200);
+
+        snapshot = RequestSnapshot.capture(request, response, System.currentTimeMillis(), 12);
+    }
+
+    @Test(description = "Checks the webapp segment extracted from requested URIs")
+    public void webappSegmentTest() {
+        Assert.assertEquals(EventBuilder.getWebappSegment("/examples/servlets/HelloWorld"), "examples");
+        Assert.assertEquals(EventBuilder.getWebappSegment("/examples"), "examples");
+        Assert.assertEquals(EventBuilder.getWebappSegment("/examples/"), "examples");
+        Assert.assertEquals(EventBuilder.getWebappSegment("/"), "/");
+        Assert.assertEquals(EventBuilder.getWebappSegment(" /examples/index.jsp "), "examples");
+        Assert.assertNull(EventBuilder.getWebappSegment(null));
+    }
+
+    @Test(description = "Checks that headers are serialized in the published format")
+    public void joinHeadersTest() {
+        Assert.assertEquals(EventBuilder.joinHeaders(new String[]{"host", "localhost", "accept", null}, ';'),
+                "host:(localhost);accept:()");
+        Assert.assertEquals(EventBuilder.joinHeaders(new String[0], ','), "");
+    }
+
+    @Test(description = "Checks that building an event allocates little more than the event itself")
+    public void allocationTest() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            EventBuilder.buildEvent(STREAM_ID, snapshot);
+        }
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+        Event event = null;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            event = EventBuilder.buildEvent(STREAM_ID, snapshot);
+        }
+        long bytesPerEvent = (allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) /
+                MEASURED_ITERATIONS;
+
+        Assert.assertNotNull(event);
+        // the event, its payload and arbitrary data, the boxed timings and the two header strings are expected
+        Assert.assertTrue(bytesPerEvent < 1024, "Allocated " + bytesPerEvent + " bytes per event");
+    }
+}
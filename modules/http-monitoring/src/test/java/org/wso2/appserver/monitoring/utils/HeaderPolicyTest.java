@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.wso2.appserver.monitoring.MonitoringConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Unit tests for the header capture policy.
+ *
+ * @since 1.0.1
+ */
+public class HeaderPolicyTest {
+
+    @Test(description = "Checks that credentials are denied by default, ignoring case")
+    public void defaultPolicyTest() {
+        HeaderPolicy headerPolicy = new HeaderPolicy(new MonitoringConfiguration(new Properties()));
+        Assert.assertTrue(headerPolicy.isCaptured("Accept"));
+        Assert.assertFalse(headerPolicy.isCaptured("authorization"));
+        Assert.assertFalse(headerPolicy.isCaptured("Cookie"));
+        Assert.assertFalse(headerPolicy.isCaptured("SET-COOKIE"));
+        Assert.assertEquals(headerPolicy.getMaxBytes(), 2048);
+    }
+
+    @Test(description = "Checks that serialized headers are measured in UTF-8 bytes")
+    public void serializedBytesTest() {
+        String value = "caf\u00e9 \u20ac \ud83d\ude00 \ud800";
+        Assert.assertEquals(HeaderPolicy.getUtf8Length(value),
+                value.getBytes(StandardCharsets.UTF_8).length);
+        Assert.assertEquals(HeaderPolicy.getSerializedBytes("X-Name", "\u00e9"), 12);
+        Assert.assertEquals(HeaderPolicy.getSerializedBytes("Accept", null), 10);
+    }
+
+    @Test(description = "Checks that only allowed headers that are not denied are captured")
+    public void allowlistTest() {
+        Properties properties = new Properties();
+        properties.setProperty(HeaderPolicy.ALLOW, "host, accept ,cookie");
+        HeaderPolicy headerPolicy = new HeaderPolicy(new MonitoringConfiguration(properties));
+        Assert.assertTrue(headerPolicy.isCaptured("Host"));
+        Assert.assertTrue(headerPolicy.isCaptured("accept"));
+        Assert.assertFalse(headerPolicy.isCaptured("Cookie"), "Denied header captured");
+        Assert.assertFalse(headerPolicy.isCaptured("User-Agent"), "Header not in the allowlist captured");
+
+        properties.setProperty(HeaderPolicy.CAPTURE, "false");
+        Assert.assertFalse(new HeaderPolicy(new MonitoringConfiguration(properties)).isCaptured("Host"));
+    }
+}
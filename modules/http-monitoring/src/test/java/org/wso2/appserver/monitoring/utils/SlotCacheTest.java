@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for the cache of values looked up on every request.
+ *
+ * @since 1.0.1
+ */
+public class SlotCacheTest {
+
+    @Test(description = "Checks that cached values are not computed again and that a flood of distinct keys is evicted")
+    public void evictionTest() {
+        SlotCache<String, String> cache = new SlotCache<>(64);
+        AtomicInteger computed = new AtomicInteger();
+        Assert.assertEquals(cache.get("/orders/1", key -> key + "#" + computed.incrementAndGet()), "/orders/1#1");
+        Assert.assertEquals(cache.get("/orders/1", key -> key + "#" + computed.incrementAndGet()), "/orders/1#1");
+
+        for (int i = 0; i < 10000; i++) {
+            cache.get("/scan/" + i, key -> key);
+        }
+        Assert.assertTrue(cache.size() <= 64, cache.size() + " cached entries");
+        cache.get("/orders/2", key -> key + "#" + computed.incrementAndGet());
+        Assert.assertEquals(cache.get("/orders/2", key -> key + "#" + computed.incrementAndGet()), "/orders/2#2");
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.appserver.monitoring.utils;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the pool of canonical strings.
+ *
+ * @since 1.0.1
+ */
+public class StringInternerTest {
+
+    @Test(description = "Checks that equal strings share an instance and that a flood of distinct values is evicted")
+    public void evictionTest() {
+        StringInterner interner = new StringInterner(64);
+        String pooled = interner.intern(new String("text/html"));
+        Assert.assertSame(interner.intern(new String("text/html")), pooled);
+        Assert.assertNull(interner.intern(null));
+
+        for (int i = 0; i < 10000; i++) {
+            interner.intern("scanner-" + i);
+        }
+        Assert.assertTrue(interner.size() <= 64, interner.size() + " pooled strings");
+        String repeated = interner.intern(new String("application/json"));
+        Assert.assertSame(interner.intern(new String("application/json")), repeated);
+    }
+}